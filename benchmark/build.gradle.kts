@@ -0,0 +1,36 @@
+plugins {
+    id(GradlePluginId.ANDROID_LIBRARY)
+    id(GradlePluginId.BENCHMARK)
+}
+
+android {
+    compileSdk = AndroidConfig.COMPILE_SDK_VERSION
+
+    defaultConfig {
+        // ScanResult and WifiConfiguration fixtures need the public ScanResult constructor added in API 30
+        minSdk = 30
+        targetSdk = AndroidConfig.TARGET_SDK_VERSION
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+    }
+
+    // Measure the library as it ships, not its debug build
+    testBuildType = BuildType.RELEASE
+
+    buildTypes {
+        release {
+            isMinifyEnabled = BuildTypeRelease.isMinifyEnabled
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+}
+
+dependencies {
+    androidTestImplementation(project(ModuleDependency.LIB))
+    androidTestImplementation(TestLibraryDependency.BENCHMARK_JUNIT4)
+    androidTestImplementation(TestLibraryDependency.ANDROID_X_TEST_EXT)
+    androidTestImplementation(TestLibraryDependency.JUNIT)
+}
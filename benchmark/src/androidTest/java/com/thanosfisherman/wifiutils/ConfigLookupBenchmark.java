@@ -0,0 +1,114 @@
+package com.androidconnect.wifiutils;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.androidconnect.wifiutils.ScanMatchingBenchmark.consume;
+
+/**
+ * Finding the saved network for an access point, through a warm {@link ConfiguredNetworks} as a connect does
+ * after its first lookup, and through a cold one that has to fetch and index the list first.
+ */
+@RunWith(Parameterized.class)
+public class ConfigLookupBenchmark {
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int mSavedNetworks;
+
+    private WifiRadio mRadio;
+    private ConfiguredNetworks mConfiguredNetworks;
+    private ScanResult mScanResult;
+    private ScanResult mUnknownScanResult;
+    private WifiConfiguration mConfigToFind;
+    private String mSsid;
+
+    @Parameterized.Parameters(name = "savedNetworks={0}")
+    public static List<Integer> savedNetworks() {
+        return Arrays.asList(10, 100, 500);
+    }
+
+    @Before
+    public void setUp() {
+        WifiUtils.enableLog(false);
+        final List<WifiConfiguration> configurations = Fixtures.configurations(mSavedNetworks);
+        mRadio = new Fixtures.SavedNetworksRadio(configurations);
+        mConfiguredNetworks = new ConfiguredNetworks(mRadio);
+        mConfiguredNetworks.getAll();
+
+        final int target = mSavedNetworks / 2;
+        final List<ScanResult> results = Fixtures.scanResults(mSavedNetworks + 1);
+        for (final ScanResult result : results) {
+            if (result.SSID.equals(Fixtures.ssid(target))) {
+                mScanResult = result;
+            } else if (result.SSID.equals(Fixtures.ssid(mSavedNetworks))) {
+                mUnknownScanResult = result;
+            }
+        }
+        mConfigToFind = configurations.get(target);
+        mSsid = Fixtures.ssid(target);
+    }
+
+    @Test
+    public void byScanResult() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        WifiConfiguration sink = null;
+        while (state.keepRunning()) {
+            sink = ConfigSecurities.getWifiConfiguration(mConfiguredNetworks, mScanResult);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void byScanResultMiss() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        WifiConfiguration sink = null;
+        while (state.keepRunning()) {
+            sink = ConfigSecurities.getWifiConfiguration(mConfiguredNetworks, mUnknownScanResult);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void byConfiguration() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        WifiConfiguration sink = null;
+        while (state.keepRunning()) {
+            sink = ConfigSecurities.getWifiConfiguration(mConfiguredNetworks, mConfigToFind);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void bySsid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        WifiConfiguration sink = null;
+        while (state.keepRunning()) {
+            sink = ConfigSecurities.getWifiConfiguration(mConfiguredNetworks, mSsid);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void byScanResultCold() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        WifiConfiguration sink = null;
+        while (state.keepRunning()) {
+            sink = ConfigSecurities.getWifiConfiguration(new ConfiguredNetworks(mRadio), mScanResult);
+        }
+        consume(sink);
+    }
+}
@@ -0,0 +1,256 @@
+package com.androidconnect.wifiutils;
+
+import android.content.BroadcastReceiver;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WpsInfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic scan results and saved networks shaped like what a device in a busy building reports.
+ */
+final class Fixtures {
+    private static final String[] CAPABILITIES = {
+            "[ESS]",
+            "[WEP][ESS]",
+            "[WPA2-PSK-CCMP][ESS]",
+            "[WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS][WPS]",
+            "[RSN-SAE-CCMP][ESS]",
+            "[WPA2-EAP-CCMP][ESS]",
+            "[RSN-EAP-SUITE_B_192-GCMP-256][ESS]",
+            "[RSN-OWE_TRANSITION-CCMP][ESS]",
+    };
+
+    private Fixtures() {
+    }
+
+    @NonNull
+    static String ssid(int index) {
+        return "Office-" + index;
+    }
+
+    @NonNull
+    static String bssid(int index) {
+        return String.format(Locale.ROOT, "02:00:00:%02x:%02x:%02x", (index >> 16) & 0xff, (index >> 8) & 0xff, index & 0xff);
+    }
+
+    @NonNull
+    static String capabilities(int index) {
+        return CAPABILITIES[index % CAPABILITIES.length];
+    }
+
+    /**
+     * @return {@code count} access points in a shuffled order, so matches don't always sit at the head of the list
+     */
+    @NonNull
+    static List<ScanResult> scanResults(int count) {
+        final Random random = new Random(count);
+        final List<ScanResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final ScanResult result = new ScanResult();
+            result.SSID = ssid(i);
+            result.BSSID = bssid(i);
+            result.capabilities = capabilities(i);
+            result.level = -30 - random.nextInt(60);
+            result.frequency = random.nextBoolean() ? 2437 : 5180;
+            results.add(result);
+        }
+        Collections.shuffle(results, random);
+        return results;
+    }
+
+    /**
+     * @return {@code count} saved networks matching the first {@code count} access points of {@link #scanResults(int)}
+     */
+    @NonNull
+    static List<WifiConfiguration> configurations(int count) {
+        final List<WifiConfiguration> configurations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final WifiConfiguration config = new WifiConfiguration();
+            config.networkId = i;
+            config.SSID = '"' + ssid(i) + '"';
+            // Roughly one in four networks is pinned to its access point
+            config.BSSID = i % 4 == 0 ? bssid(i) : null;
+            final int security = WifiSecurity.parse(capabilities(i));
+            if (WifiSecurity.isOpen(security)) {
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+            } else if ((security & WifiSecurity.WEP) != 0) {
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                config.wepKeys[0] = "0123456789";
+            } else if ((security & WifiSecurity.EAP) != 0) {
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_EAP);
+            } else if ((security & WifiSecurity.PSK) != 0) {
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+            } else if ((security & WifiSecurity.SAE) != 0) {
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.SAE);
+            } else {
+                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.OWE);
+            }
+            configurations.add(config);
+        }
+        return configurations;
+    }
+
+    /**
+     * A radio that only knows its saved networks, enough to back a {@link ConfiguredNetworks}. Everything else
+     * answers false, -1 or null, as the platform does when it can't oblige, rather than throwing mid-measurement.
+     */
+    static final class SavedNetworksRadio implements WifiRadio {
+        @NonNull
+        private final List<WifiConfiguration> mConfigurations;
+
+        SavedNetworksRadio(@NonNull List<WifiConfiguration> configurations) {
+            mConfigurations = configurations;
+        }
+
+        @Nullable
+        @Override
+        public List<WifiConfiguration> getConfiguredNetworks() {
+            return mConfigurations;
+        }
+
+        @Override
+        public boolean isWifiEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean setWifiEnabled(boolean enabled) {
+            return false;
+        }
+
+        @Override
+        public boolean startScan() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public List<ScanResult> getScanResults() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public WifiInfo getConnectionInfo() {
+            return null;
+        }
+
+        @Override
+        public int addNetwork(@NonNull WifiConfiguration config) {
+            return -1;
+        }
+
+        @Override
+        public int updateNetwork(@NonNull WifiConfiguration config) {
+            return -1;
+        }
+
+        @Override
+        public boolean removeNetwork(int networkId) {
+            return false;
+        }
+
+        @Override
+        public boolean enableNetwork(int networkId, boolean attemptConnect) {
+            return false;
+        }
+
+        @Override
+        public boolean disableNetwork(int networkId) {
+            return false;
+        }
+
+        @Override
+        public boolean saveConfiguration() {
+            return false;
+        }
+
+        @Override
+        public boolean reconnect() {
+            return false;
+        }
+
+        @Override
+        public boolean reassociate() {
+            return false;
+        }
+
+        @Override
+        public boolean disconnect() {
+            return false;
+        }
+
+        @Override
+        public void startWps(@NonNull WpsInfo config, @Nullable WifiManager.WpsCallback callback) {
+        }
+
+        @Override
+        public void cancelWps(@Nullable WifiManager.WpsCallback callback) {
+        }
+
+        @Override
+        public boolean isConnectivityAvailable() {
+            return false;
+        }
+
+        @NonNull
+        @Override
+        public Network[] getAllNetworks() {
+            return new Network[0];
+        }
+
+        @Nullable
+        @Override
+        public NetworkInfo getNetworkInfo(@Nullable Network network) {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public NetworkInfo getNetworkInfo(int networkType) {
+            return null;
+        }
+
+        @Override
+        public void requestNetwork(@NonNull NetworkRequest request, @NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        }
+
+        @Override
+        public void unregisterNetworkCallback(@NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        }
+
+        @Override
+        public boolean bindProcessToNetwork(@Nullable Network network) {
+            return false;
+        }
+
+        @Override
+        public void setNetworkPreference(int preference) {
+        }
+
+        @Override
+        public boolean registerReceiver(@NonNull BroadcastReceiver receiver, @NonNull IntentFilter filter) {
+            return false;
+        }
+
+        @Override
+        public void unregisterReceiver(@Nullable BroadcastReceiver receiver) {
+        }
+    }
+}
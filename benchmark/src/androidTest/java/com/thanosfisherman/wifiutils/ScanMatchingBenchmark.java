@@ -0,0 +1,168 @@
+package com.androidconnect.wifiutils;
+
+import android.net.wifi.ScanResult;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshot;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResult;
+import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResultBssid;
+import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResultSsid;
+
+/**
+ * Finding the requested access point in a scan, by walking the raw results and through an indexed {@link ScanSnapshot}.
+ * Each lookup targets an access point somewhere in the shuffled list, misses walk the whole of it.
+ */
+@RunWith(Parameterized.class)
+public class ScanMatchingBenchmark {
+    /**
+     * Written by {@link #consume(Object)}, volatile so that neither the write nor the result can be optimized away.
+     */
+    @SuppressWarnings("unused")
+    private static volatile Object sSink;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int mAccessPoints;
+
+    private List<ScanResult> mResults;
+    private ScanSnapshot mSnapshot;
+    private String mSsid;
+    private String mBssid;
+    private String mMissingBssid;
+
+    @Parameterized.Parameters(name = "accessPoints={0}")
+    public static List<Integer> accessPoints() {
+        return Arrays.asList(10, 100, 1000);
+    }
+
+    @Before
+    public void setUp() {
+        WifiUtils.enableLog(false);
+        mResults = Fixtures.scanResults(mAccessPoints);
+        mSnapshot = ScanSnapshot.of(mResults);
+        mSsid = Fixtures.ssid(mAccessPoints / 2);
+        mBssid = Fixtures.bssid(mAccessPoints / 2);
+        mMissingBssid = Fixtures.bssid(mAccessPoints);
+    }
+
+    @Test
+    public void matchSsid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultSsid(mSsid, mResults, false);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void matchSsidPrefix() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultSsid(mSsid, mResults, true);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void matchSsidAndBssid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResult(mSsid, mBssid, mResults);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void matchBssid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultBssid(mBssid, mResults);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void matchBssidMiss() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultBssid(mMissingBssid, mResults);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void snapshotMatchSsid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultSsid(mSsid, mSnapshot, false);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void snapshotMatchSsidPrefix() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultSsid(mSsid, mSnapshot, true);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void snapshotMatchSsidAndBssid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResult(mSsid, mBssid, mSnapshot);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void snapshotMatchBssid() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanResult sink = null;
+        while (state.keepRunning()) {
+            sink = matchScanResultBssid(mBssid, mSnapshot);
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void snapshotBuild() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        ScanSnapshot sink = null;
+        while (state.keepRunning()) {
+            sink = ScanSnapshot.of(mResults);
+        }
+        consume(sink);
+    }
+
+    /**
+     * Keeps the last result reachable so the loop body can't be optimized away.
+     */
+    static void consume(Object result) {
+        sSink = result;
+    }
+}
@@ -0,0 +1,144 @@
+package com.androidconnect.wifiutils;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.androidconnect.wifiutils.utils.SSIDUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.androidconnect.wifiutils.ScanMatchingBenchmark.consume;
+
+/**
+ * The per network string work done while matching: security parsing, WEP key checks and SSID quoting.
+ * Every iteration goes over the whole scan, the way a connect or a scan listing does.
+ */
+@RunWith(Parameterized.class)
+public class SecurityParsingBenchmark {
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter
+    public int mAccessPoints;
+
+    private List<ScanResult> mResults;
+    private List<WifiConfiguration> mConfigurations;
+    private String[] mQuotedSsids;
+    private String[] mWepKeys;
+
+    @Parameterized.Parameters(name = "accessPoints={0}")
+    public static List<Integer> accessPoints() {
+        return Arrays.asList(10, 100, 1000);
+    }
+
+    @Before
+    public void setUp() {
+        WifiUtils.enableLog(false);
+        mResults = Fixtures.scanResults(mAccessPoints);
+        mConfigurations = Fixtures.configurations(mAccessPoints);
+        mQuotedSsids = new String[mAccessPoints];
+        mWepKeys = new String[mAccessPoints];
+        for (int i = 0; i < mAccessPoints; i++) {
+            mQuotedSsids[i] = '"' + Fixtures.ssid(i) + '"';
+            // Valid 40 and 104 bit hex keys, passphrases of the same lengths and ASCII keys
+            switch (i % 4) {
+                case 0:
+                    mWepKeys[i] = "0123456789";
+                    break;
+                case 1:
+                    mWepKeys[i] = "0123456789abcdefABCDEF0123";
+                    break;
+                case 2:
+                    mWepKeys[i] = "not a hex!";
+                    break;
+                default:
+                    mWepKeys[i] = "abcde";
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void parseScanResults() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int sink = 0;
+        while (state.keepRunning()) {
+            for (int i = 0; i < mAccessPoints; i++) {
+                sink |= WifiSecurity.of(mResults.get(i));
+            }
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void parseConfigurations() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int sink = 0;
+        while (state.keepRunning()) {
+            for (int i = 0; i < mAccessPoints; i++) {
+                sink |= WifiSecurity.of(mConfigurations.get(i));
+            }
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void isHexWepKey() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int sink = 0;
+        while (state.keepRunning()) {
+            for (int i = 0; i < mAccessPoints; i++) {
+                if (ConnectorUtils.isHexWepKey(mWepKeys[i])) {
+                    sink++;
+                }
+            }
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void convertToQuotedString() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        String sink = null;
+        while (state.keepRunning()) {
+            for (int i = 0; i < mAccessPoints; i++) {
+                sink = SSIDUtils.convertToQuotedString(mResults.get(i).SSID);
+            }
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void convertToQuotedStringAlreadyQuoted() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        String sink = null;
+        while (state.keepRunning()) {
+            for (int i = 0; i < mAccessPoints; i++) {
+                sink = SSIDUtils.convertToQuotedString(mQuotedSsids[i]);
+            }
+        }
+        consume(sink);
+    }
+
+    @Test
+    public void trimQuotes() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        String sink = null;
+        while (state.keepRunning()) {
+            for (int i = 0; i < mAccessPoints; i++) {
+                sink = ConnectorUtils.trimQuotes(mQuotedSsids[i]);
+            }
+        }
+        consume(sink);
+    }
+}
@@ -14,6 +14,7 @@ buildscript {
 
         classpath(GradlePluginId.ANDROID_GRADLE_PLUGIN)
         classpath(GradlePluginId.KOTLIN_GRADLE_PLUGIN)
+        classpath(GradlePluginId.BENCHMARK_GRADLE_PLUGIN)
     }
 }
 
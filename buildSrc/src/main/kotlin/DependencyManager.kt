@@ -20,7 +20,7 @@ fun DependencyHandler.addTestDependencies() {
     androidTestImplementation(TestLibraryDependency.MOCKITO_ANDROID)
     androidTestImplementation(TestLibraryDependency.ANDROID_X_TEST_EXT)
 
-    //testImplementation(project(ModuleDependency.LIBRARY_TEST_UTILS))
+    testImplementation(project(ModuleDependency.LIBRARY_TEST_UTILS))
     testImplementation(TestLibraryDependency.JUNIT)
     testImplementation(TestLibraryDependency.KLUENT)
     testImplementation(TestLibraryDependency.MOCKITO_INLINE)
@@ -3,15 +3,18 @@ object GradlePluginVersion {
     const val KOTLIN = CoreVersion.KOTLIN
     const val DOKKA_VERSION = "1.5.30"
     const val DEPENDENCY_UPDATE_VERSION = "0.39.0"
+    const val BENCHMARK = "1.1.0"
 }
 
 object GradlePluginId {
     const val ANDROID_GRADLE_PLUGIN = "com.android.tools.build:gradle:${GradlePluginVersion.ANDROID_GRADLE}"
     const val KOTLIN_GRADLE_PLUGIN = "org.jetbrains.kotlin:kotlin-gradle-plugin:${GradlePluginVersion.KOTLIN}"
+    const val BENCHMARK_GRADLE_PLUGIN = "androidx.benchmark:benchmark-gradle-plugin:${GradlePluginVersion.BENCHMARK}"
 
     const val ANDROID_APPLICATION = "com.android.application"
     const val ANDROID_LIBRARY = "com.android.library"
     const val DOKKA = "org.jetbrains.dokka"
+    const val BENCHMARK = "androidx.benchmark"
 
     const val DEPENDENCY_UPDATE = "com.github.ben-manes.versions"
 
@@ -9,6 +9,7 @@ private object LibraryVersion {
     const val recyclerViewVersion = "1.2.1"
     const val materialVersion = "1.4.0"
     const val annotationsVersion = "1.2.0"
+    const val coroutinesVersion = "1.5.2"
 
 }
 
@@ -29,6 +30,12 @@ object LibDependency {
         .toSet()
 }
 
+// Only for modules building on the library, kept apart so that the library itself doesn't pull them in
+object ExtensionDependency {
+
+    const val coroutinesAndroid = "org.jetbrains.kotlinx:kotlinx-coroutines-android:${LibraryVersion.coroutinesVersion}"
+}
+
 object AppDependency {
 
     const val androidX = "androidx.appcompat:appcompat:${LibraryVersion.androidxVersion}"
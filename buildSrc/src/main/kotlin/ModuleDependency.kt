@@ -4,6 +4,9 @@ object ModuleDependency {
     // All consts are accessed via reflection
     const val SAMPLE = ":sample"
     const val LIB = ":wifiutils"
+    const val LIBRARY_TEST_UTILS = ":wifiutils-testing"
+    const val BENCHMARK = ":benchmark"
+    const val LIBRARY_COROUTINES = ":wifiutils-coroutines"
 
     fun getAllModules() = ModuleDependency::class.memberProperties
         .filter { it.isConst }
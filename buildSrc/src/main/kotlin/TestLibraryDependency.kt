@@ -7,6 +7,8 @@ private object TestLibraryVersion {
     const val MOCKITO_KOTLIN = "2.1.0"
     const val ANDROID_X_TEST = "1.2.0"
     const val ANDROID_X_TEST_EXT = "1.1.1"
+    const val ROBOLECTRIC = "4.6.1"
+    const val BENCHMARK = "1.1.0"
 }
 
 object TestLibraryDependency {
@@ -22,6 +24,8 @@ object TestLibraryDependency {
     const val ANDROID_X_TEST_RULES = "androidx.test:rules:${TestLibraryVersion.ANDROID_X_TEST}"
     const val ANDROID_X_TEST_EXT = "androidx.test.ext:junit:${TestLibraryVersion.ANDROID_X_TEST_EXT}"
     const val KOIN_TEST = "org.koin:koin-test:2.1.6"
+    const val ROBOLECTRIC = "org.robolectric:robolectric:${TestLibraryVersion.ROBOLECTRIC}"
+    const val BENCHMARK_JUNIT4 = "androidx.benchmark:benchmark-junit4:${TestLibraryVersion.BENCHMARK}"
 
 //    const val MOCKK = "io.mockk:mockk:1.9.3"
 //
@@ -1,2 +1,2 @@
 rootProject.buildFileName = "build.gradle.kts"
-include(":wifiutils", ":sample")
+include(":wifiutils", ":sample", ":wifiutils-testing", ":benchmark", ":wifiutils-coroutines")
@@ -0,0 +1,33 @@
+plugins {
+    id(GradlePluginId.ANDROID_LIBRARY)
+    kotlin("android")
+}
+
+android {
+    compileSdk = AndroidConfig.COMPILE_SDK_VERSION
+
+    defaultConfig {
+        minSdk = AndroidConfig.MIN_SDK_VERSION
+        targetSdk = AndroidConfig.TARGET_SDK_VERSION
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+    kotlinOptions {
+        jvmTarget = JavaVersion.VERSION_1_8.toString()
+    }
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+    }
+}
+
+dependencies {
+    api(project(ModuleDependency.LIB))
+    api(ExtensionDependency.coroutinesAndroid)
+    implementation(LibDependency.kotlin)
+
+    testImplementation(project(ModuleDependency.LIBRARY_TEST_UTILS))
+    testImplementation(TestLibraryDependency.JUNIT)
+}
@@ -0,0 +1,9 @@
+package com.androidconnect.wifiutils.coroutines
+
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode
+
+/**
+ * Thrown by [connect] when the connection fails, with the reason a
+ * [com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener] would have been given.
+ */
+class WifiConnectionException(val errorCode: ConnectionErrorCode) : Exception("Couldn't connect: $errorCode")
@@ -0,0 +1,49 @@
+package com.androidconnect.wifiutils.coroutines
+
+import android.net.wifi.SupplicantState
+import android.net.wifi.WifiInfo
+
+/**
+ * Where the device stands with wifi, as [connectionStateFlow] reports it.
+ */
+sealed class WifiConnectionState {
+
+    /**
+     * Not connected nor trying to, wifi may be off.
+     */
+    object Disconnected : WifiConnectionState()
+
+    /**
+     * On the way to [Connected], from authenticating until an IP address is acquired.
+     *
+     * @property ssid quoted, as in [WifiInfo.getSSID], null if not known yet
+     */
+    data class Connecting(val ssid: String?, val bssid: String?, val supplicantState: SupplicantState) : WifiConnectionState()
+
+    /**
+     * Associated with an access point and holding an IP address.
+     *
+     * @property ssid quoted, as in [WifiInfo.getSSID]
+     */
+    data class Connected(val ssid: String?, val bssid: String?) : WifiConnectionState()
+
+    internal companion object {
+
+        fun of(info: WifiInfo?): WifiConnectionState {
+            if (info == null) {
+                return Disconnected
+            }
+            val state = info.supplicantState ?: return Disconnected
+            return when (state) {
+                SupplicantState.COMPLETED ->
+                    if (info.ipAddress != 0) Connected(info.ssid, info.bssid) else Connecting(info.ssid, info.bssid, state)
+                SupplicantState.AUTHENTICATING,
+                SupplicantState.ASSOCIATING,
+                SupplicantState.ASSOCIATED,
+                SupplicantState.FOUR_WAY_HANDSHAKE,
+                SupplicantState.GROUP_HANDSHAKE -> Connecting(info.ssid, info.bssid, state)
+                else -> Disconnected
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.androidconnect.wifiutils.coroutines
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.wifi.WifiManager
+import android.os.Handler
+import com.androidconnect.wifiutils.ConnectRequest
+import com.androidconnect.wifiutils.WifiEngine
+import com.androidconnect.wifiutils.WifiRadio
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode
+import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener
+import com.androidconnect.wifiutils.wifiScan.ScanScheduler
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshot
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshotCallback
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.android.asCoroutineDispatcher
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.onSubscription
+import kotlinx.coroutines.flow.shareIn
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
+import java.util.WeakHashMap
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/*
+ * Coroutine flavour of the WifiEngine API.
+ *
+ * Flows don't register anything of their own per collector: each engine has one receiver per flow kind,
+ * registered through its radio, hence through the same WifiEventHub registrations the engine uses, while at
+ * least one collector is active and unregistered as soon as the last one is cancelled. Radio reads happen
+ * once per broadcast whatever the number of collectors, on the engine's thread where broadcasts come in, never
+ * on the main thread. Collectors get the values dispatched to their own context.
+ */
+
+/**
+ * Connects as the request says and returns once connected.
+ *
+ * The request's [ConnectionSuccessListener] is replaced, the outcome is what this function returns or throws.
+ * Cancelling the calling coroutine cancels the request, as [com.androidconnect.wifiutils.WifiConnectorBuilder.WifiUtilsBuilder.cancelAutoConnect]
+ * would, before this function returns.
+ *
+ * @throws WifiConnectionException if the connection failed
+ * @throws IllegalArgumentException if the request doesn't connect to anything, see [ConnectRequest.isConnect]
+ */
+suspend fun WifiEngine.connect(request: ConnectRequest) {
+    require(request.isConnect) { "Request doesn't connect to any network" }
+    suspendCancellableCoroutine<Unit> { continuation ->
+        val listener = object : ConnectionSuccessListener {
+            override fun success() {
+                continuation.resume(Unit)
+            }
+
+            override fun failed(errorCode: ConnectionErrorCode) {
+                continuation.resumeWithException(WifiConnectionException(errorCode))
+            }
+        }
+        // Resuming dispatches to the caller's context already, no need to go through the main thread first
+        val ownRequest = request.newBuilder()
+            .setConnectionSuccessListener(listener)
+            .setCallbackExecutor { it.run() }
+            .build()
+        if (!continuation.isActive) {
+            // Cancelled before it even started, there is nothing to submit nor to cancel
+            return@suspendCancellableCoroutine
+        }
+        submit(ownRequest)
+        // Registered once submitted, so that the cancel is always queued behind the request it cancels.
+        // Runs right away if the coroutine got cancelled in between.
+        continuation.invokeOnCancellation { cancel(ownRequest) }
+    }
+}
+
+/**
+ * Every scan completing while collected, whoever started it.
+ *
+ * @param scan whether to request a scan when collection starts. It goes through [ScanScheduler], so it joins
+ * a scan already running and, once the scan budget is spent, the results the platform holds are emitted instead.
+ */
+fun WifiEngine.scanResultsFlow(scan: Boolean = true): Flow<ScanSnapshot> {
+    val sources = sharedSources()
+    val snapshots = sources.scanSnapshots
+    if (!scan) {
+        return snapshots
+    }
+    return flow {
+        val request = ScanRequest(radio)
+        try {
+            // Subscribed first, so that the results of the scan requested can't be missed
+            emitAll(snapshots.onSubscription {
+                // The radio is only ever called on the engine's thread
+                withContext(sources.dispatcher) { request.start() }?.let { emit(it) }
+            })
+        } finally {
+            request.cancel()
+        }
+    }
+}
+
+/**
+ * The connection state, starting with the current one, then every change.
+ */
+fun WifiEngine.connectionStateFlow(): Flow<WifiConnectionState> = sharedSources().connectionStates
+
+private val sources = WeakHashMap<WifiEngine, SharedSources>()
+
+private fun WifiEngine.sharedSources(): SharedSources = synchronized(sources) {
+    sources.getOrPut(this) { SharedSources(this) }
+}
+
+/**
+ * The flows of one engine, shared by all of their collectors.
+ */
+private class SharedSources(engine: WifiEngine) {
+    /**
+     * Runs on the engine's thread, immediately when already there.
+     */
+    val dispatcher: CoroutineDispatcher = Handler(engine.looper).asCoroutineDispatcher().immediate
+
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+
+    private val radio: WifiRadio = engine.radio
+
+    /**
+     * Conflated, a slow collector only misses intermediate scans and never holds the others back.
+     */
+    val scanSnapshots: SharedFlow<ScanSnapshot> = radio.broadcasts(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION) {
+        ScanSnapshot.of(radio.scanResults)
+    }
+        .conflate()
+        .shareIn(scope, SharingStarted.WhileSubscribed())
+
+    val connectionStates: SharedFlow<WifiConnectionState> = radio.broadcasts(
+        WifiManager.SUPPLICANT_STATE_CHANGED_ACTION,
+        WifiManager.NETWORK_STATE_CHANGED_ACTION,
+        WifiManager.WIFI_STATE_CHANGED_ACTION,
+        initial = true
+    ) {
+        WifiConnectionState.of(radio.connectionInfo)
+    }
+        .distinctUntilChanged()
+        .conflate()
+        .shareIn(scope, SharingStarted.WhileSubscribed(replayExpirationMillis = 0), replay = 1)
+}
+
+/**
+ * Reads the radio on every broadcast of the given actions, and once right away if [initial].
+ */
+private fun <T> WifiRadio.broadcasts(vararg actions: String, initial: Boolean = false, read: () -> T): Flow<T> = callbackFlow {
+    if (initial) {
+        trySend(read())
+    }
+    val receiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context?, intent: Intent?) {
+            trySend(read())
+        }
+    }
+    val filter = IntentFilter()
+    actions.forEach { filter.addAction(it) }
+    if (!registerReceiver(receiver, filter)) {
+        unregisterReceiver(receiver)
+        close(IllegalStateException("Can't listen for ${actions.joinToString()}"))
+    }
+    awaitClose { unregisterReceiver(receiver) }
+}
+
+/**
+ * One scan requested through the [ScanScheduler] on behalf of a collector.
+ */
+private class ScanRequest(private val radio: WifiRadio) : ScanSnapshotCallback {
+    private var starting = false
+    private var served: ScanSnapshot? = null
+
+    /**
+     * @return the results served right away when no scan could be started. Results of a scan that did start
+     * reach the collector through the shared receiver like everyone else's.
+     */
+    fun start(): ScanSnapshot? {
+        starting = true
+        ScanScheduler.getInstance().requestScan(radio, this)
+        starting = false
+        return served.also { served = null }
+    }
+
+    fun cancel() {
+        ScanScheduler.getInstance().cancel(this)
+    }
+
+    override fun onScanSnapshot(snapshot: ScanSnapshot) {
+        if (starting) {
+            served = snapshot
+        }
+    }
+
+    override fun onScanFailed() {
+    }
+}
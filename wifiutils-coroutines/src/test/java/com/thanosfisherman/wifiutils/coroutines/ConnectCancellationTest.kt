@@ -0,0 +1,100 @@
+package com.androidconnect.wifiutils.coroutines
+
+import android.os.Looper
+import com.androidconnect.wifiutils.ConnectRequest
+import com.androidconnect.wifiutils.WifiEngine
+import com.androidconnect.wifiutils.testing.AccessPoint
+import com.androidconnect.wifiutils.testing.SimulatedRadio
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28])
+class ConnectCancellationTest {
+    private lateinit var radio: SimulatedRadio
+    private lateinit var engine: WifiEngine
+
+    // Runs the coroutines right here on the main thread, the engine's thread once installed
+    private val scope = CoroutineScope(Dispatchers.Unconfined)
+
+    @Before
+    fun setUp() {
+        val context = RuntimeEnvironment.getApplication()
+        radio = SimulatedRadio(context).addAccessPoint(AccessPoint.wpa2(SSID, BSSID))
+        engine = WifiEngine.install(context, radio)
+    }
+
+    @Test
+    fun cancelledBeforeStartingSubmitsNothing() {
+        val job = scope.launch {
+            cancel()
+            engine.connect(request())
+        }
+        idleFor(10_000)
+
+        assertTrue(job.isCancelled)
+        assertEquals(0, radio.getCallCount("isWifiEnabled"))
+        assertEquals(0, radio.getCallCount("startScan"))
+    }
+
+    @Test
+    fun cancelledWhileQueuedNeverConnects() {
+        val job = scope.launch { engine.connect(request()) }
+        // The request and its cancel are both still waiting on the engine's thread
+        job.cancel()
+        idleFor(10_000)
+
+        assertTrue(job.isCancelled)
+        assertEquals(0, radio.getCallCount("addNetwork"))
+        assertNull(radio.connectedBssid)
+    }
+
+    @Test
+    fun cancelledWhileConnectingFreesTheEngine() {
+        val job = scope.launch { engine.connect(request()) }
+        // Past the scan, associating
+        idleFor(1_100)
+        assertEquals(1, radio.getCallCount("addNetwork"))
+
+        job.cancel()
+        idleFor(10_000)
+
+        assertTrue(job.isCancelled)
+        assertTrue(radio.savedNetworks.isEmpty())
+
+        var connected = false
+        scope.launch {
+            engine.connect(request())
+            connected = true
+        }
+        idleFor(10_000)
+
+        assertTrue(connected)
+    }
+
+    private fun request(): ConnectRequest = ConnectRequest.Builder()
+        .setSsid(SSID)
+        .setPassword(PASSWORD)
+        .build()
+
+    private fun idleFor(millis: Long) = shadowOf(Looper.getMainLooper()).idleFor(millis, TimeUnit.MILLISECONDS)
+
+    private companion object {
+        const val SSID = "home"
+        const val BSSID = "02:00:00:00:00:01"
+        const val PASSWORD = "password"
+    }
+}
@@ -0,0 +1,24 @@
+plugins {
+    id(GradlePluginId.ANDROID_LIBRARY)
+}
+
+android {
+    compileSdk = AndroidConfig.COMPILE_SDK_VERSION
+
+    defaultConfig {
+        minSdk = AndroidConfig.MIN_SDK_VERSION
+        targetSdk = AndroidConfig.TARGET_SDK_VERSION
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+}
+
+dependencies {
+    api(project(ModuleDependency.LIB))
+    // Framework objects the radio hands out are built through Robolectric shadows, so this module is meant for local unit tests
+    api(TestLibraryDependency.ROBOLECTRIC)
+    implementation(LibDependency.androidXAnnotations)
+}
@@ -0,0 +1,91 @@
+package com.androidconnect.wifiutils.testing;
+
+import android.net.wifi.ScanResult;
+
+import androidx.annotation.NonNull;
+
+import org.robolectric.shadows.ShadowScanResult;
+
+/**
+ * An access point in range of a {@link SimulatedRadio}, as its scans will report it.
+ */
+public final class AccessPoint {
+    @NonNull
+    private final String mSsid;
+    @NonNull
+    private final String mBssid;
+    @NonNull
+    private final String mCapabilities;
+    private final int mLevel;
+    private final int mFrequency;
+
+    /**
+     * @param ssid         unquoted SSID
+     * @param bssid        lower case BSSID, for instance {@code 02:00:00:00:00:01}
+     * @param capabilities as in {@link ScanResult#capabilities}, for instance {@code [WPA2-PSK-CCMP][ESS]}
+     * @param level        RSSI in dBm
+     * @param frequency    channel frequency in MHz
+     */
+    public AccessPoint(@NonNull String ssid, @NonNull String bssid, @NonNull String capabilities, int level, int frequency) {
+        mSsid = ssid;
+        mBssid = bssid;
+        mCapabilities = capabilities;
+        mLevel = level;
+        mFrequency = frequency;
+    }
+
+    /**
+     * An open access point on channel 6 with a strong signal.
+     */
+    @NonNull
+    public static AccessPoint open(@NonNull String ssid, @NonNull String bssid) {
+        return new AccessPoint(ssid, bssid, "[ESS]", -45, 2437);
+    }
+
+    /**
+     * A WPA2 personal access point on channel 6 with a strong signal.
+     */
+    @NonNull
+    public static AccessPoint wpa2(@NonNull String ssid, @NonNull String bssid) {
+        return new AccessPoint(ssid, bssid, "[WPA2-PSK-CCMP][ESS]", -45, 2437);
+    }
+
+    @NonNull
+    public String getSsid() {
+        return mSsid;
+    }
+
+    @NonNull
+    public String getBssid() {
+        return mBssid;
+    }
+
+    @NonNull
+    public String getCapabilities() {
+        return mCapabilities;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public int getFrequency() {
+        return mFrequency;
+    }
+
+    /**
+     * @param timestampMicros when the access point was seen, in {@link android.os.SystemClock#elapsedRealtime()} time base
+     */
+    @NonNull
+    ScanResult toScanResult(long timestampMicros) {
+        final ScanResult result = ShadowScanResult.newInstance(mSsid, mBssid, mCapabilities, mLevel, mFrequency);
+        result.timestamp = timestampMicros;
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mSsid + " " + mBssid + " " + mCapabilities + " " + mLevel + "dBm " + mFrequency + "MHz";
+    }
+}
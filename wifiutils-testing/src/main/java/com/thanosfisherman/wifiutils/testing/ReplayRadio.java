@@ -0,0 +1,497 @@
+package com.androidconnect.wifiutils.testing;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WpsInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.ScanTraceReader;
+import com.androidconnect.wifiutils.ScanTraceRecord;
+import com.androidconnect.wifiutils.ScanTraceRecorder;
+import com.androidconnect.wifiutils.WifiEngine;
+import com.androidconnect.wifiutils.WifiRadio;
+
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.shadows.ShadowScanResult;
+import org.robolectric.shadows.ShadowWifiInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plays a trace captured with {@link ScanTraceRecorder} back through the library, in local unit tests.
+ * <p>
+ * Install it with {@link WifiEngine#install(Context, WifiRadio)} and {@link #start(Pace)} it. Scan results and
+ * connection info change and broadcasts reach the library's receivers as the trace says, whatever the library asks
+ * of the radio: the replay doesn't react to requests the way {@link SimulatedRadio} does. A connect started before
+ * the trace reaches the recorded connection therefore follows the recorded supplicant states. Network callbacks
+ * aren't part of traces, so connect replays exercise the flow used before Android 10.
+ * <p>
+ * Records are dispatched on the main looper, under Robolectric's paused looper they only go out as the test
+ * advances it, {@code shadowOf(getMainLooper()).idle()} at {@link Pace#AS_FAST_AS_POSSIBLE} or
+ * {@code idleFor(getRecordedDuration())} at {@link Pace#RECORDED}.
+ * <p>
+ * Not thread safe, use it on the main thread only.
+ */
+public final class ReplayRadio implements WifiRadio {
+
+    public enum Pace {
+        /**
+         * Records go out as far apart as they were recorded.
+         */
+        RECORDED,
+        /**
+         * Each record goes out as soon as the work the previous one caused is done.
+         */
+        AS_FAST_AS_POSSIBLE
+    }
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    @NonNull
+    private final List<ScanTraceRecord> mRecords;
+    @NonNull
+    private final Map<Integer, WifiConfiguration> mConfigurations = new LinkedHashMap<>();
+    @NonNull
+    private final Map<BroadcastReceiver, List<String>> mReceivers = new LinkedHashMap<>();
+    @NonNull
+    private List<ScanResult> mScanResults = Collections.emptyList();
+    @Nullable
+    private ScanTraceRecord mConnectionInfo;
+    private int mWifiState = WifiManager.WIFI_STATE_ENABLED;
+    @Nullable
+    private NetworkInfo.DetailedState mNetworkState;
+    private int mNextNetworkId;
+    private int mPosition;
+    /**
+     * Bumped by every {@link #start(Pace)}, records scheduled by an earlier one are dropped.
+     */
+    private int mRun;
+
+    /**
+     * @param context handed to receivers along with every broadcast
+     * @param records the trace, in recorded order
+     */
+    public ReplayRadio(@NonNull Context context, @NonNull List<ScanTraceRecord> records) {
+        mContext = context;
+        mRecords = new ArrayList<>(records);
+    }
+
+    /**
+     * Reads a whole trace and closes the stream.
+     */
+    @NonNull
+    public static ReplayRadio read(@NonNull Context context, @NonNull InputStream trace) throws IOException {
+        return new ReplayRadio(context, ScanTraceReader.readAll(trace));
+    }
+
+    // Replay
+
+    /**
+     * Schedules the records not replayed yet, from the first one on if the replay is over.
+     */
+    public void start(@NonNull Pace pace) {
+        final int run = ++mRun;
+        if (mPosition >= mRecords.size()) {
+            mPosition = 0;
+        }
+        if (mRecords.isEmpty()) {
+            return;
+        }
+        if (pace == Pace.AS_FAST_AS_POSSIBLE) {
+            mHandler.post(() -> replayNext(run));
+            return;
+        }
+        final long startedAt = SystemClock.uptimeMillis();
+        final long firstRecord = mRecords.get(mPosition).getElapsedRealtime();
+        for (int i = mPosition; i < mRecords.size(); i++) {
+            final int position = i;
+            mHandler.postAtTime(() -> {
+                if (run == mRun && position == mPosition) {
+                    replay(mRecords.get(mPosition++));
+                }
+            }, startedAt + Math.max(0, mRecords.get(i).getElapsedRealtime() - firstRecord));
+        }
+    }
+
+    /**
+     * Stops dispatching records, {@link #start(Pace)} picks up where this left off.
+     */
+    public void pause() {
+        mRun++;
+    }
+
+    public boolean isFinished() {
+        return mPosition >= mRecords.size();
+    }
+
+    /**
+     * @return how many records went out since the replay started
+     */
+    public int getReplayedCount() {
+        return mPosition;
+    }
+
+    public int getRecordCount() {
+        return mRecords.size();
+    }
+
+    /**
+     * @return the time between the first and the last record, in milliseconds
+     */
+    public long getRecordedDuration() {
+        if (mRecords.isEmpty()) {
+            return 0;
+        }
+        return mRecords.get(mRecords.size() - 1).getElapsedRealtime() - mRecords.get(0).getElapsedRealtime();
+    }
+
+    /**
+     * @return the access points of a {@link ScanTraceRecord.Type#SCAN_RESULTS} record, as the radio reported them.
+     * Handy to feed the matching code straight from a trace.
+     */
+    @NonNull
+    public static List<ScanResult> toScanResults(@NonNull ScanTraceRecord record) {
+        final List<ScanTraceRecord.Sighting> sightings = record.getSightings();
+        final List<ScanResult> results = new ArrayList<>(sightings.size());
+        for (final ScanTraceRecord.Sighting sighting : sightings) {
+            final ScanResult result = ShadowScanResult.newInstance(sighting.getSsid(), sighting.getBssid(),
+                    sighting.getCapabilities(), sighting.getLevel(), sighting.getFrequency());
+            result.timestamp = sighting.getTimestampMicros();
+            results.add(result);
+        }
+        return results;
+    }
+
+    // WifiManager
+
+    @Override
+    public boolean isWifiEnabled() {
+        return mWifiState == WifiManager.WIFI_STATE_ENABLED;
+    }
+
+    /**
+     * Whether wifi actually turns on or off is up to the trace.
+     */
+    @Override
+    public boolean setWifiEnabled(boolean enabled) {
+        return true;
+    }
+
+    /**
+     * When results come in is up to the trace.
+     */
+    @Override
+    public boolean startScan() {
+        return isWifiEnabled();
+    }
+
+    @Nullable
+    @Override
+    public List<ScanResult> getScanResults() {
+        return new ArrayList<>(mScanResults);
+    }
+
+    @Nullable
+    @Override
+    public WifiInfo getConnectionInfo() {
+        final WifiInfo wifiInfo = ShadowWifiInfo.newInstance();
+        final ScanTraceRecord record = mConnectionInfo;
+        if (record != null) {
+            final ShadowWifiInfo shadow = Shadows.shadowOf(wifiInfo);
+            shadow.setSSID(unquote(record.getSsid()));
+            shadow.setBSSID(record.getBssid());
+            shadow.setRssi(record.getRssi());
+            shadow.setFrequency(record.getFrequency());
+            shadow.setNetworkId(record.getNetworkId());
+            shadow.setSupplicantState(record.getSupplicantState() == null ? SupplicantState.UNINITIALIZED : record.getSupplicantState());
+            if (record.getIpAddress() != 0) {
+                shadow.setInetAddress(inetAddress(record.getIpAddress()));
+            }
+        }
+        return wifiInfo;
+    }
+
+    @Nullable
+    @Override
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        return new ArrayList<>(mConfigurations.values());
+    }
+
+    @Override
+    public int addNetwork(@NonNull WifiConfiguration config) {
+        config.networkId = mNextNetworkId++;
+        mConfigurations.put(config.networkId, config);
+        return config.networkId;
+    }
+
+    @Override
+    public int updateNetwork(@NonNull WifiConfiguration config) {
+        if (!mConfigurations.containsKey(config.networkId)) {
+            return -1;
+        }
+        mConfigurations.put(config.networkId, config);
+        return config.networkId;
+    }
+
+    @Override
+    public boolean removeNetwork(int networkId) {
+        return mConfigurations.remove(networkId) != null;
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId, boolean attemptConnect) {
+        return mConfigurations.containsKey(networkId);
+    }
+
+    @Override
+    public boolean disableNetwork(int networkId) {
+        return mConfigurations.containsKey(networkId);
+    }
+
+    @Override
+    public boolean saveConfiguration() {
+        return true;
+    }
+
+    @Override
+    public boolean reconnect() {
+        return true;
+    }
+
+    @Override
+    public boolean reassociate() {
+        return true;
+    }
+
+    @Override
+    public boolean disconnect() {
+        return true;
+    }
+
+    /**
+     * WPS isn't part of traces, attempts never end.
+     */
+    @Override
+    public void startWps(@NonNull WpsInfo config, @Nullable WifiManager.WpsCallback callback) {
+    }
+
+    @Override
+    public void cancelWps(@Nullable WifiManager.WpsCallback callback) {
+    }
+
+    // ConnectivityManager
+
+    @Override
+    public boolean isConnectivityAvailable() {
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public Network[] getAllNetworks() {
+        return new Network[0];
+    }
+
+    @Nullable
+    @Override
+    public NetworkInfo getNetworkInfo(@Nullable Network network) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public NetworkInfo getNetworkInfo(int networkType) {
+        if (networkType != ConnectivityManager.TYPE_WIFI || mNetworkState == null) {
+            return null;
+        }
+        return networkInfo(mNetworkState);
+    }
+
+    /**
+     * Network callbacks aren't part of traces, requests are never answered.
+     */
+    @Override
+    public void requestNetwork(@NonNull NetworkRequest request, @NonNull ConnectivityManager.NetworkCallback networkCallback) {
+    }
+
+    @Override
+    public void unregisterNetworkCallback(@NonNull ConnectivityManager.NetworkCallback networkCallback) {
+    }
+
+    @Override
+    public boolean bindProcessToNetwork(@Nullable Network network) {
+        return false;
+    }
+
+    @Override
+    public void setNetworkPreference(int preference) {
+    }
+
+    // Broadcasts
+
+    /**
+     * Unlike the system, doesn't deliver sticky broadcasts: receivers only get what the trace holds from now on.
+     */
+    @Override
+    public boolean registerReceiver(@NonNull BroadcastReceiver receiver, @NonNull IntentFilter filter) {
+        List<String> actions = mReceivers.get(receiver);
+        if (actions == null) {
+            actions = new ArrayList<>();
+            mReceivers.put(receiver, actions);
+        }
+        for (int i = 0; i < filter.countActions(); i++) {
+            final String action = filter.getAction(i);
+            if (!actions.contains(action)) {
+                actions.add(action);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void unregisterReceiver(@Nullable BroadcastReceiver receiver) {
+        mReceivers.remove(receiver);
+    }
+
+    // Internals
+
+    private void replayNext(int run) {
+        if (run != mRun || mPosition >= mRecords.size()) {
+            return;
+        }
+        replay(mRecords.get(mPosition++));
+        // Posted rather than looped, so the work this record caused runs first
+        mHandler.post(() -> replayNext(run));
+    }
+
+    private void replay(@NonNull ScanTraceRecord record) {
+        switch (record.getType()) {
+            case SCAN_RESULTS:
+                mScanResults = toScanResults(record);
+                break;
+            case CONNECTION_INFO:
+                mConnectionInfo = record;
+                break;
+            case BROADCAST:
+                sendBroadcast(toIntent(record));
+                break;
+        }
+    }
+
+    @NonNull
+    private Intent toIntent(@NonNull ScanTraceRecord record) {
+        final Intent intent = new Intent(record.getAction());
+        for (final Map.Entry<String, Object> extra : record.getExtras().entrySet()) {
+            final String key = extra.getKey();
+            final Object value = extra.getValue();
+            if (value instanceof Integer) {
+                intent.putExtra(key, (int) (Integer) value);
+            } else if (value instanceof Long) {
+                intent.putExtra(key, (long) (Long) value);
+            } else if (value instanceof Boolean) {
+                intent.putExtra(key, (boolean) (Boolean) value);
+            } else if (value instanceof String) {
+                intent.putExtra(key, (String) value);
+            } else if (value instanceof SupplicantState) {
+                intent.putExtra(key, (SupplicantState) value);
+            } else if (value instanceof NetworkInfo.DetailedState) {
+                intent.putExtra(key, networkInfo((NetworkInfo.DetailedState) value));
+            }
+        }
+        // Keep what the library may ask the radio right after in line with the broadcast
+        if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(record.getAction())) {
+            mWifiState = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, mWifiState);
+        } else if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(record.getAction())) {
+            final Object state = record.getExtras().get(WifiManager.EXTRA_NETWORK_INFO);
+            if (state instanceof NetworkInfo.DetailedState) {
+                mNetworkState = (NetworkInfo.DetailedState) state;
+            }
+        }
+        return intent;
+    }
+
+    private void sendBroadcast(@NonNull Intent intent) {
+        final String action = intent.getAction();
+        // Receivers may come and go while being notified
+        for (final Map.Entry<BroadcastReceiver, List<String>> entry : new ArrayList<>(mReceivers.entrySet())) {
+            if (entry.getValue().contains(action) && mReceivers.containsKey(entry.getKey())) {
+                entry.getKey().onReceive(mContext, intent);
+            }
+        }
+    }
+
+    @NonNull
+    private static NetworkInfo networkInfo(@NonNull NetworkInfo.DetailedState detailedState) {
+        final NetworkInfo.State state;
+        switch (detailedState) {
+            case CONNECTED:
+                state = NetworkInfo.State.CONNECTED;
+                break;
+            case SUSPENDED:
+                state = NetworkInfo.State.SUSPENDED;
+                break;
+            case DISCONNECTING:
+                state = NetworkInfo.State.DISCONNECTING;
+                break;
+            case IDLE:
+            case DISCONNECTED:
+            case FAILED:
+            case BLOCKED:
+                state = NetworkInfo.State.DISCONNECTED;
+                break;
+            default:
+                state = NetworkInfo.State.CONNECTING;
+                break;
+        }
+        return ShadowNetworkInfo.newInstance(detailedState, ConnectivityManager.TYPE_WIFI, 0, true, state);
+    }
+
+    /**
+     * {@link ShadowWifiInfo#setSSID(String)} quotes the SSID it is given, the trace holds it quoted already.
+     */
+    @Nullable
+    private static String unquote(@Nullable String ssid) {
+        if (ssid != null && ssid.length() > 1 && ssid.startsWith("\"") && ssid.endsWith("\"")) {
+            return ssid.substring(1, ssid.length() - 1);
+        }
+        return ssid;
+    }
+
+    @Nullable
+    private static InetAddress inetAddress(int ipAddress) {
+        // WifiInfo holds the address little endian
+        final byte[] address = {(byte) ipAddress, (byte) (ipAddress >> 8), (byte) (ipAddress >> 16), (byte) (ipAddress >> 24)};
+        try {
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,834 @@
+package com.androidconnect.wifiutils.testing;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WpsInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.WifiEngine;
+import com.androidconnect.wifiutils.WifiRadio;
+
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowNetwork;
+import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.shadows.ShadowWifiInfo;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scriptable, deterministic stand-in for the wifi radio, to run the connection flow in local unit tests.
+ * <p>
+ * Install it with {@link WifiEngine#install(Context, WifiRadio)}, add the access points in range, script how
+ * each of them answers connection attempts and use {@link com.androidconnect.wifiutils.WifiUtils} as usual.
+ * Everything the radio does in response, scan results, supplicant state changes and network callbacks, happens
+ * on the main looper once the latency set for that {@link Step} has passed. Under Robolectric's paused looper
+ * time only moves when the test advances it, for instance with {@code shadowOf(getMainLooper()).idleFor(...)},
+ * so every run replays exactly the same way, down to the {@link com.androidconnect.wifiutils.WifiMetrics} recorded.
+ * Broadcasts and callbacks are never delivered from within the call that caused them, a disconnect is only heard
+ * about on the next turn of the looper like on a device. Saved configurations are copied in and out, as they would be
+ * across the binder.
+ * <p>
+ * Before Android 10 the library connects through saved network configurations and supplicant broadcasts, from then
+ * on through {@link ConnectivityManager.NetworkCallback}s. The radio answers both, the SDK level the test runs at
+ * decides which one gets exercised.
+ * <p>
+ * Not thread safe, use it on the main thread only.
+ */
+public final class SimulatedRadio implements WifiRadio {
+
+    public enum Step {
+        /**
+         * Turning wifi on.
+         */
+        ENABLE_WIFI,
+        /**
+         * From starting a scan until its results are available.
+         */
+        SCAN,
+        /**
+         * From starting to connect until associated with the access point, or until a WPS attempt ends.
+         */
+        ASSOCIATION,
+        /**
+         * From association until the four way handshake completes or fails.
+         */
+        HANDSHAKE,
+        /**
+         * From the four way handshake until an IP address is acquired.
+         */
+        IP_ACQUIRED,
+        /**
+         * Android 10 and up, from requesting the network until the request is answered.
+         */
+        NETWORK_AVAILABLE
+    }
+
+    /**
+     * How an access point answers a connection attempt.
+     */
+    public enum Outcome {
+        /**
+         * Associates, completes the handshake and acquires an IP address. On Android 10 and up the network
+         * becomes available.
+         */
+        CONNECT,
+        /**
+         * Rejects the credentials: the supplicant disconnects with {@link WifiManager#ERROR_AUTHENTICATING}.
+         * On Android 10 and up the network is unavailable.
+         */
+        AUTHENTICATION_FAILURE,
+        /**
+         * Disconnects after associating without telling why. On Android 10 and up the network is unavailable.
+         */
+        UNAVAILABLE,
+        /**
+         * Connects and loses the connection right away, the firmware bug some Android 10 devices have.
+         */
+        DROPPED,
+        /**
+         * Never answers, the attempt can only time out.
+         */
+        NO_RESPONSE
+    }
+
+    private static final Step[] STEPS = Step.values();
+    private static final int LINK_NONE = 0;
+    private static final int LINK_ASSOCIATED = 1;
+    private static final int LINK_CONNECTED = 2;
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Access points in range, by BSSID, in the order they were added.
+     */
+    @NonNull
+    private final Map<String, AccessPoint> mAccessPoints = new LinkedHashMap<>();
+    @NonNull
+    private final Map<String, ArrayDeque<Outcome>> mOutcomes = new HashMap<>();
+    @NonNull
+    private final long[] mLatencies = new long[STEPS.length];
+    @NonNull
+    private final Map<Integer, WifiConfiguration> mConfigurations = new LinkedHashMap<>();
+    @NonNull
+    private final Map<BroadcastReceiver, List<String>> mReceivers = new LinkedHashMap<>();
+    @NonNull
+    private final Map<String, Integer> mCallCounts = new HashMap<>();
+    @NonNull
+    private List<ScanResult> mScanResults = Collections.emptyList();
+    private int mWifiState = WifiManager.WIFI_STATE_ENABLED;
+    private int mNextNetworkId;
+    private int mSelectedNetworkId = -1;
+    private int mNextNetHandle = 100;
+    /**
+     * Bumped by every new connection attempt, steps scheduled for an older attempt are dropped.
+     */
+    private int mAttempt;
+    private int mWpsAttempt;
+    @Nullable
+    private AccessPoint mTarget;
+    private int mLink = LINK_NONE;
+    @Nullable
+    private Network mNetwork;
+    @Nullable
+    private Network mBoundNetwork;
+    @Nullable
+    private ConnectivityManager.NetworkCallback mNetworkCallback;
+    @Nullable
+    private String mRequestTarget;
+
+    /**
+     * @param context handed to receivers along with every broadcast
+     */
+    public SimulatedRadio(@NonNull Context context) {
+        mContext = context;
+        mLatencies[Step.ENABLE_WIFI.ordinal()] = 500;
+        mLatencies[Step.SCAN.ordinal()] = 1000;
+        mLatencies[Step.ASSOCIATION.ordinal()] = 200;
+        mLatencies[Step.HANDSHAKE.ordinal()] = 100;
+        mLatencies[Step.IP_ACQUIRED.ordinal()] = 300;
+        mLatencies[Step.NETWORK_AVAILABLE.ordinal()] = 1500;
+    }
+
+    // Scripting
+
+    /**
+     * Puts an access point in range, it shows up in the results of the next scan.
+     */
+    @NonNull
+    public SimulatedRadio addAccessPoint(@NonNull AccessPoint accessPoint) {
+        mAccessPoints.put(accessPoint.getBssid(), accessPoint);
+        return this;
+    }
+
+    /**
+     * Takes an access point out of range. It drops the connection if it was the one connected.
+     */
+    @NonNull
+    public SimulatedRadio removeAccessPoint(@NonNull String bssid) {
+        final AccessPoint removed = mAccessPoints.remove(bssid);
+        if (removed != null && removed == mTarget && mLink != LINK_NONE) {
+            dropConnection();
+        }
+        return this;
+    }
+
+    /**
+     * Sets how an access point answers the next connection attempts, one outcome per attempt.
+     * The last outcome keeps answering once the others are used up. Access points connect by default.
+     */
+    @NonNull
+    public SimulatedRadio script(@NonNull String bssid, @NonNull Outcome... outcomes) {
+        final ArrayDeque<Outcome> queue = new ArrayDeque<>(outcomes.length);
+        Collections.addAll(queue, outcomes);
+        mOutcomes.put(bssid, queue);
+        return this;
+    }
+
+    @NonNull
+    public SimulatedRadio setLatency(@NonNull Step step, long millis) {
+        mLatencies[step.ordinal()] = millis;
+        return this;
+    }
+
+    /**
+     * Network requests can't be inspected, so on Android 10 and up the radio answers them on behalf of the given
+     * access point. Defaults to the first access point added.
+     */
+    @NonNull
+    public SimulatedRadio answerRequestsAs(@Nullable String bssid) {
+        mRequestTarget = bssid;
+        return this;
+    }
+
+    /**
+     * Loses the current connection, like walking out of range would.
+     */
+    public void dropConnection() {
+        mAttempt++;
+        final boolean wasConnected = mLink == LINK_CONNECTED;
+        clearLink();
+        if (mNetworkCallback != null && wasConnected && mNetwork != null) {
+            final ConnectivityManager.NetworkCallback networkCallback = mNetworkCallback;
+            final Network network = mNetwork;
+            mHandler.post(() -> networkCallback.onLost(network));
+        } else {
+            sendSupplicantState(SupplicantState.DISCONNECTED, -1);
+            if (wasConnected) {
+                sendNetworkState(NetworkInfo.State.DISCONNECTED);
+            }
+        }
+        mNetwork = null;
+    }
+
+    // Inspection
+
+    /**
+     * @param method the name of a {@link WifiRadio} method, for instance {@code "getConnectionInfo"}
+     * @return how many times the library called it, the number of IPCs it would have made on a device.
+     */
+    public int getCallCount(@NonNull String method) {
+        final Integer count = mCallCounts.get(method);
+        return count == null ? 0 : count;
+    }
+
+    public void resetCallCounts() {
+        mCallCounts.clear();
+    }
+
+    /**
+     * @return the BSSID of the access point connected to, null if not connected.
+     */
+    @Nullable
+    public String getConnectedBssid() {
+        return mLink == LINK_CONNECTED && mTarget != null ? mTarget.getBssid() : null;
+    }
+
+    @Nullable
+    public Network getBoundNetwork() {
+        return mBoundNetwork;
+    }
+
+    /**
+     * @return copies of the saved network configurations, by network id.
+     */
+    @NonNull
+    public Map<Integer, WifiConfiguration> getSavedNetworks() {
+        final Map<Integer, WifiConfiguration> configurations = new LinkedHashMap<>();
+        for (final Map.Entry<Integer, WifiConfiguration> entry : mConfigurations.entrySet()) {
+            configurations.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(configurations);
+    }
+
+    // WifiManager
+
+    @Override
+    public boolean isWifiEnabled() {
+        count("isWifiEnabled");
+        return mWifiState == WifiManager.WIFI_STATE_ENABLED;
+    }
+
+    @Override
+    public boolean setWifiEnabled(boolean enabled) {
+        count("setWifiEnabled");
+        if (enabled) {
+            if (mWifiState != WifiManager.WIFI_STATE_ENABLED && mWifiState != WifiManager.WIFI_STATE_ENABLING) {
+                setWifiState(WifiManager.WIFI_STATE_ENABLING);
+                mHandler.postDelayed(() -> {
+                    if (mWifiState == WifiManager.WIFI_STATE_ENABLING) {
+                        setWifiState(WifiManager.WIFI_STATE_ENABLED);
+                    }
+                }, latency(Step.ENABLE_WIFI));
+            }
+        } else if (mWifiState != WifiManager.WIFI_STATE_DISABLED) {
+            mAttempt++;
+            clearLink();
+            mNetwork = null;
+            mScanResults = Collections.emptyList();
+            setWifiState(WifiManager.WIFI_STATE_DISABLED);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startScan() {
+        count("startScan");
+        if (mWifiState != WifiManager.WIFI_STATE_ENABLED) {
+            return false;
+        }
+        mHandler.postDelayed(() -> {
+            if (mWifiState != WifiManager.WIFI_STATE_ENABLED) {
+                return;
+            }
+            final long nowMicros = SystemClock.elapsedRealtime() * 1000;
+            final List<ScanResult> results = new ArrayList<>(mAccessPoints.size());
+            for (final AccessPoint accessPoint : mAccessPoints.values()) {
+                results.add(accessPoint.toScanResult(nowMicros));
+            }
+            mScanResults = results;
+            sendBroadcast(new Intent(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION).putExtra(WifiManager.EXTRA_RESULTS_UPDATED, true));
+        }, latency(Step.SCAN));
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public List<ScanResult> getScanResults() {
+        count("getScanResults");
+        return new ArrayList<>(mScanResults);
+    }
+
+    @Nullable
+    @Override
+    public WifiInfo getConnectionInfo() {
+        count("getConnectionInfo");
+        final WifiInfo wifiInfo = ShadowWifiInfo.newInstance();
+        if (mTarget != null && mLink != LINK_NONE) {
+            final ShadowWifiInfo shadow = Shadows.shadowOf(wifiInfo);
+            shadow.setSSID(mTarget.getSsid());
+            shadow.setBSSID(mTarget.getBssid());
+            shadow.setRssi(mTarget.getLevel());
+            shadow.setFrequency(mTarget.getFrequency());
+            shadow.setNetworkId(mSelectedNetworkId);
+            if (mLink == LINK_CONNECTED) {
+                shadow.setInetAddress(ipAddress());
+                shadow.setSupplicantState(SupplicantState.COMPLETED);
+            } else {
+                shadow.setSupplicantState(SupplicantState.ASSOCIATED);
+            }
+        }
+        return wifiInfo;
+    }
+
+    @Nullable
+    @Override
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        count("getConfiguredNetworks");
+        final List<WifiConfiguration> configurations = new ArrayList<>(mConfigurations.size());
+        for (final WifiConfiguration config : mConfigurations.values()) {
+            configurations.add(copy(config));
+        }
+        return configurations;
+    }
+
+    @Override
+    public int addNetwork(@NonNull WifiConfiguration config) {
+        count("addNetwork");
+        // The system keeps its own copy, the caller's object is left untouched
+        final WifiConfiguration saved = copy(config);
+        saved.networkId = mNextNetworkId++;
+        saved.status = WifiConfiguration.Status.ENABLED;
+        mConfigurations.put(saved.networkId, saved);
+        return saved.networkId;
+    }
+
+    @Override
+    public int updateNetwork(@NonNull WifiConfiguration config) {
+        count("updateNetwork");
+        if (!mConfigurations.containsKey(config.networkId)) {
+            return -1;
+        }
+        mConfigurations.put(config.networkId, copy(config));
+        return config.networkId;
+    }
+
+    @Override
+    public boolean removeNetwork(int networkId) {
+        count("removeNetwork");
+        if (networkId == mSelectedNetworkId) {
+            mSelectedNetworkId = -1;
+        }
+        return mConfigurations.remove(networkId) != null;
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId, boolean attemptConnect) {
+        count("enableNetwork");
+        final WifiConfiguration config = mConfigurations.get(networkId);
+        if (config == null) {
+            return false;
+        }
+        config.status = WifiConfiguration.Status.ENABLED;
+        if (attemptConnect) {
+            mSelectedNetworkId = networkId;
+            connect(config);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean disableNetwork(int networkId) {
+        count("disableNetwork");
+        final WifiConfiguration config = mConfigurations.get(networkId);
+        if (config == null) {
+            return false;
+        }
+        config.status = WifiConfiguration.Status.DISABLED;
+        return true;
+    }
+
+    @Override
+    public boolean saveConfiguration() {
+        count("saveConfiguration");
+        return true;
+    }
+
+    @Override
+    public boolean reconnect() {
+        count("reconnect");
+        return reconnectSelected();
+    }
+
+    @Override
+    public boolean reassociate() {
+        count("reassociate");
+        return reconnectSelected();
+    }
+
+    @Override
+    public boolean disconnect() {
+        count("disconnect");
+        if (mTarget != null) {
+            dropConnection();
+        }
+        return true;
+    }
+
+    @Override
+    public void startWps(@NonNull WpsInfo config, @Nullable WifiManager.WpsCallback callback) {
+        count("startWps");
+        final AccessPoint accessPoint = config.BSSID == null ? null : mAccessPoints.get(config.BSSID);
+        final Outcome outcome = accessPoint == null ? Outcome.NO_RESPONSE : nextOutcome(accessPoint);
+        final int attempt = ++mWpsAttempt;
+        mHandler.postDelayed(() -> {
+            if (attempt != mWpsAttempt || callback == null) {
+                return;
+            }
+            switch (outcome) {
+                case CONNECT:
+                    mAttempt++;
+                    mTarget = accessPoint;
+                    connected();
+                    callback.onSucceeded();
+                    break;
+                case AUTHENTICATION_FAILURE:
+                    callback.onFailed(WifiManager.WPS_AUTH_FAILURE);
+                    break;
+                case UNAVAILABLE:
+                case DROPPED:
+                    callback.onFailed(WifiManager.WPS_OVERLAP_ERROR);
+                    break;
+                case NO_RESPONSE:
+                    break;
+            }
+        }, latency(Step.ASSOCIATION));
+    }
+
+    @Override
+    public void cancelWps(@Nullable WifiManager.WpsCallback callback) {
+        count("cancelWps");
+        mWpsAttempt++;
+    }
+
+    // ConnectivityManager
+
+    @Override
+    public boolean isConnectivityAvailable() {
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public Network[] getAllNetworks() {
+        count("getAllNetworks");
+        return mLink == LINK_CONNECTED && mNetwork != null ? new Network[]{mNetwork} : new Network[0];
+    }
+
+    @Nullable
+    @Override
+    public NetworkInfo getNetworkInfo(@Nullable Network network) {
+        count("getNetworkInfo");
+        return network != null && network.equals(mNetwork) ? networkInfo() : null;
+    }
+
+    @Nullable
+    @Override
+    public NetworkInfo getNetworkInfo(int networkType) {
+        count("getNetworkInfo");
+        return networkType == ConnectivityManager.TYPE_WIFI ? networkInfo() : null;
+    }
+
+    @Override
+    public void requestNetwork(@NonNull NetworkRequest request, @NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        count("requestNetwork");
+        final ConnectivityManager.NetworkCallback previous = mNetworkCallback;
+        if (previous != null && mLink == LINK_CONNECTED && mNetwork != null) {
+            // One radio, one network: the one of the previous request goes away
+            final Network lost = mNetwork;
+            clearLink();
+            mHandler.post(() -> previous.onLost(lost));
+        }
+        mNetworkCallback = networkCallback;
+        final AccessPoint accessPoint = requestTarget();
+        final Outcome outcome = accessPoint == null ? Outcome.UNAVAILABLE : nextOutcome(accessPoint);
+        final int attempt = ++mAttempt;
+        mHandler.postDelayed(() -> {
+            if (attempt != mAttempt || networkCallback != mNetworkCallback) {
+                return;
+            }
+            switch (outcome) {
+                case CONNECT:
+                case DROPPED:
+                    mTarget = accessPoint;
+                    connected();
+                    networkCallback.onAvailable(mNetwork);
+                    if (outcome == Outcome.DROPPED) {
+                        // Gone before anyone gets to use it, without onLost like on the affected devices
+                        clearLink();
+                    }
+                    break;
+                case AUTHENTICATION_FAILURE:
+                case UNAVAILABLE:
+                    networkCallback.onUnavailable();
+                    break;
+                case NO_RESPONSE:
+                    break;
+            }
+        }, latency(Step.NETWORK_AVAILABLE));
+    }
+
+    @Override
+    public void unregisterNetworkCallback(@NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        count("unregisterNetworkCallback");
+        if (networkCallback != mNetworkCallback) {
+            return;
+        }
+        // Releasing the request releases the network it brought up
+        mNetworkCallback = null;
+        mAttempt++;
+        clearLink();
+        mNetwork = null;
+    }
+
+    @Override
+    public boolean bindProcessToNetwork(@Nullable Network network) {
+        count("bindProcessToNetwork");
+        mBoundNetwork = network;
+        return true;
+    }
+
+    @Override
+    public void setNetworkPreference(int preference) {
+        count("setNetworkPreference");
+    }
+
+    // Broadcasts
+
+    @Override
+    public boolean registerReceiver(@NonNull BroadcastReceiver receiver, @NonNull IntentFilter filter) {
+        List<String> actions = mReceivers.get(receiver);
+        if (actions == null) {
+            actions = new ArrayList<>();
+            mReceivers.put(receiver, actions);
+        }
+        for (int i = 0; i < filter.countActions(); i++) {
+            final String action = filter.getAction(i);
+            if (!actions.contains(action)) {
+                actions.add(action);
+                if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(action)) {
+                    // Sticky, delivered right after registering like the system does
+                    final Intent sticky = wifiStateIntent(mWifiState);
+                    mHandler.post(() -> {
+                        if (mReceivers.containsKey(receiver)) {
+                            receiver.onReceive(mContext, sticky);
+                        }
+                    });
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void unregisterReceiver(@Nullable BroadcastReceiver receiver) {
+        mReceivers.remove(receiver);
+    }
+
+    // Internals
+
+    private void connect(@NonNull WifiConfiguration config) {
+        final int attempt = ++mAttempt;
+        clearLink();
+        mNetwork = null;
+        final AccessPoint accessPoint = findAccessPoint(config);
+        mTarget = accessPoint;
+        if (accessPoint == null || mWifiState != WifiManager.WIFI_STATE_ENABLED) {
+            // Keeps looking for it, which only a timeout ends
+            sendSupplicantState(SupplicantState.SCANNING, -1);
+            return;
+        }
+        final Outcome outcome = nextOutcome(accessPoint);
+        sendSupplicantState(SupplicantState.ASSOCIATING, -1);
+        after(Step.ASSOCIATION, attempt, () -> {
+            if (outcome == Outcome.NO_RESPONSE) {
+                return;
+            }
+            mLink = LINK_ASSOCIATED;
+            sendSupplicantState(SupplicantState.ASSOCIATED, -1);
+            after(Step.HANDSHAKE, attempt, () -> {
+                switch (outcome) {
+                    case AUTHENTICATION_FAILURE:
+                        clearLink();
+                        sendSupplicantState(SupplicantState.DISCONNECTED, WifiManager.ERROR_AUTHENTICATING);
+                        break;
+                    case UNAVAILABLE:
+                        clearLink();
+                        sendSupplicantState(SupplicantState.DISCONNECTED, -1);
+                        break;
+                    default:
+                        sendSupplicantState(SupplicantState.FOUR_WAY_HANDSHAKE, -1);
+                        sendSupplicantState(SupplicantState.COMPLETED, -1);
+                        after(Step.IP_ACQUIRED, attempt, () -> {
+                            connected();
+                            sendNetworkState(NetworkInfo.State.CONNECTED);
+                            if (outcome == Outcome.DROPPED) {
+                                // Right after the connected broadcast went out, not before
+                                mHandler.post(() -> {
+                                    if (attempt == mAttempt) {
+                                        dropConnection();
+                                    }
+                                });
+                            }
+                        });
+                }
+            });
+        });
+    }
+
+    private boolean reconnectSelected() {
+        if (mWifiState != WifiManager.WIFI_STATE_ENABLED) {
+            return false;
+        }
+        final WifiConfiguration config = mConfigurations.get(mSelectedNetworkId);
+        // Already on its way to the selected network otherwise
+        if (config != null && mTarget == null) {
+            connect(config);
+        }
+        return true;
+    }
+
+    @Nullable
+    private AccessPoint findAccessPoint(@NonNull WifiConfiguration config) {
+        if (config.BSSID != null && mAccessPoints.containsKey(config.BSSID)) {
+            return mAccessPoints.get(config.BSSID);
+        }
+        final String ssid = unquote(config.SSID);
+        AccessPoint strongest = null;
+        for (final AccessPoint accessPoint : mAccessPoints.values()) {
+            if (accessPoint.getSsid().equals(ssid) && (strongest == null || accessPoint.getLevel() > strongest.getLevel())) {
+                strongest = accessPoint;
+            }
+        }
+        return strongest;
+    }
+
+    @Nullable
+    private AccessPoint requestTarget() {
+        if (mRequestTarget != null) {
+            return mAccessPoints.get(mRequestTarget);
+        }
+        final Iterator<AccessPoint> iterator = mAccessPoints.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @NonNull
+    private Outcome nextOutcome(@NonNull AccessPoint accessPoint) {
+        final ArrayDeque<Outcome> outcomes = mOutcomes.get(accessPoint.getBssid());
+        if (outcomes == null || outcomes.isEmpty()) {
+            return Outcome.CONNECT;
+        }
+        return outcomes.size() > 1 ? outcomes.poll() : outcomes.peek();
+    }
+
+    private void connected() {
+        mLink = LINK_CONNECTED;
+        mNetwork = ShadowNetwork.newInstance(mNextNetHandle++);
+    }
+
+    private void clearLink() {
+        mLink = LINK_NONE;
+        mTarget = null;
+    }
+
+    private void after(@NonNull Step step, int attempt, @NonNull Runnable runnable) {
+        mHandler.postDelayed(() -> {
+            if (attempt == mAttempt) {
+                runnable.run();
+            }
+        }, latency(step));
+    }
+
+    private long latency(@NonNull Step step) {
+        return mLatencies[step.ordinal()];
+    }
+
+    private void count(@NonNull String method) {
+        final Integer count = mCallCounts.get(method);
+        mCallCounts.put(method, count == null ? 1 : count + 1);
+    }
+
+    private void setWifiState(int state) {
+        mWifiState = state;
+        sendBroadcast(wifiStateIntent(state));
+    }
+
+    private void sendSupplicantState(@NonNull SupplicantState state, int error) {
+        final Intent intent = new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION).putExtra(WifiManager.EXTRA_NEW_STATE, state);
+        if (error != -1) {
+            intent.putExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, error);
+        }
+        sendBroadcast(intent);
+    }
+
+    private void sendNetworkState(@NonNull NetworkInfo.State state) {
+        final NetworkInfo info = state == NetworkInfo.State.CONNECTED ? networkInfo()
+                : ShadowNetworkInfo.newInstance(NetworkInfo.DetailedState.DISCONNECTED, ConnectivityManager.TYPE_WIFI, 0, true, state);
+        sendBroadcast(new Intent(WifiManager.NETWORK_STATE_CHANGED_ACTION).putExtra(WifiManager.EXTRA_NETWORK_INFO, info));
+    }
+
+    /**
+     * Delivers the broadcast on the next turn of the looper, never from within the call that caused it,
+     * to the receivers registered for it now that are still registered by then.
+     */
+    private void sendBroadcast(@NonNull Intent intent) {
+        final String action = intent.getAction();
+        final List<BroadcastReceiver> receivers = new ArrayList<>();
+        for (final Map.Entry<BroadcastReceiver, List<String>> entry : mReceivers.entrySet()) {
+            if (entry.getValue().contains(action)) {
+                receivers.add(entry.getKey());
+            }
+        }
+        if (receivers.isEmpty()) {
+            return;
+        }
+        mHandler.post(() -> {
+            for (final BroadcastReceiver receiver : receivers) {
+                if (mReceivers.containsKey(receiver)) {
+                    receiver.onReceive(mContext, intent);
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private NetworkInfo networkInfo() {
+        return mLink == LINK_CONNECTED
+                ? ShadowNetworkInfo.newInstance(NetworkInfo.DetailedState.CONNECTED, ConnectivityManager.TYPE_WIFI, 0, true, NetworkInfo.State.CONNECTED)
+                : ShadowNetworkInfo.newInstance(NetworkInfo.DetailedState.DISCONNECTED, ConnectivityManager.TYPE_WIFI, 0, true, NetworkInfo.State.DISCONNECTED);
+    }
+
+    /**
+     * Copies a configuration the way it crosses the binder, so neither side sees the other's later changes.
+     */
+    @NonNull
+    private static WifiConfiguration copy(@NonNull WifiConfiguration config) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            config.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return WifiConfiguration.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @NonNull
+    private static Intent wifiStateIntent(int state) {
+        return new Intent(WifiManager.WIFI_STATE_CHANGED_ACTION).putExtra(WifiManager.EXTRA_WIFI_STATE, state);
+    }
+
+    @NonNull
+    private static InetAddress ipAddress() {
+        try {
+            return InetAddress.getByAddress(new byte[]{(byte) 192, (byte) 168, 1, 100});
+        } catch (UnknownHostException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Nullable
+    private static String unquote(@Nullable String ssid) {
+        if (ssid != null && ssid.length() > 1 && ssid.startsWith("\"") && ssid.endsWith("\"")) {
+            return ssid.substring(1, ssid.length() - 1);
+        }
+        return ssid;
+    }
+}
@@ -50,12 +50,18 @@ android {
     kotlinOptions {
         jvmTarget = JavaVersion.VERSION_1_8.toString()
     }
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+    }
 }
 
 dependencies {
     implementation(fileTree(mapOf("dir" to "libs", "include" to listOf("*.jar"))))
     addLibModuleDependencies()
     //addTestDependencies()
+
+    testImplementation(project(ModuleDependency.LIBRARY_TEST_UTILS))
+    testImplementation(TestLibraryDependency.JUNIT)
 }
 
 val dokkaTask by tasks.creating(org.jetbrains.dokka.gradle.DokkaTask::class) {
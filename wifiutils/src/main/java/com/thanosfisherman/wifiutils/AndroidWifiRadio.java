@@ -0,0 +1,260 @@
+package com.androidconnect.wifiutils;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WpsInfo;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.RestrictTo;
+
+import java.util.List;
+
+/**
+ * The {@link WifiRadio} backed by the system services, with broadcasts going through {@link WifiEventHub}.
+ * Broadcasts and network callbacks are delivered on the {@link WifiWorker} thread.
+ * Scan results and connection info read here go to the {@link ScanTraceRecorder} when it is recording.
+ */
+@SuppressLint("MissingPermission")
+@SuppressWarnings("deprecation")
+public final class AndroidWifiRadio implements WifiRadio {
+    /**
+     * Null only for radios wrapping a bare {@link WifiManager}, which can't register receivers.
+     */
+    @Nullable
+    private final Context mContext;
+    @NonNull
+    private final WifiManager mWifiManager;
+    @Nullable
+    private final ConnectivityManager mConnectivityManager;
+
+    /**
+     * @param context any context, only its application context is retained
+     */
+    AndroidWifiRadio(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+        mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+        if (mWifiManager == null) {
+            throw new RuntimeException("WifiManager is not supposed to be null");
+        }
+        mConnectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    private AndroidWifiRadio(@NonNull WifiManager wifiManager) {
+        mContext = null;
+        mWifiManager = wifiManager;
+        mConnectivityManager = null;
+    }
+
+    /**
+     * Wraps the {@link WifiManager} handed to the deprecated constructors that still take one.
+     * The radio has no {@link ConnectivityManager} and can't register receivers, which those callers never needed.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    @NonNull
+    public static WifiRadio wrap(@NonNull WifiManager wifiManager) {
+        return new AndroidWifiRadio(wifiManager);
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        return mWifiManager.isWifiEnabled();
+    }
+
+    @Override
+    public boolean setWifiEnabled(boolean enabled) {
+        return mWifiManager.setWifiEnabled(enabled);
+    }
+
+    @Override
+    public boolean startScan() {
+        return mWifiManager.startScan();
+    }
+
+    @Nullable
+    @Override
+    public List<ScanResult> getScanResults() {
+        final List<ScanResult> results = mWifiManager.getScanResults();
+        ScanTraceRecorder.getInstance().recordScanResults(results);
+        return results;
+    }
+
+    @Nullable
+    @Override
+    public WifiInfo getConnectionInfo() {
+        final WifiInfo info = mWifiManager.getConnectionInfo();
+        ScanTraceRecorder.getInstance().recordConnectionInfo(info);
+        return info;
+    }
+
+    @Nullable
+    @Override
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        return mWifiManager.getConfiguredNetworks();
+    }
+
+    @Override
+    public int addNetwork(@NonNull WifiConfiguration config) {
+        return mWifiManager.addNetwork(config);
+    }
+
+    @Override
+    public int updateNetwork(@NonNull WifiConfiguration config) {
+        return mWifiManager.updateNetwork(config);
+    }
+
+    @Override
+    public boolean removeNetwork(int networkId) {
+        return mWifiManager.removeNetwork(networkId);
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId, boolean attemptConnect) {
+        return mWifiManager.enableNetwork(networkId, attemptConnect);
+    }
+
+    @Override
+    public boolean disableNetwork(int networkId) {
+        return mWifiManager.disableNetwork(networkId);
+    }
+
+    @Override
+    public boolean saveConfiguration() {
+        return mWifiManager.saveConfiguration();
+    }
+
+    @Override
+    public boolean reconnect() {
+        return mWifiManager.reconnect();
+    }
+
+    @Override
+    public boolean reassociate() {
+        return mWifiManager.reassociate();
+    }
+
+    @Override
+    public boolean disconnect() {
+        return mWifiManager.disconnect();
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void startWps(@NonNull WpsInfo config, @Nullable WifiManager.WpsCallback callback) {
+        mWifiManager.startWps(config, callback == null ? null : new WorkerWpsCallback(callback));
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void cancelWps(@Nullable WifiManager.WpsCallback callback) {
+        mWifiManager.cancelWps(callback);
+    }
+
+    @Override
+    public boolean isConnectivityAvailable() {
+        return mConnectivityManager != null;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @NonNull
+    @Override
+    public Network[] getAllNetworks() {
+        return mConnectivityManager == null ? new Network[0] : mConnectivityManager.getAllNetworks();
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @Nullable
+    @Override
+    public NetworkInfo getNetworkInfo(@Nullable Network network) {
+        return mConnectivityManager == null ? null : mConnectivityManager.getNetworkInfo(network);
+    }
+
+    @Nullable
+    @Override
+    public NetworkInfo getNetworkInfo(int networkType) {
+        return mConnectivityManager == null ? null : mConnectivityManager.getNetworkInfo(networkType);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void requestNetwork(@NonNull NetworkRequest request, @NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        if (mConnectivityManager == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mConnectivityManager.requestNetwork(request, networkCallback, WifiWorker.getInstance().getHandler());
+        } else {
+            mConnectivityManager.requestNetwork(request, networkCallback);
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void unregisterNetworkCallback(@NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        if (mConnectivityManager != null) {
+            mConnectivityManager.unregisterNetworkCallback(networkCallback);
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.M)
+    @Override
+    public boolean bindProcessToNetwork(@Nullable Network network) {
+        return mConnectivityManager != null && mConnectivityManager.bindProcessToNetwork(network);
+    }
+
+    @Override
+    public void setNetworkPreference(int preference) {
+        if (mConnectivityManager != null) {
+            mConnectivityManager.setNetworkPreference(preference);
+        }
+    }
+
+    @Override
+    public boolean registerReceiver(@NonNull BroadcastReceiver receiver, @NonNull IntentFilter filter) {
+        return mContext != null && WifiEventHub.getInstance().subscribe(mContext, receiver, filter);
+    }
+
+    @Override
+    public void unregisterReceiver(@Nullable BroadcastReceiver receiver) {
+        WifiEventHub.getInstance().unsubscribe(receiver);
+    }
+
+    /**
+     * WifiManager calls WPS callbacks on the main thread, this forwards them to the worker.
+     */
+    private static final class WorkerWpsCallback extends WifiManager.WpsCallback {
+        @NonNull
+        private final WifiManager.WpsCallback mCallback;
+
+        WorkerWpsCallback(@NonNull WifiManager.WpsCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void onStarted(String pin) {
+            WifiWorker.getInstance().execute(() -> mCallback.onStarted(pin));
+        }
+
+        @Override
+        public void onSucceeded() {
+            WifiWorker.getInstance().execute(mCallback::onSucceeded);
+        }
+
+        @Override
+        public void onFailed(int reason) {
+            WifiWorker.getInstance().execute(() -> mCallback.onFailed(reason));
+        }
+    }
+}
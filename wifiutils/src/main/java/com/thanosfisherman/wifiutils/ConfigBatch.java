@@ -0,0 +1,100 @@
+package com.androidconnect.wifiutils;
+
+import android.annotation.SuppressLint;
+import android.net.wifi.WifiConfiguration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
+
+/**
+ * Collects priority and enabled state changes to saved networks and applies only those that
+ * actually change something, one IPC per changed network.
+ * <p>
+ * Changes are checked against the configurations as last read through {@link ConfiguredNetworks}, so a network
+ * already at the requested priority isn't updated and a network already enabled or disabled isn't touched.
+ * Nothing is saved, callers call {@link WifiRadio#saveConfiguration()} once when they are done.
+ */
+@SuppressLint("MissingPermission")
+final class ConfigBatch {
+    @NonNull
+    private final ConfiguredNetworks mConfiguredNetworks;
+    /**
+     * Keyed on identity, {@link WifiConfiguration} doesn't override equals.
+     */
+    @NonNull
+    private final Map<WifiConfiguration, Integer> mPriorities = new LinkedHashMap<>();
+    @NonNull
+    private final Set<Integer> mToEnable = new LinkedHashSet<>();
+    @NonNull
+    private final Set<Integer> mToDisable = new LinkedHashSet<>();
+    private int mSkipped;
+
+    ConfigBatch(@NonNull ConfiguredNetworks configuredNetworks) {
+        mConfiguredNetworks = configuredNetworks;
+    }
+
+    void setPriority(@NonNull WifiConfiguration config, int priority) {
+        if (config.priority == priority) {
+            mPriorities.remove(config);
+            mSkipped++;
+        } else {
+            mPriorities.put(config, priority);
+        }
+    }
+
+    void enable(@NonNull WifiConfiguration config) {
+        mToDisable.remove(config.networkId);
+        if (config.status == WifiConfiguration.Status.DISABLED) {
+            mToEnable.add(config.networkId);
+        } else {
+            mSkipped++;
+        }
+    }
+
+    void disable(@NonNull WifiConfiguration config) {
+        mToEnable.remove(config.networkId);
+        if (config.status != WifiConfiguration.Status.DISABLED) {
+            mToDisable.add(config.networkId);
+        } else {
+            mSkipped++;
+        }
+    }
+
+    /**
+     * Applies the pending changes and starts over with an empty batch.
+     *
+     * @return false if any of the changes failed
+     */
+    boolean apply() {
+        final WifiRadio radio = mConfiguredNetworks.getRadio();
+        boolean success = true;
+        for (final Map.Entry<WifiConfiguration, Integer> entry : mPriorities.entrySet()) {
+            final WifiConfiguration config = entry.getKey();
+            config.priority = entry.getValue();
+            success &= mConfiguredNetworks.updateNetwork(config) != -1;
+        }
+        for (final int networkId : mToDisable) {
+            success &= radio.disableNetwork(networkId);
+        }
+        for (final int networkId : mToEnable) {
+            success &= radio.enableNetwork(networkId, false);
+        }
+        if (!mToDisable.isEmpty() || !mToEnable.isEmpty()) {
+            // Cached statuses no longer hold
+            mConfiguredNetworks.invalidate();
+        }
+        wifiLog(Log.VERBOSE, "Applied %d network changes, skipped %d", mPriorities.size() + mToDisable.size() + mToEnable.size(), mSkipped);
+        mPriorities.clear();
+        mToEnable.clear();
+        mToDisable.clear();
+        mSkipped = 0;
+        return success;
+    }
+}
@@ -3,50 +3,43 @@ package com.androidconnect.wifiutils;
 import android.annotation.TargetApi;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiConfiguration;
-import android.net.wifi.WifiManager;
 import android.net.wifi.WifiNetworkSpecifier;
 import android.os.Build;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
-
 import static android.Manifest.permission.ACCESS_FINE_LOCATION;
 import static android.Manifest.permission.ACCESS_WIFI_STATE;
+import static com.androidconnect.wifiutils.WifiUtils.isLoggable;
 import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
 import static com.androidconnect.wifiutils.utils.SSIDUtils.convertToQuotedString;
 
 final class ConfigSecurities {
-    static final String SECURITY_NONE = "OPEN";
-    static final String SECURITY_WEP = "WEP";
-    static final String SECURITY_PSK = "PSK";
-    static final String SECURITY_EAP = "EAP";
-
 
     /**
      * Fill in the security fields of WifiConfiguration config.
      *
      * @param config   The object to fill.
-     * @param security If is OPEN, password is ignored.
+     * @param security {@link WifiSecurity} flags. If OPEN, password is ignored.
      * @param password Password of the network if security is not OPEN.
      */
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    static void setupSecurity(@NonNull WifiConfiguration config, String security, @NonNull final String password) {
+    static void setupSecurity(@NonNull WifiConfiguration config, int security, @NonNull final String password) {
         config.allowedAuthAlgorithms.clear();
         config.allowedGroupCiphers.clear();
         config.allowedKeyManagement.clear();
         config.allowedPairwiseCiphers.clear();
         config.allowedProtocols.clear();
-        wifiLog("Setting up security " + security);
-        switch (security) {
-            case SECURITY_NONE:
+        final int primary = WifiSecurity.primary(security);
+        if (isLoggable(Log.VERBOSE)) {
+            wifiLog(Log.VERBOSE, "Setting up security %s", WifiSecurity.toString(security));
+        }
+        switch (primary) {
+            case WifiSecurity.OPEN:
                 config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
                 config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
                 config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
@@ -57,7 +50,7 @@ final class ConfigSecurities {
                 config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
                 config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
                 break;
-            case SECURITY_WEP:
+            case WifiSecurity.WEP:
                 config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
                 config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
                 config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
@@ -74,7 +67,7 @@ final class ConfigSecurities {
                     config.wepKeys[0] = convertToQuotedString(password);
                 }
                 break;
-            case SECURITY_PSK:
+            case WifiSecurity.PSK:
                 config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
                 config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
                 config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
@@ -90,7 +83,7 @@ final class ConfigSecurities {
                     config.preSharedKey = convertToQuotedString(password);
                 }
                 break;
-            case SECURITY_EAP:
+            case WifiSecurity.EAP:
                 config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
                 config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
                 config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
@@ -105,42 +98,51 @@ final class ConfigSecurities {
                 break;
 
             default:
-                wifiLog("Invalid security type: " + security);
+                // WPA3 and enhanced open are only configured through WifiNetworkSpecifier, from Android 10 on
+                wifiLog(Log.WARN, "Unsupported security type: %s", WifiSecurity.toString(primary));
                 break;
         }
     }
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    static void setupSecurityHidden(@NonNull WifiConfiguration config, String security, @NonNull final String password) {
+    static void setupSecurityHidden(@NonNull WifiConfiguration config, int security, @NonNull final String password) {
         config.hiddenSSID = true;
         setupSecurity(config, security, password);
     }
 
 
     @TargetApi(Build.VERSION_CODES.Q)
-    static void setupWifiNetworkSpecifierSecurities(@NonNull WifiNetworkSpecifier.Builder wifiNetworkSpecifierBuilder, String security, @NonNull final String password) {
-        wifiLog("Setting up WifiNetworkSpecifier.Builder " + security);
-        switch (security) {
-            case SECURITY_NONE:
+    static void setupWifiNetworkSpecifierSecurities(@NonNull WifiNetworkSpecifier.Builder wifiNetworkSpecifierBuilder, int security, @NonNull final String password) {
+        final int primary = WifiSecurity.primary(security);
+        if (isLoggable(Log.VERBOSE)) {
+            wifiLog(Log.VERBOSE, "Setting up WifiNetworkSpecifier.Builder %s", WifiSecurity.toString(security));
+        }
+        switch (primary) {
+            case WifiSecurity.OPEN:
                 // nothing to do
                 break;
-            case SECURITY_WEP:
+            case WifiSecurity.WEP:
                 // no longer possible
                 break;
-            case SECURITY_PSK:
-            case SECURITY_EAP:
+            case WifiSecurity.PSK:
+            case WifiSecurity.EAP:
                 wifiNetworkSpecifierBuilder.setWpa2Passphrase(password);
                 break;
+            case WifiSecurity.SAE:
+                wifiNetworkSpecifierBuilder.setWpa3Passphrase(password);
+                break;
+            case WifiSecurity.OWE:
+                wifiNetworkSpecifierBuilder.setIsEnhancedOpen(true);
+                break;
 
             default:
-                wifiLog("Invalid security type: " + security);
+                wifiLog(Log.WARN, "Invalid security type: %s", WifiSecurity.toString(primary));
                 break;
         }
     }
 
-    @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
     @Nullable
-    static WifiConfiguration getWifiConfiguration(@NonNull final WifiManager wifiMgr, @NonNull final WifiConfiguration configToFind) {
+    static WifiConfiguration getWifiConfiguration(@NonNull final ConfiguredNetworks configuredNetworks, @NonNull final WifiConfiguration configToFind) {
         final String ssid = configToFind.SSID;
         if (ssid == null || ssid.isEmpty()) {
             return null;
@@ -148,127 +150,42 @@ final class ConfigSecurities {
 
         final String bssid = configToFind.BSSID != null ? configToFind.BSSID : "";
 
-        final String security = getSecurity(configToFind);
-
+        final int security = WifiSecurity.of(configToFind);
 
-        final List<WifiConfiguration> configurations = wifiMgr.getConfiguredNetworks();
-        if (configurations == null) {
+        if (configuredNetworks.getAll() == null) {
             wifiLog("NULL configs");
             return null;
         }
 
-        for (final WifiConfiguration config : configurations) {
-            if (bssid.equals(config.BSSID) || ssid.equals(config.SSID)) {
-                final String configSecurity = getSecurity(config);
-                if (Objects.equals(security, configSecurity)) {
-                    return config;
-                }
-            }
+        final WifiConfiguration config = configuredNetworks.find(ssid, bssid, security);
+        if (config == null) {
+            wifiLog(Log.VERBOSE, "Couldn't find %s", ssid);
         }
-        wifiLog("Couldn't find " + ssid);
-        return null;
+        return config;
     }
 
-    @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
     @Nullable
-    static WifiConfiguration getWifiConfiguration(@NonNull final WifiManager wifiManager, @NonNull final String ssid) {
-        final List<WifiConfiguration> configuredNetworks = wifiManager.getConfiguredNetworks();
-        final String findSSID = ('"' + ssid + '"');
-
-        for (final WifiConfiguration wifiConfiguration : configuredNetworks) {
-            if (wifiConfiguration.SSID != null && wifiConfiguration.SSID.equals(findSSID)) {
-                return wifiConfiguration;
-            }
-        }
+    static WifiConfiguration getWifiConfiguration(@NonNull final ConfiguredNetworks configuredNetworks, @NonNull final String ssid) {
+        return configuredNetworks.getFirstBySsid('"' + ssid + '"');
+    }
 
-        return null;
+    @Nullable
+    static WifiConfiguration getWifiConfiguration(@NonNull final ConfiguredNetworks configuredNetworks, @NonNull final ScanResult scanResult) {
+        return getWifiConfiguration(configuredNetworks, scanResult, WifiSecurity.of(scanResult));
     }
 
-    @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
+    /**
+     * @param security the {@link WifiSecurity} of the scan result, when already known
+     */
     @Nullable
-    static WifiConfiguration getWifiConfiguration(@NonNull final WifiManager wifiManager, @NonNull final ScanResult scanResult) {
+    static WifiConfiguration getWifiConfiguration(@NonNull final ConfiguredNetworks configuredNetworks, @NonNull final ScanResult scanResult, int security) {
         if (scanResult.BSSID == null || scanResult.SSID == null || scanResult.SSID.isEmpty() || scanResult.BSSID.isEmpty()) {
             return null;
         }
         final String ssid = convertToQuotedString(scanResult.SSID);
         final String bssid = scanResult.BSSID;
-        final String security = getSecurity(scanResult);
 
-        final List<WifiConfiguration> configurations = wifiManager.getConfiguredNetworks();
-        if (configurations == null) {
-            return null;
-        }
-
-        for (final WifiConfiguration config : configurations) {
-            if (bssid.equals(config.BSSID) || ssid.equals(config.SSID)) {
-                final String configSecurity = getSecurity(config);
-                if (Objects.equals(security, configSecurity)) {
-                    return config;
-                }
-            }
-        }
-        return null;
-    }
-
-    static String getSecurity(@NonNull WifiConfiguration config) {
-        String security = SECURITY_NONE;
-        final Collection<String> securities = new ArrayList<>();
-        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.NONE)) {
-            // If we never set group ciphers, wpa_supplicant puts all of them.
-            // For open, we don't set group ciphers.
-            // For WEP, we specifically only set WEP40 and WEP104, so CCMP
-            // and TKIP should not be there.
-            if (config.wepKeys[0] != null) {
-                security = SECURITY_WEP;
-            } else {
-                security = SECURITY_NONE;
-            }
-            securities.add(security);
-        }
-        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.WPA_EAP) ||
-                config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.IEEE8021X)) {
-            security = SECURITY_EAP;
-            securities.add(security);
-        }
-        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.WPA_PSK)) {
-            security = SECURITY_PSK;
-            securities.add(security);
-        }
-
-        wifiLog("Got Security Via WifiConfiguration " + securities);
-        return security;
-    }
-
-    static String getSecurity(@NonNull ScanResult result) {
-        String security = SECURITY_NONE;
-        if (result.capabilities.contains(SECURITY_WEP)) {
-            security = SECURITY_WEP;
-        }
-        if (result.capabilities.contains(SECURITY_PSK)) {
-            security = SECURITY_PSK;
-        }
-        if (result.capabilities.contains(SECURITY_EAP)) {
-            security = SECURITY_EAP;
-        }
-
-        wifiLog("ScanResult capabilities " + result.capabilities);
-        wifiLog("Got security via ScanResult " + security);
-        return security;
-    }
-
-    static String getSecurity(@NonNull String result) {
-        String security = SECURITY_NONE;
-        if (result.contains(SECURITY_WEP)) {
-            security = SECURITY_WEP;
-        }
-        if (result.contains(SECURITY_PSK)) {
-            security = SECURITY_PSK;
-        }
-        if (result.contains(SECURITY_EAP)) {
-            security = SECURITY_EAP;
-        }
-
-        return security;
+        return configuredNetworks.find(ssid, bssid, security);
     }
 
     /**
@@ -278,11 +195,6 @@ final class ConfigSecurities {
         if (scanResult == null) {
             return "";
         }
-        String result = getSecurity(scanResult);
-
-        if (scanResult.capabilities.contains("WPS")) {
-            result = result + ", WPS";
-        }
-        return result;
+        return WifiSecurity.toPrettyString(WifiSecurity.of(scanResult));
     }
 }
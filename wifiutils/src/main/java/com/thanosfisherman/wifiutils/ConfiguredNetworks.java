@@ -0,0 +1,189 @@
+package com.androidconnect.wifiutils;
+
+import android.annotation.SuppressLint;
+import android.net.wifi.WifiConfiguration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of {@link WifiRadio#getConfiguredNetworks()} for the duration of one operation.
+ * <p>
+ * Every call to {@code getConfiguredNetworks()} is a binder call copying the whole list of saved
+ * networks, which a single pre Android 10 connect used to make half a dozen times. The list is
+ * fetched once, indexed by network id, quoted SSID and BSSID, and fetched again only after a
+ * configuration was added, updated or removed through this cache.
+ * <p>
+ * Not thread safe and not meant to outlive the operation that created it, since networks may be
+ * changed behind its back by the system or the user.
+ */
+@SuppressLint("MissingPermission")
+final class ConfiguredNetworks {
+    @NonNull
+    private final WifiRadio mRadio;
+    @Nullable
+    private List<WifiConfiguration> mConfigurations;
+    private boolean mLoaded;
+    @NonNull
+    private final Map<Integer, WifiConfiguration> mById = new HashMap<>();
+    /**
+     * Positions in {@link #mConfigurations}, ascending, so lookups return the same configuration a
+     * walk over the list would.
+     */
+    @NonNull
+    private final Map<String, List<Integer>> mBySsid = new HashMap<>();
+    @NonNull
+    private final Map<String, List<Integer>> mByBssid = new HashMap<>();
+
+    ConfiguredNetworks(@NonNull WifiRadio radio) {
+        mRadio = radio;
+    }
+
+    @NonNull
+    WifiRadio getRadio() {
+        return mRadio;
+    }
+
+    /**
+     * @return the saved networks, in the order the platform reports them, or null if the platform
+     * won't tell, for instance because wifi is off. The list is read-only.
+     */
+    @Nullable
+    List<WifiConfiguration> getAll() {
+        load();
+        return mConfigurations;
+    }
+
+    @Nullable
+    WifiConfiguration getById(int networkId) {
+        load();
+        return mById.get(networkId);
+    }
+
+    /**
+     * @param quotedSsid the SSID as stored in {@link WifiConfiguration#SSID}, surrounded by quotes
+     * @return the first saved network with the given SSID or null if there is none.
+     */
+    @Nullable
+    WifiConfiguration getFirstBySsid(@Nullable String quotedSsid) {
+        load();
+        final List<Integer> positions = quotedSsid == null ? null : mBySsid.get(quotedSsid);
+        return positions == null ? null : mConfigurations.get(positions.get(0));
+    }
+
+    /**
+     * @return every saved network pinned to the given BSSID, in list order. Never null.
+     */
+    @NonNull
+    List<WifiConfiguration> getByBssid(@Nullable String bssid) {
+        load();
+        final List<Integer> positions = bssid == null ? null : mByBssid.get(bssid);
+        if (positions == null) {
+            return Collections.emptyList();
+        }
+        final List<WifiConfiguration> configurations = new ArrayList<>(positions.size());
+        for (final int position : positions) {
+            configurations.add(mConfigurations.get(position));
+        }
+        return configurations;
+    }
+
+    /**
+     * Equivalent of walking the list for the first network having either the given BSSID or the given SSID
+     * along with a compatible {@link WifiSecurity}.
+     */
+    @Nullable
+    WifiConfiguration find(@Nullable String quotedSsid, @Nullable String bssid, int security) {
+        load();
+        final List<Integer> bySsid = quotedSsid == null ? null : mBySsid.get(quotedSsid);
+        final List<Integer> byBssid = bssid == null ? null : mByBssid.get(bssid);
+        final int ssidCount = bySsid == null ? 0 : bySsid.size();
+        final int bssidCount = byBssid == null ? 0 : byBssid.size();
+        int i = 0;
+        int j = 0;
+        // Merge both ascending position lists to visit candidates in list order
+        while (i < ssidCount || j < bssidCount) {
+            final int position;
+            if (j >= bssidCount || (i < ssidCount && bySsid.get(i) <= byBssid.get(j))) {
+                position = bySsid.get(i++);
+                if (j < bssidCount && byBssid.get(j) == position) {
+                    j++;
+                }
+            } else {
+                position = byBssid.get(j++);
+            }
+            final WifiConfiguration config = mConfigurations.get(position);
+            if (WifiSecurity.isCompatible(security, WifiSecurity.of(config))) {
+                return config;
+            }
+        }
+        return null;
+    }
+
+    int addNetwork(@NonNull WifiConfiguration config) {
+        invalidate();
+        return mRadio.addNetwork(config);
+    }
+
+    int updateNetwork(@NonNull WifiConfiguration config) {
+        invalidate();
+        return mRadio.updateNetwork(config);
+    }
+
+    boolean removeNetwork(int networkId) {
+        invalidate();
+        return mRadio.removeNetwork(networkId);
+    }
+
+    /**
+     * Forgets the cached list, the next lookup fetches it again.
+     */
+    void invalidate() {
+        mLoaded = false;
+        mConfigurations = null;
+        mById.clear();
+        mBySsid.clear();
+        mByBssid.clear();
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        final List<WifiConfiguration> configurations = mRadio.getConfiguredNetworks();
+        if (configurations == null) {
+            return;
+        }
+        final List<WifiConfiguration> copy = new ArrayList<>(configurations.size());
+        for (final WifiConfiguration config : configurations) {
+            if (config == null) {
+                continue;
+            }
+            final int position = copy.size();
+            copy.add(config);
+            mById.put(config.networkId, config);
+            index(mBySsid, config.SSID, position);
+            index(mByBssid, config.BSSID, position);
+        }
+        mConfigurations = Collections.unmodifiableList(copy);
+    }
+
+    private static void index(@NonNull Map<String, List<Integer>> index, @Nullable String key, int position) {
+        if (key == null) {
+            return;
+        }
+        List<Integer> positions = index.get(key);
+        if (positions == null) {
+            positions = new ArrayList<>(1);
+            index.put(key, positions);
+        }
+        positions.add(position);
+    }
+}
@@ -0,0 +1,399 @@
+package com.androidconnect.wifiutils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.wifiConnect.ConnectionScanResultsListener;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener;
+import com.androidconnect.wifiutils.wifiConnect.NetworkBinding;
+import com.androidconnect.wifiutils.wifiScan.ScanResultsListener;
+import com.androidconnect.wifiutils.wifiState.WifiStateListener;
+import com.androidconnect.wifiutils.wifiWps.ConnectionWpsListener;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable description of one piece of work for the {@link WifiEngine}: enabling wifi, scanning,
+ * connecting to a network or any combination of these.
+ * <p>
+ * Requests are built with {@link Builder} and never change afterwards, so they can be handed
+ * to the engine from any thread and submitted any number of times.
+ */
+public final class ConnectRequest {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    @NonNull
+    private static final AtomicLong sNextId = new AtomicLong();
+
+    @NonNull
+    private final String mId;
+    @Nullable
+    private final String mSsid;
+    @Nullable
+    private final String mBssid;
+    @Nullable
+    private final String mPassword;
+    @Nullable
+    private final TypeEnum mType;
+    private final boolean mPatternMatch;
+    private final long mTimeoutMillis;
+    private final long mWpsTimeoutMillis;
+    private final long mMaxScanAgeMillis;
+    private final long mFailoverDeadlineMillis;
+    @Nullable
+    private final ScanResultsListener mScanResultsListener;
+    @Nullable
+    private final ConnectionScanResultsListener mConnectionScanResultsListener;
+    @Nullable
+    private final ConnectionSuccessListener mConnectionSuccessListener;
+    @Nullable
+    private final WifiStateListener mWifiStateListener;
+    @Nullable
+    private final ConnectionWpsListener mConnectionWpsListener;
+    @Nullable
+    private final Executor mCallbackExecutor;
+    @NonNull
+    private final NetworkBinding mNetworkBinding;
+
+    private ConnectRequest(@NonNull Builder builder) {
+        mId = builder.mId != null ? builder.mId : "request-" + sNextId.incrementAndGet();
+        mSsid = builder.mSsid;
+        mBssid = builder.mBssid;
+        mPassword = builder.mPassword;
+        mType = builder.mType;
+        mPatternMatch = builder.mPatternMatch;
+        mTimeoutMillis = builder.mTimeoutMillis;
+        mWpsTimeoutMillis = builder.mWpsTimeoutMillis;
+        mMaxScanAgeMillis = builder.mMaxScanAgeMillis;
+        mFailoverDeadlineMillis = builder.mFailoverDeadlineMillis;
+        mScanResultsListener = builder.mScanResultsListener;
+        mConnectionScanResultsListener = builder.mConnectionScanResultsListener;
+        mConnectionSuccessListener = builder.mConnectionSuccessListener;
+        mWifiStateListener = builder.mWifiStateListener;
+        mConnectionWpsListener = builder.mConnectionWpsListener;
+        mCallbackExecutor = builder.mCallbackExecutor;
+        mNetworkBinding = builder.mNetworkBinding;
+    }
+
+    /**
+     * @return the id the network this request connects to is held under on Android 10 and up,
+     * see {@link com.androidconnect.wifiutils.wifiConnect.NetworkRequestRegistry}
+     */
+    @NonNull
+    public String getId() {
+        return mId;
+    }
+
+    @Nullable
+    public String getSsid() {
+        return mSsid;
+    }
+
+    @Nullable
+    public String getBssid() {
+        return mBssid;
+    }
+
+    @Nullable
+    public String getPassword() {
+        return mPassword;
+    }
+
+    @Nullable
+    public TypeEnum getType() {
+        return mType;
+    }
+
+    public boolean isPatternMatch() {
+        return mPatternMatch;
+    }
+
+    public long getTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    public long getWpsTimeoutMillis() {
+        return mWpsTimeoutMillis;
+    }
+
+    public long getMaxScanAgeMillis() {
+        return mMaxScanAgeMillis;
+    }
+
+    /**
+     * @return how long all connection attempts together may take when failing over, 0 if failover is off.
+     */
+    public long getFailoverDeadlineMillis() {
+        return mFailoverDeadlineMillis;
+    }
+
+    @Nullable
+    public ScanResultsListener getScanResultsListener() {
+        return mScanResultsListener;
+    }
+
+    @Nullable
+    public ConnectionScanResultsListener getConnectionScanResultsListener() {
+        return mConnectionScanResultsListener;
+    }
+
+    @Nullable
+    public ConnectionSuccessListener getConnectionSuccessListener() {
+        return mConnectionSuccessListener;
+    }
+
+    @Nullable
+    public WifiStateListener getWifiStateListener() {
+        return mWifiStateListener;
+    }
+
+    @Nullable
+    public ConnectionWpsListener getConnectionWpsListener() {
+        return mConnectionWpsListener;
+    }
+
+    /**
+     * @return where listeners are called, null for the main thread.
+     */
+    @Nullable
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    @NonNull
+    public NetworkBinding getNetworkBinding() {
+        return mNetworkBinding;
+    }
+
+    /**
+     * @return true if this request needs scan results, either to report them or to find the network to connect to.
+     */
+    public boolean needsScan() {
+        return mScanResultsListener != null || mPassword != null;
+    }
+
+    /**
+     * @return true if this request connects to a network once scan results are in.
+     */
+    public boolean isConnect() {
+        return mPassword != null;
+    }
+
+    /**
+     * @return a builder holding everything this request does, to derive a new request from it.
+     */
+    @NonNull
+    public Builder newBuilder() {
+        final Builder builder = new Builder();
+        builder.mId = mId;
+        builder.mSsid = mSsid;
+        builder.mBssid = mBssid;
+        builder.mPassword = mPassword;
+        builder.mType = mType;
+        builder.mPatternMatch = mPatternMatch;
+        builder.mTimeoutMillis = mTimeoutMillis;
+        builder.mWpsTimeoutMillis = mWpsTimeoutMillis;
+        builder.mMaxScanAgeMillis = mMaxScanAgeMillis;
+        builder.mFailoverDeadlineMillis = mFailoverDeadlineMillis;
+        builder.mScanResultsListener = mScanResultsListener;
+        builder.mConnectionScanResultsListener = mConnectionScanResultsListener;
+        builder.mConnectionSuccessListener = mConnectionSuccessListener;
+        builder.mWifiStateListener = mWifiStateListener;
+        builder.mConnectionWpsListener = mConnectionWpsListener;
+        builder.mCallbackExecutor = mCallbackExecutor;
+        builder.mNetworkBinding = mNetworkBinding;
+        return builder;
+    }
+
+    /**
+     * Two requests may share one connection attempt if they connect to the very same network the very same way.
+     * Requests picking their network through a {@link ConnectionScanResultsListener} or connecting
+     * with WPS never do, since their outcome depends on the caller.
+     */
+    boolean canCoalesceWith(@NonNull ConnectRequest other) {
+        return isCoalescable() && other.isCoalescable()
+                && mSsid.equals(other.mSsid)
+                && Objects.equals(mBssid, other.mBssid)
+                && mPassword.equals(other.mPassword)
+                && mType == other.mType
+                && mPatternMatch == other.mPatternMatch
+                && mFailoverDeadlineMillis == other.mFailoverDeadlineMillis
+                && mNetworkBinding == other.mNetworkBinding;
+    }
+
+    private boolean isCoalescable() {
+        return mSsid != null && mPassword != null
+                && mConnectionScanResultsListener == null && mConnectionWpsListener == null;
+    }
+
+    public static final class Builder {
+        @Nullable
+        private String mId;
+        @Nullable
+        private String mSsid;
+        @Nullable
+        private String mBssid;
+        @Nullable
+        private String mPassword;
+        @Nullable
+        private TypeEnum mType;
+        private boolean mPatternMatch;
+        private long mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        private long mWpsTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        private long mMaxScanAgeMillis;
+        private long mFailoverDeadlineMillis;
+        @Nullable
+        private ScanResultsListener mScanResultsListener;
+        @Nullable
+        private ConnectionScanResultsListener mConnectionScanResultsListener;
+        @Nullable
+        private ConnectionSuccessListener mConnectionSuccessListener;
+        @Nullable
+        private WifiStateListener mWifiStateListener;
+        @Nullable
+        private ConnectionWpsListener mConnectionWpsListener;
+        @Nullable
+        private Executor mCallbackExecutor;
+        @NonNull
+        private NetworkBinding mNetworkBinding = NetworkBinding.PROCESS;
+
+        /**
+         * Names the request, so that the network it connects to on Android 10 and up can be looked up and
+         * released on its own, see {@link WifiEngine#release(String)}. Requests get a unique id otherwise.
+         * Connecting again under an id still holding a network releases that network first.
+         */
+        @NonNull
+        public Builder setId(@Nullable String id) {
+            mId = id;
+            return this;
+        }
+
+        @NonNull
+        public Builder setSsid(@Nullable String ssid) {
+            mSsid = ssid;
+            return this;
+        }
+
+        @NonNull
+        public Builder setBssid(@Nullable String bssid) {
+            mBssid = bssid;
+            return this;
+        }
+
+        /**
+         * A request without password only scans. An empty password connects to an open network.
+         */
+        @NonNull
+        public Builder setPassword(@Nullable String password) {
+            mPassword = password;
+            return this;
+        }
+
+        /**
+         * Security of a hidden network, which can't be told from scan results.
+         */
+        @NonNull
+        public Builder setType(@Nullable TypeEnum type) {
+            mType = type;
+            return this;
+        }
+
+        /**
+         * Treats the SSID as a prefix, connecting to the strongest network whose SSID starts with it.
+         */
+        @NonNull
+        public Builder setPatternMatch(boolean patternMatch) {
+            mPatternMatch = patternMatch;
+            return this;
+        }
+
+        @NonNull
+        public Builder setTimeout(long timeoutMillis) {
+            mTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        @NonNull
+        public Builder setWpsTimeout(long timeoutMillis) {
+            mWpsTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * @see WifiConnectorBuilder#allowCachedScan(long)
+         */
+        @NonNull
+        public Builder setMaxScanAge(long maxAgeMillis) {
+            mMaxScanAgeMillis = maxAgeMillis;
+            return this;
+        }
+
+        /**
+         * @see WifiConnectorBuilder.WifiSuccessListener#failover(long)
+         */
+        @NonNull
+        public Builder setFailover(long deadlineMillis) {
+            mFailoverDeadlineMillis = deadlineMillis;
+            return this;
+        }
+
+        @NonNull
+        public Builder setScanResultsListener(@Nullable ScanResultsListener listener) {
+            mScanResultsListener = listener;
+            return this;
+        }
+
+        @NonNull
+        public Builder setConnectionScanResultsListener(@Nullable ConnectionScanResultsListener listener) {
+            mConnectionScanResultsListener = listener;
+            return this;
+        }
+
+        @NonNull
+        public Builder setConnectionSuccessListener(@Nullable ConnectionSuccessListener listener) {
+            mConnectionSuccessListener = listener;
+            return this;
+        }
+
+        @NonNull
+        public Builder setWifiStateListener(@Nullable WifiStateListener listener) {
+            mWifiStateListener = listener;
+            return this;
+        }
+
+        @NonNull
+        public Builder setConnectionWpsListener(@Nullable ConnectionWpsListener listener) {
+            mConnectionWpsListener = listener;
+            return this;
+        }
+
+        /**
+         * Calls the listeners of this request on the given executor instead of the main thread. The
+         * {@link ConnectionScanResultsListener} is the exception, the network it picks is needed right away
+         * so it is called on the thread the engine runs on.
+         *
+         * @param executor where listeners are called, null for the main thread
+         */
+        @NonNull
+        public Builder setCallbackExecutor(@Nullable Executor executor) {
+            mCallbackExecutor = executor;
+            return this;
+        }
+
+        /**
+         * How the app reaches the network on Android 10 and up, {@link NetworkBinding#PROCESS} by default.
+         */
+        @NonNull
+        public Builder setNetworkBinding(@NonNull NetworkBinding binding) {
+            mNetworkBinding = binding;
+            return this;
+        }
+
+        @NonNull
+        public ConnectRequest build() {
+            return new ConnectRequest(this);
+        }
+    }
+}
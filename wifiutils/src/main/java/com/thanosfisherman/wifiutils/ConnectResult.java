@@ -0,0 +1,57 @@
+package com.androidconnect.wifiutils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
+
+/**
+ * Outcome of a connection request made through {@link WifiFutures}.
+ */
+public final class ConnectResult {
+    @NonNull
+    private final ConnectRequest mRequest;
+    @Nullable
+    private final ConnectionErrorCode mErrorCode;
+    private final long mElapsedMillis;
+
+    ConnectResult(@NonNull ConnectRequest request, @Nullable ConnectionErrorCode errorCode, long elapsedMillis) {
+        mRequest = request;
+        mErrorCode = errorCode;
+        mElapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return the request as it was handed over
+     */
+    @NonNull
+    public ConnectRequest getRequest() {
+        return mRequest;
+    }
+
+    public boolean isSuccess() {
+        return mErrorCode == null;
+    }
+
+    /**
+     * @return why connecting failed, null if it succeeded
+     */
+    @Nullable
+    public ConnectionErrorCode getErrorCode() {
+        return mErrorCode;
+    }
+
+    /**
+     * @return how long it took from submitting the request until the outcome was known, queueing included
+     */
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return (mErrorCode == null ? "Connected to " : "Failed with " + mErrorCode + " connecting to ")
+                + mRequest.getSsid() + " in " + mElapsedMillis + "ms";
+    }
+}
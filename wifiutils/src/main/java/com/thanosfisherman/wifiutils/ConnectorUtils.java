@@ -3,7 +3,6 @@ package com.androidconnect.wifiutils;
 import static android.Manifest.permission.ACCESS_FINE_LOCATION;
 import static android.Manifest.permission.ACCESS_WIFI_STATE;
 import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
-import static com.androidconnect.wifiutils.utils.Elvis.of;
 import static com.androidconnect.wifiutils.utils.SSIDUtils.convertToQuotedString;
 import static com.androidconnect.wifiutils.utils.VersionUtils.isAndroidQOrLater;
 import static com.androidconnect.wifiutils.utils.VersionUtils.isJellyBeanOrLater;
@@ -31,21 +30,27 @@ import android.net.wifi.WifiNetworkSpecifier;
 import android.net.wifi.WpsInfo;
 import android.os.Build;
 import android.os.PatternMatcher;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.annotation.RequiresPermission;
+import androidx.annotation.VisibleForTesting;
 
 import com.androidconnect.wifiutils.utils.SSIDUtils;
 import com.androidconnect.wifiutils.utils.VersionUtil;
 import com.androidconnect.wifiutils.utils.VersionUtils;
 import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
-import com.androidconnect.wifiutils.wifiConnect.DisconnectCallbackHolder;
+import com.androidconnect.wifiutils.wifiConnect.NetworkBinding;
+import com.androidconnect.wifiutils.wifiConnect.NetworkRequestRegistry;
 import com.androidconnect.wifiutils.wifiConnect.WifiConnectionCallback;
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshot;
 import com.androidconnect.wifiutils.wifiWps.ConnectionWpsListener;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -55,25 +60,36 @@ public final class ConnectorUtils {
     private static final int MAX_PRIORITY = 99999;
 
     public static boolean isAlreadyConnected(@Nullable WifiManager wifiManager, @Nullable String bssid) {
-        if (bssid != null && wifiManager != null) {
-            if (wifiManager.getConnectionInfo() != null && wifiManager.getConnectionInfo().getBSSID() != null &&
-                    wifiManager.getConnectionInfo().getIpAddress() != 0 &&
-                    Objects.equals(bssid, wifiManager.getConnectionInfo().getBSSID())) {
-                wifiLog("Already connected to: " + wifiManager.getConnectionInfo().getSSID() + "  BSSID: " + wifiManager.getConnectionInfo().getBSSID());
-                return true;
-            }
+        return bssid != null && wifiManager != null && isAlreadyConnected(wifiManager.getConnectionInfo(), bssid);
+    }
+
+    /**
+     * Same as {@link #isAlreadyConnected(WifiManager, String)} against an already fetched {@link WifiInfo},
+     * every {@link WifiManager#getConnectionInfo()} being a binder call.
+     */
+    public static boolean isAlreadyConnected(@Nullable WifiInfo wifiInfo, @Nullable String bssid) {
+        if (bssid != null && wifiInfo != null && wifiInfo.getBSSID() != null &&
+                wifiInfo.getIpAddress() != 0 &&
+                Objects.equals(bssid, wifiInfo.getBSSID())) {
+            wifiLog(Log.VERBOSE, "Already connected to: %s  BSSID: %s", wifiInfo.getSSID(), wifiInfo.getBSSID());
+            return true;
         }
         return false;
     }
 
     public static boolean isAlreadyConnected2(@Nullable WifiManager wifiManager, @Nullable String ssid) {
-        if (ssid != null && wifiManager != null) {
-            if (wifiManager.getConnectionInfo() != null && wifiManager.getConnectionInfo().getSSID() != null &&
-                    wifiManager.getConnectionInfo().getIpAddress() != 0 &&
-                    Objects.equals(ssid, wifiManager.getConnectionInfo().getSSID())) {
-                wifiLog("Already connected to: " + wifiManager.getConnectionInfo().getSSID() + "  BSSID: " + wifiManager.getConnectionInfo().getBSSID());
-                return true;
-            }
+        return ssid != null && wifiManager != null && isAlreadyConnected2(wifiManager.getConnectionInfo(), ssid);
+    }
+
+    /**
+     * Same as {@link #isAlreadyConnected2(WifiManager, String)} against an already fetched {@link WifiInfo}.
+     */
+    public static boolean isAlreadyConnected2(@Nullable WifiInfo wifiInfo, @Nullable String ssid) {
+        if (ssid != null && wifiInfo != null && wifiInfo.getSSID() != null &&
+                wifiInfo.getIpAddress() != 0 &&
+                Objects.equals(ssid, wifiInfo.getSSID())) {
+            wifiLog(Log.VERBOSE, "Already connected to: %s  BSSID: %s", wifiInfo.getSSID(), wifiInfo.getBSSID());
+            return true;
         }
         return false;
     }
@@ -99,7 +115,8 @@ public final class ConnectorUtils {
         if (isLollipopOrLater()) {
             return isConnectedToNetworkLollipop(connectivityManager);
         }
-        return of(connectivityManager).next(manager -> manager.getNetworkInfo(ConnectivityManager.TYPE_WIFI)).next(NetworkInfo::getState).next(state -> state == NetworkInfo.State.CONNECTED).getBoolean();
+        final NetworkInfo networkInfo = connectivityManager == null ? null : connectivityManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+        return networkInfo != null && networkInfo.getState() == NetworkInfo.State.CONNECTED;
     }
 
     public static boolean isAlreadyConnected(@Nullable WifiManager wifiManager, @Nullable ConnectivityManager connectivityManager, @Nullable String ssid) {
@@ -120,10 +137,52 @@ public final class ConnectorUtils {
         return result;
     }
 
+    static boolean isAlreadyConnected(@NonNull WifiRadio radio, @Nullable String bssid) {
+        return bssid != null && isAlreadyConnected(radio.getConnectionInfo(), bssid);
+    }
+
+    /**
+     * Same as {@link #isAlreadyConnected(ConnectivityManager)} through a {@link WifiRadio}.
+     */
+    static boolean isWifiConnected(@NonNull WifiRadio radio) {
+        if (!radio.isConnectivityAvailable()) {
+            return false;
+        }
+        if (isLollipopOrLater()) {
+            boolean isWifiConn = false;
+            for (Network network : radio.getAllNetworks()) {
+                final NetworkInfo networkInfo = radio.getNetworkInfo(network);
+                if (networkInfo != null && ConnectivityManager.TYPE_WIFI == networkInfo.getType()) {
+                    isWifiConn |= networkInfo.isConnected();
+                }
+            }
+            return isWifiConn;
+        }
+        final NetworkInfo networkInfo = radio.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+        return networkInfo != null && networkInfo.getState() == NetworkInfo.State.CONNECTED;
+    }
+
+    /**
+     * Same as {@link #isAlreadyConnected(WifiManager, ConnectivityManager, String)} through a {@link WifiRadio}.
+     */
+    static boolean isWifiConnected(@NonNull WifiRadio radio, @Nullable String ssid) {
+        boolean result = isWifiConnected(radio);
+        if (result && ssid != null) {
+            String quotedSsid = ssid;
+            if (VersionUtils.isJellyBeanOrLater()) {
+                quotedSsid = SSIDUtils.convertToQuotedString(ssid);
+            }
+            final WifiInfo wifiInfo = radio.getConnectionInfo();
+            final String tempSSID = wifiInfo == null ? null : wifiInfo.getSSID();
+            result = tempSSID != null && tempSSID.equals(quotedSsid);
+        }
+        return result;
+    }
+
     @SuppressWarnings("UnusedReturnValue")
-    private static boolean checkForExcessOpenNetworkAndSave(@NonNull final ContentResolver resolver, @NonNull final WifiManager wifiMgr) {
-        final List<WifiConfiguration> configurations = wifiMgr.getConfiguredNetworks();
-        sortByPriority(configurations);
+    private static boolean checkForExcessOpenNetworkAndSave(@NonNull final ContentResolver resolver, @NonNull final ConfiguredNetworks configuredNetworks) {
+        final WifiRadio radio = configuredNetworks.getRadio();
+        final List<WifiConfiguration> configurations = sortedByPriority(configuredNetworks.getAll());
 
         boolean modified = false;
         int tempCount = 0;
@@ -133,23 +192,23 @@ public final class ConnectorUtils {
 
         for (int i = configurations.size() - 1; i >= 0; i--) {
             final WifiConfiguration config = configurations.get(i);
-            if (Objects.equals(ConfigSecurities.SECURITY_NONE, ConfigSecurities.getSecurity(config))) {
+            if (WifiSecurity.isOpen(WifiSecurity.of(config))) {
                 tempCount++;
                 if (tempCount >= numOpenNetworksKept) {
                     modified = true;
-                    wifiMgr.removeNetwork(config.networkId);
+                    configuredNetworks.removeNetwork(config.networkId);
                 }
             }
         }
-        return !modified || wifiMgr.saveConfiguration();
+        return !modified || radio.saveConfiguration();
 
     }
 
-    private static int getMaxPriority(@Nullable final WifiManager wifiManager) {
-        if (wifiManager == null) {
+    private static int getMaxPriority(@NonNull final ConfiguredNetworks configuredNetworks) {
+        final List<WifiConfiguration> configurations = configuredNetworks.getAll();
+        if (configurations == null) {
             return 0;
         }
-        final List<WifiConfiguration> configurations = wifiManager.getConfiguredNetworks();
         int pri = 0;
         for (final WifiConfiguration config : configurations) {
             if (config.priority > pri) {
@@ -159,25 +218,25 @@ public final class ConnectorUtils {
         return pri;
     }
 
-    private static int shiftPriorityAndSave(@Nullable final WifiManager wifiMgr) {
-        if (wifiMgr == null) {
-            return 0;
-        }
-        final List<WifiConfiguration> configurations = wifiMgr.getConfiguredNetworks();
-        sortByPriority(configurations);
+    /**
+     * Renumbers priorities from 0 keeping their order. Networks already at their new priority aren't updated
+     * and nothing is saved, that's up to the caller.
+     */
+    private static int shiftPriorities(@NonNull final ConfiguredNetworks configuredNetworks) {
+        final List<WifiConfiguration> configurations = sortedByPriority(configuredNetworks.getAll());
+        final ConfigBatch batch = new ConfigBatch(configuredNetworks);
         final int size = configurations.size();
         for (int i = 0; i < size; i++) {
-            final WifiConfiguration config = configurations.get(i);
-            config.priority = i;
-            wifiMgr.updateNetwork(config);
+            batch.setPriority(configurations.get(i), i);
         }
-        wifiMgr.saveConfiguration();
+        batch.apply();
         return size;
     }
 
 
+    @VisibleForTesting
     @Nullable
-    private static String trimQuotes(@Nullable String str) {
+    static String trimQuotes(@Nullable String str) {
         if (str != null && !str.isEmpty()) {
             return str.replaceAll("^\"*", "").replaceAll("\"*$", "");
         }
@@ -203,8 +262,17 @@ public final class ConnectorUtils {
     }
 
 
-    private static void sortByPriority(@NonNull final List<WifiConfiguration> configurations) {
-        Collections.sort(configurations, (o1, o2) -> o1.priority - o2.priority);
+    /**
+     * @return a sorted copy, the cached list of saved networks is read-only.
+     */
+    @NonNull
+    private static List<WifiConfiguration> sortedByPriority(@Nullable final List<WifiConfiguration> configurations) {
+        if (configurations == null) {
+            return new ArrayList<>();
+        }
+        final List<WifiConfiguration> sorted = new ArrayList<>(configurations);
+        Collections.sort(sorted, (o1, o2) -> o1.priority - o2.priority);
+        return sorted;
     }
 
     @SuppressWarnings("unused")
@@ -218,80 +286,78 @@ public final class ConnectorUtils {
         }
     }
 
-    static void registerReceiver(@NonNull final Context context, @Nullable final BroadcastReceiver receiver, @NonNull final IntentFilter filter) {
-        if (receiver != null) {
-            try {
-                context.registerReceiver(receiver, filter);
-            } catch (Exception ignored) {
-                ignored.printStackTrace();
-            }
-        }
+    static boolean registerReceiver(@NonNull final WifiRadio radio, @Nullable final BroadcastReceiver receiver, @NonNull final IntentFilter filter) {
+        return receiver == null || radio.registerReceiver(receiver, filter);
     }
 
-    static void unregisterReceiver(@NonNull final Context context, @Nullable final BroadcastReceiver receiver) {
-        if (receiver != null) {
-            try {
-                context.unregisterReceiver(receiver);
-            } catch (IllegalArgumentException ignored) {
-            }
-        }
+    static void unregisterReceiver(@NonNull final WifiRadio radio, @Nullable final BroadcastReceiver receiver) {
+        radio.unregisterReceiver(receiver);
     }
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    static boolean connectToWifi(@NonNull final Context context, @Nullable final WifiManager wifiManager, @Nullable final ConnectivityManager connectivityManager, @NonNull WeakHandler handler, @NonNull final ScanResult scanResult, @NonNull final String password, @NonNull WifiConnectionCallback wifiConnectionCallback, boolean patternMatch, @Nullable String ssid) {
-        if (wifiManager == null || connectivityManager == null) {
+    static boolean connectToWifi(@NonNull final Context context, @NonNull final WifiRadio radio, @NonNull WeakHandler handler, @NonNull final ScanResult scanResult, int security, @NonNull final String password, @NonNull WifiConnectionCallback wifiConnectionCallback, boolean patternMatch, @Nullable String ssid,
+                                 @NonNull String requestId, @NonNull NetworkBinding binding) {
+        if (!radio.isConnectivityAvailable()) {
             return false;
         }
 
+        final long startedAt = SystemClock.elapsedRealtimeNanos();
+        final boolean configured;
         if (isAndroidQOrLater()) {
-            return connectAndroidQ(wifiManager, connectivityManager, handler, wifiConnectionCallback, scanResult, password, patternMatch, ssid);
+            configured = connectAndroidQ(radio, handler, wifiConnectionCallback, scanResult, security, password, patternMatch, ssid, requestId, binding);
+        } else {
+            configured = connectPreAndroidQ(context, radio, scanResult, security, password);
         }
-
-        return connectPreAndroidQ(context, wifiManager, scanResult, password);
+        WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.CONFIGURE, startedAt);
+        return configured;
     }
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
     static boolean connectToWifiHidden(@NonNull final Context context,
-                                       @Nullable final WifiManager wifiManager,
-                                       @Nullable final ConnectivityManager connectivityManager,
+                                       @NonNull final WifiRadio radio,
                                        @NonNull WeakHandler handler,
 //                                       @NonNull final ScanResult scanResult,
                                        @NonNull final String ssid,
                                        @Nullable final String type,
                                        @NonNull final String password,
-                                       @NonNull WifiConnectionCallback wifiConnectionCallback) {
-        if (wifiManager == null || connectivityManager == null || type == null) {
+                                       @NonNull WifiConnectionCallback wifiConnectionCallback,
+                                       @NonNull String requestId,
+                                       @NonNull NetworkBinding binding) {
+        if (!radio.isConnectivityAvailable() || type == null) {
             return false;
         }
 
+        final long startedAt = SystemClock.elapsedRealtimeNanos();
+        final boolean configured;
         if (isAndroidQOrLater()) {
-            return connectAndroidQHidden(wifiManager, connectivityManager, handler, wifiConnectionCallback, ssid, type, password);
+            configured = connectAndroidQHidden(radio, handler, wifiConnectionCallback, ssid, type, password, requestId, binding);
+        } else {
+            configured = connectPreAndroidQHidden(context, radio, ssid, type, password);
         }
-
-        return connectPreAndroidQHidden(context, wifiManager, ssid, type, password);
+        WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.CONFIGURE, startedAt);
+        return configured;
     }
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    private static boolean connectPreAndroidQ(@NonNull final Context context, @Nullable final WifiManager wifiManager, @NonNull final ScanResult scanResult, @NonNull final String password) {
-        if (wifiManager == null) {
+    private static boolean connectPreAndroidQ(@NonNull final Context context, @NonNull final WifiRadio radio, @NonNull final ScanResult scanResult, int security, @NonNull final String password) {
+        if (!isSupportedPreAndroidQ(security)) {
             return false;
         }
 
-        WifiConfiguration config = ConfigSecurities.getWifiConfiguration(wifiManager, scanResult);
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(radio);
+        WifiConfiguration config = ConfigSecurities.getWifiConfiguration(configuredNetworks, scanResult, security);
         if (config != null && password.isEmpty()) {
             wifiLog("PASSWORD WAS EMPTY. TRYING TO CONNECT TO EXISTING NETWORK CONFIGURATION");
-            return connectToConfiguredNetwork(wifiManager, config, true);
+            return connectToConfiguredNetwork(configuredNetworks, config, true);
         }
 
-        if (!cleanPreviousConfiguration(wifiManager, config)) {
+        if (!cleanPreviousConfiguration(configuredNetworks, config)) {
             wifiLog("COULDN'T REMOVE PREVIOUS CONFIG, CONNECTING TO EXISTING ONE");
-            return connectToConfiguredNetwork(wifiManager, config, true);
+            return connectToConfiguredNetwork(configuredNetworks, config, true);
         }
 
-        final String security = ConfigSecurities.getSecurity(scanResult);
-
-        if (Objects.equals(ConfigSecurities.SECURITY_NONE, security)) {
-            checkForExcessOpenNetworkAndSave(context.getContentResolver(), wifiManager);
+        if (WifiSecurity.isOpen(security)) {
+            checkForExcessOpenNetworkAndSave(context.getContentResolver(), configuredNetworks);
         }
 
         config = new WifiConfiguration();
@@ -299,80 +365,95 @@ public final class ConnectorUtils {
         config.BSSID = scanResult.BSSID;
         ConfigSecurities.setupSecurity(config, security, password);
 
-        int id = wifiManager.addNetwork(config);
-        wifiLog("Network ID: " + id);
+        int id = configuredNetworks.addNetwork(config);
+        wifiLog(Log.VERBOSE, "Network ID: %d", id);
         if (id == -1) {
             return false;
         }
 
-        if (!wifiManager.saveConfiguration()) {
+        if (!radio.saveConfiguration()) {
             wifiLog("Couldn't save wifi config");
             return false;
         }
         // We have to retrieve the WifiConfiguration after save
-        config = ConfigSecurities.getWifiConfiguration(wifiManager, config);
+        config = ConfigSecurities.getWifiConfiguration(configuredNetworks, config);
         if (config == null) {
             wifiLog("Error getting wifi config after save. (config == null)");
             return false;
         }
 
-        return connectToConfiguredNetwork(wifiManager, config, true);
+        return connectToConfiguredNetwork(configuredNetworks, config, true);
     }
 
 
-    @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    private static boolean connectPreAndroidQHidden(@NonNull final Context context, @Nullable final WifiManager wifiManager, @NonNull final String ssid, @NonNull final String type, @NonNull final String password) {
-        if (wifiManager == null) {
+    /**
+     * WPA3 personal and enhanced open networks can only be configured through WifiNetworkSpecifier, from Android 10 on.
+     * Adding one as a WifiConfiguration would add a network without any security set up.
+     */
+    private static boolean isSupportedPreAndroidQ(int security) {
+        final int primary = WifiSecurity.primary(security);
+        if (primary == WifiSecurity.SAE || primary == WifiSecurity.OWE) {
+            wifiLog(Log.WARN, "Can't connect to %s networks before Android 10", WifiSecurity.toString(primary));
             return false;
         }
+        return true;
+    }
+
+    @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
+    private static boolean connectPreAndroidQHidden(@NonNull final Context context, @NonNull final WifiRadio radio, @NonNull final String ssid, @NonNull final String type, @NonNull final String password) {
 //
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(radio);
         WifiConfiguration config;
 
-        final String security = ConfigSecurities.getSecurity(type);
+        final int security = WifiSecurity.parse(type);
+        if (!isSupportedPreAndroidQ(security)) {
+            return false;
+        }
 
-        if (Objects.equals(ConfigSecurities.SECURITY_NONE, security)) {
-            checkForExcessOpenNetworkAndSave(context.getContentResolver(), wifiManager);
+        if (WifiSecurity.isOpen(security)) {
+            checkForExcessOpenNetworkAndSave(context.getContentResolver(), configuredNetworks);
         }
 
         config = new WifiConfiguration();
         config.SSID = convertToQuotedString(ssid);
         ConfigSecurities.setupSecurityHidden(config, security, password);
 
-        int id = wifiManager.addNetwork(config);
-        wifiLog("Hidden-Network ID: " + id);
+        int id = configuredNetworks.addNetwork(config);
+        wifiLog(Log.VERBOSE, "Hidden-Network ID: %d", id);
         if (id == -1) {
             return false;
         }
 
-        if (!wifiManager.saveConfiguration()) {
+        if (!radio.saveConfiguration()) {
             wifiLog("Couldn't save wifi config");
             return false;
         }
         // We have to retrieve the WifiConfiguration after save
-        config = ConfigSecurities.getWifiConfiguration(wifiManager, config);
+        config = ConfigSecurities.getWifiConfiguration(configuredNetworks, config);
         if (config == null) {
             wifiLog("Error getting wifi config after save. (config == null)");
             return false;
         }
 
-        return connectToConfiguredNetwork(wifiManager, config, true);
+        return connectToConfiguredNetwork(configuredNetworks, config, true);
     }
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    private static boolean connectToConfiguredNetwork(@Nullable WifiManager wifiManager, @Nullable WifiConfiguration config, boolean reassociate) {
-        if (config == null || wifiManager == null) {
+    private static boolean connectToConfiguredNetwork(@NonNull ConfiguredNetworks configuredNetworks, @Nullable WifiConfiguration config, boolean reassociate) {
+        if (config == null) {
             return false;
         }
+        final WifiRadio radio = configuredNetworks.getRadio();
 
         if (isMarshmallowOrLater()) {
-            return disableAllButOne(wifiManager, config) && (reassociate ? wifiManager.reassociate() : wifiManager.reconnect());
+            return disableAllButOne(configuredNetworks, config) && (reassociate ? radio.reassociate() : radio.reconnect());
         }
 
         // Make it the highest priority.
-        int newPri = getMaxPriority(wifiManager) + 1;
+        int newPri = getMaxPriority(configuredNetworks) + 1;
         if (newPri > MAX_PRIORITY) {
-            newPri = shiftPriorityAndSave(wifiManager);
-            config = ConfigSecurities.getWifiConfiguration(wifiManager, config);
+            newPri = shiftPriorities(configuredNetworks);
+            config = ConfigSecurities.getWifiConfiguration(configuredNetworks, config);
             if (config == null) {
                 return false;
             }
@@ -380,31 +461,29 @@ public final class ConnectorUtils {
 
         // Set highest priority to this configured network
         config.priority = newPri;
-        int networkId = wifiManager.updateNetwork(config);
+        int networkId = configuredNetworks.updateNetwork(config);
         if (networkId == -1) {
             return false;
         }
 
         // Do not disable others
-        if (!wifiManager.enableNetwork(networkId, false)) {
+        if (!radio.enableNetwork(networkId, false)) {
             return false;
         }
 
-        if (!wifiManager.saveConfiguration()) {
+        // Saves the shifted priorities too
+        if (!radio.saveConfiguration()) {
             return false;
         }
 
         // We have to retrieve the WifiConfiguration after save.
-        config = ConfigSecurities.getWifiConfiguration(wifiManager, config);
-        return config != null && disableAllButOne(wifiManager, config) && (reassociate ? wifiManager.reassociate() : wifiManager.reconnect());
+        config = ConfigSecurities.getWifiConfiguration(configuredNetworks, config);
+        return config != null && disableAllButOne(configuredNetworks, config) && (reassociate ? radio.reassociate() : radio.reconnect());
     }
 
     @RequiresApi(Build.VERSION_CODES.Q)
-    private static boolean connectAndroidQ(@Nullable WifiManager wifiManager, @Nullable ConnectivityManager connectivityManager, @NonNull WeakHandler handler, @NonNull WifiConnectionCallback wifiConnectionCallback, @NonNull ScanResult scanResult, @NonNull String password, boolean patternMatch, @Nullable String ssid) {
-        if (connectivityManager == null) {
-            return false;
-        }
-
+    private static boolean connectAndroidQ(@NonNull WifiRadio radio, @NonNull WeakHandler handler, @NonNull WifiConnectionCallback wifiConnectionCallback, @NonNull ScanResult scanResult, int security, @NonNull String password, boolean patternMatch, @Nullable String ssid,
+                                           @NonNull String requestId, @NonNull NetworkBinding binding) {
         WifiNetworkSpecifier.Builder wifiNetworkSpecifierBuilder = new WifiNetworkSpecifier.Builder();
 
         if (patternMatch) {
@@ -415,8 +494,6 @@ public final class ConnectorUtils {
                     .setBssid(MacAddress.fromString(scanResult.BSSID));
         }
 
-        final String security = ConfigSecurities.getSecurity(scanResult);
-
         ConfigSecurities.setupWifiNetworkSpecifierSecurities(wifiNetworkSpecifierBuilder, security, password);
 
         final NetworkRequest networkRequest = new NetworkRequest.Builder()
@@ -427,29 +504,29 @@ public final class ConnectorUtils {
                 .addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_RESTRICTED)
                 .build();
 
-        // cleanup previous connections just in case
-        DisconnectCallbackHolder.getInstance().disconnect();
-
+        final long requestedAt = SystemClock.elapsedRealtimeNanos();
         final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
             @Override
             public void onAvailable(@NonNull Network network) {
                 super.onAvailable(network);
+                WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.NETWORK_AVAILABLE, requestedAt);
+                WifiTrace.getInstance().record(WifiTrace.Type.NETWORK_AVAILABLE, scanResult.BSSID);
 
                 wifiLog("AndroidQ+ connected to wifi ");
 
                 // TODO: should this actually be in the success listener on WifiUtils?
                 // We could pass the networkrequest maybe?
 
-                // bind so all api calls are performed over this new network
+                // bind so all api calls are performed over this new network, unless the request uses a socket factory
                 // if we don't bind, connection with the wifi network is immediately dropped
 
-                DisconnectCallbackHolder.getInstance().bindProcessToNetwork(network);
-                connectivityManager.setNetworkPreference(ConnectivityManager.DEFAULT_NETWORK_PREFERENCE);
+                NetworkRequestRegistry.getInstance().onAvailable(this, network);
+                radio.setNetworkPreference(ConnectivityManager.DEFAULT_NETWORK_PREFERENCE);
 
                 // On some Android 10 devices, connection is made and than immediately lost due to a firmware bug,
                 // read more here: https://github.com/ThanosFisherman/WifiUtils/issues/63.
                 handler.postDelayed(() -> {
-                    if (isAlreadyConnected(wifiManager, of(scanResult).next(scanResult1 -> scanResult1.BSSID).get())) {
+                    if (isAlreadyConnected(radio, scanResult.BSSID)) {
                         wifiConnectionCallback.successfulConnect();
                     } else {
                         wifiConnectionCallback.errorConnect(ConnectionErrorCode.ANDROID_10_IMMEDIATELY_DROPPED_CONNECTION);
@@ -469,36 +546,32 @@ public final class ConnectorUtils {
             @Override
             public void onLost(@NonNull Network network) {
                 super.onLost(network);
+                WifiTrace.getInstance().record(WifiTrace.Type.NETWORK_LOST, scanResult.BSSID);
 
                 wifiLog("onLost");
 
                 // cancel connecting if needed, this prevents 'request loops' on some oneplus/redmi phones
-                DisconnectCallbackHolder.getInstance().unbindProcessFromNetwork();
-                DisconnectCallbackHolder.getInstance().disconnect();
+                NetworkRequestRegistry.getInstance().onLost(this);
 
             }
         };
 
-        DisconnectCallbackHolder.getInstance().addNetworkCallback(networkCallback, connectivityManager);
-
         wifiLog("connecting with Android 10");
-        DisconnectCallbackHolder.getInstance().requestNetwork(networkRequest);
+        // Releases the previous network of this request, if any, networks of other requests are left alone
+        NetworkRequestRegistry.getInstance().request(requestId, scanResult.SSID, radio, networkRequest, networkCallback, binding);
 
         return true;
     }
 
     // FIXME: we should use WifiNetworkSuggestion api to connect WLAN on Android 10, I`ll fix it soon.
     @RequiresApi(Build.VERSION_CODES.Q)
-    private static boolean connectAndroidQHidden(@Nullable WifiManager wifiManager, @Nullable ConnectivityManager connectivityManager, @NonNull WeakHandler handler, @NonNull WifiConnectionCallback wifiConnectionCallback, @NonNull String ssid, @NonNull String type, String password) {
-        if (connectivityManager == null) {
-            return false;
-        }
-
+    private static boolean connectAndroidQHidden(@NonNull WifiRadio radio, @NonNull WeakHandler handler, @NonNull WifiConnectionCallback wifiConnectionCallback, @NonNull String ssid, @NonNull String type, String password,
+                                                 @NonNull String requestId, @NonNull NetworkBinding binding) {
         WifiNetworkSpecifier.Builder wifiNetworkSpecifierBuilder = new WifiNetworkSpecifier.Builder()
                 .setIsHiddenSsid(true)
                 .setSsid(ssid);
 
-        final String security = ConfigSecurities.getSecurity(type);
+        final int security = WifiSecurity.parse(type);
 
         ConfigSecurities.setupWifiNetworkSpecifierSecurities(wifiNetworkSpecifierBuilder, security, password);
 
@@ -510,27 +583,27 @@ public final class ConnectorUtils {
                 .setNetworkSpecifier(wifiNetworkSpecifierBuilder.build())
                 .build();
 
-//        // cleanup previous connections just in case
-        DisconnectCallbackHolder.getInstance().disconnect();
-
+        final long requestedAt = SystemClock.elapsedRealtimeNanos();
         final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
             @Override
             public void onAvailable(@NonNull Network network) {
                 super.onAvailable(network);
+                WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.NETWORK_AVAILABLE, requestedAt);
+                WifiTrace.getInstance().record(WifiTrace.Type.NETWORK_AVAILABLE, null);
                 wifiLog("AndroidQ+ connected to wifi ");
                 // TODO: should this actually be in the success listener on WifiUtils?
                 // We could pass the networkrequest maybe?
 
-                // bind so all api calls are performed over this new network
+                // bind so all api calls are performed over this new network, unless the request uses a socket factory
                 // if we don't bind, connection with the wifi network is immediately dropped
 
-                DisconnectCallbackHolder.getInstance().bindProcessToNetwork(network);
-                connectivityManager.setNetworkPreference(ConnectivityManager.DEFAULT_NETWORK_PREFERENCE);
+                NetworkRequestRegistry.getInstance().onAvailable(this, network);
+                radio.setNetworkPreference(ConnectivityManager.DEFAULT_NETWORK_PREFERENCE);
 
                 // On some Android 10 devices, connection is made and than immediately lost due to a firmware bug,
                 // read more here: https://github.com/ThanosFisherman/WifiUtils/issues/63.
                 handler.postDelayed(() -> {
-                    if (isAlreadyConnected(wifiManager, ssid)) {
+                    if (isAlreadyConnected(radio, ssid)) {
                         wifiConnectionCallback.successfulConnect();
                     } else {
                         wifiConnectionCallback.errorConnect(ConnectionErrorCode.ANDROID_10_IMMEDIATELY_DROPPED_CONNECTION);
@@ -550,12 +623,12 @@ public final class ConnectorUtils {
             @Override
             public void onLost(@NonNull Network network) {
                 super.onLost(network);
+                WifiTrace.getInstance().record(WifiTrace.Type.NETWORK_LOST, null);
 
                 wifiLog("onLost");
 
                 // cancel connecting if needed, this prevents 'request loops' on some oneplus/redmi phones
-                DisconnectCallbackHolder.getInstance().unbindProcessFromNetwork();
-                DisconnectCallbackHolder.getInstance().disconnect();
+                NetworkRequestRegistry.getInstance().onLost(this);
 
             }
 
@@ -566,68 +639,65 @@ public final class ConnectorUtils {
             }
         };
 
-        DisconnectCallbackHolder.getInstance().addNetworkCallback(networkCallback, connectivityManager);
-
         wifiLog("connecting with Android 10");
-        DisconnectCallbackHolder.getInstance().requestNetwork(networkRequest);
+        // Releases the previous network of this request, if any, networks of other requests are left alone
+        NetworkRequestRegistry.getInstance().request(requestId, ssid, radio, networkRequest, networkCallback, binding);
 
         return true;
     }
 
-    private static boolean disableAllButOne(@Nullable final WifiManager wifiManager, @Nullable final WifiConfiguration config) {
-        if (wifiManager == null) {
-            return false;
-        }
-        @Nullable final List<WifiConfiguration> configurations = wifiManager.getConfiguredNetworks();
+    @VisibleForTesting
+    static boolean disableAllButOne(@NonNull final ConfiguredNetworks configuredNetworks, @Nullable final WifiConfiguration config) {
+        final WifiRadio radio = configuredNetworks.getRadio();
+        @Nullable final List<WifiConfiguration> configurations = configuredNetworks.getAll();
         if (configurations == null || config == null || configurations.isEmpty()) {
             return false;
         }
-        boolean result = false;
-
+        final ConfigBatch batch = new ConfigBatch(configuredNetworks);
+        WifiConfiguration target = null;
         for (WifiConfiguration wifiConfig : configurations) {
-            if (wifiConfig == null) {
-                continue;
-            }
             if (wifiConfig.networkId == config.networkId) {
-                result = wifiManager.enableNetwork(wifiConfig.networkId, true);
+                target = wifiConfig;
             } else {
-                wifiManager.disableNetwork(wifiConfig.networkId);
+                batch.disable(wifiConfig);
             }
         }
-        wifiLog("disableAllButOne " + result);
+        batch.apply();
+        final boolean result = target != null && radio.enableNetwork(target.networkId, true);
+        wifiLog(Log.VERBOSE, "disableAllButOne %b", result);
         return result;
     }
 
 
     @SuppressWarnings("UnusedReturnValue")
-    private static boolean disableAllButOne(@Nullable final WifiManager wifiManager, @Nullable final ScanResult scanResult) {
-        if (wifiManager == null) {
-            return false;
-        }
-        @Nullable final List<WifiConfiguration> configurations = wifiManager.getConfiguredNetworks();
+    private static boolean disableAllButOne(@NonNull final ConfiguredNetworks configuredNetworks, @Nullable final ScanResult scanResult) {
+        final WifiRadio radio = configuredNetworks.getRadio();
+        @Nullable final List<WifiConfiguration> configurations = configuredNetworks.getAll();
         if (configurations == null || scanResult == null || configurations.isEmpty()) {
             return false;
         }
-        boolean result = false;
+        final ConfigBatch batch = new ConfigBatch(configuredNetworks);
+        WifiConfiguration target = null;
         for (WifiConfiguration wifiConfig : configurations) {
-            if (wifiConfig == null) {
-                continue;
-            }
             if (Objects.equals(scanResult.BSSID, wifiConfig.BSSID) && Objects.equals(scanResult.SSID, trimQuotes(wifiConfig.SSID))) {
-                result = wifiManager.enableNetwork(wifiConfig.networkId, true);
+                if (target != null) {
+                    batch.disable(target);
+                }
+                target = wifiConfig;
             } else {
-                wifiManager.disableNetwork(wifiConfig.networkId);
+                batch.disable(wifiConfig);
             }
         }
-        return result;
+        batch.apply();
+        return target != null && radio.enableNetwork(target.networkId, true);
     }
 
     public static boolean reEnableNetworkIfPossible(@Nullable final WifiManager wifiManager, @Nullable final ScanResult scanResult) {
         if (wifiManager == null) {
             return false;
         }
-        @Nullable final List<WifiConfiguration> configurations = wifiManager.getConfiguredNetworks();
-        if (configurations == null || scanResult == null || configurations.isEmpty()) {
+        final List<WifiConfiguration> configurations = wifiManager.getConfiguredNetworks();
+        if (scanResult == null || configurations == null) {
             return false;
         }
         boolean result = false;
@@ -636,26 +706,36 @@ public final class ConnectorUtils {
                 result = wifiManager.enableNetwork(wifiConfig.networkId, true);
                 break;
             }
-        wifiLog("reEnableNetworkIfPossible " + result);
+        wifiLog(Log.VERBOSE, "reEnableNetworkIfPossible %b", result);
+        return result;
+    }
+
+    public static boolean reEnableNetworkIfPossible(@NonNull final WifiRadio radio, @Nullable final ScanResult scanResult) {
+        if (scanResult == null) {
+            return false;
+        }
+        boolean result = false;
+        for (WifiConfiguration wifiConfig : new ConfiguredNetworks(radio).getByBssid(scanResult.BSSID))
+            if (Objects.equals(scanResult.SSID, trimQuotes(wifiConfig.SSID))) {
+                result = radio.enableNetwork(wifiConfig.networkId, true);
+                break;
+            }
+        wifiLog(Log.VERBOSE, "reEnableNetworkIfPossible %b", result);
         return result;
     }
 
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    static void connectWps(@Nullable final WifiManager wifiManager, @NonNull WeakHandler handler, @NonNull final ScanResult scanResult, @NonNull String pin, long timeOutMillis,
+    static void connectWps(@NonNull final WifiRadio radio, @NonNull WeakHandler handler, @NonNull final ScanResult scanResult, @NonNull String pin, long timeOutMillis,
                            @NonNull final ConnectionWpsListener connectionWpsListener) {
-        if (wifiManager == null) {
-            connectionWpsListener.isSuccessful(false);
-            return;
-        }
 
         final WpsInfo wpsInfo = new WpsInfo();
         final Runnable handlerTimeoutRunnable = new Runnable() {
             @Override
             public void run() {
-                wifiManager.cancelWps(null);
+                radio.cancelWps(null);
                 wifiLog("Connection with WPS has timed out");
-                cleanPreviousConfiguration(wifiManager, scanResult);
+                cleanPreviousConfiguration(radio, scanResult);
                 connectionWpsListener.isSuccessful(false);
                 handler.removeCallbacks(this);
             }
@@ -696,9 +776,9 @@ public final class ConnectorUtils {
                     default:
                         reasonStr = String.valueOf(reason);
                 }
-                wifiLog("FAILED to connect with WPS. Reason: " + reasonStr);
-                cleanPreviousConfiguration(wifiManager, scanResult);
-                reenableAllHotspots(wifiManager);
+                wifiLog(Log.WARN, "FAILED to connect with WPS. Reason: %s", reasonStr);
+                cleanPreviousConfiguration(radio, scanResult);
+                reenableAllHotspots(radio);
                 connectionWpsListener.isSuccessful(false);
             }
         };
@@ -707,73 +787,65 @@ public final class ConnectorUtils {
         wpsInfo.setup = WpsInfo.KEYPAD;
         wpsInfo.BSSID = scanResult.BSSID;
         wpsInfo.pin = pin;
-        wifiManager.cancelWps(null);
+        radio.cancelWps(null);
 
-        if (!cleanPreviousConfiguration(wifiManager, scanResult)) {
-            disableAllButOne(wifiManager, scanResult);
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(radio);
+        if (!cleanPreviousConfiguration(configuredNetworks, scanResult)) {
+            disableAllButOne(configuredNetworks, scanResult);
         }
 
         handler.postDelayed(handlerTimeoutRunnable, timeOutMillis);
-        wifiManager.startWps(wpsInfo, wpsCallback);
+        radio.startWps(wpsInfo, wpsCallback);
     }
 
     @RequiresPermission(ACCESS_WIFI_STATE)
-    static boolean disconnectFromWifi(@NonNull final WifiManager wifiManager) {
-        return wifiManager.disconnect();
+    static boolean disconnectFromWifi(@NonNull final WifiRadio radio) {
+        return radio.disconnect();
     }
 
     @RequiresPermission(ACCESS_WIFI_STATE)
-    static boolean removeWifi(@NonNull final WifiManager wifiManager, @NonNull final String ssid) {
-        final WifiConfiguration wifiConfiguration = ConfigSecurities.getWifiConfiguration(wifiManager, ssid);
-        return cleanPreviousConfiguration(wifiManager, wifiConfiguration);
+    static boolean removeWifi(@NonNull final WifiRadio radio, @NonNull final String ssid) {
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(radio);
+        final WifiConfiguration wifiConfiguration = ConfigSecurities.getWifiConfiguration(configuredNetworks, ssid);
+        return cleanPreviousConfiguration(configuredNetworks, wifiConfiguration);
     }
 
     @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
-    static boolean cleanPreviousConfiguration(@Nullable final WifiManager wifiManager, @NonNull final ScanResult scanResult) {
-        if (wifiManager == null) {
-            return false;
-        }
-        //On Android 6.0 (API level 23) and above if my app did not create the configuration in the first place, it can not remove it either.
-        final WifiConfiguration config = ConfigSecurities.getWifiConfiguration(wifiManager, scanResult);
-        wifiLog("Attempting to remove previous network config...");
-        if (config == null) {
-            return true;
-        }
-
-        if (wifiManager.removeNetwork(config.networkId)) {
-            wifiManager.saveConfiguration();
-            return true;
-        }
-        return false;
+    static boolean cleanPreviousConfiguration(@NonNull final WifiRadio radio, @NonNull final ScanResult scanResult) {
+        return cleanPreviousConfiguration(new ConfiguredNetworks(radio), scanResult);
     }
 
-    static boolean cleanPreviousConfiguration(@Nullable final WifiManager wifiManager, @Nullable final WifiConfiguration config) {
+    @RequiresPermission(allOf = {ACCESS_FINE_LOCATION, ACCESS_WIFI_STATE})
+    private static boolean cleanPreviousConfiguration(@NonNull final ConfiguredNetworks configuredNetworks, @NonNull final ScanResult scanResult) {
         //On Android 6.0 (API level 23) and above if my app did not create the configuration in the first place, it can not remove it either.
-        if (wifiManager == null) {
-            return false;
-        }
+        final WifiConfiguration config = ConfigSecurities.getWifiConfiguration(configuredNetworks, scanResult);
+        return cleanPreviousConfiguration(configuredNetworks, config);
+    }
 
+    private static boolean cleanPreviousConfiguration(@NonNull final ConfiguredNetworks configuredNetworks, @Nullable final WifiConfiguration config) {
+        //On Android 6.0 (API level 23) and above if my app did not create the configuration in the first place, it can not remove it either.
         wifiLog("Attempting to remove previous network config...");
         if (config == null) {
             return true;
         }
 
-        if (wifiManager.removeNetwork(config.networkId)) {
-            wifiManager.saveConfiguration();
+        if (configuredNetworks.removeNetwork(config.networkId)) {
+            configuredNetworks.getRadio().saveConfiguration();
             return true;
         }
         return false;
     }
 
-    static void reenableAllHotspots(@Nullable WifiManager wifi) {
-        if (wifi == null) {
-            return;
-        }
-        final List<WifiConfiguration> configurations = wifi.getConfiguredNetworks();
+    static void reenableAllHotspots(@NonNull WifiRadio radio) {
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(radio);
+        final List<WifiConfiguration> configurations = configuredNetworks.getAll();
         if (configurations != null && !configurations.isEmpty()) {
+            // Only networks actually disabled, which usually is a handful out of the whole list
+            final ConfigBatch batch = new ConfigBatch(configuredNetworks);
             for (final WifiConfiguration config : configurations) {
-                wifi.enableNetwork(config.networkId, false);
+                batch.enable(config);
             }
+            batch.apply();
         }
     }
 
@@ -807,6 +879,24 @@ public final class ConnectorUtils {
         return null;
     }
 
+    @Nullable
+    static ScanResult matchScanResultSsid(@NonNull String ssid, @NonNull ScanSnapshot snapshot, boolean mPatternMatch) {
+        if (mPatternMatch) {
+            return snapshot.findStrongestBySsidPrefix(ssid);
+        }
+        return snapshot.findFirstBySsid(ssid);
+    }
+
+    @Nullable
+    static ScanResult matchScanResult(@NonNull String ssid, @NonNull String bssid, @NonNull ScanSnapshot snapshot) {
+        return snapshot.find(ssid, bssid);
+    }
+
+    @Nullable
+    static ScanResult matchScanResultBssid(@NonNull String bssid, @NonNull ScanSnapshot snapshot) {
+        return snapshot.findByBssid(bssid);
+    }
+
     static Intent checkVersionAndGetIntent()  {
         if(VersionUtil.INSTANCE.is29AndAbove()){
             return VersionUtil.INSTANCE.getPanelIntent();
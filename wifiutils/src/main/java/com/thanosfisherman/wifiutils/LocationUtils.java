@@ -7,7 +7,6 @@ import android.os.Build;
 import androidx.annotation.NonNull;
 import android.util.Log;
 
-import static com.androidconnect.wifiutils.utils.Elvis.of;
 
 public class LocationUtils {
     private static final String TAG = LocationUtils.class.getSimpleName();
@@ -35,7 +34,7 @@ public class LocationUtils {
 
     private static boolean isLocationEnabled(@NonNull Context context) {
         final LocationManager manager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
-        return of(manager).next(locationManager -> locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)).getBoolean() ||
-                of(manager).next(locationManager -> locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)).getBoolean();
+        return manager != null && (manager.isProviderEnabled(LocationManager.GPS_PROVIDER) ||
+                manager.isProviderEnabled(LocationManager.NETWORK_PROVIDER));
     }
 }
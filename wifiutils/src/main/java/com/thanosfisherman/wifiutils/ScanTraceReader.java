@@ -0,0 +1,238 @@
+package com.androidconnect.wifiutils;
+
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.androidconnect.wifiutils.ScanTraceWriter.EXTRA_BOOLEAN;
+import static com.androidconnect.wifiutils.ScanTraceWriter.EXTRA_DETAILED_STATE;
+import static com.androidconnect.wifiutils.ScanTraceWriter.EXTRA_INT;
+import static com.androidconnect.wifiutils.ScanTraceWriter.EXTRA_LONG;
+import static com.androidconnect.wifiutils.ScanTraceWriter.EXTRA_STRING;
+import static com.androidconnect.wifiutils.ScanTraceWriter.EXTRA_SUPPLICANT_STATE;
+import static com.androidconnect.wifiutils.ScanTraceWriter.MAGIC;
+import static com.androidconnect.wifiutils.ScanTraceWriter.RECORD_BROADCAST;
+import static com.androidconnect.wifiutils.ScanTraceWriter.RECORD_CONNECTION_INFO;
+import static com.androidconnect.wifiutils.ScanTraceWriter.RECORD_SCAN_RESULTS;
+import static com.androidconnect.wifiutils.ScanTraceWriter.VERSION;
+
+/**
+ * Decodes the traces {@link ScanTraceWriter} writes, one {@link ScanTraceRecord} at a time.
+ * <p>
+ * Not thread safe.
+ */
+public final class ScanTraceReader implements Closeable {
+    @NonNull
+    private final DataInputStream mIn;
+    @NonNull
+    private final List<String> mStrings = new ArrayList<>();
+    private long mLastElapsedRealtime;
+
+    /**
+     * Reads the trace header right away.
+     *
+     * @param in the trace, buffered here and closed along with this reader
+     * @throws IOException if it isn't a trace, or one written by a newer version of the library
+     */
+    public ScanTraceReader(@NonNull InputStream in) throws IOException {
+        mIn = new DataInputStream(new BufferedInputStream(in));
+        if (mIn.readInt() != MAGIC) {
+            throw new IOException("Not a scan trace");
+        }
+        final int version = mIn.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported scan trace version " + version);
+        }
+    }
+
+    /**
+     * Reads a whole trace and closes the stream.
+     */
+    @NonNull
+    public static List<ScanTraceRecord> readAll(@NonNull InputStream in) throws IOException {
+        try (ScanTraceReader reader = new ScanTraceReader(in)) {
+            final List<ScanTraceRecord> records = new ArrayList<>();
+            ScanTraceRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * @return the next record or null at the end of the trace. A trace cut short, because the app capturing it
+     * died for instance, ends with the last complete record.
+     * @throws IOException if the trace is corrupt
+     */
+    @Nullable
+    public ScanTraceRecord read() throws IOException {
+        final int type = mIn.read();
+        if (type == -1) {
+            return null;
+        }
+        try {
+            final long elapsedRealtime = mLastElapsedRealtime + readSigned();
+            mLastElapsedRealtime = elapsedRealtime;
+            switch (type) {
+                case RECORD_SCAN_RESULTS:
+                    return readScanResults(elapsedRealtime);
+                case RECORD_BROADCAST:
+                    return readBroadcast(elapsedRealtime);
+                case RECORD_CONNECTION_INFO:
+                    return readConnectionInfo(elapsedRealtime);
+                default:
+                    throw new IOException("Unknown scan trace record " + type);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    @NonNull
+    private ScanTraceRecord readScanResults(long elapsedRealtime) throws IOException {
+        final int count = (int) readVarLong();
+        final List<ScanTraceRecord.Sighting> sightings = new ArrayList<>(count);
+        final long recordMicros = elapsedRealtime * 1000;
+        for (int i = 0; i < count; i++) {
+            final String ssid = readString();
+            final String bssid = readString();
+            final String capabilities = readString();
+            final int level = (int) readSigned();
+            final int frequency = (int) readVarLong();
+            final long timestampMicros = recordMicros - readSigned();
+            sightings.add(new ScanTraceRecord.Sighting(ssid, bssid, capabilities, level, frequency, timestampMicros));
+        }
+        return ScanTraceRecord.scanResults(elapsedRealtime, sightings);
+    }
+
+    @NonNull
+    private ScanTraceRecord readBroadcast(long elapsedRealtime) throws IOException {
+        final String action = readString();
+        final int count = (int) readVarLong();
+        final Map<String, Object> extras = count == 0 ? Collections.<String, Object>emptyMap() : new LinkedHashMap<String, Object>();
+        for (int i = 0; i < count; i++) {
+            final String key = readString();
+            final int tag = mIn.readUnsignedByte();
+            final Object value;
+            switch (tag) {
+                case EXTRA_INT:
+                    value = (int) readSigned();
+                    break;
+                case EXTRA_LONG:
+                    value = readSigned();
+                    break;
+                case EXTRA_BOOLEAN:
+                    value = mIn.readBoolean();
+                    break;
+                case EXTRA_STRING:
+                    value = readString();
+                    break;
+                case EXTRA_SUPPLICANT_STATE:
+                    value = supplicantState(readString());
+                    break;
+                case EXTRA_DETAILED_STATE:
+                    value = detailedState(readString());
+                    break;
+                default:
+                    throw new IOException("Unknown scan trace extra " + tag);
+            }
+            if (key != null && value != null) {
+                extras.put(key, value);
+            }
+        }
+        return ScanTraceRecord.broadcast(elapsedRealtime, action == null ? "" : action, extras);
+    }
+
+    @NonNull
+    private ScanTraceRecord readConnectionInfo(long elapsedRealtime) throws IOException {
+        final String ssid = readString();
+        final String bssid = readString();
+        final SupplicantState state = supplicantState(readString());
+        final int networkId = (int) readSigned();
+        final int rssi = (int) readSigned();
+        final int frequency = (int) readVarLong();
+        final int ipAddress = mIn.readInt();
+        return ScanTraceRecord.connectionInfo(elapsedRealtime, ssid, bssid, state, networkId, rssi, frequency, ipAddress);
+    }
+
+    /**
+     * States added by a newer platform than the one reading the trace are dropped.
+     */
+    @Nullable
+    private static SupplicantState supplicantState(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return SupplicantState.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static NetworkInfo.DetailedState detailedState(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return NetworkInfo.DetailedState.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+        final long reference = readVarLong();
+        if (reference == 0) {
+            return null;
+        }
+        if (reference <= mStrings.size()) {
+            return mStrings.get((int) reference - 1);
+        }
+        if (reference != mStrings.size() + 1) {
+            throw new IOException("Corrupt scan trace string reference " + reference);
+        }
+        final String value = mIn.readUTF();
+        mStrings.add(value);
+        return value;
+    }
+
+    private long readSigned() throws IOException {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = mIn.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt scan trace number");
+    }
+}
@@ -0,0 +1,284 @@
+package com.androidconnect.wifiutils;
+
+import android.content.Intent;
+import android.net.NetworkInfo;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One entry of a scan trace: what {@link WifiRadio#getScanResults()} or {@link WifiRadio#getConnectionInfo()}
+ * returned, or a broadcast the library received, at a given {@link android.os.SystemClock#elapsedRealtime()}.
+ * <p>
+ * Records hold plain values only, so that traces can be read anywhere. Broadcast extras are kept when they are
+ * an int, a long, a boolean, a String or a {@link SupplicantState}. A {@link NetworkInfo} extra is kept as its
+ * {@link NetworkInfo.DetailedState}, everything else is dropped.
+ *
+ * @see ScanTraceRecorder
+ * @see ScanTraceReader
+ */
+public final class ScanTraceRecord {
+
+    public enum Type {
+        SCAN_RESULTS,
+        BROADCAST,
+        CONNECTION_INFO
+    }
+
+    /**
+     * An access point as a scan reported it.
+     */
+    public static final class Sighting {
+        @Nullable
+        private final String mSsid;
+        @Nullable
+        private final String mBssid;
+        @Nullable
+        private final String mCapabilities;
+        private final int mLevel;
+        private final int mFrequency;
+        private final long mTimestampMicros;
+
+        public Sighting(@Nullable String ssid, @Nullable String bssid, @Nullable String capabilities, int level, int frequency,
+                        long timestampMicros) {
+            mSsid = ssid;
+            mBssid = bssid;
+            mCapabilities = capabilities;
+            mLevel = level;
+            mFrequency = frequency;
+            mTimestampMicros = timestampMicros;
+        }
+
+        @Nullable
+        public String getSsid() {
+            return mSsid;
+        }
+
+        @Nullable
+        public String getBssid() {
+            return mBssid;
+        }
+
+        @Nullable
+        public String getCapabilities() {
+            return mCapabilities;
+        }
+
+        public int getLevel() {
+            return mLevel;
+        }
+
+        public int getFrequency() {
+            return mFrequency;
+        }
+
+        /**
+         * @return as in {@link ScanResult#timestamp}
+         */
+        public long getTimestampMicros() {
+            return mTimestampMicros;
+        }
+    }
+
+    @NonNull
+    private final Type mType;
+    private final long mElapsedRealtime;
+    @NonNull
+    private final List<Sighting> mSightings;
+    @Nullable
+    private final String mAction;
+    @NonNull
+    private final Map<String, Object> mExtras;
+    @Nullable
+    private final String mSsid;
+    @Nullable
+    private final String mBssid;
+    @Nullable
+    private final SupplicantState mSupplicantState;
+    private final int mNetworkId;
+    private final int mRssi;
+    private final int mFrequency;
+    private final int mIpAddress;
+
+    private ScanTraceRecord(@NonNull Type type, long elapsedRealtime, @NonNull List<Sighting> sightings,
+                            @Nullable String action, @NonNull Map<String, Object> extras,
+                            @Nullable String ssid, @Nullable String bssid, @Nullable SupplicantState supplicantState,
+                            int networkId, int rssi, int frequency, int ipAddress) {
+        mType = type;
+        mElapsedRealtime = elapsedRealtime;
+        mSightings = sightings;
+        mAction = action;
+        mExtras = extras;
+        mSsid = ssid;
+        mBssid = bssid;
+        mSupplicantState = supplicantState;
+        mNetworkId = networkId;
+        mRssi = rssi;
+        mFrequency = frequency;
+        mIpAddress = ipAddress;
+    }
+
+    /**
+     * @param sightings the access points found, in the order the scan reported them
+     */
+    @NonNull
+    public static ScanTraceRecord scanResults(long elapsedRealtime, @NonNull List<Sighting> sightings) {
+        return new ScanTraceRecord(Type.SCAN_RESULTS, elapsedRealtime, Collections.unmodifiableList(sightings),
+                null, Collections.<String, Object>emptyMap(), null, null, null, -1, 0, 0, 0);
+    }
+
+    /**
+     * @param extras values of the types listed in the class documentation only
+     */
+    @NonNull
+    public static ScanTraceRecord broadcast(long elapsedRealtime, @NonNull String action, @NonNull Map<String, Object> extras) {
+        return new ScanTraceRecord(Type.BROADCAST, elapsedRealtime, Collections.<Sighting>emptyList(),
+                action, Collections.unmodifiableMap(extras), null, null, null, -1, 0, 0, 0);
+    }
+
+    /**
+     * @param ssid      as in {@link WifiInfo#getSSID()}, quoted
+     * @param ipAddress as in {@link WifiInfo#getIpAddress()}, 0 until one was acquired
+     */
+    @NonNull
+    public static ScanTraceRecord connectionInfo(long elapsedRealtime, @Nullable String ssid, @Nullable String bssid,
+                                                 @Nullable SupplicantState supplicantState, int networkId, int rssi,
+                                                 int frequency, int ipAddress) {
+        return new ScanTraceRecord(Type.CONNECTION_INFO, elapsedRealtime, Collections.<Sighting>emptyList(),
+                null, Collections.<String, Object>emptyMap(), ssid, bssid, supplicantState, networkId, rssi, frequency, ipAddress);
+    }
+
+    @NonNull
+    static ScanTraceRecord of(long elapsedRealtime, @Nullable List<ScanResult> results) {
+        if (results == null || results.isEmpty()) {
+            return scanResults(elapsedRealtime, Collections.<Sighting>emptyList());
+        }
+        final List<Sighting> sightings = new ArrayList<>(results.size());
+        for (final ScanResult result : results) {
+            if (result != null) {
+                sightings.add(new Sighting(result.SSID, result.BSSID, result.capabilities, result.level, result.frequency,
+                        result.timestamp));
+            }
+        }
+        return scanResults(elapsedRealtime, sightings);
+    }
+
+    @NonNull
+    static ScanTraceRecord of(long elapsedRealtime, @NonNull Intent intent) {
+        final Map<String, Object> extras = new LinkedHashMap<>();
+        final Bundle bundle = intent.getExtras();
+        if (bundle != null) {
+            for (final String key : bundle.keySet()) {
+                final Object value = bundle.get(key);
+                if (value instanceof NetworkInfo) {
+                    extras.put(key, ((NetworkInfo) value).getDetailedState());
+                } else if (value instanceof Integer || value instanceof Long || value instanceof Boolean
+                        || value instanceof String || value instanceof SupplicantState) {
+                    extras.put(key, value);
+                }
+            }
+        }
+        final String action = intent.getAction();
+        return broadcast(elapsedRealtime, action == null ? "" : action, extras);
+    }
+
+    @NonNull
+    static ScanTraceRecord of(long elapsedRealtime, @Nullable WifiInfo info) {
+        if (info == null) {
+            return connectionInfo(elapsedRealtime, null, null, null, -1, 0, 0, 0);
+        }
+        return connectionInfo(elapsedRealtime, info.getSSID(), info.getBSSID(), info.getSupplicantState(),
+                info.getNetworkId(), info.getRssi(), info.getFrequency(), info.getIpAddress());
+    }
+
+    @NonNull
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * @return when the record was taken, in {@link android.os.SystemClock#elapsedRealtime()} milliseconds
+     */
+    public long getElapsedRealtime() {
+        return mElapsedRealtime;
+    }
+
+    /**
+     * @return the access points of a {@link Type#SCAN_RESULTS} record, empty for other types
+     */
+    @NonNull
+    public List<Sighting> getSightings() {
+        return mSightings;
+    }
+
+    /**
+     * @return the action of a {@link Type#BROADCAST} record, null for other types
+     */
+    @Nullable
+    public String getAction() {
+        return mAction;
+    }
+
+    /**
+     * @return the extras kept from a {@link Type#BROADCAST} record, in the order they were read, empty for other types
+     */
+    @NonNull
+    public Map<String, Object> getExtras() {
+        return mExtras;
+    }
+
+    /**
+     * The getters below describe a {@link Type#CONNECTION_INFO} record, they mirror {@link WifiInfo}.
+     */
+    @Nullable
+    public String getSsid() {
+        return mSsid;
+    }
+
+    @Nullable
+    public String getBssid() {
+        return mBssid;
+    }
+
+    @Nullable
+    public SupplicantState getSupplicantState() {
+        return mSupplicantState;
+    }
+
+    public int getNetworkId() {
+        return mNetworkId;
+    }
+
+    public int getRssi() {
+        return mRssi;
+    }
+
+    public int getFrequency() {
+        return mFrequency;
+    }
+
+    public int getIpAddress() {
+        return mIpAddress;
+    }
+
+    /**
+     * @return whether both records describe the same connection, regardless of when they were taken
+     */
+    boolean sameConnectionAs(@NonNull ScanTraceRecord other) {
+        return mType == Type.CONNECTION_INFO && other.mType == Type.CONNECTION_INFO
+                && mSupplicantState == other.mSupplicantState && mNetworkId == other.mNetworkId
+                && mRssi == other.mRssi && mFrequency == other.mFrequency && mIpAddress == other.mIpAddress
+                && Objects.equals(mSsid, other.mSsid) && Objects.equals(mBssid, other.mBssid);
+    }
+}
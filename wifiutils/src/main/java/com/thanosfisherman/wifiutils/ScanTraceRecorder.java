@@ -0,0 +1,138 @@
+package com.androidconnect.wifiutils;
+
+import android.content.Intent;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiInfo;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
+
+/**
+ * Capture mode writing everything the library learns from the radio into a scan trace: every scan result list
+ * and connection info it reads and every broadcast it receives, each with the time it happened.
+ * <p>
+ * Traces are meant to be replayed away from the device, for instance to reproduce a connection issue seen in a
+ * crowded venue or to measure how the matching code copes with a few thousand access points, see
+ * {@link ScanTraceReader}. Connection info is written only when it changes.
+ * <p>
+ * Recording is off unless {@link #start(OutputStream)} was called and costs a volatile read per radio call then.
+ * Records are encoded on the thread that produced them, the {@link WifiWorker} most of the time, into a buffer that is
+ * written out in blocks of a few kilobytes. A write failing stops the capture.
+ */
+public final class ScanTraceRecorder {
+    @Nullable
+    private static volatile ScanTraceRecorder sInstance;
+
+    private final Object mLock = new Object();
+    @Nullable
+    private volatile ScanTraceWriter mWriter;
+    @Nullable
+    private ScanTraceRecord mLastConnectionInfo;
+
+    private ScanTraceRecorder() {
+    }
+
+    /**
+     * Gets a Singleton instance of ScanTraceRecorder.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return ScanTraceRecorder Singleton instance
+     */
+    @NonNull
+    public static ScanTraceRecorder getInstance() {
+        if (sInstance == null) {
+            synchronized (ScanTraceRecorder.class) {
+                if (sInstance == null) {
+                    sInstance = new ScanTraceRecorder();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Starts writing a new trace, ending the current one if any.
+     *
+     * @param out where the trace goes, closed by {@link #stop()}
+     */
+    public void start(@NonNull OutputStream out) throws IOException {
+        final ScanTraceWriter writer = new ScanTraceWriter(out);
+        synchronized (mLock) {
+            stopLocked();
+            mWriter = writer;
+        }
+    }
+
+    /**
+     * Ends the current trace, flushing and closing its stream. Does nothing if not recording.
+     */
+    public void stop() {
+        synchronized (mLock) {
+            stopLocked();
+        }
+    }
+
+    public boolean isRecording() {
+        return mWriter != null;
+    }
+
+    void recordScanResults(@Nullable List<ScanResult> results) {
+        if (mWriter != null) {
+            write(ScanTraceRecord.of(SystemClock.elapsedRealtime(), results));
+        }
+    }
+
+    void recordConnectionInfo(@Nullable WifiInfo info) {
+        if (mWriter != null) {
+            write(ScanTraceRecord.of(SystemClock.elapsedRealtime(), info));
+        }
+    }
+
+    void recordBroadcast(@NonNull Intent intent) {
+        if (mWriter != null) {
+            write(ScanTraceRecord.of(SystemClock.elapsedRealtime(), intent));
+        }
+    }
+
+    private void write(@NonNull ScanTraceRecord record) {
+        synchronized (mLock) {
+            final ScanTraceWriter writer = mWriter;
+            if (writer == null) {
+                return;
+            }
+            if (record.getType() == ScanTraceRecord.Type.CONNECTION_INFO) {
+                if (mLastConnectionInfo != null && mLastConnectionInfo.sameConnectionAs(record)) {
+                    return;
+                }
+                mLastConnectionInfo = record;
+            }
+            try {
+                writer.write(record);
+            } catch (IOException e) {
+                wifiLog(Log.WARN, "Scan trace stopped: %s", e);
+                stopLocked();
+            }
+        }
+    }
+
+    private void stopLocked() {
+        final ScanTraceWriter writer = mWriter;
+        mWriter = null;
+        mLastConnectionInfo = null;
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                wifiLog(Log.WARN, "Couldn't close scan trace: %s", e);
+            }
+        }
+    }
+}
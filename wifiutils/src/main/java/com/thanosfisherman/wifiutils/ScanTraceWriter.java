@@ -0,0 +1,199 @@
+package com.androidconnect.wifiutils;
+
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes {@link ScanTraceRecord}s into the compact binary form {@link ScanTraceReader} reads.
+ * <p>
+ * A trace is a header followed by records. Numbers are variable length, times are deltas from the previous
+ * record and every string, an SSID, BSSID, capabilities or action, is written out once and referred to by index
+ * afterwards, so a venue scanned every few seconds for an hour costs a few bytes per access point sighting.
+ * <p>
+ * Not thread safe.
+ */
+public final class ScanTraceWriter implements Closeable {
+    static final int MAGIC = 0x57555452;
+    static final int VERSION = 1;
+
+    static final int RECORD_SCAN_RESULTS = 1;
+    static final int RECORD_BROADCAST = 2;
+    static final int RECORD_CONNECTION_INFO = 3;
+
+    static final int EXTRA_INT = 1;
+    static final int EXTRA_LONG = 2;
+    static final int EXTRA_BOOLEAN = 3;
+    static final int EXTRA_STRING = 4;
+    static final int EXTRA_SUPPLICANT_STATE = 5;
+    static final int EXTRA_DETAILED_STATE = 6;
+
+    @NonNull
+    private final DataOutputStream mOut;
+    /**
+     * Index + 1 of every string written so far, 0 standing for null.
+     */
+    @NonNull
+    private final Map<String, Integer> mStrings = new HashMap<>();
+    private long mLastElapsedRealtime;
+
+    /**
+     * Writes the trace header right away.
+     *
+     * @param out where the trace goes, buffered here and closed along with this writer
+     */
+    public ScanTraceWriter(@NonNull OutputStream out) throws IOException {
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+        mOut.writeInt(MAGIC);
+        mOut.writeByte(VERSION);
+    }
+
+    public void write(@NonNull ScanTraceRecord record) throws IOException {
+        switch (record.getType()) {
+            case SCAN_RESULTS:
+                writeHeader(RECORD_SCAN_RESULTS, record);
+                final List<ScanTraceRecord.Sighting> sightings = record.getSightings();
+                writeVarLong(sightings.size());
+                final long recordMicros = record.getElapsedRealtime() * 1000;
+                for (final ScanTraceRecord.Sighting sighting : sightings) {
+                    writeString(sighting.getSsid());
+                    writeString(sighting.getBssid());
+                    writeString(sighting.getCapabilities());
+                    writeSigned(sighting.getLevel());
+                    writeVarLong(sighting.getFrequency());
+                    // How long before the record the access point was seen, far smaller than the timestamp itself
+                    writeSigned(recordMicros - sighting.getTimestampMicros());
+                }
+                break;
+            case BROADCAST:
+                writeHeader(RECORD_BROADCAST, record);
+                writeString(record.getAction());
+                writeExtras(record.getExtras());
+                break;
+            case CONNECTION_INFO:
+                writeHeader(RECORD_CONNECTION_INFO, record);
+                writeString(record.getSsid());
+                writeString(record.getBssid());
+                final SupplicantState state = record.getSupplicantState();
+                writeString(state == null ? null : state.name());
+                writeSigned(record.getNetworkId());
+                writeSigned(record.getRssi());
+                writeVarLong(record.getFrequency());
+                mOut.writeInt(record.getIpAddress());
+                break;
+        }
+    }
+
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    private void writeHeader(int type, @NonNull ScanTraceRecord record) throws IOException {
+        mOut.writeByte(type);
+        writeSigned(record.getElapsedRealtime() - mLastElapsedRealtime);
+        mLastElapsedRealtime = record.getElapsedRealtime();
+    }
+
+    private void writeExtras(@NonNull Map<String, Object> extras) throws IOException {
+        int count = 0;
+        for (final Object value : extras.values()) {
+            if (tagOf(value) != 0) {
+                count++;
+            }
+        }
+        writeVarLong(count);
+        for (final Map.Entry<String, Object> extra : extras.entrySet()) {
+            final Object value = extra.getValue();
+            final int tag = tagOf(value);
+            if (tag == 0) {
+                continue;
+            }
+            writeString(extra.getKey());
+            mOut.writeByte(tag);
+            switch (tag) {
+                case EXTRA_INT:
+                    writeSigned((Integer) value);
+                    break;
+                case EXTRA_LONG:
+                    writeSigned((Long) value);
+                    break;
+                case EXTRA_BOOLEAN:
+                    mOut.writeBoolean((Boolean) value);
+                    break;
+                case EXTRA_STRING:
+                    writeString((String) value);
+                    break;
+                case EXTRA_SUPPLICANT_STATE:
+                    writeString(((SupplicantState) value).name());
+                    break;
+                case EXTRA_DETAILED_STATE:
+                    writeString(((NetworkInfo.DetailedState) value).name());
+                    break;
+            }
+        }
+    }
+
+    private static int tagOf(@Nullable Object value) {
+        if (value instanceof Integer) {
+            return EXTRA_INT;
+        } else if (value instanceof Long) {
+            return EXTRA_LONG;
+        } else if (value instanceof Boolean) {
+            return EXTRA_BOOLEAN;
+        } else if (value instanceof String) {
+            return EXTRA_STRING;
+        } else if (value instanceof SupplicantState) {
+            return EXTRA_SUPPLICANT_STATE;
+        } else if (value instanceof NetworkInfo.DetailedState) {
+            return EXTRA_DETAILED_STATE;
+        }
+        return 0;
+    }
+
+    private void writeString(@Nullable String value) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        final Integer reference = mStrings.get(value);
+        if (reference != null) {
+            writeVarLong(reference);
+            return;
+        }
+        final int next = mStrings.size() + 1;
+        mStrings.put(value, next);
+        writeVarLong(next);
+        mOut.writeUTF(value);
+    }
+
+    /**
+     * Zigzag encoding, so that small negative numbers stay small.
+     */
+    private void writeSigned(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            mOut.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mOut.writeByte((int) value);
+    }
+}
@@ -9,5 +9,13 @@ public enum TypeEnum {
     OPEN,
     WEP,
     PSK,
-    EAP
+    EAP,
+    /**
+     * WPA3 personal, Android 10 and up.
+     */
+    SAE,
+    /**
+     * Enhanced open, Android 10 and up.
+     */
+    OWE
 }
@@ -32,8 +32,8 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * Memory safer implementation of android.os.Handler
@@ -45,6 +45,9 @@ import java.util.concurrent.locks.ReentrantLock;
  * This implementation is trickier, it will keep WeakReferences to runnables and messages,
  * and GC could collect them once WeakHandler instance is not referenced any more
  * <p/>
+ * Pending runnables are tracked in a registry striped by identity hash, so that posting and removing
+ * are constant time and threads only contend when they touch runnables hashing to the same stripe.
+ * <p/>
  *
  * @see Handler
  *
@@ -54,10 +57,8 @@ import java.util.concurrent.locks.ReentrantLock;
 public class WeakHandler {
     private final Handler.Callback mCallback; // hard reference to Callback. We need to keep callback in memory
     private final ExecHandler mExec;
-    private Lock mLock = new ReentrantLock();
-    @SuppressWarnings("ConstantConditions")
     @VisibleForTesting
-    final ChainedRef mRunnables = new ChainedRef(mLock, null);
+    final RunnableRegistry mRunnables = new RunnableRegistry();
 
     /**
      * Default constructor associates this handler with the {@link Looper} for the
@@ -164,7 +165,7 @@ public class WeakHandler {
      * @see android.os.SystemClock#uptimeMillis
      */
     public final boolean postAtTime(Runnable r, Object token, long uptimeMillis) {
-        return mExec.postAtTime(wrapRunnable(r), token, uptimeMillis);
+        return mExec.postAtTime(wrapRunnable(r, token), token, uptimeMillis);
     }
 
     /**
@@ -209,10 +210,10 @@ public class WeakHandler {
 
     /**
      * Remove any pending posts of Runnable r that are in the message queue.
+     * Runnables are compared by identity, the way Handler does.
      */
     public final void removeCallbacks(Runnable r) {
-        final WeakRunnable runnable = mRunnables.remove(r);
-        if (runnable != null) {
+        for (WeakRunnable runnable = mRunnables.remove(r); runnable != null; runnable = runnable.mNext) {
             mExec.removeCallbacks(runnable);
         }
     }
@@ -223,7 +224,11 @@ public class WeakHandler {
      * all callbacks will be removed.
      */
     public final void removeCallbacks(Runnable r, Object token) {
-        final WeakRunnable runnable = mRunnables.remove(r);
+        if (token == null) {
+            removeCallbacks(r);
+            return;
+        }
+        final WeakRunnable runnable = mRunnables.remove(r, token);
         if (runnable != null) {
             mExec.removeCallbacks(runnable, token);
         }
@@ -380,13 +385,15 @@ public class WeakHandler {
     }
 
     private WeakRunnable wrapRunnable(@NonNull Runnable r) {
+        return wrapRunnable(r, null);
+    }
+
+    private WeakRunnable wrapRunnable(@NonNull Runnable r, @Nullable Object token) {
         //noinspection ConstantConditions
         if (r == null) {
             throw new NullPointerException("Runnable can't be null");
         }
-        final ChainedRef hardRef = new ChainedRef(mLock, r);
-        mRunnables.insertAfter(hardRef);
-        return hardRef.wrapper;
+        return mRunnables.acquire(r, token);
     }
 
     private static class ExecHandler extends Handler {
@@ -423,94 +430,197 @@ public class WeakHandler {
         }
     }
 
+    /**
+     * Posting the same runnable again reuses its wrapper, so that a single
+     * {@link Handler#removeCallbacks(Runnable)} drops every pending post of it.
+     * Posts with a token get a wrapper per token, so that removing them leaves the other posts of the runnable
+     * registered, and thus strongly held, until they run.
+     */
     static class WeakRunnable implements Runnable {
         private final WeakReference<Runnable> mDelegate;
-        private final WeakReference<ChainedRef> mReference;
+        private final WeakReference<RunnableRegistry> mRegistry;
+        /**
+         * What the posts went out with, compared by identity like Handler does. Null for posts without one.
+         */
+        @Nullable
+        final Object mToken;
+        /**
+         * Wrapper of the same delegate for another token, guarded like {@link #mPending}.
+         */
+        @Nullable
+        WeakRunnable mNext;
+        /**
+         * Posts not run yet, guarded by the lock of the stripe the delegate belongs to.
+         */
+        int mPending;
 
-        WeakRunnable(WeakReference<Runnable> delegate, WeakReference<ChainedRef> reference) {
+        WeakRunnable(WeakReference<Runnable> delegate, WeakReference<RunnableRegistry> registry, @Nullable Object token) {
             mDelegate = delegate;
-            mReference = reference;
+            mRegistry = registry;
+            mToken = token;
         }
 
         @Override
         public void run() {
             final Runnable delegate = mDelegate.get();
-            final ChainedRef reference = mReference.get();
-            if (reference != null) {
-                reference.remove();
+            final RunnableRegistry registry = mRegistry.get();
+            if (delegate == null) {
+                return;
             }
-            if (delegate != null) {
-                delegate.run();
+            if (registry != null) {
+                registry.release(delegate, this);
             }
+            delegate.run();
         }
     }
 
-    static class ChainedRef {
-        @Nullable
-        ChainedRef next;
-        @Nullable
-        ChainedRef prev;
-        @NonNull
-        final Runnable runnable;
-        @NonNull
-        final WeakRunnable wrapper;
+    /**
+     * Hard references to pending runnables, keyed on identity, each to the chain of its wrappers.
+     * The stripe count is a power of two so that a stripe is picked with a mask.
+     */
+    static class RunnableRegistry {
+        private static final int STRIPES = 8;
 
         @NonNull
-        Lock lock;
+        private final Object[] mStripes = new Object[STRIPES];
 
-        public ChainedRef(@NonNull Lock lock, @NonNull Runnable r) {
-            this.runnable = r;
-            this.lock = lock;
-            this.wrapper = new WeakRunnable(new WeakReference<>(r), new WeakReference<>(this));
+        RunnableRegistry() {
+            for (int i = 0; i < STRIPES; i++) {
+                mStripes[i] = new IdentityHashMap<Runnable, WeakRunnable>();
+            }
         }
 
-        public WeakRunnable remove() {
-            lock.lock();
-            try {
-                if (prev != null) {
-                    prev.next = next;
-                }
-                if (next != null) {
-                    next.prev = prev;
+        /**
+         * @param token what the post goes out with, null for none
+         */
+        @NonNull
+        WeakRunnable acquire(@NonNull Runnable r, @Nullable Object token) {
+            final Map<Runnable, WeakRunnable> stripe = stripeFor(r);
+            synchronized (stripe) {
+                final WeakRunnable first = stripe.get(r);
+                WeakRunnable wrapper = find(first, token);
+                if (wrapper == null) {
+                    wrapper = new WeakRunnable(new WeakReference<>(r), new WeakReference<>(this), token);
+                    wrapper.mNext = first;
+                    stripe.put(r, wrapper);
                 }
-                prev = null;
-                next = null;
-            } finally {
-                lock.unlock();
+                wrapper.mPending++;
+                return wrapper;
             }
-            return wrapper;
         }
 
-        public void insertAfter(@NonNull ChainedRef candidate) {
-            lock.lock();
-            try {
-                if (this.next != null) {
-                    this.next.prev = candidate;
+        /**
+         * Called as one post of the given runnable runs, forgets the wrapper after its last pending post,
+         * and the runnable along with its last wrapper.
+         */
+        void release(@NonNull Runnable r, @NonNull WeakRunnable wrapper) {
+            final Map<Runnable, WeakRunnable> stripe = stripeFor(r);
+            synchronized (stripe) {
+                if (--wrapper.mPending <= 0) {
+                    unlink(stripe, r, wrapper);
                 }
+            }
+        }
 
-                candidate.next = this.next;
-                this.next = candidate;
-                candidate.prev = this;
-            } finally {
-                lock.unlock();
+        /**
+         * @return the wrappers the pending posts of the given runnable went through, chained by
+         * {@link WeakRunnable#mNext}, null if there are none.
+         */
+        @Nullable
+        WeakRunnable remove(@Nullable Runnable r) {
+            if (r == null) {
+                return null;
+            }
+            final Map<Runnable, WeakRunnable> stripe = stripeFor(r);
+            synchronized (stripe) {
+                final WeakRunnable first = stripe.remove(r);
+                for (WeakRunnable wrapper = first; wrapper != null; wrapper = wrapper.mNext) {
+                    wrapper.mPending = 0;
+                }
+                return first;
             }
         }
 
+        /**
+         * Forgets the posts of the given runnable that went out with the token, the others stay registered.
+         *
+         * @return the wrapper of those posts, null if there is none. Its {@link WeakRunnable#mNext} is meaningless.
+         */
         @Nullable
-        public WeakRunnable remove(Runnable obj) {
-            lock.lock();
-            try {
-                ChainedRef curr = this.next; // Skipping head
-                while (curr != null) {
-                    if (curr.runnable == obj) { // We do comparison exactly how Handler does inside
-                        return curr.remove();
+        WeakRunnable remove(@Nullable Runnable r, @NonNull Object token) {
+            if (r == null) {
+                return null;
+            }
+            final Map<Runnable, WeakRunnable> stripe = stripeFor(r);
+            synchronized (stripe) {
+                final WeakRunnable wrapper = find(stripe.get(r), token);
+                if (wrapper != null) {
+                    wrapper.mPending = 0;
+                    unlink(stripe, r, wrapper);
+                }
+                return wrapper;
+            }
+        }
+
+        /**
+         * @return the number of wrappers held, one per runnable and token with posts pending
+         */
+        @VisibleForTesting
+        int size() {
+            int size = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                final Map<Runnable, WeakRunnable> stripe = stripeAt(i);
+                synchronized (stripe) {
+                    for (final WeakRunnable first : stripe.values()) {
+                        for (WeakRunnable wrapper = first; wrapper != null; wrapper = wrapper.mNext) {
+                            size++;
+                        }
                     }
-                    curr = curr.next;
                 }
-            } finally {
-                lock.unlock();
+            }
+            return size;
+        }
+
+        @Nullable
+        private static WeakRunnable find(@Nullable WeakRunnable first, @Nullable Object token) {
+            for (WeakRunnable wrapper = first; wrapper != null; wrapper = wrapper.mNext) {
+                if (wrapper.mToken == token) {
+                    return wrapper;
+                }
             }
             return null;
         }
+
+        /**
+         * Takes the wrapper out of the chain of the runnable, if it is still in there.
+         */
+        private static void unlink(@NonNull Map<Runnable, WeakRunnable> stripe, @NonNull Runnable r, @NonNull WeakRunnable wrapper) {
+            final WeakRunnable first = stripe.get(r);
+            if (first == wrapper) {
+                if (wrapper.mNext == null) {
+                    stripe.remove(r);
+                } else {
+                    stripe.put(r, wrapper.mNext);
+                }
+                return;
+            }
+            for (WeakRunnable previous = first; previous != null; previous = previous.mNext) {
+                if (previous.mNext == wrapper) {
+                    previous.mNext = wrapper.mNext;
+                    return;
+                }
+            }
+        }
+
+        @NonNull
+        private Map<Runnable, WeakRunnable> stripeFor(@NonNull Runnable r) {
+            return stripeAt(System.identityHashCode(r) & (STRIPES - 1));
+        }
+
+        @SuppressWarnings("unchecked")
+        @NonNull
+        private Map<Runnable, WeakRunnable> stripeAt(int index) {
+            return (Map<Runnable, WeakRunnable>) mStripes[index];
+        }
     }
 }
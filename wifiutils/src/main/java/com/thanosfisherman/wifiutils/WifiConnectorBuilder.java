@@ -14,10 +14,31 @@ import com.androidconnect.wifiutils.wifiScan.ScanResultsListener;
 import com.androidconnect.wifiutils.wifiState.WifiStateListener;
 import com.androidconnect.wifiutils.wifiWps.ConnectionWpsListener;
 
+import java.util.concurrent.Executor;
+
 public interface WifiConnectorBuilder {
     void start();
 
+    /**
+     * Allows skipping the scan if every network this request needs was seen by a previous scan
+     * no longer than {@code maxAgeMillis} ago. Scanning takes several seconds so this considerably
+     * speeds up connecting to a network that was just scanned. Disabled by default.
+     *
+     * @param maxAgeMillis the oldest scan results that are acceptable, 0 to always scan
+     */
+    @NonNull
+    WifiConnectorBuilder allowCachedScan(long maxAgeMillis);
+
     interface WifiUtilsBuilder {
+        /**
+         * Calls the listeners of everything started from now on through this instance on the given executor
+         * instead of the main thread. The work itself never happens on the main thread either way.
+         *
+         * @param executor where listeners are called, null for the main thread
+         */
+        @NonNull
+        WifiUtilsBuilder callbackExecutor(@Nullable Executor executor);
+
         void enableWifi(WifiStateListener wifiStateListener);
 
         void enableWifi();
@@ -57,7 +78,16 @@ public interface WifiConnectorBuilder {
 
         void cancelAutoConnect();
 
+        /**
+         * Unlike everything else, waits for the connection info to be read, better not called on the main thread.
+         *
+         * @see WifiEngine#isWifiConnected(String)
+         */
         boolean isWifiConnected(@NonNull String ssid);
+
+        /**
+         * @see #isWifiConnected(String)
+         */
         boolean isWifiConnected();
     }
 
@@ -65,6 +95,19 @@ public interface WifiConnectorBuilder {
         @NonNull
         WifiSuccessListener setTimeout(long timeOutMillis);
 
+        /**
+         * Instead of giving up when the best matching access point can't be connected to, tries the other
+         * access points of the network one after the other until one works or {@code deadlineMillis} runs out.
+         * Access points are tried by signal strength, preferring 5GHz and those connected to successfully before.
+         * Each attempt still times out after {@link #setTimeout(long)}. Authentication errors end the request
+         * right away since every access point of a network shares its credentials.
+         * Has no effect when connecting to a specific BSSID.
+         *
+         * @param deadlineMillis how long all the attempts together may take
+         */
+        @NonNull
+        WifiSuccessListener failover(long deadlineMillis);
+
         @NonNull
         WifiConnectorBuilder onConnectionResult(@Nullable ConnectionSuccessListener successListener);
     }
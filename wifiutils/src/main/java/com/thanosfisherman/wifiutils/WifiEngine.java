@@ -0,0 +1,1024 @@
+package com.androidconnect.wifiutils;
+
+import static android.content.Intent.FLAG_ACTIVITY_NEW_TASK;
+import static com.androidconnect.wifiutils.ConnectorUtils.checkVersionAndGetIntent;
+import static com.androidconnect.wifiutils.ConnectorUtils.cleanPreviousConfiguration;
+import static com.androidconnect.wifiutils.ConnectorUtils.connectToWifi;
+import static com.androidconnect.wifiutils.ConnectorUtils.connectToWifiHidden;
+import static com.androidconnect.wifiutils.ConnectorUtils.connectWps;
+import static com.androidconnect.wifiutils.ConnectorUtils.disconnectFromWifi;
+import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResult;
+import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResultBssid;
+import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResultSsid;
+import static com.androidconnect.wifiutils.ConnectorUtils.reenableAllHotspots;
+import static com.androidconnect.wifiutils.ConnectorUtils.registerReceiver;
+import static com.androidconnect.wifiutils.ConnectorUtils.removeWifi;
+import static com.androidconnect.wifiutils.ConnectorUtils.unregisterReceiver;
+import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
+import static com.androidconnect.wifiutils.utils.VersionUtils.isAndroidQOrLater;
+import static com.androidconnect.wifiutils.utils.VersionUtils.isLollipopOrLater;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.androidconnect.wifiutils.wifiConnect.BssidRanker;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionScanResultsListener;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener;
+import com.androidconnect.wifiutils.wifiConnect.NetworkRequestRegistry;
+import com.androidconnect.wifiutils.wifiConnect.TimeoutHandler;
+import com.androidconnect.wifiutils.wifiConnect.WifiConnectionCallback;
+import com.androidconnect.wifiutils.wifiConnect.WifiConnectionReceiver;
+import com.androidconnect.wifiutils.wifiDisconnect.DisconnectionErrorCode;
+import com.androidconnect.wifiutils.wifiDisconnect.DisconnectionSuccessListener;
+import com.androidconnect.wifiutils.wifiRemove.RemoveErrorCode;
+import com.androidconnect.wifiutils.wifiRemove.RemoveSuccessListener;
+import com.androidconnect.wifiutils.wifiScan.ScanResultsListener;
+import com.androidconnect.wifiutils.wifiScan.ScanScheduler;
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshot;
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshotCallback;
+import com.androidconnect.wifiutils.wifiState.WifiStateCallback;
+import com.androidconnect.wifiutils.wifiState.WifiStateListener;
+import com.androidconnect.wifiutils.wifiState.WifiStateReceiver;
+import com.androidconnect.wifiutils.wifiWps.ConnectionWpsListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Long lived, process wide executor of {@link ConnectRequest}s.
+ * <p>
+ * The engine owns the {@link WifiRadio}, receivers and handlers every request needs, so they are
+ * allocated once instead of once per call. Requests run one at a time, each with its own state,
+ * so overlapping callers no longer overwrite each other's SSID, password or matched scan result.
+ * <p>
+ * Queued work runs by priority: disconnecting and removing networks first, then connecting, then
+ * scanning, each in submission order. A connect request for the network an earlier, unfinished request
+ * is already connecting to doesn't start an attempt of its own, it shares the outcome of that one.
+ * <p>
+ * All the work, every call to the radio included, happens on the {@link WifiWorker} thread, so that the main thread
+ * never waits on the system services. Listeners are called on the main thread unless their request asks for
+ * another executor, see {@link ConnectRequest.Builder#setCallbackExecutor(Executor)}.
+ * Every public method may be called from any thread.
+ */
+@SuppressLint("MissingPermission")
+public final class WifiEngine {
+    @Nullable
+    private static volatile WifiEngine sInstance;
+
+    @NonNull
+    private final Context mContext;
+    @NonNull
+    private final WifiRadio mRadio;
+    @NonNull
+    private final WeakHandler mHandler;
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    @NonNull
+    private final WifiStateReceiver mWifiStateReceiver;
+    @NonNull
+    private final WifiConnectionReceiver mWifiConnectionReceiver;
+    @NonNull
+    private final TimeoutHandler mTimeoutHandler;
+    /**
+     * Work waiting for the current job to finish. Only touched on the engine's thread, as is everything below.
+     */
+    @NonNull
+    private final PriorityQueue<Job> mQueue = new PriorityQueue<>();
+    @Nullable
+    private Job mCurrent;
+    private long mNextSequence;
+
+    /**
+     * The receivers and the timeout are shared by all requests, only the one running may be listening.
+     */
+    @NonNull
+    private final WifiStateCallback mWifiStateCallback = () -> {
+        final Operation operation = currentOperation();
+        if (operation != null) {
+            operation.onWifiEnabled();
+        }
+    };
+
+    @NonNull
+    private final WifiConnectionCallback mWifiConnectionCallback = new WifiConnectionCallback() {
+        @Override
+        public void successfulConnect() {
+            final Operation operation = currentOperation();
+            if (operation != null) {
+                operation.successfulConnect();
+            }
+        }
+
+        @Override
+        public void errorConnect(@NonNull ConnectionErrorCode connectionErrorCode) {
+            final Operation operation = currentOperation();
+            if (operation != null) {
+                operation.errorConnect(connectionErrorCode);
+            }
+        }
+    };
+
+    private WifiEngine(@NonNull Context context, @NonNull WifiRadio radio, @NonNull Looper looper) {
+        mContext = context;
+        mRadio = radio;
+        mHandler = new WeakHandler(looper);
+        mWifiStateReceiver = new WifiStateReceiver(mWifiStateCallback);
+        mWifiConnectionReceiver = new WifiConnectionReceiver(mWifiConnectionCallback, mRadio);
+        mTimeoutHandler = new TimeoutHandler(mRadio, mHandler, mWifiConnectionCallback);
+    }
+
+    /**
+     * Gets a Singleton instance of WifiEngine.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @param context any context, only its application context is retained
+     * @return WifiEngine Singleton instance
+     */
+    @NonNull
+    public static WifiEngine getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            synchronized (WifiEngine.class) {
+                if (sInstance == null) {
+                    sInstance = new WifiEngine(context.getApplicationContext(), new AndroidWifiRadio(context),
+                            WifiWorker.getInstance().getLooper());
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replaces the Singleton instance with one talking to the given radio instead of the system services,
+     * so that tests can run against a scripted radio. Instances of {@link WifiUtils} created afterwards use it.
+     * Work queued on the previous instance is dropped without notifying anyone.
+     * <p>
+     * The new instance runs on the main thread, like scripted radios do, so that idling the main looper runs everything.
+     *
+     * @param context any context, only its application context is retained
+     * @param radio   the radio every request goes through from now on
+     * @return the new WifiEngine Singleton instance
+     */
+    @VisibleForTesting
+    @NonNull
+    public static WifiEngine install(@NonNull Context context, @NonNull WifiRadio radio) {
+        synchronized (WifiEngine.class) {
+            final WifiEngine previous = sInstance;
+            if (previous != null) {
+                previous.mHandler.removeCallbacksAndMessages(null);
+            }
+            ScanScheduler.getInstance().reset();
+            sInstance = new WifiEngine(context.getApplicationContext(), radio, Looper.getMainLooper());
+            return sInstance;
+        }
+    }
+
+    /**
+     * @return the radio every request goes through, for extensions that need to listen to it too.
+     */
+    @NonNull
+    public WifiRadio getRadio() {
+        return mRadio;
+    }
+
+    /**
+     * @return the looper of the thread all the work happens on, the only thread the radio may be called on.
+     */
+    @NonNull
+    public Looper getLooper() {
+        return mHandler.getLooper();
+    }
+
+    /**
+     * Queues a request. It starts once all the work ahead of it is done, unless it can join
+     * an identical connect request that is already queued or running.
+     */
+    public void submit(@NonNull ConnectRequest request) {
+        mHandler.post(() -> {
+            if (!coalesce(request)) {
+                mQueue.add(new Operation(request));
+                runNext();
+            }
+        });
+    }
+
+    /**
+     * Cancels a request without notifying its listeners. A queued request is dropped, a running one
+     * stops listening, forgets the network configuration it added and re-enables the other networks.
+     * A request sharing its attempt with others only stops being notified, the attempt goes on for the rest.
+     * Cancelling a request that already finished does nothing.
+     */
+    public void cancel(@Nullable ConnectRequest request) {
+        if (request == null) {
+            return;
+        }
+        mHandler.post(() -> {
+            final Iterator<Job> iterator = mQueue.iterator();
+            while (iterator.hasNext()) {
+                final Job job = iterator.next();
+                if (job instanceof Operation && ((Operation) job).remove(request)) {
+                    if (((Operation) job).mRequests.isEmpty()) {
+                        wifiLog("Dropped queued request");
+                        iterator.remove();
+                    }
+                    return;
+                }
+            }
+            final Operation operation = currentOperation();
+            if (operation != null && operation.remove(request) && operation.mRequests.isEmpty()) {
+                operation.cancel();
+            }
+        });
+    }
+
+    /**
+     * Queues disconnecting from the current network ahead of any pending connect or scan.
+     * A connect already running is stopped, its listeners are told it failed.
+     */
+    public void disconnect(@NonNull DisconnectionSuccessListener disconnectionSuccessListener) {
+        disconnect(disconnectionSuccessListener, null);
+    }
+
+    /**
+     * @param executor where the listener is called, null for the main thread
+     * @see #disconnect(DisconnectionSuccessListener)
+     */
+    public void disconnect(@NonNull DisconnectionSuccessListener disconnectionSuccessListener, @Nullable Executor executor) {
+        mHandler.post(() -> {
+            mQueue.add(new DisconnectJob(disconnectionSuccessListener, executor));
+            preemptConnect(null);
+            runNext();
+        });
+    }
+
+    /**
+     * Queues removing the configuration of a network ahead of any pending connect or scan.
+     * A connect to that network already running is stopped, its listeners are told it failed.
+     * One to another network is left to finish first.
+     * On Android 10 and up, where nothing is saved, the networks requested for that SSID are released instead.
+     */
+    public void remove(@NonNull String ssid, @NonNull RemoveSuccessListener removeSuccessListener) {
+        remove(ssid, removeSuccessListener, null);
+    }
+
+    /**
+     * @param executor where the listener is called, null for the main thread
+     * @see #remove(String, RemoveSuccessListener)
+     */
+    public void remove(@NonNull String ssid, @NonNull RemoveSuccessListener removeSuccessListener, @Nullable Executor executor) {
+        mHandler.post(() -> {
+            mQueue.add(new RemoveJob(ssid, removeSuccessListener, executor));
+            preemptConnect(ssid);
+            runNext();
+        });
+    }
+
+    /**
+     * Releases the network a request connected to on Android 10 and up, leaving the networks of other requests
+     * alone, unlike {@link #disconnect(DisconnectionSuccessListener)} which releases them all. The process is
+     * unbound from the network if it was bound to it. Does nothing before Android 10.
+     *
+     * @param requestId see {@link ConnectRequest#getId()}
+     */
+    public void release(@NonNull String requestId) {
+        if (!isAndroidQOrLater()) {
+            return;
+        }
+        mHandler.post(() -> NetworkRequestRegistry.getInstance().release(requestId));
+    }
+
+    /**
+     * Tells whether wifi is connected, to the given network if any. The connection info is read on the engine's thread,
+     * like every call to the radio, right away rather than after queued work, and the caller waits for it.
+     * Better not called on the main thread then.
+     *
+     * @param ssid the network, null for any
+     * @return false as well if the caller got interrupted while waiting
+     */
+    public boolean isWifiConnected(@Nullable String ssid) {
+        final FutureTask<Boolean> task = new FutureTask<>(() -> ConnectorUtils.isWifiConnected(mRadio, ssid));
+        if (Looper.myLooper() == getLooper()) {
+            task.run();
+        } else if (!mHandler.post(task)) {
+            // The engine's thread is gone
+            return false;
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Turns wifi off right away, without waiting for queued work. Starting Android 10 apps can't do that
+     * anymore and the wifi settings are opened instead. Does nothing if wifi is off already.
+     */
+    public void disableWifi() {
+        mHandler.post(() -> {
+            if (!mRadio.isWifiEnabled()) {
+                return;
+            }
+            final Intent intent = checkVersionAndGetIntent();
+            if (intent == null) {
+                mRadio.setWifiEnabled(false);
+                ScanScheduler.getInstance().clearCache();
+                wifiLog("WiFi Disabled");
+            } else {
+                intent.setFlags(FLAG_ACTIVITY_NEW_TASK);
+                mContext.startActivity(intent);
+            }
+        });
+    }
+
+    /**
+     * Attaches a connect request to an identical one that hasn't finished yet. A running attempt
+     * only takes requests that don't care about wifi state or scan results, which it may be past already.
+     */
+    private boolean coalesce(@NonNull ConnectRequest request) {
+        final Operation operation = currentOperation();
+        if (operation != null && request.getWifiStateListener() == null && request.getScanResultsListener() == null
+                && operation.accepts(request)) {
+            wifiLog("Joining connection attempt in progress");
+            operation.mRequests.add(request);
+            return true;
+        }
+        for (final Job job : mQueue) {
+            if (job instanceof Operation && ((Operation) job).accepts(request)) {
+                wifiLog("Joining queued connection attempt");
+                ((Operation) job).mRequests.add(request);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Disconnecting or removing right after a connect finished would undo it, so a connect that is still running
+     * stops and lets them through. Removing another network undoes nothing, the connect goes on.
+     *
+     * @param ssid the network being removed, null to stop any connect
+     */
+    private void preemptConnect(@Nullable String ssid) {
+        final Operation operation = currentOperation();
+        if (operation != null && operation.mRequest.isConnect() && operation.mPhase != Operation.FINISHED
+                && (ssid == null || operation.isConnectingTo(ssid))) {
+            operation.preempt();
+        }
+    }
+
+    private void runNext() {
+        if (mCurrent != null || mQueue.isEmpty()) {
+            return;
+        }
+        mCurrent = mQueue.poll();
+        mCurrent.run();
+    }
+
+    @Nullable
+    private Operation currentOperation() {
+        return mCurrent instanceof Operation ? (Operation) mCurrent : null;
+    }
+
+    private void startWifiSettingsIntent(@NonNull Intent intent) {
+        intent.setFlags(FLAG_ACTIVITY_NEW_TASK);
+        mContext.startActivity(intent);
+        mMainHandler.post(() -> Toast.makeText(mContext, "Enable Wifi to proceed", Toast.LENGTH_SHORT).show());
+    }
+
+    /**
+     * Calls a listener of the request where the request wants it called.
+     */
+    private void deliver(@NonNull ConnectRequest request, @NonNull Runnable callback) {
+        deliver(request.getCallbackExecutor(), callback);
+    }
+
+    /**
+     * @param executor where to run the callback, null for the main thread. Already on the main thread,
+     *                 as when testing, the callback runs right away.
+     */
+    private void deliver(@Nullable Executor executor, @NonNull Runnable callback) {
+        if (executor == null) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                callback.run();
+            } else {
+                mMainHandler.post(callback);
+            }
+            return;
+        }
+        try {
+            executor.execute(callback);
+        } catch (RejectedExecutionException e) {
+            wifiLog(Log.WARN, "Dropped a listener call, its executor rejected it: %s", e);
+        }
+    }
+
+    /**
+     * A unit of queued work. Lower priorities run first, equal ones in submission order.
+     */
+    private abstract class Job implements Comparable<Job> {
+        static final int PRIORITY_DISCONNECT = 0;
+        static final int PRIORITY_CONNECT = 1;
+        static final int PRIORITY_SCAN = 2;
+
+        private final int mPriority;
+        private final long mSequence = mNextSequence++;
+
+        Job(int priority) {
+            mPriority = priority;
+        }
+
+        abstract void run();
+
+        @Override
+        public int compareTo(@NonNull Job other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+
+        void finish() {
+            if (mCurrent == this) {
+                mCurrent = null;
+                // Let the listeners of this job return before the next one starts
+                mHandler.post(WifiEngine.this::runNext);
+            }
+        }
+    }
+
+    private final class DisconnectJob extends Job {
+        @NonNull
+        private final DisconnectionSuccessListener mListener;
+        @Nullable
+        private final Executor mExecutor;
+
+        DisconnectJob(@NonNull DisconnectionSuccessListener listener, @Nullable Executor executor) {
+            super(PRIORITY_DISCONNECT);
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        @Override
+        void run() {
+            if (!mRadio.isConnectivityAvailable()) {
+                deliver(mExecutor, () -> mListener.failed(DisconnectionErrorCode.COULD_NOT_GET_CONNECTIVITY_MANAGER));
+            } else if (isAndroidQOrLater()) {
+                NetworkRequestRegistry.getInstance().releaseAll();
+                deliver(mExecutor, mListener::success);
+            } else if (disconnectFromWifi(mRadio)) {
+                deliver(mExecutor, mListener::success);
+            } else {
+                deliver(mExecutor, () -> mListener.failed(DisconnectionErrorCode.COULD_NOT_DISCONNECT));
+            }
+            finish();
+        }
+    }
+
+    private final class RemoveJob extends Job {
+        @NonNull
+        private final String mSsid;
+        @NonNull
+        private final RemoveSuccessListener mListener;
+        @Nullable
+        private final Executor mExecutor;
+
+        RemoveJob(@NonNull String ssid, @NonNull RemoveSuccessListener listener, @Nullable Executor executor) {
+            super(PRIORITY_DISCONNECT);
+            mSsid = ssid;
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        @Override
+        void run() {
+            if (!mRadio.isConnectivityAvailable()) {
+                deliver(mExecutor, () -> mListener.failed(RemoveErrorCode.COULD_NOT_GET_CONNECTIVITY_MANAGER));
+            } else if (isAndroidQOrLater()) {
+                // Networks of other SSIDs stay connected
+                NetworkRequestRegistry.getInstance().releaseSsid(mSsid);
+                deliver(mExecutor, mListener::success);
+            } else if (removeWifi(mRadio, mSsid)) {
+                deliver(mExecutor, mListener::success);
+            } else {
+                deliver(mExecutor, () -> mListener.failed(RemoveErrorCode.COULD_NOT_REMOVE));
+            }
+            finish();
+        }
+    }
+
+    /**
+     * Enables wifi, scans and connects on behalf of one request, or of several identical connect requests.
+     * The oldest request still waiting decides how, every request gets notified.
+     */
+    private final class Operation extends Job implements ScanSnapshotCallback, WifiConnectionCallback {
+        private static final int ENABLING = 0;
+        private static final int SCANNING = 1;
+        private static final int CONNECTING = 2;
+        private static final int FINISHED = 3;
+        /**
+         * Failing over is pointless if the deadline leaves the next access point less time than this.
+         */
+        private static final long MIN_ATTEMPT_MILLIS = 2000;
+
+        /**
+         * The request leading the operation, replaced by the next one in line if cancelled.
+         */
+        @NonNull
+        ConnectRequest mRequest;
+        /**
+         * Everyone waiting on this operation, {@link #mRequest} first.
+         */
+        @NonNull
+        final List<ConnectRequest> mRequests = new ArrayList<>(1);
+        @Nullable
+        private ScanResult mSingleScanResult;
+        /**
+         * Access points to try in order when failing over, null otherwise.
+         */
+        @Nullable
+        private List<ScanResult> mCandidates;
+        /**
+         * Where the scan results come from, holding their parsed security.
+         */
+        @NonNull
+        private ScanSnapshot mSnapshot = ScanSnapshot.empty();
+        private int mAttempt;
+        private long mDeadline;
+        private int mPhase = ENABLING;
+        /**
+         * {@link SystemClock#elapsedRealtimeNanos()} when the operation, and the phase it is in, started.
+         * The phase start is 0 when the phase isn't timed, for instance because results came from cache.
+         */
+        private long mStartedAt;
+        private long mPhaseStartedAt;
+        /**
+         * {@link SystemClock#elapsedRealtime()} when the current connection attempt started listening, 0 before.
+         */
+        private long mAttemptStartedAt;
+
+        /**
+         * Waiting for wifi to be enabled or for scan results isn't bounded by the platform,
+         * the request timeout keeps a lost broadcast from stalling the whole queue.
+         */
+        @NonNull
+        private final Runnable mPhaseTimeout = () -> {
+            if (mPhase == ENABLING) {
+                wifiLog("Timed out waiting for wifi to be enabled");
+                failToEnableWifi();
+            } else if (mPhase == SCANNING) {
+                wifiLog("Timed out waiting for scan results");
+                ScanScheduler.getInstance().cancel(this);
+                onScanFailed();
+            }
+        };
+
+        Operation(@NonNull ConnectRequest request) {
+            super(request.isConnect() ? PRIORITY_CONNECT : PRIORITY_SCAN);
+            mRequest = request;
+            mRequests.add(request);
+        }
+
+        /**
+         * Stops notifying a request. If it was leading, the next request in line takes over, with its own timeout.
+         * The network requested on Android 10 and up is handed over to it as well.
+         *
+         * @return false if the request wasn't waiting on this operation
+         */
+        boolean remove(@NonNull ConnectRequest request) {
+            if (!mRequests.remove(request)) {
+                return false;
+            }
+            if (request != mRequest || mRequests.isEmpty()) {
+                return true;
+            }
+            mRequest = mRequests.get(0);
+            wifiLog(Log.VERBOSE, "Leading request cancelled, %s takes over", mRequest.getId());
+            if (isCurrent() && mPhase == CONNECTING) {
+                if (isAndroidQOrLater()) {
+                    final NetworkRequestRegistry registry = NetworkRequestRegistry.getInstance();
+                    registry.share(request.getId(), mRequest.getId());
+                    registry.release(request.getId());
+                }
+                if (mAttemptStartedAt != 0) {
+                    final long now = SystemClock.elapsedRealtime();
+                    long remainingMillis = mRequest.getTimeoutMillis() - (now - mAttemptStartedAt);
+                    if (mCandidates != null) {
+                        remainingMillis = Math.min(remainingMillis, mDeadline - now);
+                    }
+                    mTimeoutHandler.startTimeout(mSingleScanResult, Math.max(0, remainingMillis));
+                }
+            } else if (mPhaseStartedAt != 0 && (mPhase == ENABLING || mPhase == SCANNING)) {
+                mHandler.removeCallbacks(mPhaseTimeout);
+                final long elapsedMillis = (SystemClock.elapsedRealtimeNanos() - mPhaseStartedAt) / 1_000_000;
+                mHandler.postDelayed(mPhaseTimeout, Math.max(0, mRequest.getTimeoutMillis() - elapsedMillis));
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the network asked for, or the access point picked for it, has the given SSID
+         */
+        boolean isConnectingTo(@NonNull String ssid) {
+            return ssid.equals(mRequest.getSsid()) || (mSingleScanResult != null && ssid.equals(mSingleScanResult.SSID));
+        }
+
+        boolean accepts(@NonNull ConnectRequest request) {
+            return mPhase != FINISHED && !mRequests.isEmpty() && mRequest.canCoalesceWith(request);
+        }
+
+        @Override
+        void run() {
+            mStartedAt = SystemClock.elapsedRealtimeNanos();
+            if (mRadio.isWifiEnabled()) {
+                onWifiEnabled();
+                return;
+            }
+            final Intent intent = checkVersionAndGetIntent();
+            if (intent == null && !mRadio.setWifiEnabled(true)) {
+                failToEnableWifi();
+                return;
+            }
+            if (!registerReceiver(mRadio, mWifiStateReceiver, new IntentFilter(WifiManager.WIFI_STATE_CHANGED_ACTION))) {
+                // Wifi may well come up, but we would never hear of it
+                failToEnableWifi();
+                return;
+            }
+            mPhaseStartedAt = mStartedAt;
+            mHandler.postDelayed(mPhaseTimeout, mRequest.getTimeoutMillis());
+            if (intent != null) {
+                // Apps can't toggle wifi anymore, carry on once the user does it
+                startWifiSettingsIntent(intent);
+            }
+        }
+
+        void onWifiEnabled() {
+            if (mPhase != ENABLING) {
+                return;
+            }
+            wifiLog("WIFI ENABLED...");
+            if (mPhaseStartedAt != 0) {
+                WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.ENABLE_WIFI, mPhaseStartedAt);
+            }
+            mHandler.removeCallbacks(mPhaseTimeout);
+            unregisterReceiver(mRadio, mWifiStateReceiver);
+            notifyWifiState(true);
+
+            if (!mRequest.needsScan()) {
+                finish();
+                return;
+            }
+            mPhase = SCANNING;
+            final long maxScanAgeMillis = mRequest.getMaxScanAgeMillis();
+            final ScanSnapshot cached = maxScanAgeMillis > 0 ? ScanScheduler.getInstance().getCachedSnapshot(maxScanAgeMillis) : null;
+            if (cached != null && canUseCachedScan(cached)) {
+                wifiLog("USING CACHED SCAN RESULTS");
+                mPhaseStartedAt = 0;
+                onScanSnapshot(cached);
+            } else {
+                mPhaseStartedAt = SystemClock.elapsedRealtimeNanos();
+                mHandler.postDelayed(mPhaseTimeout, mRequest.getTimeoutMillis());
+                ScanScheduler.getInstance().requestScan(mRadio, this);
+            }
+        }
+
+        /**
+         * Cached results are only good enough if they contain the network we are asked to connect to,
+         * otherwise a fresh scan might still find it.
+         */
+        private boolean canUseCachedScan(@NonNull ScanSnapshot cached) {
+            final String ssid = mRequest.getSsid();
+            final String bssid = mRequest.getBssid();
+            if (mRequest.getConnectionWpsListener() != null && bssid != null) {
+                return matchScanResultBssid(bssid, cached) != null;
+            }
+            if (ssid != null) {
+                if (bssid != null) {
+                    return matchScanResult(ssid, bssid, cached) != null;
+                }
+                return matchScanResultSsid(ssid, cached, mRequest.isPatternMatch()) != null;
+            }
+            return true;
+        }
+
+        private void failToEnableWifi() {
+            unregisterReceiver(mRadio, mWifiStateReceiver);
+            notifyWifiState(false);
+            notifyScanResults(new ArrayList<>());
+            notifyWpsFailed();
+            wifiLog("COULDN'T ENABLE WIFI");
+            fail(ConnectionErrorCode.COULD_NOT_ENABLE_WIFI);
+        }
+
+        @Override
+        public void onScanFailed() {
+            if (!isScanning()) {
+                return;
+            }
+            notifyScanResults(new ArrayList<>());
+            notifyWpsFailed();
+            wifiLog("ERROR COULDN'T SCAN");
+            fail(ConnectionErrorCode.COULD_NOT_SCAN);
+        }
+
+        @Override
+        public void onScanSnapshot(@NonNull ScanSnapshot snapshot) {
+            if (!isScanning()) {
+                return;
+            }
+            mHandler.removeCallbacks(mPhaseTimeout);
+            if (mPhaseStartedAt != 0) {
+                WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.SCAN, mPhaseStartedAt);
+            }
+            wifiLog(Log.VERBOSE, "GOT SCAN RESULTS %dms OLD", snapshot.getAgeMillis());
+            mSnapshot = snapshot;
+            final List<ScanResult> scanResultList = snapshot.getResults();
+            notifyScanResults(scanResultList);
+            final ConnectionScanResultsListener connectionResultsListener = mRequest.getConnectionScanResultsListener();
+            if (connectionResultsListener != null) {
+                mSingleScanResult = connectionResultsListener.onConnectWithScanResult(scanResultList);
+            }
+
+            final String ssid = mRequest.getSsid();
+            final String bssid = mRequest.getBssid();
+            final String password = mRequest.getPassword();
+            final ConnectionWpsListener wpsListener = mRequest.getConnectionWpsListener();
+            if (wpsListener != null && bssid != null && password != null) {
+                mSingleScanResult = matchScanResultBssid(bssid, snapshot);
+                if (mSingleScanResult != null && isLollipopOrLater()) {
+                    mPhase = CONNECTING;
+                    connectWps(mRadio, mHandler, mSingleScanResult, password, mRequest.getWpsTimeoutMillis(), isSuccess -> {
+                        deliver(mRequest, () -> wpsListener.isSuccessful(isSuccess));
+                        if (isCurrent()) {
+                            finish();
+                        }
+                    });
+                } else {
+                    if (mSingleScanResult == null) {
+                        wifiLog("Couldn't find network. Possibly out of range");
+                    }
+                    deliver(mRequest, () -> wpsListener.isSuccessful(false));
+                    finish();
+                }
+                return;
+            }
+
+            if (password == null) {
+                // Scanning was all this request was about
+                finish();
+                return;
+            }
+
+            final long matchStartedAt = SystemClock.elapsedRealtimeNanos();
+            if (ssid != null) {
+                if (bssid != null) {
+                    mSingleScanResult = matchScanResult(ssid, bssid, snapshot);
+                } else if (mRequest.getFailoverDeadlineMillis() > 0) {
+                    mCandidates = BssidRanker.getInstance().rank(mRequest.isPatternMatch() ? snapshot.findBySsidPrefix(ssid) : snapshot.findBySsid(ssid));
+                    mSingleScanResult = mCandidates.isEmpty() ? null : mCandidates.get(0);
+                    mDeadline = SystemClock.elapsedRealtime() + mRequest.getFailoverDeadlineMillis();
+                } else {
+                    mSingleScanResult = matchScanResultSsid(ssid, snapshot, mRequest.isPatternMatch());
+                }
+            }
+            WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.MATCH, matchStartedAt);
+            mPhase = CONNECTING;
+            if (mCandidates != null && !mCandidates.isEmpty()) {
+                connectToNextCandidate(password);
+            } else if (mSingleScanResult != null) {
+                if (connectToWifi(mContext, mRadio, mHandler, mSingleScanResult, mSnapshot.getSecurity(mSingleScanResult), password, this, mRequest.isPatternMatch(), ssid,
+                        mRequest.getId(), mRequest.getNetworkBinding())) {
+                    listenForConnection(mWifiConnectionReceiver.connectWith(mSingleScanResult, password), mRequest.getTimeoutMillis());
+                } else {
+                    errorConnect(ConnectionErrorCode.COULD_NOT_CONNECT);
+                }
+            } else {
+                final String type = mRequest.getType() == null ? null : mRequest.getType().name();
+                if (connectToWifiHidden(mContext, mRadio, mHandler, ssid, type, password, this, mRequest.getId(), mRequest.getNetworkBinding())) {
+                    listenForConnection(mWifiConnectionReceiver.connectWith(ssid, password), mRequest.getTimeoutMillis());
+                } else {
+                    errorConnect(ConnectionErrorCode.COULD_NOT_CONNECT);
+                }
+            }
+        }
+
+        /**
+         * Every attempt sticks to its own access point, even when pattern matching, and gets whatever
+         * is left of the deadline if that is shorter than the request timeout.
+         */
+        private void connectToNextCandidate(@NonNull String password) {
+            mSingleScanResult = mCandidates.get(mAttempt++);
+            final long timeoutMillis = Math.min(mRequest.getTimeoutMillis(), mDeadline - SystemClock.elapsedRealtime());
+            wifiLog(Log.VERBOSE, "Trying %s (%d/%d)", mSingleScanResult.BSSID, mAttempt, mCandidates.size());
+            if (connectToWifi(mContext, mRadio, mHandler, mSingleScanResult, mSnapshot.getSecurity(mSingleScanResult), password, this, false, mSingleScanResult.SSID,
+                    mRequest.getId(), mRequest.getNetworkBinding())) {
+                listenForConnection(mWifiConnectionReceiver.connectWith(mSingleScanResult, password), timeoutMillis);
+            } else {
+                errorConnect(ConnectionErrorCode.COULD_NOT_CONNECT);
+            }
+        }
+
+        /**
+         * Only failures that may be down to the access point itself are worth trying another one.
+         */
+        private boolean canFailOver(@NonNull ConnectionErrorCode connectionErrorCode) {
+            if (mCandidates == null || mAttempt >= mCandidates.size()
+                    || mDeadline - SystemClock.elapsedRealtime() < MIN_ATTEMPT_MILLIS) {
+                return false;
+            }
+            return isAccessPointFailure(connectionErrorCode);
+        }
+
+        private boolean isAccessPointFailure(@NonNull ConnectionErrorCode connectionErrorCode) {
+            switch (connectionErrorCode) {
+                case TIMEOUT_OCCURRED:
+                case COULD_NOT_CONNECT:
+                case ANDROID_10_IMMEDIATELY_DROPPED_CONNECTION:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private void listenForConnection(@NonNull WifiConnectionReceiver receiver, long timeoutMillis) {
+            registerReceiver(mRadio, receiver, new IntentFilter(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION));
+            registerReceiver(mRadio, receiver, new IntentFilter(WifiManager.NETWORK_STATE_CHANGED_ACTION));
+            mAttemptStartedAt = SystemClock.elapsedRealtime();
+            mTimeoutHandler.startTimeout(mSingleScanResult, timeoutMillis);
+        }
+
+        /**
+         * Also handed to the connection code directly, which may call back late on Android 10 and up.
+         * Anything arriving once this request is no longer the one running is ignored.
+         */
+        @Override
+        public void successfulConnect() {
+            if (!isCurrent() || mPhase != CONNECTING) {
+                return;
+            }
+            wifiLog("CONNECTED SUCCESSFULLY");
+            WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.TOTAL, mStartedAt);
+            WifiTrace.getInstance().record(WifiTrace.Type.CONNECTED, mSingleScanResult == null ? null : mSingleScanResult.BSSID);
+            if (mSingleScanResult != null) {
+                BssidRanker.getInstance().recordSuccess(mSingleScanResult.BSSID);
+            }
+            unregisterReceiver(mRadio, mWifiConnectionReceiver);
+            mTimeoutHandler.stopTimeout();
+            if (isAndroidQOrLater()) {
+                holdNetwork();
+            }
+            for (final ConnectRequest request : mRequests) {
+                final ConnectionSuccessListener successListener = request.getConnectionSuccessListener();
+                if (successListener != null) {
+                    deliver(request, successListener::success);
+                }
+            }
+            finish();
+        }
+
+        @Override
+        public void errorConnect(@NonNull ConnectionErrorCode connectionErrorCode) {
+            if (!isCurrent() || mPhase != CONNECTING) {
+                return;
+            }
+            WifiTrace.getInstance().record(WifiTrace.Type.ERROR, mSingleScanResult == null ? null : mSingleScanResult.BSSID, connectionErrorCode.ordinal());
+            if (mSingleScanResult != null && isAccessPointFailure(connectionErrorCode)) {
+                BssidRanker.getInstance().recordFailure(mSingleScanResult.BSSID);
+            }
+            if (canFailOver(connectionErrorCode)) {
+                wifiLog(Log.VERBOSE, "Couldn't connect to %s %s, failing over", mSingleScanResult.BSSID, connectionErrorCode);
+                unregisterReceiver(mRadio, mWifiConnectionReceiver);
+                mTimeoutHandler.stopTimeout();
+                if (isAndroidQOrLater()) {
+                    NetworkRequestRegistry.getInstance().release(mRequest.getId());
+                }
+                connectToNextCandidate(mRequest.getPassword());
+                return;
+            }
+            fail(connectionErrorCode);
+        }
+
+        private void fail(@NonNull ConnectionErrorCode connectionErrorCode) {
+            unregisterReceiver(mRadio, mWifiConnectionReceiver);
+            mTimeoutHandler.stopTimeout();
+            if (isAndroidQOrLater()) {
+                NetworkRequestRegistry.getInstance().release(mRequest.getId());
+            }
+            reenableAllHotspots(mRadio);
+            wifiLog(Log.VERBOSE, "DIDN'T CONNECT TO WIFI %s", connectionErrorCode);
+            notifyConnectFailed(connectionErrorCode);
+            finish();
+        }
+
+        /**
+         * The network was requested under the id of the request leading the attempt. Every request that joined
+         * it gets to hold on to it too.
+         */
+        private void holdNetwork() {
+            final NetworkRequestRegistry registry = NetworkRequestRegistry.getInstance();
+            for (final ConnectRequest request : mRequests) {
+                registry.share(mRequest.getId(), request.getId());
+            }
+        }
+
+        private void notifyConnectFailed(@NonNull ConnectionErrorCode connectionErrorCode) {
+            for (final ConnectRequest request : mRequests) {
+                final ConnectionSuccessListener successListener = request.getConnectionSuccessListener();
+                if (successListener != null) {
+                    deliver(request, () -> successListener.failed(connectionErrorCode));
+                }
+            }
+        }
+
+        private void notifyWifiState(boolean isSuccess) {
+            for (final ConnectRequest request : mRequests) {
+                final WifiStateListener stateListener = request.getWifiStateListener();
+                if (stateListener != null) {
+                    deliver(request, () -> stateListener.isSuccess(isSuccess));
+                }
+            }
+        }
+
+        private void notifyWpsFailed() {
+            final ConnectionWpsListener wpsListener = mRequest.getConnectionWpsListener();
+            if (wpsListener != null) {
+                deliver(mRequest, () -> wpsListener.isSuccessful(false));
+            }
+        }
+
+        private void notifyScanResults(@NonNull List<ScanResult> scanResults) {
+            for (final ConnectRequest request : mRequests) {
+                final ScanResultsListener resultsListener = request.getScanResultsListener();
+                if (resultsListener != null) {
+                    deliver(request, () -> resultsListener.onScanResults(scanResults));
+                }
+            }
+        }
+
+        void cancel() {
+            unregisterReceiver(mRadio, mWifiStateReceiver);
+            ScanScheduler.getInstance().cancel(this);
+            unregisterReceiver(mRadio, mWifiConnectionReceiver);
+            mTimeoutHandler.stopTimeout();
+            if (mSingleScanResult != null) {
+                cleanPreviousConfiguration(mRadio, mSingleScanResult);
+            }
+            if (isAndroidQOrLater() && mPhase == CONNECTING) {
+                NetworkRequestRegistry.getInstance().release(mRequest.getId());
+            }
+            reenableAllHotspots(mRadio);
+            finish();
+        }
+
+        /**
+         * Stops like {@link #cancel()}, but tells everyone waiting that the attempt failed.
+         */
+        void preempt() {
+            wifiLog("Connection attempt pre-empted by a disconnect or remove");
+            notifyWpsFailed();
+            notifyConnectFailed(ConnectionErrorCode.COULD_NOT_CONNECT);
+            cancel();
+        }
+
+        private boolean isCurrent() {
+            return mCurrent == this && mPhase != FINISHED;
+        }
+
+        private boolean isScanning() {
+            return isCurrent() && mPhase == SCANNING;
+        }
+
+        @Override
+        void finish() {
+            mPhase = FINISHED;
+            mHandler.removeCallbacks(mPhaseTimeout);
+            super.finish();
+        }
+    }
+}
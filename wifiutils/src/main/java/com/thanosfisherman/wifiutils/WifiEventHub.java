@@ -0,0 +1,162 @@
+package com.androidconnect.wifiutils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
+
+/**
+ * Process wide multiplexer for the broadcasts WifiUtils listens to.
+ * <p>
+ * Every intent action is registered with the system once, no matter how many
+ * {@link BroadcastReceiver}s subscribe to it, and each broadcast is fanned out to the subscribers.
+ * The system registration is dropped as soon as the last subscriber of an action leaves.
+ * <p>
+ * Subscribers get the same events they would have gotten registering themselves, including the
+ * last sticky broadcast of the action they subscribe to, except that they get them on the {@link WifiWorker}
+ * thread rather than on the main thread.
+ */
+public final class WifiEventHub {
+    @Nullable
+    private static volatile WifiEventHub sInstance;
+
+    private final Object mLock = new Object();
+    @NonNull
+    private final Map<String, ActionReceiver> mReceivers = new HashMap<>();
+    @Nullable
+    private Context mContext;
+
+    private WifiEventHub() {
+    }
+
+    /**
+     * Gets a Singleton instance of WifiEventHub.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return WifiEventHub Singleton instance
+     */
+    @NonNull
+    public static WifiEventHub getInstance() {
+        if (sInstance == null) {
+            synchronized (WifiEventHub.class) {
+                if (sInstance == null) {
+                    sInstance = new WifiEventHub();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Subscribes a receiver to every action of the given filter. Subscribing the same receiver
+     * again with other actions adds those actions, just like {@link Context#registerReceiver(BroadcastReceiver, IntentFilter)}.
+     *
+     * @param context  any context, only its application context is retained
+     * @param receiver the receiver to dispatch broadcasts to
+     * @param filter   the actions to subscribe to. Only actions are taken into account
+     * @return false if the system refused to register one of the actions, whose broadcasts the receiver won't get
+     */
+    public boolean subscribe(@NonNull Context context, @NonNull BroadcastReceiver receiver, @NonNull IntentFilter filter) {
+        boolean subscribed = true;
+        synchronized (mLock) {
+            if (mContext == null) {
+                mContext = context.getApplicationContext();
+            }
+            for (int i = 0; i < filter.countActions(); i++) {
+                final String action = filter.getAction(i);
+                ActionReceiver actionReceiver = mReceivers.get(action);
+                if (actionReceiver == null) {
+                    actionReceiver = new ActionReceiver();
+                    actionReceiver.mSubscribers.add(receiver);
+                    try {
+                        mContext.registerReceiver(actionReceiver, new IntentFilter(action), null, WifiWorker.getInstance().getHandler());
+                        mReceivers.put(action, actionReceiver);
+                    } catch (Exception e) {
+                        wifiLog(Log.ERROR, "Could not register for %s: %s", action, e);
+                        subscribed = false;
+                    }
+                } else if (actionReceiver.mSubscribers.addIfAbsent(receiver)) {
+                    replayStickyBroadcast(action, actionReceiver, receiver);
+                }
+            }
+        }
+        return subscribed;
+    }
+
+    /**
+     * Unsubscribes a receiver from every action it was subscribed to. Unsubscribing a receiver that isn't
+     * subscribed does nothing.
+     */
+    public void unsubscribe(@Nullable BroadcastReceiver receiver) {
+        if (receiver == null) {
+            return;
+        }
+        synchronized (mLock) {
+            final Iterator<ActionReceiver> iterator = mReceivers.values().iterator();
+            while (iterator.hasNext()) {
+                final ActionReceiver actionReceiver = iterator.next();
+                if (actionReceiver.mSubscribers.remove(receiver) && actionReceiver.mSubscribers.isEmpty()) {
+                    iterator.remove();
+                    try {
+                        mContext.unregisterReceiver(actionReceiver);
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The system only delivers the current sticky broadcast of an action when registering for it.
+     * A late subscriber piggybacking on an existing registration gets it from here instead,
+     * asynchronously on the worker thread like the system would deliver it.
+     */
+    private void replayStickyBroadcast(@NonNull String action, @NonNull ActionReceiver actionReceiver, @NonNull BroadcastReceiver receiver) {
+        final Intent sticky;
+        try {
+            sticky = mContext.registerReceiver(null, new IntentFilter(action));
+        } catch (Exception e) {
+            return;
+        }
+        if (sticky == null) {
+            return;
+        }
+        wifiLog(Log.VERBOSE, "Replaying sticky broadcast %s", action);
+        final Context context = mContext;
+        WifiWorker.getInstance().getHandler().post(() -> {
+            if (actionReceiver.mSubscribers.contains(receiver)) {
+                receiver.onReceive(context, sticky);
+            }
+        });
+    }
+
+    /**
+     * The one receiver registered with the system per action.
+     */
+    private static final class ActionReceiver extends BroadcastReceiver {
+        @NonNull
+        final CopyOnWriteArrayList<BroadcastReceiver> mSubscribers = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            ScanTraceRecorder.getInstance().recordBroadcast(intent);
+            for (final BroadcastReceiver subscriber : mSubscribers) {
+                // Iteration goes over a snapshot, skip subscribers that left during this dispatch
+                if (mSubscribers.contains(subscriber)) {
+                    subscriber.onReceive(context, intent);
+                }
+            }
+        }
+    }
+}
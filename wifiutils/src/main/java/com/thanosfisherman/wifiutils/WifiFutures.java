@@ -0,0 +1,157 @@
+package com.androidconnect.wifiutils;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener;
+import com.androidconnect.wifiutils.wifiScan.ScanSnapshot;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link CompletableFuture} based access to the {@link WifiEngine}, for composing scans and connections
+ * off the main thread.
+ * <p>
+ * Requests are queued on the engine like any other and the futures complete on the {@link Executor} given here,
+ * handed over from the engine's thread without going through the main thread. Stages chained with the non async
+ * methods of {@link CompletableFuture} before completion run there too, so ranking scan results or any other post
+ * processing never lands on the main thread:
+ * <pre>{@code
+ * futures.scan()
+ *         .thenApply(snapshot -> snapshot.findStrongestBySsidPrefix("office"))
+ *         .thenCompose(best -> futures.connect(new ConnectRequest.Builder()
+ *                 .setSsid(best.SSID).setBssid(best.BSSID).setPassword(password).build()));
+ * }</pre>
+ * Cancelling a future cancels its request, as {@link WifiConnectorBuilder.WifiUtilsBuilder#cancelAutoConnect()} would.
+ * <p>
+ * Thread safe.
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+public final class WifiFutures {
+    /**
+     * Listeners only hand over to the executor, they may as well run on the engine's thread.
+     */
+    @NonNull
+    private static final Executor ENGINE_THREAD = Runnable::run;
+
+    @NonNull
+    private final WifiEngine mEngine;
+    @NonNull
+    private final Executor mExecutor;
+
+    /**
+     * @param engine   the engine requests go to
+     * @param executor where futures complete
+     */
+    public WifiFutures(@NonNull WifiEngine engine, @NonNull Executor executor) {
+        mEngine = engine;
+        mExecutor = executor;
+    }
+
+    /**
+     * @param context  any context, only its application context is retained
+     * @param executor where futures complete
+     * @return futures backed by the process wide {@link WifiEngine}
+     */
+    @NonNull
+    public static WifiFutures create(@NonNull Context context, @NonNull Executor executor) {
+        return new WifiFutures(WifiEngine.getInstance(context), executor);
+    }
+
+    @NonNull
+    public Executor getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Scans, turning wifi on first if needed. A scan that fails completes with an empty snapshot.
+     */
+    @NonNull
+    public CompletableFuture<ScanSnapshot> scan() {
+        return scan(0);
+    }
+
+    /**
+     * Like {@link #scan()}, skipping the scan if every access point seen by a previous one is recent enough.
+     *
+     * @param maxAgeMillis the oldest scan results that are acceptable, 0 to always scan
+     */
+    @NonNull
+    public CompletableFuture<ScanSnapshot> scan(long maxAgeMillis) {
+        final CompletableFuture<ScanSnapshot> future = new CompletableFuture<>();
+        final ConnectRequest request = new ConnectRequest.Builder()
+                .setMaxScanAge(maxAgeMillis)
+                // Indexing the results is left to the executor
+                .setScanResultsListener(results -> deliver(future, () -> future.complete(ScanSnapshot.of(results))))
+                .setCallbackExecutor(ENGINE_THREAD)
+                .build();
+        submit(request, future);
+        return future;
+    }
+
+    /**
+     * Connects as the request says. The future completes with the outcome, failures included, and
+     * completes exceptionally only if the executor couldn't run.
+     *
+     * @param request a request that connects to a network, see {@link ConnectRequest#isConnect()}. Its
+     *                {@link ConnectionSuccessListener} is not called, the future takes its place.
+     * @throws IllegalArgumentException if the request doesn't connect to anything
+     */
+    @NonNull
+    public CompletableFuture<ConnectResult> connect(@NonNull ConnectRequest request) {
+        if (!request.isConnect()) {
+            throw new IllegalArgumentException("Request doesn't connect to any network");
+        }
+        final CompletableFuture<ConnectResult> future = new CompletableFuture<>();
+        final long submittedAt = SystemClock.elapsedRealtime();
+        final ConnectionSuccessListener listener = new ConnectionSuccessListener() {
+            @Override
+            public void success() {
+                complete(null);
+            }
+
+            @Override
+            public void failed(@NonNull ConnectionErrorCode errorCode) {
+                complete(errorCode);
+            }
+
+            private void complete(ConnectionErrorCode errorCode) {
+                final ConnectResult result = new ConnectResult(request, errorCode, SystemClock.elapsedRealtime() - submittedAt);
+                deliver(future, () -> future.complete(result));
+            }
+        };
+        submit(request.newBuilder()
+                .setConnectionSuccessListener(listener)
+                .setCallbackExecutor(ENGINE_THREAD)
+                .build(), future);
+        return future;
+    }
+
+    /**
+     * Runs the completion on the executor. An executor refusing it, because it was shut down for instance,
+     * fails the future rather than the engine's thread.
+     */
+    private void deliver(@NonNull CompletableFuture<?> future, @NonNull Runnable completion) {
+        try {
+            mExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void submit(@NonNull ConnectRequest request, @NonNull CompletableFuture<?> future) {
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                mEngine.cancel(request);
+            }
+        });
+        mEngine.submit(request);
+    }
+}
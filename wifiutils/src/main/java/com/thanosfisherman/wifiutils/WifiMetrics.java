@@ -0,0 +1,254 @@
+package com.androidconnect.wifiutils;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency of every phase of connecting, recorded into one histogram per {@link Phase}.
+ * <p>
+ * Histograms have fixed, log linear buckets in microseconds, in the spirit of HdrHistogram: every power of
+ * two is split in {@link #SUB_BUCKETS} buckets, so any percentile is off by at most 12.5% while a histogram
+ * only takes {@link #BUCKET_COUNT} counters. Recording is a couple of atomic increments and never allocates.
+ * <p>
+ * Read the numbers through {@link #getSnapshot(Phase)}, for instance to report p50 and p99 periodically,
+ * followed by {@link #reset()}.
+ */
+public final class WifiMetrics {
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Longer phases, about 35 minutes, end up in the last bucket.
+     */
+    private static final long MAX_VALUE_MICROS = Integer.MAX_VALUE;
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE_MICROS) + 1;
+
+    public enum Phase {
+        /**
+         * Turning wifi on, only recorded when it was off.
+         */
+        ENABLE_WIFI,
+        /**
+         * Waiting for scan results, not recorded when cached results were good enough.
+         */
+        SCAN,
+        /**
+         * Looking up the access point to connect to among the scan results.
+         */
+        MATCH,
+        /**
+         * Adding, updating and enabling the network configuration, or requesting the network on Android 10 and up.
+         */
+        CONFIGURE,
+        /**
+         * From the network being configured until the supplicant associates with the access point.
+         */
+        ASSOCIATION,
+        /**
+         * From association until the supplicant completes the four way handshake.
+         */
+        HANDSHAKE,
+        /**
+         * From the four way handshake until an IP address is acquired.
+         */
+        IP_ACQUIRED,
+        /**
+         * Android 10 and up, from requesting the network until {@code onAvailable}.
+         */
+        NETWORK_AVAILABLE,
+        /**
+         * The whole connection, from the request starting to run until it succeeds.
+         */
+        TOTAL
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    @Nullable
+    private static volatile WifiMetrics sInstance;
+
+    @NonNull
+    private final Recorder[] mRecorders = new Recorder[PHASES.length];
+
+    private WifiMetrics() {
+        for (int i = 0; i < mRecorders.length; i++) {
+            mRecorders[i] = new Recorder();
+        }
+    }
+
+    /**
+     * Gets a Singleton instance of WifiMetrics.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return WifiMetrics Singleton instance
+     */
+    @NonNull
+    public static WifiMetrics getInstance() {
+        if (sInstance == null) {
+            synchronized (WifiMetrics.class) {
+                if (sInstance == null) {
+                    sInstance = new WifiMetrics();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public void record(@NonNull Phase phase, long durationNanos) {
+        mRecorders[phase.ordinal()].record(Math.max(0, durationNanos / 1000));
+    }
+
+    /**
+     * Records the time elapsed since the given {@link SystemClock#elapsedRealtimeNanos()}.
+     */
+    public void recordSince(@NonNull Phase phase, long startNanos) {
+        record(phase, SystemClock.elapsedRealtimeNanos() - startNanos);
+    }
+
+    /**
+     * @return a copy of what was recorded for the given phase so far, unaffected by later recordings.
+     */
+    @NonNull
+    public Snapshot getSnapshot(@NonNull Phase phase) {
+        return mRecorders[phase.ordinal()].snapshot();
+    }
+
+    /**
+     * Forgets everything recorded so far. Recordings made while resetting may or may not be kept.
+     */
+    public void reset() {
+        for (final Recorder recorder : mRecorders) {
+            recorder.reset();
+        }
+    }
+
+    /**
+     * Writes count, p50, p99 and max of every phase, one per line.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        for (final Phase phase : PHASES) {
+            writer.println(phase + " " + getSnapshot(phase));
+        }
+        writer.flush();
+    }
+
+    static int bucketIndex(long valueMicros) {
+        final long value = Math.min(valueMicros, MAX_VALUE_MICROS);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value that falls in the given bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    private static final class Recorder {
+        @NonNull
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+        @NonNull
+        private final AtomicLong mSumMicros = new AtomicLong();
+        @NonNull
+        private final AtomicLong mMaxMicros = new AtomicLong();
+
+        void record(long valueMicros) {
+            mCounts.incrementAndGet(bucketIndex(valueMicros));
+            mSumMicros.addAndGet(valueMicros);
+            long max = mMaxMicros.get();
+            while (valueMicros > max && !mMaxMicros.compareAndSet(max, valueMicros)) {
+                max = mMaxMicros.get();
+            }
+        }
+
+        @NonNull
+        Snapshot snapshot() {
+            final long[] counts = new long[BUCKET_COUNT];
+            long totalCount = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = mCounts.get(i);
+                totalCount += counts[i];
+            }
+            // Counted from the buckets so that percentiles stay consistent with a concurrent recording
+            return new Snapshot(counts, totalCount, mSumMicros.get(), mMaxMicros.get());
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mCounts.set(i, 0);
+            }
+            mSumMicros.set(0);
+            mMaxMicros.set(0);
+        }
+    }
+
+    public static final class Snapshot {
+        @NonNull
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSumMicros;
+        private final long mMaxMicros;
+
+        Snapshot(@NonNull long[] counts, long count, long sumMicros, long maxMicros) {
+            mCounts = counts;
+            mCount = count;
+            mSumMicros = sumMicros;
+            mMaxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMeanMicros() {
+            return mCount == 0 ? 0 : mSumMicros / mCount;
+        }
+
+        public long getMaxMicros() {
+            return mMaxMicros;
+        }
+
+        /**
+         * @param percentile between 0 and 100, 50 for the median
+         * @return the value the given percentage of recordings is at or below, rounded up to its bucket,
+         * or 0 if nothing was recorded.
+         */
+        public long getPercentileMicros(double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * mCount));
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), mMaxMicros);
+                }
+            }
+            return mMaxMicros;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "count=%d p50=%dus p99=%dus max=%dus",
+                    mCount, getPercentileMicros(50), getPercentileMicros(99), mMaxMicros);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.androidconnect.wifiutils;
+
+import android.content.BroadcastReceiver;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WpsInfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Everything WifiUtils asks of the platform: the {@link WifiManager} and {@link ConnectivityManager} calls it makes
+ * and the broadcasts it listens to.
+ * <p>
+ * The library talks to the system services through an implementation backed by them. Tests can drive the whole
+ * connection flow, engine, receivers and timeouts included, with a scripted implementation instead, see
+ * {@link WifiEngine#install(android.content.Context, WifiRadio)}. Every method behaves like the platform method
+ * of the same name and is called on the thread of {@link WifiEngine#getLooper()}, which is also where broadcasts
+ * and network callbacks are expected to be delivered.
+ */
+public interface WifiRadio {
+
+    boolean isWifiEnabled();
+
+    boolean setWifiEnabled(boolean enabled);
+
+    boolean startScan();
+
+    @Nullable
+    List<ScanResult> getScanResults();
+
+    @Nullable
+    WifiInfo getConnectionInfo();
+
+    @Nullable
+    List<WifiConfiguration> getConfiguredNetworks();
+
+    int addNetwork(@NonNull WifiConfiguration config);
+
+    int updateNetwork(@NonNull WifiConfiguration config);
+
+    boolean removeNetwork(int networkId);
+
+    boolean enableNetwork(int networkId, boolean attemptConnect);
+
+    boolean disableNetwork(int networkId);
+
+    boolean saveConfiguration();
+
+    boolean reconnect();
+
+    boolean reassociate();
+
+    boolean disconnect();
+
+    void startWps(@NonNull WpsInfo config, @Nullable WifiManager.WpsCallback callback);
+
+    void cancelWps(@Nullable WifiManager.WpsCallback callback);
+
+    /**
+     * @return false if the connectivity service is out of reach, in which case the calls below do nothing.
+     */
+    boolean isConnectivityAvailable();
+
+    @NonNull
+    Network[] getAllNetworks();
+
+    @Nullable
+    NetworkInfo getNetworkInfo(@Nullable Network network);
+
+    @Nullable
+    NetworkInfo getNetworkInfo(int networkType);
+
+    void requestNetwork(@NonNull NetworkRequest request, @NonNull ConnectivityManager.NetworkCallback networkCallback);
+
+    void unregisterNetworkCallback(@NonNull ConnectivityManager.NetworkCallback networkCallback);
+
+    boolean bindProcessToNetwork(@Nullable Network network);
+
+    void setNetworkPreference(int preference);
+
+    /**
+     * Delivers the broadcasts matching the filter's actions to the receiver, including the last sticky one,
+     * until {@link #unregisterReceiver(BroadcastReceiver)}.
+     *
+     * @return false if the broadcasts of some of the actions can't be delivered
+     */
+    boolean registerReceiver(@NonNull BroadcastReceiver receiver, @NonNull IntentFilter filter);
+
+    /**
+     * Stops delivering broadcasts to the receiver. Does nothing if it isn't registered.
+     */
+    void unregisterReceiver(@Nullable BroadcastReceiver receiver);
+}
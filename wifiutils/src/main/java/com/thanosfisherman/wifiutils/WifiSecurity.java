@@ -0,0 +1,216 @@
+package com.androidconnect.wifiutils;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Security of a network as a bitmask of the flags below.
+ * <p>
+ * A network may advertise more than one: a WPA2/WPA3 transition network is {@code PSK | SAE}, an
+ * enterprise WPA3 192-bit network {@code EAP | EAP_SUITE_B} and any of them may add {@link #WPS}.
+ * {@link #primary(int)} picks the one that gets configured when connecting.
+ * <p>
+ * Parsing {@link ScanResult#capabilities} is a handful of string searches, so results coming out of a
+ * {@link com.androidconnect.wifiutils.wifiScan.ScanSnapshot} are parsed once, when the snapshot is built,
+ * see {@link com.androidconnect.wifiutils.wifiScan.ScanSnapshot#getSecurity(ScanResult)}.
+ */
+public final class WifiSecurity {
+    public static final int OPEN = 1;
+    public static final int WEP = 1 << 1;
+    /**
+     * WPA/WPA2 personal.
+     */
+    public static final int PSK = 1 << 2;
+    /**
+     * WPA/WPA2/WPA3 enterprise.
+     */
+    public static final int EAP = 1 << 3;
+    /**
+     * WPA3 personal.
+     */
+    public static final int SAE = 1 << 4;
+    /**
+     * Enhanced open.
+     */
+    public static final int OWE = 1 << 5;
+    public static final int WPS = 1 << 6;
+    /**
+     * WPA3 enterprise 192-bit mode, always along with {@link #EAP}.
+     */
+    public static final int EAP_SUITE_B = 1 << 7;
+    /**
+     * Open network paired with an enhanced open one, always along with {@link #OPEN}.
+     */
+    public static final int OWE_TRANSITION = 1 << 8;
+
+    /**
+     * WPA2/WPA3 personal transition mode.
+     */
+    public static final int TRANSITION_PSK_SAE = PSK | SAE;
+
+    private static final int ENCRYPTED = WEP | PSK | EAP | SAE | OWE;
+
+    private WifiSecurity() {
+    }
+
+    /**
+     * @param capabilities as in {@link ScanResult#capabilities}, for instance {@code [WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS]},
+     *                     or one of the {@link TypeEnum} names
+     * @return the security flags found, {@link #OPEN} if none.
+     */
+    public static int parse(@Nullable String capabilities) {
+        if (capabilities == null) {
+            return OPEN;
+        }
+        int security = 0;
+        if (capabilities.contains("WEP")) {
+            security |= WEP;
+        }
+        if (capabilities.contains("PSK")) {
+            security |= PSK;
+        }
+        if (capabilities.contains("SAE")) {
+            security |= SAE;
+        }
+        if (capabilities.contains("EAP")) {
+            security |= EAP;
+            if (capabilities.contains("SUITE_B") || capabilities.contains("SUITE-B")) {
+                security |= EAP_SUITE_B;
+            }
+        }
+        if (capabilities.contains("OWE_TRANSITION")) {
+            security |= OWE_TRANSITION;
+        } else if (capabilities.contains("OWE")) {
+            security |= OWE;
+        }
+        if (capabilities.contains("WPS")) {
+            security |= WPS;
+        }
+        if ((security & ENCRYPTED) == 0) {
+            security |= OPEN;
+        }
+        return security;
+    }
+
+    public static int of(@NonNull ScanResult result) {
+        return parse(result.capabilities);
+    }
+
+    public static int of(@NonNull WifiConfiguration config) {
+        int security = 0;
+        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.NONE)) {
+            // If we never set group ciphers, wpa_supplicant puts all of them.
+            // For open, we don't set group ciphers.
+            // For WEP, we specifically only set WEP40 and WEP104, so CCMP
+            // and TKIP should not be there.
+            security |= config.wepKeys[0] != null ? WEP : OPEN;
+        }
+        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.WPA_PSK)) {
+            security |= PSK;
+        } else if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.WPA_EAP) ||
+                config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.IEEE8021X)) {
+            // A configuration allowing both has always been matched as a PSK one
+            security |= EAP;
+        }
+        // Only ever set from Android 10 on
+        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.SAE)) {
+            security |= SAE;
+        }
+        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.OWE)) {
+            security |= OWE;
+        }
+        if (config.allowedKeyManagement.get(WifiConfiguration.KeyMgmt.SUITE_B_192)) {
+            security |= EAP | EAP_SUITE_B;
+        }
+        return security == 0 ? OPEN : security;
+    }
+
+    /**
+     * @return the single flag a network with the given security is configured with: EAP, then PSK, which
+     * transition networks accept, then SAE, OWE, WEP and finally OPEN.
+     */
+    public static int primary(int security) {
+        if ((security & EAP) != 0) {
+            return EAP;
+        }
+        if ((security & PSK) != 0) {
+            return PSK;
+        }
+        if ((security & SAE) != 0) {
+            return SAE;
+        }
+        if ((security & OWE) != 0) {
+            return OWE;
+        }
+        if ((security & WEP) != 0) {
+            return WEP;
+        }
+        return OPEN;
+    }
+
+    /**
+     * @return whether two networks would be configured the same way.
+     */
+    public static boolean isCompatible(int security, int other) {
+        return primary(security) == primary(other);
+    }
+
+    public static boolean isOpen(int security) {
+        return primary(security) == OPEN;
+    }
+
+    /**
+     * @return the name of the {@link #primary(int)} flag, followed by ", WPS" when WPS is advertised.
+     */
+    @NonNull
+    public static String toPrettyString(int security) {
+        final String name = name(primary(security));
+        return (security & WPS) != 0 ? name + ", WPS" : name;
+    }
+
+    /**
+     * @return every flag set, for instance {@code PSK+SAE+WPS}.
+     */
+    @NonNull
+    public static String toString(int security) {
+        final StringBuilder builder = new StringBuilder();
+        for (int flag = OPEN; flag <= OWE_TRANSITION; flag <<= 1) {
+            if ((security & flag) != 0) {
+                if (builder.length() > 0) {
+                    builder.append('+');
+                }
+                builder.append(name(flag));
+            }
+        }
+        return builder.toString();
+    }
+
+    @NonNull
+    private static String name(int flag) {
+        switch (flag) {
+            case OPEN:
+                return "OPEN";
+            case WEP:
+                return "WEP";
+            case PSK:
+                return "PSK";
+            case EAP:
+                return "EAP";
+            case SAE:
+                return "SAE";
+            case OWE:
+                return "OWE";
+            case WPS:
+                return "WPS";
+            case EAP_SUITE_B:
+                return "EAP_SUITE_B";
+            case OWE_TRANSITION:
+                return "OWE_TRANSITION";
+            default:
+                return Integer.toHexString(flag);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.androidconnect.wifiutils;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Always on, in memory trace of the last {@link #CAPACITY} connection lifecycle events.
+ * <p>
+ * Unlike {@link WifiUtils#enableLog(boolean)} recording doesn't format or allocate anything: every event
+ * is a timestamp, a {@link Type}, a hash of the BSSID involved and a type specific argument written
+ * into preallocated arrays. Recording is lock free, writers draw a sequence number through an atomic
+ * increment and claim the slot it maps to with a compare-and-set, the oldest events get overwritten once
+ * the buffer wraps around.
+ * <p>
+ * Call {@link #dump(PrintWriter)} or {@link #getEvents()} when diagnosing a slow or failed connection.
+ */
+public final class WifiTrace {
+    /**
+     * Power of two, so that slots are picked with a mask.
+     */
+    static final int CAPACITY = 256;
+    private static final int MASK = CAPACITY - 1;
+    /**
+     * Held by a slot while its event is being written.
+     */
+    private static final long WRITING = -1;
+
+    public enum Type {
+        /**
+         * Argument is unused.
+         */
+        SCAN_START,
+        /**
+         * Argument is the number of access points found.
+         */
+        SCAN_END,
+        /**
+         * Argument is the {@link android.net.wifi.SupplicantState} ordinal.
+         */
+        SUPPLICANT_STATE,
+        /**
+         * Argument is unused.
+         */
+        NETWORK_AVAILABLE,
+        /**
+         * Argument is unused.
+         */
+        NETWORK_LOST,
+        /**
+         * Argument is unused.
+         */
+        TIMEOUT,
+        /**
+         * Argument is the {@link com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode} ordinal.
+         */
+        ERROR,
+        /**
+         * Argument is unused.
+         */
+        CONNECTED
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    @Nullable
+    private static volatile WifiTrace sInstance;
+
+    @NonNull
+    private final AtomicLong mCursor = new AtomicLong();
+    /**
+     * Sequence number + 1 of the event each slot holds, 0 if it holds none, {@link #WRITING} while it is being written.
+     * Readers check it before and after reading a slot to detect events overwritten meanwhile.
+     */
+    @NonNull
+    private final AtomicLongArray mSequences = new AtomicLongArray(CAPACITY);
+    /**
+     * Atomic rather than plain arrays so that readers can't have their reads reordered past the second
+     * sequence check, which plain reads followed by a volatile one don't guarantee.
+     * Writers store into them with {@code lazySet}, ordered after claiming the slot.
+     */
+    @NonNull
+    private final AtomicLongArray mTimestamps = new AtomicLongArray(CAPACITY);
+    @NonNull
+    private final AtomicIntegerArray mTypes = new AtomicIntegerArray(CAPACITY);
+    @NonNull
+    private final AtomicIntegerArray mBssidHashes = new AtomicIntegerArray(CAPACITY);
+    @NonNull
+    private final AtomicIntegerArray mArguments = new AtomicIntegerArray(CAPACITY);
+
+    private WifiTrace() {
+    }
+
+    /**
+     * Gets a Singleton instance of WifiTrace.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return WifiTrace Singleton instance
+     */
+    @NonNull
+    public static WifiTrace getInstance() {
+        if (sInstance == null) {
+            synchronized (WifiTrace.class) {
+                if (sInstance == null) {
+                    sInstance = new WifiTrace();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public void record(@NonNull Type type, @Nullable String bssid) {
+        record(type, bssid, 0);
+    }
+
+    /**
+     * Records an event. Should a writer a full lap ahead or behind be writing the same slot, which takes
+     * {@link #CAPACITY} events recorded during a single call, one of the two events is dropped.
+     */
+    public void record(@NonNull Type type, @Nullable String bssid, int argument) {
+        final long sequence = mCursor.getAndIncrement();
+        final int slot = (int) (sequence & MASK);
+        final long previous = mSequences.get(slot);
+        // Only one writer at a time, and never one replacing a newer event with an older one
+        if (previous == WRITING || previous > sequence || !mSequences.compareAndSet(slot, previous, WRITING)) {
+            return;
+        }
+        mTimestamps.lazySet(slot, SystemClock.elapsedRealtimeNanos());
+        mTypes.lazySet(slot, type.ordinal());
+        mBssidHashes.lazySet(slot, hashBssid(bssid));
+        mArguments.lazySet(slot, argument);
+        mSequences.set(slot, sequence + 1);
+    }
+
+    /**
+     * @return the recorded events, oldest first. Events being written or overwritten while reading are left out.
+     */
+    @NonNull
+    public List<Event> getEvents() {
+        final long end = mCursor.get();
+        final long start = Math.max(0, end - CAPACITY);
+        final List<Event> events = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final int slot = (int) (sequence & MASK);
+            if (mSequences.get(slot) != sequence + 1) {
+                continue;
+            }
+            final Event event = new Event(mTimestamps.get(slot), TYPES[mTypes.get(slot)], mBssidHashes.get(slot), mArguments.get(slot));
+            if (mSequences.get(slot) == sequence + 1) {
+                events.add(event);
+            }
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Writes the recorded events, oldest first, one per line.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        for (final Event event : getEvents()) {
+            writer.println(event);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Forgets all recorded events.
+     */
+    public void clear() {
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            mSequences.set(slot, 0);
+        }
+    }
+
+    /**
+     * @return the hash events are recorded with for the given BSSID, to look for a particular access point in the trace.
+     */
+    public static int hashBssid(@Nullable String bssid) {
+        return bssid == null ? 0 : bssid.hashCode();
+    }
+
+    public static final class Event {
+        private final long mTimestampNanos;
+        @NonNull
+        private final Type mType;
+        private final int mBssidHash;
+        private final int mArgument;
+
+        Event(long timestampNanos, @NonNull Type type, int bssidHash, int argument) {
+            mTimestampNanos = timestampNanos;
+            mType = type;
+            mBssidHash = bssidHash;
+            mArgument = argument;
+        }
+
+        /**
+         * @return when the event happened, in {@link SystemClock#elapsedRealtimeNanos()} time base.
+         */
+        public long getTimestampNanos() {
+            return mTimestampNanos;
+        }
+
+        @NonNull
+        public Type getType() {
+            return mType;
+        }
+
+        /**
+         * @return {@link #hashBssid(String)} of the access point involved, 0 if there was none.
+         */
+        public int getBssidHash() {
+            return mBssidHash;
+        }
+
+        public int getArgument() {
+            return mArgument;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d.%06d %s bssid=%08x arg=%d",
+                    mTimestampNanos / 1000000000L, (mTimestampNanos / 1000L) % 1000000L, mType, mBssidHash, mArgument);
+        }
+    }
+}
@@ -1,63 +1,35 @@
 package com.androidconnect.wifiutils;
 
-import static android.content.Intent.FLAG_ACTIVITY_NEW_TASK;
 import static com.androidconnect.wifiutils.ConnectorUtils.checkVersionAndGetIntent;
-import static com.androidconnect.wifiutils.ConnectorUtils.cleanPreviousConfiguration;
-import static com.androidconnect.wifiutils.ConnectorUtils.connectToWifi;
-import static com.androidconnect.wifiutils.ConnectorUtils.connectToWifiHidden;
-import static com.androidconnect.wifiutils.ConnectorUtils.connectWps;
-import static com.androidconnect.wifiutils.ConnectorUtils.disconnectFromWifi;
-import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResult;
-import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResultBssid;
-import static com.androidconnect.wifiutils.ConnectorUtils.matchScanResultSsid;
-import static com.androidconnect.wifiutils.ConnectorUtils.reenableAllHotspots;
-import static com.androidconnect.wifiutils.ConnectorUtils.registerReceiver;
-import static com.androidconnect.wifiutils.ConnectorUtils.removeWifi;
-import static com.androidconnect.wifiutils.ConnectorUtils.unregisterReceiver;
-import static com.androidconnect.wifiutils.utils.Elvis.of;
-import static com.androidconnect.wifiutils.utils.VersionUtils.isAndroidQOrLater;
-import static com.androidconnect.wifiutils.utils.VersionUtils.isLollipopOrLater;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-import android.net.ConnectivityManager;
-import android.net.wifi.ScanResult;
-import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.util.Log;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
-import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
 import com.androidconnect.wifiutils.wifiConnect.ConnectionScanResultsListener;
 import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener;
-import com.androidconnect.wifiutils.wifiConnect.DisconnectCallbackHolder;
-import com.androidconnect.wifiutils.wifiConnect.TimeoutHandler;
-import com.androidconnect.wifiutils.wifiConnect.WifiConnectionCallback;
-import com.androidconnect.wifiutils.wifiConnect.WifiConnectionReceiver;
-import com.androidconnect.wifiutils.wifiDisconnect.DisconnectionErrorCode;
 import com.androidconnect.wifiutils.wifiDisconnect.DisconnectionSuccessListener;
-import com.androidconnect.wifiutils.wifiRemove.RemoveErrorCode;
 import com.androidconnect.wifiutils.wifiRemove.RemoveSuccessListener;
 import com.androidconnect.wifiutils.wifiScan.ScanResultsListener;
-import com.androidconnect.wifiutils.wifiScan.WifiScanCallback;
-import com.androidconnect.wifiutils.wifiScan.WifiScanReceiver;
-import com.androidconnect.wifiutils.wifiState.WifiStateCallback;
 import com.androidconnect.wifiutils.wifiState.WifiStateListener;
-import com.androidconnect.wifiutils.wifiState.WifiStateReceiver;
 import com.androidconnect.wifiutils.wifiWps.ConnectionWpsListener;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
+/**
+ * Fluent front end of the {@link WifiEngine}. Every call configures the next request only,
+ * {@link #start()} hands an immutable {@link ConnectRequest} over to the engine and starts afresh,
+ * so one instance may be reused for any number of requests.
+ */
 @SuppressLint("MissingPermission")
 public final class WifiUtils implements WifiConnectorBuilder,
         WifiConnectorBuilder.WifiUtilsBuilder,
@@ -65,199 +37,113 @@ public final class WifiUtils implements WifiConnectorBuilder,
         WifiConnectorBuilder.WifiWpsSuccessListener {
     private static final String TAG = WifiUtils.class.getSimpleName();
 
-    @Nullable
-    private final WifiManager mWifiManager;
-    @Nullable
-    private final ConnectivityManager mConnectivityManager;
-    @NonNull
-    private final Context mContext;
-    private static boolean mEnableLog = true;
-    @Nullable
-    private static Logger customLogger;
-    private long mWpsTimeoutMillis = 30000;
-    private long mTimeoutMillis = 30000;
-    @NonNull
-    private WeakHandler mHandler;
-    @NonNull
-    private final WifiStateReceiver mWifiStateReceiver;
     @NonNull
-    private final WifiConnectionReceiver mWifiConnectionReceiver;
+    private final WifiEngine mEngine;
     @NonNull
-    private final TimeoutHandler mTimeoutHandler;
-    @NonNull
-    private final WifiScanReceiver mWifiScanReceiver;
-    @Nullable
-    private String mSsid;
-    @Nullable
-    private String type;
-    @Nullable
-    private String mBssid;
-    @Nullable
-    private String mPassword;
-    @Nullable
-    private ScanResult mSingleScanResult;
+    private static final Logger DEFAULT_LOGGER = (priority, tag, message) -> Log.println(priority, tag, message);
+    private static volatile boolean mEnableLog = true;
+    private static volatile int mLogLevel = Log.VERBOSE;
     @Nullable
-    private ScanResultsListener mScanResultsListener;
-    @Nullable
-    private ConnectionScanResultsListener mConnectionScanResultsListener;
-    @Nullable
-    private ConnectionSuccessListener mConnectionSuccessListener;
-    @Nullable
-    private WifiStateListener mWifiStateListener;
+    private static volatile Logger customLogger;
+    @NonNull
+    private ConnectRequest.Builder mRequestBuilder = new ConnectRequest.Builder();
+    /**
+     * The last request started by this instance, the one {@link #cancelAutoConnect()} cancels.
+     */
     @Nullable
-    private ConnectionWpsListener mConnectionWpsListener;
+    private volatile ConnectRequest mLastRequest;
     @Nullable
-    private boolean mPatternMatch;
+    private volatile Executor mCallbackExecutor;
 
-    @NonNull
-    private final WifiStateCallback mWifiStateCallback = new WifiStateCallback() {
-        @Override
-        public void onWifiEnabled() {
-            wifiLog("WIFI ENABLED...");
-            unregisterReceiver(mContext, mWifiStateReceiver);
-            of(mWifiStateListener).ifPresent(stateListener -> stateListener.isSuccess(true));
-
-            if (mScanResultsListener != null || mPassword != null) {
-                wifiLog("START SCANNING....");
-                if (mWifiManager.startScan()) {
-                    registerReceiver(mContext, mWifiScanReceiver, new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
-                } else {
-                    of(mScanResultsListener).ifPresent(resultsListener -> resultsListener.onScanResults(new ArrayList<>()));
-                    of(mConnectionWpsListener).ifPresent(wpsListener -> wpsListener.isSuccessful(false));
-                    mWifiConnectionCallback.errorConnect(ConnectionErrorCode.COULD_NOT_SCAN);
-                    wifiLog("ERROR COULDN'T SCAN");
-                }
-            }
+    private WifiUtils(@NonNull Context context) {
+        mEngine = WifiEngine.getInstance(context);
+    }
+
+    public static WifiUtilsBuilder withContext(@NonNull final Context context) {
+        return new WifiUtils(context);
+    }
+
+    @NotNull
+    public static WifiUtilsBuilder withActivityContext(@NonNull final Context context, Activity activity) {
+        return new WifiUtils(context);
+    }
+
+    public static void wifiLog(final String text) {
+        wifiLog(Log.VERBOSE, text);
+    }
+
+    /**
+     * @return whether a message of the given priority would be logged. Only needed to guard work that
+     * goes beyond formatting the message, the {@code wifiLog} overloads check it themselves.
+     */
+    public static boolean isLoggable(final int priority) {
+        return mEnableLog && priority >= mLogLevel;
+    }
+
+    public static void wifiLog(final int priority, final String message) {
+        if (isLoggable(priority)) {
+            final Logger logger = customLogger;
+            (logger != null ? logger : DEFAULT_LOGGER).log(priority, TAG, message);
         }
-    };
+    }
 
-    @NonNull
-    private final WifiScanCallback mWifiScanResultsCallback = new WifiScanCallback() {
-        @Override
-        public void onScanResultsReady() {
-            wifiLog("GOT SCAN RESULTS");
-            unregisterReceiver(mContext, mWifiScanReceiver);
-
-            final List<ScanResult> scanResultList = mWifiManager.getScanResults();
-            of(mScanResultsListener).ifPresent(resultsListener -> resultsListener.onScanResults(scanResultList));
-            of(mConnectionScanResultsListener).ifPresent(connectionResultsListener -> mSingleScanResult = connectionResultsListener.onConnectWithScanResult(scanResultList));
-
-            if (mConnectionWpsListener != null && mBssid != null && mPassword != null) {
-                mSingleScanResult = matchScanResultBssid(mBssid, scanResultList);
-                if (mSingleScanResult != null && isLollipopOrLater()) {
-                    connectWps(mWifiManager, mHandler, mSingleScanResult, mPassword, mWpsTimeoutMillis, mConnectionWpsListener);
-                } else {
-                    if (mSingleScanResult == null) {
-                        wifiLog("Couldn't find network. Possibly out of range");
-                    }
-                    mConnectionWpsListener.isSuccessful(false);
-                }
-                return;
-            }
-
-            if (mSsid != null) {
-                if (mBssid != null) {
-                    mSingleScanResult = matchScanResult(mSsid, mBssid, scanResultList);
-                } else {
-                    mSingleScanResult = matchScanResultSsid(mSsid, scanResultList, mPatternMatch);
-                }
-            }
-            if (mSingleScanResult != null && mPassword != null) {
-                if (connectToWifi(mContext, mWifiManager, mConnectivityManager, mHandler, mSingleScanResult, mPassword, mWifiConnectionCallback, mPatternMatch, mSsid)) {
-                    registerReceiver(mContext, (mWifiConnectionReceiver).connectWith(mSingleScanResult, mPassword, mConnectivityManager),
-                            new IntentFilter(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION));
-                    registerReceiver(mContext, mWifiConnectionReceiver,
-                            new IntentFilter(WifiManager.NETWORK_STATE_CHANGED_ACTION));
-                    mTimeoutHandler.startTimeout(mSingleScanResult, mTimeoutMillis);
-                } else {
-                    mWifiConnectionCallback.errorConnect(ConnectionErrorCode.COULD_NOT_CONNECT);
-                }
-            } else {
-                if (connectToWifiHidden(mContext, mWifiManager, mConnectivityManager, mHandler, mSsid, type, mPassword, mWifiConnectionCallback)) {
-                    registerReceiver(mContext, (mWifiConnectionReceiver).connectWith(mSsid, mPassword, mConnectivityManager),
-                            new IntentFilter(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION));
-                    registerReceiver(mContext, mWifiConnectionReceiver,
-                            new IntentFilter(WifiManager.NETWORK_STATE_CHANGED_ACTION));
-                    mTimeoutHandler.startTimeout(mSingleScanResult, mTimeoutMillis);
-                } else {
-                    mWifiConnectionCallback.errorConnect(ConnectionErrorCode.COULD_NOT_CONNECT);
-                }
-            }
+    /**
+     * Logs a {@link String#format(String, Object...)} style message. Nothing is formatted nor allocated
+     * unless the priority is loggable, so these overloads are meant for call sites that would otherwise
+     * concatenate their message on every call. Primitive arguments are only boxed once the priority
+     * turned out loggable, through the {@code long} and {@code boolean} overloads.
+     */
+    public static void wifiLog(final int priority, final String format, final Object arg) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg));
         }
-    };
+    }
 
-    @NonNull
-    private final WifiConnectionCallback mWifiConnectionCallback = new WifiConnectionCallback() {
-        @Override
-        public void successfulConnect() {
-            wifiLog("CONNECTED SUCCESSFULLY");
-            unregisterReceiver(mContext, mWifiConnectionReceiver);
-            mTimeoutHandler.stopTimeout();
-
-            //reenableAllHotspots(mWifiManager);
-            of(mConnectionSuccessListener).ifPresent(ConnectionSuccessListener::success);
+    public static void wifiLog(final int priority, final String format, final Object arg1, final Object arg2) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg1, arg2));
         }
+    }
 
-        @Override
-        public void errorConnect(@NonNull ConnectionErrorCode connectionErrorCode) {
-            unregisterReceiver(mContext, mWifiConnectionReceiver);
-            mTimeoutHandler.stopTimeout();
-            if (isAndroidQOrLater()) {
-                DisconnectCallbackHolder.getInstance().disconnect();
-            }
-            reenableAllHotspots(mWifiManager);
-            //if (mSingleScanResult != null)
-            //cleanPreviousConfiguration(mWifiManager, mSingleScanResult);
-            of(mConnectionSuccessListener).ifPresent(successListener -> {
-                successListener.failed(connectionErrorCode);
-                wifiLog("DIDN'T CONNECT TO WIFI " + connectionErrorCode);
-            });
+    public static void wifiLog(final int priority, final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg1, arg2, arg3));
         }
-    };
+    }
 
-    private WifiUtils(@NonNull Context context) {
-        mContext = context;
-        mWifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
-        if (mWifiManager == null) {
-            throw new RuntimeException("WifiManager is not supposed to be null");
+    public static void wifiLog(final int priority, final String format, final long arg) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg));
         }
-        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        mWifiStateReceiver = new WifiStateReceiver(mWifiStateCallback);
-        mWifiScanReceiver = new WifiScanReceiver(mWifiScanResultsCallback);
-        mHandler = new WeakHandler();
-        mWifiConnectionReceiver = new WifiConnectionReceiver(mWifiConnectionCallback, mWifiManager);
-        mTimeoutHandler = new TimeoutHandler(mWifiManager, mHandler, mWifiConnectionCallback);
-    }
-
-    private WifiUtils(@NonNull Context context, Activity activityContext) {
-        mContext = context;
-        mWifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
-        if (mWifiManager == null) {
-            throw new RuntimeException("WifiManager is not supposed to be null");
+    }
+
+    public static void wifiLog(final int priority, final String format, final boolean arg) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg));
         }
-        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        mWifiStateReceiver = new WifiStateReceiver(mWifiStateCallback);
-        mWifiScanReceiver = new WifiScanReceiver(mWifiScanResultsCallback);
-        mHandler = new WeakHandler();
-        mWifiConnectionReceiver = new WifiConnectionReceiver(mWifiConnectionCallback, mWifiManager);
-        mTimeoutHandler = new TimeoutHandler(mWifiManager, mHandler, mWifiConnectionCallback);
     }
 
-    public static WifiUtilsBuilder withContext(@NonNull final Context context) {
-        return new WifiUtils(context);
+    public static void wifiLog(final int priority, final String format, final Object arg1, final long arg2) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg1, arg2));
+        }
     }
 
-    @NotNull
-    public static WifiUtilsBuilder withActivityContext(@NonNull final Context context, Activity activity) {
-        return new WifiUtils(context, activity);
+    public static void wifiLog(final int priority, final String format, final long arg1, final long arg2) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg1, arg2));
+        }
     }
 
-    public static void wifiLog(final String text) {
-        if (mEnableLog) {
-            Logger logger = of(customLogger).orElse((priority, tag, message) -> {
-                Log.println(priority, TAG, message);
-            });
-            logger.log(Log.VERBOSE, TAG, text);
+    public static void wifiLog(final int priority, final String format, final Object arg1, final long arg2, final long arg3) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, arg1, arg2, arg3));
+        }
+    }
+
+    public static void wifiLog(final int priority, final String format, final Object... args) {
+        if (isLoggable(priority)) {
+            wifiLog(priority, String.format(Locale.US, format, args));
         }
     }
 
@@ -265,6 +151,15 @@ public final class WifiUtils implements WifiConnectorBuilder,
         mEnableLog = enabled;
     }
 
+    /**
+     * Only log messages of at least the given priority, {@link Log#VERBOSE} by default which logs everything.
+     *
+     * @param priority one of the {@link Log} priorities
+     */
+    public static void setLogLevel(final int priority) {
+        mLogLevel = priority;
+    }
+
     /**
      * Send logs to a custom logging implementation. If none specified, defaults to logcat.
      *
@@ -274,35 +169,19 @@ public final class WifiUtils implements WifiConnectorBuilder,
         WifiUtils.customLogger = logger;
     }
 
+    @NonNull
     @Override
-    public void enableWifi(@Nullable final WifiStateListener wifiStateListener) {
-        mWifiStateListener = wifiStateListener;
-        if (mWifiManager.isWifiEnabled()) {
-            mWifiStateCallback.onWifiEnabled();
-        } else {
-            Intent intent = checkVersionAndGetIntent();
-            if (intent == null) {
-                if (mWifiManager.setWifiEnabled(true)) {
-                    registerReceiver(mContext, mWifiStateReceiver, new IntentFilter(WifiManager.WIFI_STATE_CHANGED_ACTION));
-                } else {
-                    of(wifiStateListener).ifPresent(stateListener -> stateListener.isSuccess(false));
-                    of(mScanResultsListener).ifPresent(resultsListener -> resultsListener.onScanResults(new ArrayList<>()));
-                    of(mConnectionWpsListener).ifPresent(wpsListener -> wpsListener.isSuccessful(false));
-                    mWifiConnectionCallback.errorConnect(ConnectionErrorCode.COULD_NOT_ENABLE_WIFI);
-                    wifiLog("COULDN'T ENABLE WIFI");
-                }
-            } else {
-                startWifiSettingsIntent(intent, false);
-            }
-        }
+    public WifiUtilsBuilder callbackExecutor(@Nullable final Executor executor) {
+        mCallbackExecutor = executor;
+        return this;
     }
 
-    private void startWifiSettingsIntent(@NonNull Intent intent, Boolean isSwitchingOff) {
-        Context context = mContext.getApplicationContext();
-        intent.setFlags(FLAG_ACTIVITY_NEW_TASK);
-        context.startActivity(intent);
-        if(!isSwitchingOff)
-            Toast.makeText(context, "Enable Wifi to proceed", Toast.LENGTH_SHORT).show();
+    @Override
+    public void enableWifi(@Nullable final WifiStateListener wifiStateListener) {
+        submit(new ConnectRequest.Builder()
+                .setWifiStateListener(wifiStateListener)
+                .setCallbackExecutor(mCallbackExecutor)
+                .build());
     }
 
     @Override
@@ -313,7 +192,7 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @NonNull
     @Override
     public WifiConnectorBuilder scanWifi(final ScanResultsListener scanResultsListener) {
-        mScanResultsListener = scanResultsListener;
+        mRequestBuilder.setScanResultsListener(scanResultsListener);
         return this;
     }
 
@@ -325,59 +204,18 @@ public final class WifiUtils implements WifiConnectorBuilder,
 
     @Override
     public void disconnect(@NonNull DisconnectionSuccessListener disconnectionSuccessListener) {
-        if (mConnectivityManager == null) {
-            disconnectionSuccessListener.failed(DisconnectionErrorCode.COULD_NOT_GET_CONNECTIVITY_MANAGER);
-            return;
-        }
-
-        if (mWifiManager == null) {
-            disconnectionSuccessListener.failed(DisconnectionErrorCode.COULD_NOT_GET_WIFI_MANAGER);
-            return;
-        }
-
-        if (isAndroidQOrLater()) {
-            DisconnectCallbackHolder.getInstance().unbindProcessFromNetwork();
-            DisconnectCallbackHolder.getInstance().disconnect();
-            disconnectionSuccessListener.success();
-        } else {
-            if (disconnectFromWifi(mWifiManager)) {
-                disconnectionSuccessListener.success();
-            } else {
-                disconnectionSuccessListener.failed(DisconnectionErrorCode.COULD_NOT_DISCONNECT);
-            }
-        }
+        mEngine.disconnect(disconnectionSuccessListener, mCallbackExecutor);
     }
 
-
     @Override
     public void remove(@NonNull String ssid, @NonNull RemoveSuccessListener removeSuccessListener) {
-        if (mConnectivityManager == null) {
-            removeSuccessListener.failed(RemoveErrorCode.COULD_NOT_GET_CONNECTIVITY_MANAGER);
-            return;
-        }
-
-        if (mWifiManager == null) {
-            removeSuccessListener.failed(RemoveErrorCode.COULD_NOT_GET_WIFI_MANAGER);
-            return;
-        }
-
-        if (isAndroidQOrLater()) {
-            DisconnectCallbackHolder.getInstance().unbindProcessFromNetwork();
-            DisconnectCallbackHolder.getInstance().disconnect();
-            removeSuccessListener.success();
-        } else {
-            if (removeWifi(mWifiManager, ssid)) {
-                removeSuccessListener.success();
-            } else {
-                removeSuccessListener.failed(RemoveErrorCode.COULD_NOT_REMOVE);
-            }
-        }
+        mEngine.remove(ssid, removeSuccessListener, mCallbackExecutor);
     }
 
     @NonNull
     @Override
     public WifiUtilsBuilder patternMatch() {
-        mPatternMatch = true;
+        mRequestBuilder.setPatternMatch(true);
 
         return this;
     }
@@ -386,8 +224,8 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @NonNull
     @Override
     public WifiSuccessListener connectWith(@NonNull final String ssid) {
-        mSsid = ssid;
-        mPassword = ""; // FIXME: Cover no password case
+        mRequestBuilder.setSsid(ssid)
+                .setPassword(""); // FIXME: Cover no password case
 
         return this;
     }
@@ -395,26 +233,26 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @NonNull
     @Override
     public WifiSuccessListener connectWith(@NonNull final String ssid, @NonNull final String password) {
-        mSsid = ssid;
-        mPassword = password;
+        mRequestBuilder.setSsid(ssid)
+                .setPassword(password);
         return this;
     }
 
     @NonNull
     @Override
     public WifiSuccessListener connectWith(@NonNull final String ssid, @NonNull final String password, @NonNull final TypeEnum type) {
-        mSsid = ssid;
-        mPassword = password;
-        this.type = type.name();
+        mRequestBuilder.setSsid(ssid)
+                .setPassword(password)
+                .setType(type);
         return this;
     }
 
     @NonNull
     @Override
     public WifiSuccessListener connectWith(@NonNull final String ssid, @NonNull final String bssid, @NonNull final String password) {
-        mSsid = ssid;
-        mBssid = bssid;
-        mPassword = password;
+        mRequestBuilder.setSsid(ssid)
+                .setBssid(bssid)
+                .setPassword(password);
         return this;
     }
 
@@ -422,8 +260,8 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @Override
     public WifiSuccessListener connectWithScanResult(@NonNull final String password,
                                                      @Nullable final ConnectionScanResultsListener connectionScanResultsListener) {
-        mConnectionScanResultsListener = connectionScanResultsListener;
-        mPassword = password;
+        mRequestBuilder.setConnectionScanResultsListener(connectionScanResultsListener)
+                .setPassword(password);
         return this;
     }
 
@@ -431,41 +269,51 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @Override
     public WifiWpsSuccessListener connectWithWps(@NonNull final String bssid, @NonNull final String password) {
-        mBssid = bssid;
-        mPassword = password;
+        mRequestBuilder.setBssid(bssid)
+                .setPassword(password);
         return this;
     }
 
     @Override
     public void cancelAutoConnect() {
-        unregisterReceiver(mContext, mWifiStateReceiver);
-        unregisterReceiver(mContext, mWifiScanReceiver);
-        unregisterReceiver(mContext, mWifiConnectionReceiver);
-        of(mSingleScanResult).ifPresent(scanResult -> cleanPreviousConfiguration(mWifiManager, scanResult));
-        reenableAllHotspots(mWifiManager);
+        mEngine.cancel(mLastRequest);
     }
 
     @Override
     public boolean isWifiConnected(@NonNull String ssid) {
-        return ConnectorUtils.isAlreadyConnected(mWifiManager, mConnectivityManager, ssid);
+        return mEngine.isWifiConnected(ssid);
     }
 
     @Override
     public boolean isWifiConnected() {
-        return ConnectorUtils.isAlreadyConnected(mConnectivityManager);
+        return mEngine.isWifiConnected(null);
     }
 
     @NonNull
     @Override
     public WifiSuccessListener setTimeout(final long timeOutMillis) {
-        mTimeoutMillis = timeOutMillis;
+        mRequestBuilder.setTimeout(timeOutMillis);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public WifiSuccessListener failover(final long deadlineMillis) {
+        mRequestBuilder.setFailover(deadlineMillis);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public WifiConnectorBuilder allowCachedScan(final long maxAgeMillis) {
+        mRequestBuilder.setMaxScanAge(maxAgeMillis);
         return this;
     }
 
     @NonNull
     @Override
     public WifiWpsSuccessListener setWpsTimeout(final long timeOutMillis) {
-        mWpsTimeoutMillis = timeOutMillis;
+        mRequestBuilder.setWpsTimeout(timeOutMillis);
         return this;
     }
 
@@ -473,7 +321,7 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @Override
     public WifiConnectorBuilder onConnectionWpsResult(@Nullable final ConnectionWpsListener successListener) {
-        mConnectionWpsListener = successListener;
+        mRequestBuilder.setConnectionWpsListener(successListener);
         return this;
     }
 
@@ -481,31 +329,27 @@ public final class WifiUtils implements WifiConnectorBuilder,
     @NonNull
     @Override
     public WifiConnectorBuilder onConnectionResult(@Nullable final ConnectionSuccessListener successListener) {
-        mConnectionSuccessListener = successListener;
+        mRequestBuilder.setConnectionSuccessListener(successListener);
         return this;
     }
 
     @Override
     public void start() {
-        unregisterReceiver(mContext, mWifiStateReceiver);
-        unregisterReceiver(mContext, mWifiScanReceiver);
-        unregisterReceiver(mContext, mWifiConnectionReceiver);
-        enableWifi(null);
+        final ConnectRequest request = mRequestBuilder.setCallbackExecutor(mCallbackExecutor).build();
+        mRequestBuilder = new ConnectRequest.Builder();
+        submit(request);
+    }
+
+    private void submit(@NonNull ConnectRequest request) {
+        mLastRequest = request;
+        mEngine.submit(request);
     }
 
     @Override
     public void disableWifi() {
-        if (mWifiManager.isWifiEnabled()) {
-            Intent intent = checkVersionAndGetIntent();
-            if(intent==null){
-                mWifiManager.setWifiEnabled(false);
-                unregisterReceiver(mContext, mWifiStateReceiver);
-                unregisterReceiver(mContext, mWifiScanReceiver);
-                unregisterReceiver(mContext, mWifiConnectionReceiver);
-            }else{
-                startWifiSettingsIntent(intent, true);
-            }
+        mEngine.disableWifi();
+        if (checkVersionAndGetIntent() == null) {
+            mEngine.cancel(mLastRequest);
         }
-        wifiLog("WiFi Disabled");
     }
 }
@@ -0,0 +1,80 @@
+package com.androidconnect.wifiutils;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The thread WifiUtils talks to the system services on.
+ * <p>
+ * {@link android.net.wifi.WifiManager} and {@link android.net.ConnectivityManager} calls are synchronous binder calls,
+ * some of which, {@link android.net.wifi.WifiManager#getConfiguredNetworks()} first, take tens of milliseconds.
+ * The {@link WifiEngine} makes them all on this single thread, where the broadcasts and network callbacks it listens
+ * to are delivered too, and hands results back to the thread each request asked for. Running everything on one
+ * thread keeps the engine free of locks, work posted here runs in order.
+ * <p>
+ * The thread is started on first use and lives as long as the process.
+ */
+public final class WifiWorker implements Executor {
+    @Nullable
+    private static volatile WifiWorker sInstance;
+
+    @NonNull
+    private final HandlerThread mThread;
+    @NonNull
+    private final Handler mHandler;
+
+    private WifiWorker() {
+        mThread = new HandlerThread("WifiUtils");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Gets a Singleton instance of WifiWorker.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return WifiWorker Singleton instance
+     */
+    @NonNull
+    public static WifiWorker getInstance() {
+        if (sInstance == null) {
+            synchronized (WifiWorker.class) {
+                if (sInstance == null) {
+                    sInstance = new WifiWorker();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @NonNull
+    public Looper getLooper() {
+        return mThread.getLooper();
+    }
+
+    @NonNull
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * @return true if called on the worker thread
+     */
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == mThread.getLooper();
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        if (!mHandler.post(command)) {
+            throw new RejectedExecutionException("WifiUtils worker thread is gone");
+        }
+    }
+}
@@ -13,6 +13,11 @@ import java.util.Objects;
  */
 
 public final class Elvis<T> {
+    /**
+     * Shared by every empty Elvis, so that chains hitting null stop allocating.
+     */
+    private static final Elvis<?> EMPTY = new Elvis<>();
+
     @Nullable
     private final T mObject;
 
@@ -25,7 +30,7 @@ public final class Elvis<T> {
     }
 
     public static <T> Elvis<T> of(T t) {
-        return new Elvis<>(t);
+        return t == null ? empty() : new Elvis<>(t);
     }
 
     @NonNull
@@ -33,12 +38,13 @@ public final class Elvis<T> {
         return new Elvis<>(Objects.requireNonNull(t, "SHOULD NOT BE NULL"));
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> Elvis<T> empty() {
-        return new Elvis<>();
+        return (Elvis<T>) EMPTY;
     }
 
     public <S> Elvis<S> next(@NonNull Function<? super T, ? extends S> plumber) {
-        return new Elvis<>(mObject == null ? null : plumber.apply(mObject));
+        return mObject == null ? empty() : of(plumber.apply(mObject));
     }
 
     @Nullable
@@ -19,6 +19,10 @@ public class VersionUtils {
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
     }
 
+    public static boolean isPieOrLater() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+    }
+
     public static boolean isAndroidQOrLater() {
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
     }
@@ -0,0 +1,140 @@
+package com.androidconnect.wifiutils.wifiConnect;
+
+import android.net.wifi.ScanResult;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders the access points of a network from most to least promising, for connecting with failover.
+ * <p>
+ * Access points are scored by signal strength, with a bonus for the 5GHz band and for having been
+ * connected to before and a penalty for every attempt in a row that failed. Outcomes are remembered
+ * process wide, for the {@link #MAX_HISTORY_SIZE} most recently used access points.
+ */
+public final class BssidRanker {
+    static final int MAX_HISTORY_SIZE = 64;
+    /**
+     * Scores are in dBm, the bonus makes a 5GHz access point win over a 2.4GHz one up to 10dB stronger.
+     */
+    private static final int BAND_5GHZ_BONUS = 10;
+    private static final int SUCCESS_BONUS = 10;
+    private static final int FAILURE_PENALTY = 15;
+    private static final int MAX_PENALIZED_FAILURES = 3;
+
+    @Nullable
+    private static volatile BssidRanker sInstance;
+
+    /**
+     * Access ordered so that the least recently used access point is evicted first.
+     */
+    @NonNull
+    private final Map<String, Record> mHistory = new LinkedHashMap<String, Record>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+            return size() > MAX_HISTORY_SIZE;
+        }
+    };
+
+    private BssidRanker() {
+    }
+
+    /**
+     * Gets a Singleton instance of BssidRanker.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return BssidRanker Singleton instance
+     */
+    @NonNull
+    public static BssidRanker getInstance() {
+        if (sInstance == null) {
+            synchronized (BssidRanker.class) {
+                if (sInstance == null) {
+                    sInstance = new BssidRanker();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return a new list holding the given results, most promising first.
+     */
+    @NonNull
+    public List<ScanResult> rank(@NonNull List<ScanResult> candidates) {
+        final List<ScanResult> ranked = new ArrayList<>(candidates);
+        final Map<ScanResult, Integer> scores = new HashMap<>(candidates.size() * 2);
+        synchronized (mHistory) {
+            for (final ScanResult candidate : ranked) {
+                scores.put(candidate, score(candidate));
+            }
+        }
+        // Stable, equally scored candidates keep their scan order
+        Collections.sort(ranked, new Comparator<ScanResult>() {
+            @Override
+            public int compare(ScanResult o1, ScanResult o2) {
+                return Integer.compare(scores.get(o2), scores.get(o1));
+            }
+        });
+        return ranked;
+    }
+
+    public void recordSuccess(@Nullable String bssid) {
+        if (bssid == null) {
+            return;
+        }
+        synchronized (mHistory) {
+            final Record record = record(bssid);
+            record.mSuccesses++;
+            record.mConsecutiveFailures = 0;
+        }
+    }
+
+    public void recordFailure(@Nullable String bssid) {
+        if (bssid == null) {
+            return;
+        }
+        synchronized (mHistory) {
+            record(bssid).mConsecutiveFailures++;
+        }
+    }
+
+    private int score(@NonNull ScanResult candidate) {
+        int score = candidate.level;
+        if (candidate.frequency > 4900) {
+            score += BAND_5GHZ_BONUS;
+        }
+        final Record record = candidate.BSSID == null ? null : mHistory.get(candidate.BSSID);
+        if (record != null) {
+            if (record.mConsecutiveFailures > 0) {
+                score -= FAILURE_PENALTY * Math.min(record.mConsecutiveFailures, MAX_PENALIZED_FAILURES);
+            } else if (record.mSuccesses > 0) {
+                score += SUCCESS_BONUS;
+            }
+        }
+        return score;
+    }
+
+    @NonNull
+    private Record record(@NonNull String bssid) {
+        Record record = mHistory.get(bssid);
+        if (record == null) {
+            record = new Record();
+            mHistory.put(bssid, record);
+        }
+        return record;
+    }
+
+    private static final class Record {
+        int mSuccesses;
+        int mConsecutiveFailures;
+    }
+}
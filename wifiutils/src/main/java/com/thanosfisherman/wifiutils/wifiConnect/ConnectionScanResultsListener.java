@@ -8,6 +8,10 @@ import androidx.annotation.Nullable;
 
 import java.util.List;
 
+/**
+ * Picks the access point to connect to out of the scan results. Called on the thread the
+ * {@link com.androidconnect.wifiutils.WifiEngine} runs on, not on the main thread.
+ */
 public interface ConnectionScanResultsListener {
     @Nullable
     ScanResult onConnectWithScanResult(@NonNull List<ScanResult> scanResults);
@@ -14,7 +14,12 @@ import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
 /**
  * Singleton Class to keep references of {@link ConnectivityManager} and {@link ConnectivityManager.NetworkCallback}
  * so that we can easily bind/unbiding process from Network and disconnect on Android 10+.
+ *
+ * @deprecated WifiUtils keeps its network requests in {@link NetworkRequestRegistry} now, which can hold several
+ * of them at once. This class only still manages a callback added through it, {@link #disconnect()} releases the
+ * registry's requests too. It will be removed in 1.8.0.
  */
+@Deprecated
 @RequiresApi(Build.VERSION_CODES.Q)
 public class DisconnectCallbackHolder {
     @Nullable
@@ -62,14 +67,21 @@ public class DisconnectCallbackHolder {
     }
 
     /**
-     * Disconnects from Network and nullifies networkcallback meaning you will have to
-     * call {@link DisconnectCallbackHolder#addNetworkCallback(ConnectivityManager.NetworkCallback, ConnectivityManager)} again
-     * next time you want to connect again.
+     * Disconnects from every network WifiUtils requested, see {@link NetworkRequestRegistry#releaseAll()}, and from
+     * the one requested through {@link #requestNetwork(NetworkRequest)} if any. Nullifies networkcallback meaning you
+     * will have to call {@link DisconnectCallbackHolder#addNetworkCallback(ConnectivityManager.NetworkCallback, ConnectivityManager)}
+     * again next time you want to connect again.
      */
     public void disconnect() {
+        wifiLog("Disconnecting on Android 10+");
+        NetworkRequestRegistry.getInstance().releaseAll();
+        isProcessBoundToNetwork = false;
         if (mNetworkCallback != null && mConnectivityManager != null) {
-            wifiLog("Disconnecting on Android 10+");
-            mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+            try {
+                mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+            } catch (IllegalArgumentException ignored) {
+                // Never requested through this holder
+            }
             mNetworkCallback = null;
             isNetworkcallbackAdded = false;
         }
@@ -100,13 +112,11 @@ public class DisconnectCallbackHolder {
         }
     }
 
-
     /**
      * binds so all api calls performed over this new network
      * if we don't bind, connection with the wifi network is immediately dropped
      */
     public void bindProcessToNetwork(@NonNull Network network) {
-
         if (mConnectivityManager != null) {
             mConnectivityManager.bindProcessToNetwork(network);
             isProcessBoundToNetwork = true;
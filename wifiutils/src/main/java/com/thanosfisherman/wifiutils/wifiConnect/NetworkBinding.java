@@ -0,0 +1,17 @@
+package com.androidconnect.wifiutils.wifiConnect;
+
+/**
+ * How the app reaches a network it connected to on Android 10 and up, where such networks are never the default one.
+ */
+public enum NetworkBinding {
+    /**
+     * Binds the whole process to the network, so that every socket the app opens goes through it.
+     * Only one network can be bound at a time, the last one connected to wins.
+     */
+    PROCESS,
+    /**
+     * Leaves the process alone. Sockets go through the network only if opened from its
+     * {@link android.net.Network#getSocketFactory()}, see {@link NetworkRequestRegistry#getNetwork(String)}.
+     */
+    SOCKET_FACTORY
+}
@@ -0,0 +1,312 @@
+package com.androidconnect.wifiutils.wifiConnect;
+
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.androidconnect.wifiutils.WifiRadio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
+
+/**
+ * The network requests WifiUtils holds on Android 10 and up, keyed by the id of the
+ * {@link com.androidconnect.wifiutils.ConnectRequest} they were made for.
+ * <p>
+ * Starting Android 10 the app is connected through
+ * {@link ConnectivityManager#requestNetwork(NetworkRequest, ConnectivityManager.NetworkCallback)} and stays connected
+ * as long as the request isn't released. Any number of requests may be active at once, each keeping its network until
+ * {@link #release(String)} or {@link #releaseAll()}, so that an app can talk to several device hotspots in a row without
+ * leaking the callbacks of the previous ones. Connecting again on behalf of the same id releases what it held first.
+ * <p>
+ * Requests with {@link NetworkBinding#PROCESS} get the process bound to their network once it is available. When the
+ * bound network is released the process moves to the most recent bound network still active, if any.
+ * <p>
+ * Thread safe. Requesting and releasing are binder calls, which the engine makes on its own thread,
+ * see {@link com.androidconnect.wifiutils.WifiEngine#release(String)}.
+ */
+@RequiresApi(Build.VERSION_CODES.Q)
+public final class NetworkRequestRegistry {
+    @Nullable
+    private static volatile NetworkRequestRegistry sInstance;
+
+    private final Object mLock = new Object();
+    /**
+     * Active requests by id, oldest first. Requests that shared one connection attempt map to the same entry.
+     */
+    @NonNull
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>();
+    /**
+     * The entry whose network the process is bound to, if any.
+     */
+    @Nullable
+    private Entry mBound;
+
+    private NetworkRequestRegistry() {
+    }
+
+    /**
+     * Gets a Singleton instance of NetworkRequestRegistry.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return NetworkRequestRegistry Singleton instance
+     */
+    @NonNull
+    public static NetworkRequestRegistry getInstance() {
+        if (sInstance == null) {
+            synchronized (NetworkRequestRegistry.class) {
+                if (sInstance == null) {
+                    sInstance = new NetworkRequestRegistry();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Requests a network on behalf of a connect request, releasing whatever that request held before.
+     * The callback has to report back through {@link #onAvailable(ConnectivityManager.NetworkCallback, Network)}
+     * and {@link #onLost(ConnectivityManager.NetworkCallback)}.
+     *
+     * @param ssid the unquoted SSID of the network requested, see {@link #releaseSsid(String)}
+     */
+    public void request(@NonNull String id, @NonNull String ssid, @NonNull WifiRadio radio, @NonNull NetworkRequest networkRequest,
+                        @NonNull ConnectivityManager.NetworkCallback networkCallback, @NonNull NetworkBinding binding) {
+        release(id);
+        final int active;
+        synchronized (mLock) {
+            final Entry entry = new Entry(ssid, radio, networkCallback, binding);
+            entry.mIds.add(id);
+            mEntries.put(id, entry);
+            active = mEntries.size();
+        }
+        wifiLog(Log.VERBOSE, "Requesting network for %s, %d active", id, active);
+        radio.requestNetwork(networkRequest, networkCallback);
+    }
+
+    /**
+     * Lets another request that shared the connection attempt of {@code id} hold on to its network too.
+     * The network is released once every request holding it was released.
+     */
+    public void share(@NonNull String id, @NonNull String otherId) {
+        if (id.equals(otherId)) {
+            return;
+        }
+        release(otherId);
+        synchronized (mLock) {
+            final Entry entry = mEntries.get(id);
+            if (entry != null) {
+                entry.mIds.add(otherId);
+                mEntries.put(otherId, entry);
+            }
+        }
+    }
+
+    /**
+     * Records the network a request got, binding the process to it if the request asked for it.
+     * Does nothing if the request was released in the meantime.
+     */
+    public void onAvailable(@NonNull ConnectivityManager.NetworkCallback networkCallback, @NonNull Network network) {
+        final Entry entry;
+        synchronized (mLock) {
+            entry = find(networkCallback);
+            if (entry == null) {
+                return;
+            }
+            entry.mNetwork = network;
+            if (entry.mBinding != NetworkBinding.PROCESS) {
+                return;
+            }
+            mBound = entry;
+        }
+        entry.mRadio.bindProcessToNetwork(network);
+    }
+
+    /**
+     * Releases every request holding a network that was lost, which keeps some devices from retrying it forever.
+     */
+    public void onLost(@NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        final Entry entry;
+        synchronized (mLock) {
+            entry = find(networkCallback);
+            if (entry == null) {
+                return;
+            }
+            final Iterator<Entry> iterator = mEntries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() == entry) {
+                    iterator.remove();
+                }
+            }
+        }
+        releaseEntry(entry);
+    }
+
+    /**
+     * Stops holding the network requested on behalf of the given request. The network request itself is
+     * released once no other request shares it, unbinding the process from it if needed.
+     *
+     * @return false if the request held nothing
+     */
+    public boolean release(@NonNull String id) {
+        final Entry entry;
+        synchronized (mLock) {
+            entry = mEntries.remove(id);
+            if (entry == null) {
+                return false;
+            }
+            entry.mIds.remove(id);
+            if (!entry.mIds.isEmpty()) {
+                return true;
+            }
+        }
+        releaseEntry(entry);
+        return true;
+    }
+
+    /**
+     * Releases the network requests made for the given SSID, whichever requests hold them,
+     * leaving the networks of other SSIDs alone.
+     *
+     * @param ssid unquoted SSID
+     * @return false if no request was made for it
+     */
+    public boolean releaseSsid(@NonNull String ssid) {
+        final List<Entry> entries = new ArrayList<>();
+        synchronized (mLock) {
+            final Iterator<Entry> iterator = mEntries.values().iterator();
+            while (iterator.hasNext()) {
+                final Entry entry = iterator.next();
+                if (entry.mSsid.equals(ssid)) {
+                    iterator.remove();
+                    if (!entries.contains(entry)) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        }
+        for (final Entry entry : entries) {
+            releaseEntry(entry);
+        }
+        return !entries.isEmpty();
+    }
+
+    /**
+     * Releases every network request and unbinds the process from the network it was bound to.
+     */
+    public void releaseAll() {
+        final List<Entry> entries;
+        final Entry bound;
+        synchronized (mLock) {
+            entries = new ArrayList<>(new LinkedHashSet<>(mEntries.values()));
+            mEntries.clear();
+            bound = mBound;
+            mBound = null;
+        }
+        if (!entries.isEmpty()) {
+            wifiLog(Log.VERBOSE, "Releasing %d network requests", entries.size());
+        }
+        for (final Entry entry : entries) {
+            entry.mRadio.unregisterNetworkCallback(entry.mCallback);
+        }
+        if (bound != null) {
+            bound.mRadio.bindProcessToNetwork(null);
+        }
+    }
+
+    /**
+     * @return the network the request got, null until it is available or once released
+     */
+    @Nullable
+    public Network getNetwork(@NonNull String id) {
+        synchronized (mLock) {
+            final Entry entry = mEntries.get(id);
+            return entry == null ? null : entry.mNetwork;
+        }
+    }
+
+    /**
+     * @return the ids of every request holding a network, oldest first
+     */
+    @NonNull
+    public Set<String> getActiveIds() {
+        synchronized (mLock) {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(mEntries.keySet()));
+        }
+    }
+
+    private void releaseEntry(@NonNull Entry entry) {
+        wifiLog("Releasing network request");
+        entry.mRadio.unregisterNetworkCallback(entry.mCallback);
+        final Entry next;
+        synchronized (mLock) {
+            if (mBound != entry) {
+                return;
+            }
+            next = findLatestBindable();
+            mBound = next;
+        }
+        entry.mRadio.bindProcessToNetwork(next == null ? null : next.mNetwork);
+    }
+
+    @Nullable
+    private Entry find(@NonNull ConnectivityManager.NetworkCallback networkCallback) {
+        for (final Entry entry : mEntries.values()) {
+            if (entry.mCallback == networkCallback) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private Entry findLatestBindable() {
+        Entry latest = null;
+        for (final Entry entry : mEntries.values()) {
+            if (entry.mBinding == NetworkBinding.PROCESS && entry.mNetwork != null) {
+                latest = entry;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * One network request and the ids of the requests holding it.
+     */
+    private static final class Entry {
+        @NonNull
+        final String mSsid;
+        @NonNull
+        final WifiRadio mRadio;
+        @NonNull
+        final ConnectivityManager.NetworkCallback mCallback;
+        @NonNull
+        final NetworkBinding mBinding;
+        @NonNull
+        final Set<String> mIds = new HashSet<>(1);
+        @Nullable
+        Network mNetwork;
+
+        Entry(@NonNull String ssid, @NonNull WifiRadio radio, @NonNull ConnectivityManager.NetworkCallback callback, @NonNull NetworkBinding binding) {
+            mSsid = ssid;
+            mRadio = radio;
+            mCallback = callback;
+            mBinding = binding;
+        }
+    }
+}
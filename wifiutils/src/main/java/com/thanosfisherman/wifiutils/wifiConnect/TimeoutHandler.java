@@ -5,16 +5,17 @@ import android.net.wifi.WifiManager;
 
 import androidx.annotation.NonNull;
 
+import com.androidconnect.wifiutils.AndroidWifiRadio;
+import com.androidconnect.wifiutils.ConnectorUtils;
 import com.androidconnect.wifiutils.WeakHandler;
+import com.androidconnect.wifiutils.WifiRadio;
+import com.androidconnect.wifiutils.WifiTrace;
 
-import static com.androidconnect.wifiutils.utils.Elvis.of;
-import static com.androidconnect.wifiutils.ConnectorUtils.isAlreadyConnected;
-import static com.androidconnect.wifiutils.ConnectorUtils.reEnableNetworkIfPossible;
 import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
 import static com.androidconnect.wifiutils.utils.VersionUtils.isAndroidQOrLater;
 
 public class TimeoutHandler {
-    private final WifiManager mWifiManager;
+    private final WifiRadio mRadio;
     private final WeakHandler mHandler;
     private final WifiConnectionCallback mWifiConnectionCallback;
     private ScanResult mScanResult;
@@ -23,11 +24,12 @@ public class TimeoutHandler {
         @Override
         public void run() {
             wifiLog("Connection Timed out...");
+            WifiTrace.getInstance().record(WifiTrace.Type.TIMEOUT, mScanResult == null ? null : mScanResult.BSSID);
 
             if (!isAndroidQOrLater()) {
-                reEnableNetworkIfPossible(mWifiManager, mScanResult);
+                ConnectorUtils.reEnableNetworkIfPossible(mRadio, mScanResult);
             }
-            if (isAlreadyConnected(mWifiManager, of(mScanResult).next(scanResult -> scanResult.BSSID).get())) {
+            if (mScanResult != null && ConnectorUtils.isAlreadyConnected(mRadio.getConnectionInfo(), mScanResult.BSSID)) {
                 mWifiConnectionCallback.successfulConnect();
             } else {
                 mWifiConnectionCallback.errorConnect(ConnectionErrorCode.TIMEOUT_OCCURRED);
@@ -37,12 +39,20 @@ public class TimeoutHandler {
         }
     };
 
-    public TimeoutHandler(@NonNull WifiManager wifiManager, @NonNull WeakHandler handler, @NonNull final WifiConnectionCallback wifiConnectionCallback) {
-        this.mWifiManager = wifiManager;
+    public TimeoutHandler(@NonNull WifiRadio radio, @NonNull WeakHandler handler, @NonNull final WifiConnectionCallback wifiConnectionCallback) {
+        this.mRadio = radio;
         this.mHandler = handler;
         this.mWifiConnectionCallback = wifiConnectionCallback;
     }
 
+    /**
+     * @deprecated use {@link #TimeoutHandler(WifiRadio, WeakHandler, WifiConnectionCallback)}, this will be removed in 1.8.0.
+     */
+    @Deprecated
+    public TimeoutHandler(@NonNull WifiManager wifiManager, @NonNull WeakHandler handler, @NonNull final WifiConnectionCallback wifiConnectionCallback) {
+        this(AndroidWifiRadio.wrap(wifiManager), handler, wifiConnectionCallback);
+    }
+
     public void startTimeout(final ScanResult scanResult, final long timeout) {
         // cleanup previous connection timeout handler
         mHandler.removeCallbacks(timeoutCallback);
@@ -6,14 +6,21 @@ import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import static com.androidconnect.wifiutils.utils.Elvis.of;
+
+import com.androidconnect.wifiutils.AndroidWifiRadio;
+import com.androidconnect.wifiutils.ConnectorUtils;
+import com.androidconnect.wifiutils.WifiMetrics;
+import com.androidconnect.wifiutils.WifiRadio;
+import com.androidconnect.wifiutils.WifiTrace;
+
 import static com.androidconnect.wifiutils.ConnectorUtils.isAlreadyConnected;
-import static com.androidconnect.wifiutils.ConnectorUtils.isAlreadyConnected2;
-import static com.androidconnect.wifiutils.ConnectorUtils.reEnableNetworkIfPossible;
 import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
 import static com.androidconnect.wifiutils.utils.VersionUtils.isAndroidQOrLater;
 
@@ -26,27 +33,49 @@ public final class WifiConnectionReceiver extends BroadcastReceiver {
     @Nullable
     private ScanResult mScanResult;
     @NonNull
-    private final WifiManager mWifiManager;
+    private final WifiRadio mRadio;
     private String ssid;
+    /**
+     * {@link SystemClock#elapsedRealtimeNanos()} of the connection milestones seen so far, 0 until reached.
+     */
+    private long mConnectStartedAt;
+    private long mAssociatedAt;
+    private long mCompletedAt;
+    /**
+     * Shared by every check made while handling one broadcast, see {@link #getConnectionInfo()}.
+     */
+    @Nullable
+    private WifiInfo mConnectionInfo;
+    private boolean mConnectionInfoRead;
 
 
-    public WifiConnectionReceiver(@NonNull final WifiConnectionCallback callback, @NonNull final WifiManager wifiManager) {
+    public WifiConnectionReceiver(@NonNull final WifiConnectionCallback callback, @NonNull final WifiRadio radio) {
         this.mWifiConnectionCallback = callback;
-        this.mWifiManager = wifiManager;
+        this.mRadio = radio;
+    }
+
+    /**
+     * @deprecated use {@link #WifiConnectionReceiver(WifiConnectionCallback, WifiRadio)}, this will be removed in 1.8.0.
+     */
+    @Deprecated
+    public WifiConnectionReceiver(@NonNull final WifiConnectionCallback callback, @NonNull final WifiManager wifiManager) {
+        this(callback, AndroidWifiRadio.wrap(wifiManager));
     }
 
     @Override
     public void onReceive(final Context context, @NonNull final Intent intent) {
         final String action = intent.getAction();
-        wifiLog("Connection Broadcast action: " + action);
+        mConnectionInfo = null;
+        mConnectionInfoRead = false;
+        wifiLog(Log.VERBOSE, "Connection Broadcast action: %s", action);
         if (isAndroidQOrLater()) {
             if (Objects.equals(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION, action)) {
                 final SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
                 final int suppl_error = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, -1);
-                wifiLog("Connection Broadcast state: " + state);
-                wifiLog("suppl_error: " + suppl_error);
-                if (mScanResult == null && isAlreadyConnected2(mWifiManager, ssid)) {
-                    mWifiConnectionCallback.successfulConnect();
+                wifiLog(Log.VERBOSE, "Connection Broadcast state: %s suppl_error: %d", state, suppl_error);
+                onSupplicantState(state);
+                if (mScanResult == null && ssid != null && ConnectorUtils.isAlreadyConnected2(getConnectionInfo(), ssid)) {
+                    onConnected();
                 }
                 if (state == SupplicantState.DISCONNECTED && suppl_error == WifiManager.ERROR_AUTHENTICATING) {
                     mWifiConnectionCallback.errorConnect(ConnectionErrorCode.AUTHENTICATION_ERROR_OCCURRED);
@@ -58,28 +87,29 @@ public final class WifiConnectionReceiver extends BroadcastReceiver {
                     Note here we don't check if has internet connectivity, because we only validate
                     if the connection to the hotspot is active, and not if the hotspot has internet.
                  */
-                if (isAlreadyConnected(mWifiManager, of(mScanResult).next(scanResult -> scanResult.BSSID).get())) {
+                if (mScanResult != null && isAlreadyConnected(getConnectionInfo(), mScanResult.BSSID)) {
 
-                    mWifiConnectionCallback.successfulConnect();
+                    onConnected();
                 }
             } else if (Objects.equals(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION, action)) {
                 final SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
                 final int supl_error = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, -1);
+                onSupplicantState(state);
 
                 if (state == null) {
                     mWifiConnectionCallback.errorConnect(ConnectionErrorCode.COULD_NOT_CONNECT);
                     return;
                 }
 
-                wifiLog("Connection Broadcast state: " + state);
+                wifiLog(Log.VERBOSE, "Connection Broadcast state: %s", state);
 
                 switch (state) {
                     case COMPLETED:
                     case FOUR_WAY_HANDSHAKE:
-                        if (mScanResult == null && isAlreadyConnected2(mWifiManager, ssid)) {
-                            mWifiConnectionCallback.successfulConnect();
-                        } else if (isAlreadyConnected(mWifiManager, of(mScanResult).next(scanResult -> scanResult.BSSID).get())) {
-                            mWifiConnectionCallback.successfulConnect();
+                        if (mScanResult == null && ssid != null && ConnectorUtils.isAlreadyConnected2(getConnectionInfo(), ssid)) {
+                            onConnected();
+                        } else if (mScanResult != null && isAlreadyConnected(getConnectionInfo(), mScanResult.BSSID)) {
+                            onConnected();
                         }
                         break;
                     case DISCONNECTED:
@@ -88,36 +118,90 @@ public final class WifiConnectionReceiver extends BroadcastReceiver {
                             mWifiConnectionCallback.errorConnect(ConnectionErrorCode.AUTHENTICATION_ERROR_OCCURRED);
                         } else {
                             wifiLog("Disconnected. Re-attempting to connect...");
-                            reEnableNetworkIfPossible(mWifiManager, mScanResult);
+                            ConnectorUtils.reEnableNetworkIfPossible(mRadio, mScanResult);
                         }
                 }
             }
         }
     }
 
+    private void onSupplicantState(@Nullable SupplicantState state) {
+        WifiTrace.getInstance().record(WifiTrace.Type.SUPPLICANT_STATE, mScanResult == null ? null : mScanResult.BSSID,
+                state == null ? -1 : state.ordinal());
+        if (state == SupplicantState.ASSOCIATED && mAssociatedAt == 0 && mConnectStartedAt != 0) {
+            mAssociatedAt = SystemClock.elapsedRealtimeNanos();
+            WifiMetrics.getInstance().record(WifiMetrics.Phase.ASSOCIATION, mAssociatedAt - mConnectStartedAt);
+        } else if (state == SupplicantState.COMPLETED && mCompletedAt == 0 && mAssociatedAt != 0) {
+            mCompletedAt = SystemClock.elapsedRealtimeNanos();
+            WifiMetrics.getInstance().record(WifiMetrics.Phase.HANDSHAKE, mCompletedAt - mAssociatedAt);
+        }
+    }
+
+    private void onConnected() {
+        if (mCompletedAt != 0) {
+            WifiMetrics.getInstance().recordSince(WifiMetrics.Phase.IP_ACQUIRED, mCompletedAt);
+            mCompletedAt = 0;
+        }
+        mWifiConnectionCallback.successfulConnect();
+    }
+
+    private void startTiming() {
+        mConnectStartedAt = SystemClock.elapsedRealtimeNanos();
+        mAssociatedAt = 0;
+        mCompletedAt = 0;
+    }
+
     public static boolean isAlreadyConnected2(@Nullable WifiManager wifiManager, @Nullable String ssid) {
-        if (ssid != null && wifiManager != null) {
-            if (wifiManager.getConnectionInfo() != null && wifiManager.getConnectionInfo().getSSID() != null &&
-                    wifiManager.getConnectionInfo().getIpAddress() != 0 &&
-                    Objects.equals(ssid, wifiManager.getConnectionInfo().getSSID())) {
-                wifiLog("Already connected to: " + wifiManager.getConnectionInfo().getSSID() + "  BSSID: " + wifiManager.getConnectionInfo().getBSSID());
-                return true;
-            }
+        return ConnectorUtils.isAlreadyConnected2(wifiManager, ssid);
+    }
+
+    /**
+     * @return the connection info as of the broadcast being handled, fetched on first use only.
+     */
+    @Nullable
+    private WifiInfo getConnectionInfo() {
+        if (!mConnectionInfoRead) {
+            mConnectionInfo = mRadio.getConnectionInfo();
+            mConnectionInfoRead = true;
         }
-        return false;
+        return mConnectionInfo;
     }
 
     @NonNull
-    public WifiConnectionReceiver connectWith(@NonNull ScanResult result, @NonNull String password, @NonNull ConnectivityManager connectivityManager) {
+    public WifiConnectionReceiver connectWith(@NonNull ScanResult result, @NonNull String password) {
         mScanResult = result;
+        this.ssid = null;
+        startTiming();
 
         return this;
     }
 
     @NonNull
-    public WifiConnectionReceiver connectWith(@NonNull String ssid, @NonNull String password, @NonNull ConnectivityManager connectivityManager) {
+    public WifiConnectionReceiver connectWith(@NonNull String ssid, @NonNull String password) {
         this.ssid = ssid;
+        mScanResult = null;
+        startTiming();
 
         return this;
     }
+
+    /**
+     * @deprecated the connectivity manager was never used, call {@link #connectWith(ScanResult, String)}.
+     * This will be removed in 1.8.0.
+     */
+    @Deprecated
+    @NonNull
+    public WifiConnectionReceiver connectWith(@NonNull ScanResult result, @NonNull String password, @NonNull ConnectivityManager connectivityManager) {
+        return connectWith(result, password);
+    }
+
+    /**
+     * @deprecated the connectivity manager was never used, call {@link #connectWith(String, String)}.
+     * This will be removed in 1.8.0.
+     */
+    @Deprecated
+    @NonNull
+    public WifiConnectionReceiver connectWith(@NonNull String ssid, @NonNull String password, @NonNull ConnectivityManager connectivityManager) {
+        return connectWith(ssid, password);
+    }
 }
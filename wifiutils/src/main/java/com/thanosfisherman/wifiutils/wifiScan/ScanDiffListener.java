@@ -0,0 +1,18 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.net.wifi.ScanResult;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+public interface ScanDiffListener {
+    /**
+     * Called with the access points that changed since the previous scan. Never called if nothing changed.
+     *
+     * @param added   access points whose BSSID wasn't in the previous scan
+     * @param removed access points of the previous scan whose BSSID is gone
+     * @param changed access points whose signal moved past the threshold since it was last reported
+     */
+    void onScanDiff(@NonNull List<ScanResult> added, @NonNull List<ScanResult> removed, @NonNull List<ScanResult> changed);
+}
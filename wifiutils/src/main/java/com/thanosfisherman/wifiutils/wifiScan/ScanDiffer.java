@@ -0,0 +1,111 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.net.wifi.ScanResult;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ScanResultsListener} that turns consecutive scans into a stream of differences for a {@link ScanDiffListener}.
+ * <p>
+ * The differ remembers every BSSID of the previous scan so the same instance has to be passed to every
+ * scan it should compare, for example:
+ * <pre>
+ * ScanDiffer differ = new ScanDiffer(5, this::onScanDiff);
+ * WifiUtils.withContext(context).scanWifi(differ).start();
+ * </pre>
+ * An empty scan is taken for a failed one, which is how failures reach scan listeners, and ignored: the access points
+ * of the previous scan are only reported as removed once a scan comes back without them.
+ */
+public final class ScanDiffer implements ScanResultsListener {
+    public static final int DEFAULT_RSSI_THRESHOLD = 5;
+
+    private final int mRssiThreshold;
+    @NonNull
+    private final ScanDiffListener mListener;
+    /**
+     * Last reported result of every BSSID of the previous scan. The two maps are swapped
+     * after every scan so no map is allocated once the differ has warmed up.
+     */
+    @NonNull
+    private Map<String, ScanResult> mPrevious = new HashMap<>();
+    @NonNull
+    private Map<String, ScanResult> mCurrent = new HashMap<>();
+
+    public ScanDiffer(@NonNull ScanDiffListener listener) {
+        this(DEFAULT_RSSI_THRESHOLD, listener);
+    }
+
+    /**
+     * @param rssiThreshold minimum change of {@link ScanResult#level}, in dBm, for an access point to be reported as changed
+     * @param listener      receives the differences
+     */
+    public ScanDiffer(int rssiThreshold, @NonNull ScanDiffListener listener) {
+        mRssiThreshold = rssiThreshold;
+        mListener = listener;
+    }
+
+    @Override
+    public void onScanResults(@NonNull List<ScanResult> scanResults) {
+        if (scanResults.isEmpty()) {
+            // Nothing to add either way, and a failed scan mustn't report everything as removed
+            return;
+        }
+        List<ScanResult> added = null;
+        List<ScanResult> removed = null;
+        List<ScanResult> changed = null;
+
+        synchronized (this) {
+            for (final ScanResult result : scanResults) {
+                if (result.BSSID == null || mCurrent.containsKey(result.BSSID)) {
+                    continue;
+                }
+                final ScanResult previous = mPrevious.remove(result.BSSID);
+                if (previous == null) {
+                    if (added == null) {
+                        added = new ArrayList<>();
+                    }
+                    added.add(result);
+                    mCurrent.put(result.BSSID, result);
+                } else if (Math.abs(result.level - previous.level) >= mRssiThreshold) {
+                    if (changed == null) {
+                        changed = new ArrayList<>();
+                    }
+                    changed.add(result);
+                    mCurrent.put(result.BSSID, result);
+                } else {
+                    // Keep comparing against the last reported level so that slow drifts add up
+                    mCurrent.put(result.BSSID, previous);
+                }
+            }
+            if (!mPrevious.isEmpty()) {
+                removed = new ArrayList<>(mPrevious.values());
+                mPrevious.clear();
+            }
+            final Map<String, ScanResult> swap = mPrevious;
+            mPrevious = mCurrent;
+            mCurrent = swap;
+        }
+
+        if (added != null || removed != null || changed != null) {
+            mListener.onScanDiff(orEmpty(added), orEmpty(removed), orEmpty(changed));
+        }
+    }
+
+    /**
+     * Forgets the previous scan, the next one reports every access point as added.
+     */
+    public synchronized void reset() {
+        mPrevious.clear();
+    }
+
+    @NonNull
+    private static List<ScanResult> orEmpty(List<ScanResult> results) {
+        return results == null ? Collections.<ScanResult>emptyList() : results;
+    }
+}
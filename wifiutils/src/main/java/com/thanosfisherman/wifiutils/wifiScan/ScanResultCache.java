@@ -0,0 +1,117 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.net.wifi.ScanResult;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the most recent sighting of every BSSID across scans, keyed on {@link ScanResult#timestamp},
+ * so that callers willing to accept results up to a given age can skip scanning altogether.
+ * <p>
+ * Not thread safe, {@link ScanScheduler} guards it with its own lock.
+ */
+final class ScanResultCache {
+    /**
+     * Sightings older than this are dropped on the next update no matter what callers ask for.
+     */
+    static final long MAX_RETENTION_MILLIS = 5 * 60 * 1000;
+
+    @NonNull
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    /**
+     * Snapshot of every entry, built lazily and discarded on update.
+     */
+    @Nullable
+    private ScanSnapshot mSnapshot;
+    private long mOldestSeenAt = Long.MAX_VALUE;
+
+    /**
+     * Merges the results of a scan into the cache. A result only replaces the cached one of the
+     * same BSSID if it was seen more recently.
+     */
+    void update(@NonNull ScanSnapshot snapshot) {
+        final long now = SystemClock.elapsedRealtime();
+        for (final ScanResult result : snapshot.getResults()) {
+            if (result.BSSID == null) {
+                continue;
+            }
+            final long seenAt = result.timestamp > 0 ? result.timestamp / 1000 : now;
+            final Entry entry = mEntries.get(result.BSSID);
+            if (entry == null) {
+                mEntries.put(result.BSSID, new Entry(result, seenAt));
+            } else if (seenAt >= entry.mSeenAt) {
+                entry.mResult = result;
+                entry.mSeenAt = seenAt;
+            }
+        }
+
+        mOldestSeenAt = Long.MAX_VALUE;
+        final Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            final long seenAt = iterator.next().mSeenAt;
+            if (now - seenAt > MAX_RETENTION_MILLIS) {
+                iterator.remove();
+            } else if (seenAt < mOldestSeenAt) {
+                mOldestSeenAt = seenAt;
+            }
+        }
+        mSnapshot = null;
+    }
+
+    /**
+     * @param maxAgeMillis the oldest sighting callers are willing to accept
+     * @return a snapshot of every BSSID seen within the last {@code maxAgeMillis} or null if there is none.
+     */
+    @Nullable
+    ScanSnapshot get(long maxAgeMillis) {
+        if (mEntries.isEmpty()) {
+            return null;
+        }
+        final long cutoff = SystemClock.elapsedRealtime() - maxAgeMillis;
+        if (mOldestSeenAt >= cutoff) {
+            // Everything is fresh enough, no need to filter
+            if (mSnapshot == null) {
+                mSnapshot = ScanSnapshot.of(collect(Long.MIN_VALUE));
+            }
+            return mSnapshot;
+        }
+        final List<ScanResult> fresh = collect(cutoff);
+        return fresh.isEmpty() ? null : ScanSnapshot.of(fresh);
+    }
+
+    void clear() {
+        mEntries.clear();
+        mSnapshot = null;
+        mOldestSeenAt = Long.MAX_VALUE;
+    }
+
+    @NonNull
+    private List<ScanResult> collect(long cutoff) {
+        final List<ScanResult> results = new ArrayList<>(mEntries.size());
+        for (final Entry entry : mEntries.values()) {
+            if (entry.mSeenAt >= cutoff) {
+                results.add(entry.mResult);
+            }
+        }
+        return results;
+    }
+
+    private static final class Entry {
+        @NonNull
+        ScanResult mResult;
+        long mSeenAt;
+
+        Entry(@NonNull ScanResult result, long seenAt) {
+            mResult = result;
+            mSeenAt = seenAt;
+        }
+    }
+}
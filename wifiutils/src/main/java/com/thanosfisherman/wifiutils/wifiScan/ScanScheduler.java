@@ -0,0 +1,332 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.content.IntentFilter;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.androidconnect.wifiutils.WifiRadio;
+import com.androidconnect.wifiutils.WifiTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.androidconnect.wifiutils.WifiUtils.wifiLog;
+import static com.androidconnect.wifiutils.utils.VersionUtils.isPieOrLater;
+
+/**
+ * Process wide scheduler for {@link WifiManager#startScan()}.
+ * <p>
+ * Starting Android 9 a foreground app may only scan 4 times every 2 minutes and any further
+ * request fails or silently returns stale results. The scheduler keeps track of that budget itself:
+ * <ul>
+ * <li>requests made while a scan is in flight join that scan instead of starting a new one</li>
+ * <li>requests made once the budget is spent are served the results the platform already holds</li>
+ * </ul>
+ * Either way callers receive a {@link ScanSnapshot} and can tell how fresh it is through
+ * {@link ScanSnapshot#getAgeMillis()}. Callers that can live with older results may skip scanning
+ * altogether through {@link #getCachedSnapshot(long)}.
+ */
+public final class ScanScheduler {
+    static final int MAX_SCANS_PER_WINDOW = 4;
+    static final long WINDOW_MILLIS = 2 * 60 * 1000;
+    /**
+     * A scan whose results haven't arrived in this window is considered lost and its callers are served
+     * the results the platform already holds.
+     */
+    private static final long SCAN_TIMEOUT_MILLIS = 30 * 1000;
+
+    @Nullable
+    private static volatile ScanScheduler sInstance;
+
+    private final Object mLock = new Object();
+    @NonNull
+    private final WifiScanReceiver mScanReceiver = new WifiScanReceiver(this::onScanResultsReady);
+    /**
+     * Start times of the most recent scans, used as a ring buffer.
+     */
+    @NonNull
+    private final long[] mScanTimes = new long[MAX_SCANS_PER_WINDOW];
+    private int mNextScanSlot;
+    @NonNull
+    private final List<ScanSnapshotCallback> mPendingCallbacks = new ArrayList<>();
+    @NonNull
+    private final ScanResultCache mCache = new ScanResultCache();
+    @NonNull
+    private final Runnable mScanTimeout = this::onScanTimeout;
+    private boolean mScanInFlight;
+    /**
+     * Number of the latest scan started, or reset, telling whether the scan a caller started is still the latest
+     * once it gets the lock back.
+     */
+    private int mScanNumber;
+    /**
+     * Runs {@link #mScanTimeout} on the thread the scan was requested on, which is where the radio delivers broadcasts.
+     */
+    @Nullable
+    private Handler mTimeoutHandler;
+    @Nullable
+    private WifiRadio mRadio;
+
+    private ScanScheduler() {
+        for (int i = 0; i < MAX_SCANS_PER_WINDOW; i++) {
+            mScanTimes[i] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Gets a Singleton instance of ScanScheduler.
+     * This is a Lazy and Thread safe Singleton with Double-check locking
+     *
+     * @return ScanScheduler Singleton instance
+     */
+    @NonNull
+    public static ScanScheduler getInstance() {
+        if (sInstance == null) {
+            synchronized (ScanScheduler.class) {
+                if (sInstance == null) {
+                    sInstance = new ScanScheduler();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Requests scan results. Depending on the scan budget and whether a scan is already running
+     * this either starts a new scan, joins the running one or serves the last known results.
+     *
+     * @param radio    the radio to scan with
+     * @param callback receives the results. Called on the thread the radio delivers broadcasts on unless
+     *                 served from cache in which case it is called on the calling thread
+     */
+    public void requestScan(@NonNull WifiRadio radio, @NonNull ScanSnapshotCallback callback) {
+        final long now = SystemClock.elapsedRealtime();
+        int scanNumber = 0;
+        List<ScanSnapshotCallback> callbacks = null;
+        synchronized (mLock) {
+            mPendingCallbacks.add(callback);
+
+            if (mScanInFlight) {
+                wifiLog("Joining scan already in flight");
+                return;
+            }
+
+            if (hasScanBudget(now)) {
+                // In flight from now on, so that requests made while the radio starts it join it
+                mScanInFlight = true;
+                mRadio = radio;
+                scanNumber = ++mScanNumber;
+            } else {
+                wifiLog("Scan budget exhausted, serving cached scan results");
+                callbacks = takePendingCallbacks();
+            }
+        }
+        if (callbacks == null) {
+            callbacks = startScan(radio, scanNumber, now);
+        }
+        if (callbacks != null) {
+            // Results the platform already holds. If it has none there is nothing left to serve.
+            deliver(cache(ScanSnapshot.of(radio.getScanResults())), callbacks, true);
+        }
+    }
+
+    /**
+     * Starts the scan and listens for its results. The radio is called without holding the lock, which looking up
+     * cached results and cancelling wait on.
+     *
+     * @return the callbacks to serve the results the platform already holds, because the scan didn't start
+     * or its results can't be heard of, null if they are taken care of
+     */
+    @Nullable
+    private List<ScanSnapshotCallback> startScan(@NonNull WifiRadio radio, int scanNumber, long now) {
+        // A refused scan doesn't count against the platform's budget, so only spend ours once it started
+        if (!radio.startScan()) {
+            wifiLog("Platform refused to scan, serving cached scan results");
+            synchronized (mLock) {
+                if (mScanNumber != scanNumber || !mScanInFlight) {
+                    return null;
+                }
+                endScan();
+                return takePendingCallbacks();
+            }
+        }
+        wifiLog("START SCANNING....");
+        WifiTrace.getInstance().record(WifiTrace.Type.SCAN_START, null);
+        final boolean listening = radio.registerReceiver(mScanReceiver, new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION));
+        final List<ScanSnapshotCallback> callbacks;
+        synchronized (mLock) {
+            if (mScanNumber != scanNumber) {
+                // Reset meanwhile
+                return null;
+            }
+            consumeScanBudget(now);
+            if (!mScanInFlight) {
+                // The results came in already
+                return null;
+            }
+            if (listening) {
+                scheduleScanTimeout();
+                return null;
+            }
+            endScan();
+            callbacks = takePendingCallbacks();
+        }
+        radio.unregisterReceiver(mScanReceiver);
+        wifiLog("Can't listen for scan results, serving cached scan results");
+        return callbacks;
+    }
+
+    /**
+     * Looks up the results of previous scans without scanning.
+     *
+     * @param maxAgeMillis the oldest result the caller is willing to accept
+     * @return every access point seen within the last {@code maxAgeMillis} or null if there is none.
+     */
+    @Nullable
+    public ScanSnapshot getCachedSnapshot(long maxAgeMillis) {
+        synchronized (mLock) {
+            return mCache.get(maxAgeMillis);
+        }
+    }
+
+    /**
+     * Forgets all cached results, for example because wifi got disabled.
+     */
+    public void clearCache() {
+        synchronized (mLock) {
+            mCache.clear();
+        }
+    }
+
+    /**
+     * Stops delivering results to the given callback. A scan already in flight keeps running
+     * so that other callers waiting on it aren't affected.
+     */
+    public void cancel(@Nullable ScanSnapshotCallback callback) {
+        synchronized (mLock) {
+            mPendingCallbacks.remove(callback);
+        }
+    }
+
+    /**
+     * Forgets cached results, the scan budget spent and every pending callback, as if the process had just started.
+     * Meant for tests, which each start over with a new radio.
+     */
+    @VisibleForTesting
+    public void reset() {
+        final WifiRadio radio;
+        synchronized (mLock) {
+            radio = endScan();
+            mRadio = null;
+            mScanNumber++;
+            mPendingCallbacks.clear();
+            mCache.clear();
+            for (int i = 0; i < MAX_SCANS_PER_WINDOW; i++) {
+                mScanTimes[i] = Long.MIN_VALUE;
+            }
+            mNextScanSlot = 0;
+        }
+        if (radio != null) {
+            radio.unregisterReceiver(mScanReceiver);
+        }
+    }
+
+    private void onScanResultsReady() {
+        final WifiRadio radio;
+        final List<ScanSnapshotCallback> callbacks;
+        synchronized (mLock) {
+            radio = endScan();
+            callbacks = takePendingCallbacks();
+        }
+        wifiLog("GOT SCAN RESULTS");
+        if (radio != null) {
+            radio.unregisterReceiver(mScanReceiver);
+            final ScanSnapshot snapshot = cache(ScanSnapshot.of(radio.getScanResults()));
+            WifiTrace.getInstance().record(WifiTrace.Type.SCAN_END, null, snapshot.getResults().size());
+            deliver(snapshot, callbacks, false);
+        }
+    }
+
+    private void onScanTimeout() {
+        final WifiRadio radio;
+        final List<ScanSnapshotCallback> callbacks;
+        synchronized (mLock) {
+            if (!mScanInFlight) {
+                return;
+            }
+            radio = endScan();
+            callbacks = takePendingCallbacks();
+        }
+        wifiLog("Scan never completed, serving cached scan results");
+        if (radio != null) {
+            radio.unregisterReceiver(mScanReceiver);
+            deliver(cache(ScanSnapshot.of(radio.getScanResults())), callbacks, true);
+        }
+    }
+
+    private void scheduleScanTimeout() {
+        final Looper looper = Looper.myLooper();
+        mTimeoutHandler = new Handler(looper != null ? looper : Looper.getMainLooper());
+        mTimeoutHandler.postDelayed(mScanTimeout, SCAN_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Called holding the lock. Unregistering the scan receiver is left to the caller, once it let go of the lock.
+     *
+     * @return the radio the scan receiver may be registered with
+     */
+    @Nullable
+    private WifiRadio endScan() {
+        mScanInFlight = false;
+        if (mTimeoutHandler != null) {
+            mTimeoutHandler.removeCallbacks(mScanTimeout);
+            mTimeoutHandler = null;
+        }
+        return mRadio;
+    }
+
+    @NonNull
+    private List<ScanSnapshotCallback> takePendingCallbacks() {
+        final List<ScanSnapshotCallback> callbacks = new ArrayList<>(mPendingCallbacks);
+        mPendingCallbacks.clear();
+        return callbacks;
+    }
+
+    @NonNull
+    private ScanSnapshot cache(@NonNull ScanSnapshot snapshot) {
+        synchronized (mLock) {
+            mCache.update(snapshot);
+        }
+        return snapshot;
+    }
+
+    private static void deliver(@NonNull ScanSnapshot snapshot, @NonNull List<ScanSnapshotCallback> callbacks, boolean failIfEmpty) {
+        for (final ScanSnapshotCallback callback : callbacks) {
+            if (failIfEmpty && snapshot.isEmpty()) {
+                callback.onScanFailed();
+            } else {
+                callback.onScanSnapshot(snapshot);
+            }
+        }
+    }
+
+    private boolean hasScanBudget(long now) {
+        if (!isPieOrLater()) {
+            return true;
+        }
+        // The oldest of the last MAX_SCANS_PER_WINDOW scans has to have left the window
+        final long oldest = mScanTimes[mNextScanSlot];
+        return oldest == Long.MIN_VALUE || now - oldest >= WINDOW_MILLIS;
+    }
+
+    private void consumeScanBudget(long now) {
+        mScanTimes[mNextScanSlot] = now;
+        mNextScanSlot = (mNextScanSlot + 1) % MAX_SCANS_PER_WINDOW;
+    }
+}
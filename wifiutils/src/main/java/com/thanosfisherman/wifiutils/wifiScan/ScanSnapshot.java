@@ -0,0 +1,225 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.net.wifi.ScanResult;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.WifiSecurity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of a single batch of {@link ScanResult}s as returned by
+ * {@link android.net.wifi.WifiManager#getScanResults()}.
+ * <p>
+ * Results are indexed by BSSID and by SSID once, when the snapshot is built, so that every
+ * lookup made while matching a network is a hash lookup instead of a walk over the whole list.
+ * Exact lookups return the same result a linear scan in list order would have returned while
+ * prefix lookups rank their matches by signal strength.
+ * <p>
+ * A snapshot may be served from cache instead of a fresh scan, see {@link #getAgeMillis()}.
+ */
+public final class ScanSnapshot {
+    @NonNull
+    private static final ScanSnapshot EMPTY = new ScanSnapshot(Collections.<ScanResult>emptyList());
+
+    @NonNull
+    private final List<ScanResult> mResults;
+    @NonNull
+    private final Map<String, ScanResult> mByBssid;
+    @NonNull
+    private final Map<String, List<ScanResult>> mBySsid;
+    /**
+     * {@link WifiSecurity} of every result, keyed on identity since ScanResult doesn't override equals.
+     */
+    @NonNull
+    private final Map<ScanResult, Integer> mSecurities;
+    @Nullable
+    private volatile SsidPrefixIndex mPrefixIndex;
+    /**
+     * {@link SystemClock#elapsedRealtime()} at which the newest result of this snapshot was last seen.
+     */
+    private final long mSeenAtMillis;
+
+    private ScanSnapshot(@NonNull List<ScanResult> results) {
+        final int size = results.size();
+        final List<ScanResult> copy = new ArrayList<>(size);
+        mByBssid = new HashMap<>(size * 2);
+        mBySsid = new HashMap<>(size * 2);
+        mSecurities = new IdentityHashMap<>(size);
+        long newestMicros = 0;
+
+        for (final ScanResult result : results) {
+            if (result == null) {
+                continue;
+            }
+            copy.add(result);
+            mSecurities.put(result, WifiSecurity.of(result));
+            if (result.timestamp > newestMicros) {
+                newestMicros = result.timestamp;
+            }
+            if (result.BSSID != null && !mByBssid.containsKey(result.BSSID)) {
+                mByBssid.put(result.BSSID, result);
+            }
+            if (result.SSID != null) {
+                List<ScanResult> sameSsid = mBySsid.get(result.SSID);
+                if (sameSsid == null) {
+                    sameSsid = new ArrayList<>(2);
+                    mBySsid.put(result.SSID, sameSsid);
+                }
+                sameSsid.add(result);
+            }
+        }
+        mResults = Collections.unmodifiableList(copy);
+        // ScanResult.timestamp is in microseconds since boot, the same time base as elapsedRealtime.
+        // Some drivers leave it unset, in which case the build time is the best we know.
+        mSeenAtMillis = newestMicros > 0 ? newestMicros / 1000 : SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Builds a snapshot out of the given scan results. A {@code null} list, which some devices
+     * return instead of an empty one, results in an empty snapshot.
+     *
+     * @param results the scan results to index
+     * @return a new snapshot
+     */
+    @NonNull
+    public static ScanSnapshot of(@Nullable List<ScanResult> results) {
+        if (results == null || results.isEmpty()) {
+            return EMPTY;
+        }
+        return new ScanSnapshot(results);
+    }
+
+    @NonNull
+    public static ScanSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return all the results of this snapshot in the order the platform reported them.
+     * The returned list is read-only.
+     */
+    @NonNull
+    public List<ScanResult> getResults() {
+        return mResults;
+    }
+
+    public int size() {
+        return mResults.size();
+    }
+
+    public boolean isEmpty() {
+        return mResults.isEmpty();
+    }
+
+    /**
+     * How old the newest result of this snapshot is. A snapshot coming straight out of a fresh scan
+     * is only a few milliseconds old, while one served from cache, because the platform throttled
+     * scanning, may be minutes old.
+     *
+     * @return age in milliseconds or {@link Long#MAX_VALUE} if the snapshot is empty.
+     */
+    public long getAgeMillis() {
+        if (mResults.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, SystemClock.elapsedRealtime() - mSeenAtMillis);
+    }
+
+    /**
+     * @return the {@link WifiSecurity} flags of the given result, parsed when the snapshot was built
+     * unless the result doesn't belong to this snapshot.
+     */
+    public int getSecurity(@NonNull ScanResult result) {
+        final Integer security = mSecurities.get(result);
+        return security != null ? security : WifiSecurity.of(result);
+    }
+
+    /**
+     * @return the first result having the given BSSID or null if there is none.
+     */
+    @Nullable
+    public ScanResult findByBssid(@Nullable String bssid) {
+        return bssid == null ? null : mByBssid.get(bssid);
+    }
+
+    /**
+     * @return all results advertising the given SSID, in scan order. Never null.
+     */
+    @NonNull
+    public List<ScanResult> findBySsid(@Nullable String ssid) {
+        final List<ScanResult> sameSsid = ssid == null ? null : mBySsid.get(ssid);
+        return sameSsid == null ? Collections.<ScanResult>emptyList() : Collections.unmodifiableList(sameSsid);
+    }
+
+    /**
+     * @return the first result advertising the given SSID or null if there is none.
+     */
+    @Nullable
+    public ScanResult findFirstBySsid(@Nullable String ssid) {
+        final List<ScanResult> sameSsid = ssid == null ? null : mBySsid.get(ssid);
+        return sameSsid == null ? null : sameSsid.get(0);
+    }
+
+    /**
+     * @return the first result matching both SSID and BSSID or null if there is none.
+     */
+    @Nullable
+    public ScanResult find(@Nullable String ssid, @Nullable String bssid) {
+        final ScanResult result = findByBssid(bssid);
+        if (result == null || ssid == null) {
+            return null;
+        }
+        if (ssid.equals(result.SSID)) {
+            return result;
+        }
+        // The same BSSID may be reported more than once with a different SSID
+        final List<ScanResult> sameSsid = mBySsid.get(ssid);
+        if (sameSsid != null) {
+            for (final ScanResult candidate : sameSsid) {
+                if (bssid.equals(candidate.BSSID)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all results whose SSID starts with the given prefix, strongest signal first. Never null.
+     */
+    @NonNull
+    public List<ScanResult> findBySsidPrefix(@NonNull String prefix) {
+        return prefixIndex().findByPrefix(prefix);
+    }
+
+    /**
+     * @return the result with the strongest signal whose SSID starts with the given prefix or null if there is none.
+     */
+    @Nullable
+    public ScanResult findStrongestBySsidPrefix(@NonNull String prefix) {
+        return prefixIndex().findStrongestByPrefix(prefix);
+    }
+
+    /**
+     * The prefix index is only needed for pattern matching so it is built on first use.
+     * Racing threads may both build it, which is harmless since the snapshot never changes.
+     */
+    @NonNull
+    private SsidPrefixIndex prefixIndex() {
+        SsidPrefixIndex index = mPrefixIndex;
+        if (index == null) {
+            index = new SsidPrefixIndex(mBySsid);
+            mPrefixIndex = index;
+        }
+        return index;
+    }
+}
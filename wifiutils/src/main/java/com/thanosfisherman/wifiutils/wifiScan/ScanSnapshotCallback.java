@@ -0,0 +1,9 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import androidx.annotation.NonNull;
+
+public interface ScanSnapshotCallback {
+    void onScanSnapshot(@NonNull ScanSnapshot snapshot);
+
+    void onScanFailed();
+}
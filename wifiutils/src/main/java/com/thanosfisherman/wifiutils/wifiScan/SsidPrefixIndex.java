@@ -0,0 +1,93 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.net.wifi.ScanResult;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted array of the distinct SSIDs of a {@link ScanSnapshot}. All SSIDs sharing a prefix are
+ * adjacent once sorted, so a prefix query is one binary search followed by a walk over the matches only.
+ */
+final class SsidPrefixIndex {
+    /**
+     * Strongest signal first. Stable sorting keeps the scan order between equally strong results.
+     */
+    static final Comparator<ScanResult> BY_LEVEL_DESC = new Comparator<ScanResult>() {
+        @Override
+        public int compare(ScanResult o1, ScanResult o2) {
+            return o2.level < o1.level ? -1 : (o2.level == o1.level ? 0 : 1);
+        }
+    };
+
+    @NonNull
+    private final String[] mSsids;
+    @NonNull
+    private final Map<String, List<ScanResult>> mBySsid;
+
+    SsidPrefixIndex(@NonNull Map<String, List<ScanResult>> bySsid) {
+        mBySsid = bySsid;
+        mSsids = bySsid.keySet().toArray(new String[0]);
+        Arrays.sort(mSsids);
+    }
+
+    /**
+     * @return every result whose SSID starts with the given prefix, strongest signal first.
+     */
+    @NonNull
+    List<ScanResult> findByPrefix(@NonNull String prefix) {
+        final int from = lowerBound(prefix);
+        List<ScanResult> matches = null;
+        for (int i = from; i < mSsids.length && mSsids[i].startsWith(prefix); i++) {
+            if (matches == null) {
+                matches = new ArrayList<>();
+            }
+            matches.addAll(mBySsid.get(mSsids[i]));
+        }
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        Collections.sort(matches, BY_LEVEL_DESC);
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * @return the result with the strongest signal whose SSID starts with the given prefix or null if there is none.
+     */
+    @Nullable
+    ScanResult findStrongestByPrefix(@NonNull String prefix) {
+        ScanResult strongest = null;
+        for (int i = lowerBound(prefix); i < mSsids.length && mSsids[i].startsWith(prefix); i++) {
+            for (final ScanResult result : mBySsid.get(mSsids[i])) {
+                if (strongest == null || result.level > strongest.level) {
+                    strongest = result;
+                }
+            }
+        }
+        return strongest;
+    }
+
+    /**
+     * @return index of the first SSID that is not less than the given prefix.
+     */
+    private int lowerBound(@NonNull String prefix) {
+        int low = 0;
+        int high = mSsids.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mSsids[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
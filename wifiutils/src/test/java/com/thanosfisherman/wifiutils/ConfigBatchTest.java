@@ -0,0 +1,105 @@
+package com.androidconnect.wifiutils;
+
+import android.net.wifi.WifiConfiguration;
+
+import androidx.annotation.NonNull;
+
+import com.androidconnect.wifiutils.testing.SimulatedRadio;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the calls {@link ConfigBatch} and {@link ConfiguredNetworks} make to the saved networks of a {@link SimulatedRadio}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ConfigBatchTest {
+    private SimulatedRadio mRadio;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio(RuntimeEnvironment.getApplication());
+    }
+
+    @Test
+    public void makesNoCallsForARoundTripThatChangesNothing() {
+        final int home = mRadio.addNetwork(config("home"));
+        mRadio.resetCallCounts();
+
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(mRadio);
+        assertTrue(ConnectorUtils.disableAllButOne(configuredNetworks, configuredNetworks.getById(home)));
+        ConnectorUtils.reenableAllHotspots(mRadio);
+
+        assertEquals(0, mRadio.getCallCount("disableNetwork"));
+        // Connecting to the one left, not re-enabling anything
+        assertEquals(1, mRadio.getCallCount("enableNetwork"));
+        assertEquals(0, mRadio.getCallCount("updateNetwork"));
+        assertEquals(0, mRadio.getCallCount("saveConfiguration"));
+        // Once per cache
+        assertEquals(2, mRadio.getCallCount("getConfiguredNetworks"));
+    }
+
+    @Test
+    public void onlyTouchesNetworksThatChange() {
+        final int home = mRadio.addNetwork(config("home"));
+        final int office = mRadio.addNetwork(config("office"));
+        final int cafe = mRadio.addNetwork(config("cafe"));
+        mRadio.disableNetwork(cafe);
+        mRadio.resetCallCounts();
+
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(mRadio);
+        assertTrue(ConnectorUtils.disableAllButOne(configuredNetworks, configuredNetworks.getById(home)));
+        assertEquals(1, mRadio.getCallCount("disableNetwork"));
+        assertEquals(WifiConfiguration.Status.DISABLED, mRadio.getSavedNetworks().get(office).status);
+
+        ConnectorUtils.reenableAllHotspots(mRadio);
+        // The target, then office and cafe
+        assertEquals(3, mRadio.getCallCount("enableNetwork"));
+
+        mRadio.resetCallCounts();
+        ConnectorUtils.reenableAllHotspots(mRadio);
+        assertEquals(0, mRadio.getCallCount("enableNetwork"));
+        assertEquals(0, mRadio.getCallCount("disableNetwork"));
+        assertEquals(0, mRadio.getCallCount("updateNetwork"));
+        assertEquals(0, mRadio.getCallCount("saveConfiguration"));
+    }
+
+    @Test
+    public void onlyUpdatesChangedPriorities() {
+        final int home = mRadio.addNetwork(config("home"));
+        final int office = mRadio.addNetwork(config("office"));
+        mRadio.resetCallCounts();
+
+        final ConfiguredNetworks configuredNetworks = new ConfiguredNetworks(mRadio);
+        final ConfigBatch batch = new ConfigBatch(configuredNetworks);
+        batch.setPriority(configuredNetworks.getById(home), 0);
+        batch.setPriority(configuredNetworks.getById(office), 5);
+        assertTrue(batch.apply());
+
+        assertEquals(1, mRadio.getCallCount("updateNetwork"));
+        assertEquals(0, mRadio.getCallCount("saveConfiguration"));
+        assertEquals(5, mRadio.getSavedNetworks().get(office).priority);
+
+        // Nothing pending anymore
+        assertTrue(batch.apply());
+        assertEquals(1, mRadio.getCallCount("updateNetwork"));
+    }
+
+    @NonNull
+    private static WifiConfiguration config(@NonNull String ssid) {
+        final WifiConfiguration config = new WifiConfiguration();
+        config.SSID = '"' + ssid + '"';
+        config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+        config.preSharedKey = "\"password\"";
+        config.priority = 0;
+        return config;
+    }
+}
@@ -0,0 +1,63 @@
+package com.androidconnect.wifiutils;
+
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Shared by the tests running {@link WifiEngine} on the main looper, as {@link WifiEngine#install} has it.
+ */
+public final class EngineTestUtils {
+
+    private EngineTestUtils() {
+    }
+
+    /**
+     * Runs everything the main looper has due within the given time, the engine's work and the radio's included.
+     */
+    public static void idleFor(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the outcome of a connect request.
+     */
+    static final class Result implements ConnectionSuccessListener {
+        int mCalls;
+        boolean mSucceeded;
+        @Nullable
+        ConnectionErrorCode mErrorCode;
+
+        @Override
+        public void success() {
+            mCalls++;
+            mSucceeded = true;
+        }
+
+        @Override
+        public void failed(@NonNull ConnectionErrorCode errorCode) {
+            mCalls++;
+            mErrorCode = errorCode;
+        }
+
+        void assertSucceeded() {
+            assertEquals("callbacks", 1, mCalls);
+            assertTrue("failed with " + mErrorCode, mSucceeded);
+        }
+
+        void assertFailed(@NonNull ConnectionErrorCode errorCode) {
+            assertEquals("callbacks", 1, mCalls);
+            assertEquals(errorCode, mErrorCode);
+        }
+    }
+}
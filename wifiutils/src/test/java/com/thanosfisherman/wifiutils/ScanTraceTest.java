@@ -0,0 +1,222 @@
+package com.androidconnect.wifiutils;
+
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes traces with {@link ScanTraceWriter} and reads them back with {@link ScanTraceReader}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScanTraceTest {
+    private static final int HEADER_SIZE = 5;
+
+    @Test
+    public void roundTripsEdgeValues() throws IOException {
+        final Map<String, Object> extras = new LinkedHashMap<>();
+        extras.put("int0", 0);
+        extras.put("int-1", -1);
+        extras.put("intMin", Integer.MIN_VALUE);
+        extras.put("intMax", Integer.MAX_VALUE);
+        // Either side of the one and two byte varints, once zigzagged
+        extras.put("long63", 63L);
+        extras.put("long-64", -64L);
+        extras.put("long64", 64L);
+        extras.put("long-65", -65L);
+        extras.put("long8191", 8191L);
+        extras.put("long8192", 8192L);
+        extras.put("longMin", Long.MIN_VALUE);
+        extras.put("longMax", Long.MAX_VALUE);
+        extras.put("true", true);
+        extras.put("false", false);
+        extras.put("empty", "");
+        extras.put("unicode", "caf\u00e9 \u2615 \u0000");
+        extras.put(WifiManager.EXTRA_NEW_STATE, SupplicantState.COMPLETED);
+        extras.put(WifiManager.EXTRA_NETWORK_INFO, NetworkInfo.DetailedState.OBTAINING_IPADDR);
+
+        final List<ScanTraceRecord> records = Arrays.asList(
+                ScanTraceRecord.scanResults(1_000, Arrays.asList(
+                        new ScanTraceRecord.Sighting("venue", "02:00:00:00:00:01", "[WPA2-PSK-CCMP][ESS]", -127, 5180, 999_999),
+                        new ScanTraceRecord.Sighting(null, null, null, 0, Integer.MAX_VALUE, 1_000_000),
+                        new ScanTraceRecord.Sighting("", "02:00:00:00:00:02", "[ESS]", Integer.MIN_VALUE, 0, Long.MIN_VALUE))),
+                ScanTraceRecord.broadcast(1_000, WifiManager.SUPPLICANT_STATE_CHANGED_ACTION, extras),
+                // Clocks may go back between records, deltas are signed
+                ScanTraceRecord.broadcast(500, WifiManager.SCAN_RESULTS_AVAILABLE_ACTION, Collections.<String, Object>emptyMap()),
+                ScanTraceRecord.connectionInfo(Long.MAX_VALUE, "\"venue\"", "02:00:00:00:00:01", SupplicantState.COMPLETED,
+                        -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0xFFFFFFFF),
+                ScanTraceRecord.connectionInfo(Long.MIN_VALUE, null, null, null, Integer.MAX_VALUE, 0, 0, 0));
+
+        final List<ScanTraceRecord> read = ScanTraceReader.readAll(new ByteArrayInputStream(write(records)));
+
+        assertEquals(records.size(), read.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRecordEquals(records.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void skipsExtrasOfOtherTypes() throws IOException {
+        final Map<String, Object> extras = new LinkedHashMap<>();
+        extras.put("double", 1.5d);
+        extras.put("kept", 1);
+        extras.put("null", null);
+
+        final List<ScanTraceRecord> read = ScanTraceReader.readAll(new ByteArrayInputStream(
+                write(Collections.singletonList(ScanTraceRecord.broadcast(0, "action", extras)))));
+
+        assertEquals(Collections.<String, Object>singletonMap("kept", 1), read.get(0).getExtras());
+    }
+
+    @Test
+    public void writesEveryStringOnce() throws IOException {
+        final String ssid = "a rather long venue network name";
+        final List<ScanTraceRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(ScanTraceRecord.scanResults(i * 5_000L, Collections.singletonList(
+                    new ScanTraceRecord.Sighting(ssid, "02:00:00:00:00:01", "[WPA2-PSK-CCMP][ESS]", -60, 2437, i * 5_000_000L))));
+            records.add(ScanTraceRecord.connectionInfo(i * 5_000L, '"' + ssid + '"', "02:00:00:00:00:01", SupplicantState.COMPLETED,
+                    0, -60, 2437, 0x6401A8C0));
+        }
+
+        final byte[] trace = write(records);
+
+        // Once on its own for the sightings, once quoted for the connection info
+        assertEquals(1, count(trace, ('"' + ssid + '"').getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, count(trace, ssid.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, count(trace, "02:00:00:00:00:01".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, count(trace, "[WPA2-PSK-CCMP][ESS]".getBytes(StandardCharsets.UTF_8)));
+        final List<ScanTraceRecord> read = ScanTraceReader.readAll(new ByteArrayInputStream(trace));
+        assertEquals(records.size(), read.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRecordEquals(records.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void endsTruncatedTracesWithTheLastCompleteRecord() throws IOException {
+        final List<ScanTraceRecord> records = Arrays.asList(
+                ScanTraceRecord.scanResults(0, Collections.singletonList(
+                        new ScanTraceRecord.Sighting("venue", "02:00:00:00:00:01", "[ESS]", -50, 2437, 0))),
+                ScanTraceRecord.broadcast(10, WifiManager.SUPPLICANT_STATE_CHANGED_ACTION,
+                        Collections.<String, Object>singletonMap(WifiManager.EXTRA_NEW_STATE, SupplicantState.ASSOCIATING)),
+                ScanTraceRecord.connectionInfo(20, "\"venue\"", "02:00:00:00:00:01", SupplicantState.COMPLETED, 3, -50, 2437, 0x6401A8C0));
+        final byte[] trace = write(records);
+
+        int lastCount = 0;
+        for (int length = HEADER_SIZE; length < trace.length; length++) {
+            final List<ScanTraceRecord> read = ScanTraceReader.readAll(new ByteArrayInputStream(Arrays.copyOf(trace, length)));
+            assertTrue("records out of " + length + " bytes", read.size() < records.size());
+            assertTrue("records out of " + length + " bytes", read.size() >= lastCount);
+            for (int i = 0; i < read.size(); i++) {
+                assertRecordEquals(records.get(i), read.get(i));
+            }
+            lastCount = read.size();
+        }
+        assertEquals(records.size() - 1, lastCount);
+    }
+
+    @Test
+    public void rejectsCorruptTraces() throws IOException {
+        final byte[] trace = write(Collections.singletonList(ScanTraceRecord.broadcast(0, "action", Collections.<String, Object>emptyMap())));
+
+        final byte[] badMagic = trace.clone();
+        badMagic[0] ^= 1;
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(badMagic)));
+
+        final byte[] newerVersion = trace.clone();
+        newerVersion[4] = (byte) (ScanTraceWriter.VERSION + 1);
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(newerVersion)));
+
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(new byte[2])));
+
+        // Record type
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(append(trace, 9, 0))));
+        // A string that was never written: the trace only has "action" so far
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(
+                append(trace, ScanTraceWriter.RECORD_BROADCAST, 0, 5, 0))));
+        // Extra type
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(
+                append(trace, ScanTraceWriter.RECORD_BROADCAST, 0, 1, 1, 1, 42))));
+        // A number longer than 64 bits
+        assertThrows(IOException.class, () -> ScanTraceReader.readAll(new ByteArrayInputStream(
+                append(trace, ScanTraceWriter.RECORD_BROADCAST, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01))));
+    }
+
+    @NonNull
+    private static byte[] write(@NonNull List<ScanTraceRecord> records) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ScanTraceWriter writer = new ScanTraceWriter(out)) {
+            for (final ScanTraceRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] append(@NonNull byte[] trace, int... bytes) {
+        final byte[] appended = Arrays.copyOf(trace, trace.length + bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            appended[trace.length + i] = (byte) bytes[i];
+        }
+        return appended;
+    }
+
+    private static int count(@NonNull byte[] haystack, @NonNull byte[] needle) {
+        int count = 0;
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(haystack, i, i + needle.length), needle)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertRecordEquals(@NonNull ScanTraceRecord expected, @NonNull ScanTraceRecord actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getElapsedRealtime(), actual.getElapsedRealtime());
+        assertEquals(expected.getSightings().size(), actual.getSightings().size());
+        for (int i = 0; i < expected.getSightings().size(); i++) {
+            final ScanTraceRecord.Sighting sighting = expected.getSightings().get(i);
+            final ScanTraceRecord.Sighting other = actual.getSightings().get(i);
+            assertEquals(sighting.getSsid(), other.getSsid());
+            assertEquals(sighting.getBssid(), other.getBssid());
+            assertEquals(sighting.getCapabilities(), other.getCapabilities());
+            assertEquals(sighting.getLevel(), other.getLevel());
+            assertEquals(sighting.getFrequency(), other.getFrequency());
+            assertEquals(sighting.getTimestampMicros(), other.getTimestampMicros());
+        }
+        assertEquals(expected.getAction(), actual.getAction());
+        assertEquals(expected.getExtras(), actual.getExtras());
+        assertEquals(expected.getSsid(), actual.getSsid());
+        assertEquals(expected.getBssid(), actual.getBssid());
+        assertEquals(expected.getSupplicantState(), actual.getSupplicantState());
+        assertEquals(expected.getNetworkId(), actual.getNetworkId());
+        assertEquals(expected.getRssi(), actual.getRssi());
+        assertEquals(expected.getFrequency(), actual.getFrequency());
+        assertEquals(expected.getIpAddress(), actual.getIpAddress());
+    }
+}
@@ -0,0 +1,108 @@
+package com.androidconnect.wifiutils;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.androidconnect.wifiutils.EngineTestUtils.idleFor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WeakHandlerTest {
+    private final WeakHandler.RunnableRegistry mRegistry = new WeakHandler.RunnableRegistry();
+    private final Runnable mRunnable = () -> { };
+    private final Object mToken = new Object();
+
+    @Test
+    public void reusesTheWrapperOfARepost() {
+        final WeakHandler.WeakRunnable wrapper = mRegistry.acquire(mRunnable, null);
+
+        assertSame(wrapper, mRegistry.acquire(mRunnable, null));
+        assertEquals(2, wrapper.mPending);
+        assertEquals(1, mRegistry.size());
+    }
+
+    @Test
+    public void releasesAfterTheLastPost() {
+        final WeakHandler.WeakRunnable wrapper = mRegistry.acquire(mRunnable, null);
+        mRegistry.acquire(mRunnable, null);
+
+        mRegistry.release(mRunnable, wrapper);
+        assertEquals(1, mRegistry.size());
+
+        mRegistry.release(mRunnable, wrapper);
+        assertEquals(0, mRegistry.size());
+        assertNotSame(wrapper, mRegistry.acquire(mRunnable, null));
+    }
+
+    @Test
+    public void removesEveryPost() {
+        final WeakHandler.WeakRunnable plain = mRegistry.acquire(mRunnable, null);
+        final WeakHandler.WeakRunnable tokened = mRegistry.acquire(mRunnable, mToken);
+        assertNotSame(plain, tokened);
+        assertEquals(2, mRegistry.size());
+
+        final WeakHandler.WeakRunnable removed = mRegistry.remove(mRunnable);
+
+        assertEquals(0, mRegistry.size());
+        assertSame(tokened, removed);
+        assertSame(plain, removed.mNext);
+        assertNull(plain.mNext);
+        assertEquals(0, plain.mPending);
+        assertEquals(0, tokened.mPending);
+    }
+
+    @Test
+    public void removesThePostsOfATokenOnly() {
+        final WeakHandler.WeakRunnable plain = mRegistry.acquire(mRunnable, null);
+        mRegistry.acquire(mRunnable, null);
+        final WeakHandler.WeakRunnable tokened = mRegistry.acquire(mRunnable, mToken);
+
+        assertSame(tokened, mRegistry.remove(mRunnable, mToken));
+
+        assertEquals(1, mRegistry.size());
+        assertEquals(2, plain.mPending);
+        assertSame(plain, mRegistry.acquire(mRunnable, null));
+        assertNull(mRegistry.remove(mRunnable, mToken));
+    }
+
+    @Test
+    public void keepsTheNewWrapperWhenAStaleOneRuns() {
+        final WeakHandler.WeakRunnable stale = mRegistry.acquire(mRunnable, null);
+        mRegistry.remove(mRunnable);
+        final WeakHandler.WeakRunnable fresh = mRegistry.acquire(mRunnable, null);
+
+        // A post that was already being delivered as it got removed
+        mRegistry.release(mRunnable, stale);
+
+        assertEquals(1, mRegistry.size());
+        assertSame(fresh, mRegistry.acquire(mRunnable, null));
+    }
+
+    @Test
+    public void runsThePostsLeftAfterRemovingAToken() {
+        final WeakHandler handler = new WeakHandler(Looper.getMainLooper());
+        final AtomicInteger runs = new AtomicInteger();
+        final Runnable runnable = runs::incrementAndGet;
+        handler.postDelayed(runnable, 10);
+        handler.postAtTime(runnable, mToken, SystemClock.uptimeMillis() + 10);
+        handler.postDelayed(runnable, 20);
+
+        handler.removeCallbacks(runnable, mToken);
+        assertEquals(1, handler.mRunnables.size());
+        idleFor(100);
+
+        assertEquals(2, runs.get());
+        assertEquals(0, handler.mRunnables.size());
+    }
+}
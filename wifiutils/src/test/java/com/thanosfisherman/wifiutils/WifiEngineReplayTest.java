@@ -0,0 +1,169 @@
+package com.androidconnect.wifiutils;
+
+import android.content.Context;
+import android.net.NetworkInfo;
+import android.net.wifi.ScanResult;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiManager;
+
+import androidx.annotation.NonNull;
+
+import com.androidconnect.wifiutils.EngineTestUtils.Result;
+import com.androidconnect.wifiutils.testing.ReplayRadio;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.androidconnect.wifiutils.EngineTestUtils.idleFor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays traces, as {@link ScanTraceRecorder} would have captured them on a device, through {@link WifiEngine}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WifiEngineReplayTest {
+    private static final String SSID = "venue";
+    private static final String STRONGEST = "02:00:00:00:00:01";
+    private static final String WEAKER = "02:00:00:00:00:02";
+    private static final String OTHER = "02:00:00:00:00:03";
+    private static final String PASSWORD = "password";
+    /**
+     * 192.168.1.100, little endian like {@link android.net.wifi.WifiInfo#getIpAddress()}.
+     */
+    private static final int IP_ADDRESS = 0x6401A8C0;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+    }
+
+    @Test
+    public void scans() throws IOException {
+        final ReplayRadio radio = install(scan());
+        final List<ScanResult> results = new ArrayList<>();
+        WifiUtils.withContext(mContext)
+                .scanWifi(results::addAll)
+                .start();
+        radio.start(ReplayRadio.Pace.RECORDED);
+        idleFor(radio.getRecordedDuration() + 1_000);
+
+        assertTrue(radio.isFinished());
+        assertEquals(3, results.size());
+        final List<String> bssids = new ArrayList<>();
+        for (final ScanResult result : results) {
+            bssids.add(result.BSSID);
+        }
+        assertEquals(new HashSet<>(Arrays.asList(STRONGEST, WEAKER, OTHER)), new HashSet<>(bssids));
+    }
+
+    @Test
+    public void connects() throws IOException {
+        final List<ScanTraceRecord> trace = scan();
+        trace.add(supplicantState(1_200, SupplicantState.ASSOCIATING));
+        trace.add(supplicantState(1_400, SupplicantState.ASSOCIATED));
+        trace.add(supplicantState(1_500, SupplicantState.FOUR_WAY_HANDSHAKE));
+        trace.add(ScanTraceRecord.connectionInfo(1_800, '"' + SSID + '"', STRONGEST, SupplicantState.COMPLETED, 0, -55, 5180, IP_ADDRESS));
+        trace.add(supplicantState(1_800, SupplicantState.COMPLETED));
+        trace.add(ScanTraceRecord.broadcast(1_900, WifiManager.NETWORK_STATE_CHANGED_ACTION,
+                Collections.<String, Object>singletonMap(WifiManager.EXTRA_NETWORK_INFO, NetworkInfo.DetailedState.CONNECTED)));
+        final ReplayRadio radio = install(trace);
+
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .onConnectionResult(result)
+                .start();
+        radio.start(ReplayRadio.Pace.RECORDED);
+        idleFor(radio.getRecordedDuration() + 1_000);
+
+        assertTrue(radio.isFinished());
+        result.assertSucceeded();
+        // The first access point of the network the scan reported, the one the trace connected to
+        assertNotNull(radio.getConfiguredNetworks());
+        assertEquals(1, radio.getConfiguredNetworks().size());
+        assertEquals(STRONGEST, radio.getConfiguredNetworks().get(0).BSSID);
+    }
+
+    @Test
+    public void reportsAuthenticationFailure() throws IOException {
+        final List<ScanTraceRecord> trace = scan();
+        trace.add(supplicantState(1_200, SupplicantState.ASSOCIATING));
+        trace.add(supplicantState(1_400, SupplicantState.ASSOCIATED));
+        trace.add(supplicantState(1_500, SupplicantState.FOUR_WAY_HANDSHAKE));
+        final Map<String, Object> extras = new LinkedHashMap<>();
+        extras.put(WifiManager.EXTRA_NEW_STATE, SupplicantState.DISCONNECTED);
+        extras.put(WifiManager.EXTRA_SUPPLICANT_ERROR, WifiManager.ERROR_AUTHENTICATING);
+        trace.add(ScanTraceRecord.broadcast(1_700, WifiManager.SUPPLICANT_STATE_CHANGED_ACTION, extras));
+        final ReplayRadio radio = install(trace);
+
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .onConnectionResult(result)
+                .start();
+        radio.start(ReplayRadio.Pace.RECORDED);
+        idleFor(radio.getRecordedDuration() + 1_000);
+
+        result.assertFailed(ConnectionErrorCode.AUTHENTICATION_ERROR_OCCURRED);
+    }
+
+    /**
+     * Writes the trace out and has the radio read it back, so the replay goes through the trace format too.
+     */
+    @NonNull
+    private ReplayRadio install(@NonNull List<ScanTraceRecord> trace) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ScanTraceWriter writer = new ScanTraceWriter(out)) {
+            for (final ScanTraceRecord record : trace) {
+                writer.write(record);
+            }
+        }
+        final ReplayRadio radio = ReplayRadio.read(mContext, new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(trace.size(), radio.getRecordCount());
+        WifiEngine.install(mContext, radio);
+        return radio;
+    }
+
+    /**
+     * The results of a scan started right before the trace begins.
+     */
+    @NonNull
+    private static List<ScanTraceRecord> scan() {
+        final List<ScanTraceRecord> trace = new ArrayList<>();
+        trace.add(ScanTraceRecord.scanResults(200, Arrays.asList(
+                new ScanTraceRecord.Sighting(SSID, STRONGEST, "[WPA2-PSK-CCMP][ESS]", -55, 5180, 150_000),
+                new ScanTraceRecord.Sighting(SSID, WEAKER, "[WPA2-PSK-CCMP][ESS]", -75, 2437, 150_000),
+                new ScanTraceRecord.Sighting("lobby", OTHER, "[ESS]", -60, 2412, 150_000))));
+        trace.add(ScanTraceRecord.broadcast(200, WifiManager.SCAN_RESULTS_AVAILABLE_ACTION,
+                Collections.<String, Object>singletonMap(WifiManager.EXTRA_RESULTS_UPDATED, true)));
+        return trace;
+    }
+
+    @NonNull
+    private static ScanTraceRecord supplicantState(long elapsedRealtime, @NonNull SupplicantState state) {
+        return ScanTraceRecord.broadcast(elapsedRealtime, WifiManager.SUPPLICANT_STATE_CHANGED_ACTION,
+                Collections.<String, Object>singletonMap(WifiManager.EXTRA_NEW_STATE, state));
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.androidconnect.wifiutils;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import com.androidconnect.wifiutils.EngineTestUtils.Result;
+import com.androidconnect.wifiutils.testing.AccessPoint;
+import com.androidconnect.wifiutils.testing.SimulatedRadio;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionErrorCode;
+import com.androidconnect.wifiutils.wifiConnect.ConnectionSuccessListener;
+import com.androidconnect.wifiutils.wifiConnect.NetworkRequestRegistry;
+import com.androidconnect.wifiutils.wifiRemove.RemoveErrorCode;
+import com.androidconnect.wifiutils.wifiRemove.RemoveSuccessListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.androidconnect.wifiutils.EngineTestUtils.idleFor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the connection flow end to end against a {@link SimulatedRadio}, through saved configurations and
+ * supplicant broadcasts before Android 10 and through network requests from then on.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WifiEngineTest {
+    private static final String SSID = "home";
+    private static final String BSSID = "02:00:00:00:00:01";
+    private static final String PASSWORD = "password";
+
+    private Context mContext;
+    private SimulatedRadio mRadio;
+    private WifiEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mRadio = new SimulatedRadio(mContext).addAccessPoint(AccessPoint.wpa2(SSID, BSSID));
+        mEngine = WifiEngine.install(mContext, mRadio);
+    }
+
+    @After
+    public void tearDown() {
+        // Process wide, unlike the engine install replaces
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            NetworkRequestRegistry.getInstance().releaseAll();
+        }
+    }
+
+    @Test
+    public void connects() {
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .onConnectionResult(result)
+                .start();
+        idleFor(10_000);
+
+        result.assertSucceeded();
+        assertEquals(BSSID, mRadio.getConnectedBssid());
+        assertEquals(1, mRadio.getSavedNetworks().size());
+        assertTrue(WifiUtils.withContext(mContext).isWifiConnected());
+        assertTrue(WifiUtils.withContext(mContext).isWifiConnected(SSID));
+        assertFalse(WifiUtils.withContext(mContext).isWifiConnected("elsewhere"));
+    }
+
+    @Test
+    public void reportsAuthenticationFailure() {
+        mRadio.script(BSSID, SimulatedRadio.Outcome.AUTHENTICATION_FAILURE);
+
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .onConnectionResult(result)
+                .start();
+        idleFor(10_000);
+
+        result.assertFailed(ConnectionErrorCode.AUTHENTICATION_ERROR_OCCURRED);
+        assertNull(mRadio.getConnectedBssid());
+    }
+
+    @Test
+    public void timesOut() {
+        mRadio.script(BSSID, SimulatedRadio.Outcome.NO_RESPONSE);
+
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .setTimeout(5_000)
+                .onConnectionResult(result)
+                .start();
+        // Scanned and still associating, the timeout runs from there
+        idleFor(5_000);
+        assertEquals(0, result.mCalls);
+
+        idleFor(5_000);
+        result.assertFailed(ConnectionErrorCode.TIMEOUT_OCCURRED);
+        assertNull(mRadio.getConnectedBssid());
+    }
+
+    @Test
+    public void failsOverToTheNextAccessPoint() {
+        // Addresses no other test uses, the ranker remembers failures process wide
+        final String strongest = "02:00:00:00:01:01";
+        final String weaker = "02:00:00:00:01:02";
+        mRadio.addAccessPoint(new AccessPoint("office", strongest, "[WPA2-PSK-CCMP][ESS]", -40, 2437))
+                .addAccessPoint(new AccessPoint("office", weaker, "[WPA2-PSK-CCMP][ESS]", -70, 2437))
+                .script(strongest, SimulatedRadio.Outcome.NO_RESPONSE);
+
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith("office", PASSWORD)
+                .setTimeout(5_000)
+                .failover(60_000)
+                .onConnectionResult(result)
+                .start();
+        idleFor(20_000);
+
+        result.assertSucceeded();
+        assertEquals(weaker, mRadio.getConnectedBssid());
+        assertEquals(2, mRadio.getCallCount("addNetwork"));
+    }
+
+    @Test
+    public void removingTheNetworkBeingConnectedToStopsTheConnect() {
+        mRadio.setLatency(SimulatedRadio.Step.ASSOCIATION, 5_000);
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .onConnectionResult(result)
+                .start();
+        // Scanned and associating
+        idleFor(2_000);
+
+        final RemoveResult removed = new RemoveResult();
+        mEngine.remove(SSID, removed);
+        idleFor(10_000);
+
+        result.assertFailed(ConnectionErrorCode.COULD_NOT_CONNECT);
+        assertEquals(1, removed.mCalls);
+        assertTrue(removed.mSucceeded);
+        assertEquals(0, mRadio.getSavedNetworks().size());
+    }
+
+    @Test
+    public void removingAnotherNetworkLetsTheConnectFinish() {
+        mRadio.setLatency(SimulatedRadio.Step.ASSOCIATION, 5_000);
+        final Result result = new Result();
+        WifiUtils.withContext(mContext)
+                .connectWith(SSID, PASSWORD)
+                .onConnectionResult(result)
+                .start();
+        idleFor(2_000);
+
+        final RemoveResult removed = new RemoveResult();
+        mEngine.remove("elsewhere", removed);
+        idleFor(1_000);
+        // Waiting for the connect to finish
+        assertEquals(0, removed.mCalls);
+        assertEquals(0, result.mCalls);
+
+        idleFor(10_000);
+        result.assertSucceeded();
+        assertEquals(BSSID, mRadio.getConnectedBssid());
+        assertEquals(1, removed.mCalls);
+        assertTrue(removed.mSucceeded);
+    }
+
+    @Test
+    @Config(sdk = 29)
+    public void holdsTheRequestedNetworkOnAndroidQ() {
+        final Result result = new Result();
+        final ConnectRequest request = request(result);
+        mEngine.submit(request);
+        idleFor(10_000);
+
+        result.assertSucceeded();
+        assertEquals(1, mRadio.getCallCount("requestNetwork"));
+        assertEquals(0, mRadio.getCallCount("addNetwork"));
+        assertNotNull(NetworkRequestRegistry.getInstance().getNetwork(request.getId()));
+        assertEquals(NetworkRequestRegistry.getInstance().getNetwork(request.getId()), mRadio.getBoundNetwork());
+    }
+
+    @Test
+    @Config(sdk = 29)
+    public void releasesTheRequestWhenUnavailableOnAndroidQ() {
+        mRadio.script(BSSID, SimulatedRadio.Outcome.UNAVAILABLE);
+
+        final Result result = new Result();
+        final ConnectRequest request = request(result);
+        mEngine.submit(request);
+        idleFor(10_000);
+
+        result.assertFailed(ConnectionErrorCode.USER_CANCELLED);
+        assertFalse(NetworkRequestRegistry.getInstance().getActiveIds().contains(request.getId()));
+        assertEquals(1, mRadio.getCallCount("unregisterNetworkCallback"));
+        assertNull(mRadio.getBoundNetwork());
+    }
+
+    @NonNull
+    private static ConnectRequest request(@NonNull ConnectionSuccessListener listener) {
+        return new ConnectRequest.Builder()
+                .setSsid(SSID)
+                .setPassword(PASSWORD)
+                .setConnectionSuccessListener(listener)
+                .build();
+    }
+
+    private static final class RemoveResult implements RemoveSuccessListener {
+        int mCalls;
+        boolean mSucceeded;
+
+        @Override
+        public void success() {
+            mCalls++;
+            mSucceeded = true;
+        }
+
+        @Override
+        public void failed(@NonNull RemoveErrorCode errorCode) {
+            mCalls++;
+        }
+    }
+}
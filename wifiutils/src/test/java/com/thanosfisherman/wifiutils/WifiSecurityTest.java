@@ -0,0 +1,121 @@
+package com.androidconnect.wifiutils;
+
+import android.net.wifi.WifiConfiguration;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.androidconnect.wifiutils.WifiSecurity.EAP;
+import static com.androidconnect.wifiutils.WifiSecurity.EAP_SUITE_B;
+import static com.androidconnect.wifiutils.WifiSecurity.OPEN;
+import static com.androidconnect.wifiutils.WifiSecurity.OWE;
+import static com.androidconnect.wifiutils.WifiSecurity.OWE_TRANSITION;
+import static com.androidconnect.wifiutils.WifiSecurity.PSK;
+import static com.androidconnect.wifiutils.WifiSecurity.SAE;
+import static com.androidconnect.wifiutils.WifiSecurity.TRANSITION_PSK_SAE;
+import static com.androidconnect.wifiutils.WifiSecurity.WEP;
+import static com.androidconnect.wifiutils.WifiSecurity.WPS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WifiSecurityTest {
+
+    @Test
+    public void parsesCapabilities() {
+        assertEquals(PSK, WifiSecurity.parse("[WPA-PSK-TKIP+CCMP][WPA2-PSK-TKIP+CCMP][ESS]"));
+        assertEquals(SAE, WifiSecurity.parse("[RSN-SAE-CCMP][ESS]"));
+        assertEquals(TRANSITION_PSK_SAE, WifiSecurity.parse("[WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS]"));
+        assertEquals(OWE, WifiSecurity.parse("[RSN-OWE-CCMP][ESS]"));
+        assertEquals(OPEN | OWE_TRANSITION, WifiSecurity.parse("[ESS][OWE_TRANSITION]"));
+        assertEquals(WEP, WifiSecurity.parse("[WEP][ESS]"));
+        assertEquals(EAP, WifiSecurity.parse("[WPA2-EAP-CCMP][ESS]"));
+        assertEquals(EAP | EAP_SUITE_B, WifiSecurity.parse("[RSN-EAP_SUITE_B_192-GCMP-256][ESS]"));
+        assertEquals(PSK | WPS, WifiSecurity.parse("[WPA2-PSK-CCMP][WPS][ESS]"));
+        assertEquals(OPEN, WifiSecurity.parse("[ESS]"));
+        assertEquals(OPEN, WifiSecurity.parse(""));
+        assertEquals(OPEN, WifiSecurity.parse(null));
+    }
+
+    @Test
+    public void parsesTypeNames() {
+        for (final TypeEnum type : TypeEnum.values()) {
+            assertEquals(type.name(), WifiSecurity.toString(WifiSecurity.parse(type.name())));
+        }
+    }
+
+    @Test
+    public void readsConfigurations() {
+        assertEquals(OPEN, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.NONE)));
+        final WifiConfiguration wep = config(WifiConfiguration.KeyMgmt.NONE);
+        wep.wepKeys[0] = "\"abcde\"";
+        assertEquals(WEP, WifiSecurity.of(wep));
+        assertEquals(PSK, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.WPA_PSK)));
+        assertEquals(EAP, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.WPA_EAP)));
+        assertEquals(EAP, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.IEEE8021X)));
+        assertEquals(SAE, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.SAE)));
+        assertEquals(TRANSITION_PSK_SAE, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.WPA_PSK, WifiConfiguration.KeyMgmt.SAE)));
+        assertEquals(OWE, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.OWE)));
+        assertEquals(EAP | EAP_SUITE_B, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.SUITE_B_192)));
+        // Nothing allowed at all, as in a configuration built by hand
+        assertEquals(OPEN, WifiSecurity.of(new WifiConfiguration()));
+    }
+
+    @Test
+    public void readsConfigurationsAllowingPskAndEapAsPsk() {
+        assertEquals(PSK, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.WPA_PSK, WifiConfiguration.KeyMgmt.WPA_EAP)));
+        assertEquals(PSK, WifiSecurity.of(config(WifiConfiguration.KeyMgmt.WPA_PSK, WifiConfiguration.KeyMgmt.IEEE8021X)));
+    }
+
+    @Test
+    public void picksThePrimaryFlag() {
+        assertEquals(EAP, WifiSecurity.primary(EAP | PSK));
+        assertEquals(EAP, WifiSecurity.primary(EAP | EAP_SUITE_B));
+        assertEquals(PSK, WifiSecurity.primary(TRANSITION_PSK_SAE | WPS));
+        assertEquals(SAE, WifiSecurity.primary(SAE | OWE));
+        assertEquals(OWE, WifiSecurity.primary(OWE | WEP));
+        assertEquals(WEP, WifiSecurity.primary(WEP | OPEN));
+        assertEquals(OPEN, WifiSecurity.primary(OPEN | OWE_TRANSITION));
+        assertEquals(OPEN, WifiSecurity.primary(WPS));
+        assertEquals(OPEN, WifiSecurity.primary(0));
+    }
+
+    @Test
+    public void matchesScanResultsWithConfigurations() {
+        final int psk = WifiSecurity.of(config(WifiConfiguration.KeyMgmt.WPA_PSK));
+        // A transition network is configured as a PSK one
+        assertTrue(WifiSecurity.isCompatible(WifiSecurity.parse("[WPA2-PSK-CCMP][RSN-PSK+SAE-CCMP][ESS]"), psk));
+        assertTrue(WifiSecurity.isCompatible(WifiSecurity.parse("[WPA-PSK-TKIP][ESS]"), psk));
+        assertFalse(WifiSecurity.isCompatible(WifiSecurity.parse("[RSN-SAE-CCMP][ESS]"), psk));
+        assertFalse(WifiSecurity.isCompatible(WifiSecurity.parse("[WPA2-EAP-CCMP][ESS]"), psk));
+        assertTrue(WifiSecurity.isCompatible(WifiSecurity.parse("[ESS][OWE_TRANSITION]"),
+                WifiSecurity.of(config(WifiConfiguration.KeyMgmt.NONE))));
+        assertFalse(WifiSecurity.isCompatible(WifiSecurity.parse("[RSN-OWE-CCMP][ESS]"),
+                WifiSecurity.of(config(WifiConfiguration.KeyMgmt.NONE))));
+        assertTrue(WifiSecurity.isOpen(WifiSecurity.parse("[ESS][OWE_TRANSITION]")));
+        assertFalse(WifiSecurity.isOpen(WifiSecurity.parse("[RSN-OWE-CCMP][ESS]")));
+    }
+
+    @Test
+    public void printsFlags() {
+        assertEquals("PSK+SAE+WPS", WifiSecurity.toString(TRANSITION_PSK_SAE | WPS));
+        assertEquals("OPEN+OWE_TRANSITION", WifiSecurity.toString(OPEN | OWE_TRANSITION));
+        assertEquals("PSK, WPS", WifiSecurity.toPrettyString(TRANSITION_PSK_SAE | WPS));
+        assertEquals("EAP", WifiSecurity.toPrettyString(EAP | EAP_SUITE_B));
+    }
+
+    @NonNull
+    private static WifiConfiguration config(int... keyManagement) {
+        final WifiConfiguration config = new WifiConfiguration();
+        for (final int keyMgmt : keyManagement) {
+            config.allowedKeyManagement.set(keyMgmt);
+        }
+        return config;
+    }
+}
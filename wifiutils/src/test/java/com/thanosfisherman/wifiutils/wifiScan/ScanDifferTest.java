@@ -0,0 +1,144 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import android.net.wifi.ScanResult;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowScanResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScanDifferTest {
+    private static final String FIRST = "02:00:00:00:00:01";
+    private static final String SECOND = "02:00:00:00:00:02";
+    private static final String THIRD = "02:00:00:00:00:03";
+
+    private final Recorder mRecorder = new Recorder();
+    private final ScanDiffer mDiffer = new ScanDiffer(5, mRecorder);
+
+    @Test
+    public void reportsEveryAccessPointOfTheFirstScanAsAdded() {
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -50), result(SECOND, -60)));
+
+        assertEquals(1, mRecorder.mCalls);
+        assertEquals(Arrays.asList(FIRST, SECOND), mRecorder.mAdded);
+        assertEquals(Collections.<String>emptyList(), mRecorder.mRemoved);
+        assertEquals(Collections.<String>emptyList(), mRecorder.mChanged);
+    }
+
+    @Test
+    public void reportsAddedRemovedAndChanged() {
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -50), result(SECOND, -60)));
+
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -70), result(THIRD, -40)));
+
+        assertEquals(2, mRecorder.mCalls);
+        assertEquals(Collections.singletonList(THIRD), mRecorder.mAdded);
+        assertEquals(Collections.singletonList(SECOND), mRecorder.mRemoved);
+        assertEquals(Collections.singletonList(FIRST), mRecorder.mChanged);
+    }
+
+    @Test
+    public void ignoresSignalChangesBelowTheThreshold() {
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -50), result(SECOND, -60)));
+
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -54), result(SECOND, -56)));
+        assertEquals(1, mRecorder.mCalls);
+
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -54), result(SECOND, -65)));
+        assertEquals(2, mRecorder.mCalls);
+        assertEquals(Collections.singletonList(SECOND), mRecorder.mChanged);
+    }
+
+    @Test
+    public void addsSlowDriftsUp() {
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -60)));
+
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -62)));
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -64)));
+        assertEquals(1, mRecorder.mCalls);
+
+        // 5dB away from the level last reported, though only 1dB from the previous scan
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -65)));
+        assertEquals(2, mRecorder.mCalls);
+        assertEquals(Collections.singletonList(FIRST), mRecorder.mChanged);
+        assertEquals(-65, mRecorder.mLastChangedLevel);
+
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -67)));
+        assertEquals(2, mRecorder.mCalls);
+    }
+
+    @Test
+    public void skipsFailedScans() {
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -50), result(SECOND, -60)));
+
+        // What the engine hands listeners when a scan fails
+        mDiffer.onScanResults(new ArrayList<ScanResult>());
+        assertEquals(1, mRecorder.mCalls);
+
+        mDiffer.onScanResults(Arrays.asList(result(FIRST, -50), result(SECOND, -60)));
+        assertEquals(1, mRecorder.mCalls);
+
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -50)));
+        assertEquals(2, mRecorder.mCalls);
+        assertEquals(Collections.singletonList(SECOND), mRecorder.mRemoved);
+    }
+
+    @Test
+    public void reportsEverythingAgainAfterReset() {
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -50)));
+        mDiffer.reset();
+
+        mDiffer.onScanResults(Collections.singletonList(result(FIRST, -50)));
+
+        assertEquals(2, mRecorder.mCalls);
+        assertEquals(Collections.singletonList(FIRST), mRecorder.mAdded);
+    }
+
+    @NonNull
+    private static ScanResult result(@NonNull String bssid, int level) {
+        return ShadowScanResult.newInstance("venue", bssid, "[WPA2-PSK-CCMP][ESS]", level, 2437);
+    }
+
+    /**
+     * Keeps the BSSIDs of the last differences reported.
+     */
+    private static final class Recorder implements ScanDiffListener {
+        int mCalls;
+        List<String> mAdded;
+        List<String> mRemoved;
+        List<String> mChanged;
+        int mLastChangedLevel;
+
+        @Override
+        public void onScanDiff(@NonNull List<ScanResult> added, @NonNull List<ScanResult> removed, @NonNull List<ScanResult> changed) {
+            mCalls++;
+            mAdded = bssids(added);
+            mRemoved = bssids(removed);
+            mChanged = bssids(changed);
+            if (!changed.isEmpty()) {
+                mLastChangedLevel = changed.get(changed.size() - 1).level;
+            }
+        }
+
+        @NonNull
+        private static List<String> bssids(@NonNull List<ScanResult> results) {
+            final List<String> bssids = new ArrayList<>(results.size());
+            for (final ScanResult result : results) {
+                bssids.add(result.BSSID);
+            }
+            return bssids;
+        }
+    }
+}
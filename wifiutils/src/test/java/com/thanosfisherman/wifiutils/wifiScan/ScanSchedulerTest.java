@@ -0,0 +1,149 @@
+package com.androidconnect.wifiutils.wifiScan;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.androidconnect.wifiutils.testing.AccessPoint;
+import com.androidconnect.wifiutils.testing.SimulatedRadio;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.androidconnect.wifiutils.EngineTestUtils.idleFor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Runs the scan budget of Android 9 against a {@link SimulatedRadio}, whose scans take a second.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ScanSchedulerTest {
+    private SimulatedRadio mRadio;
+    private ScanScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mRadio = new SimulatedRadio(RuntimeEnvironment.getApplication())
+                .addAccessPoint(AccessPoint.wpa2("home", "02:00:00:00:00:01"))
+                .addAccessPoint(AccessPoint.open("lobby", "02:00:00:00:00:02"));
+        mScheduler = ScanScheduler.getInstance();
+        mScheduler.reset();
+    }
+
+    @Test
+    public void servesCachedResultsOnceTheBudgetIsSpent() {
+        for (int i = 0; i < ScanScheduler.MAX_SCANS_PER_WINDOW; i++) {
+            final Snapshots scan = new Snapshots();
+            mScheduler.requestScan(mRadio, scan);
+            idleFor(1_500);
+            scan.assertDelivered(2);
+        }
+        assertEquals(ScanScheduler.MAX_SCANS_PER_WINDOW, mRadio.getCallCount("startScan"));
+
+        // Served right away, from what the platform holds
+        final Snapshots fifth = new Snapshots();
+        mScheduler.requestScan(mRadio, fifth);
+        fifth.assertDelivered(2);
+        assertEquals(ScanScheduler.MAX_SCANS_PER_WINDOW, mRadio.getCallCount("startScan"));
+
+        // The first scan left the window
+        idleFor(ScanScheduler.WINDOW_MILLIS);
+        final Snapshots later = new Snapshots();
+        mScheduler.requestScan(mRadio, later);
+        assertEquals(0, later.mCalls);
+        idleFor(1_500);
+        later.assertDelivered(2);
+        assertEquals(ScanScheduler.MAX_SCANS_PER_WINDOW + 1, mRadio.getCallCount("startScan"));
+    }
+
+    @Test
+    public void spendsNoBudgetOnRefusedScans() {
+        mRadio.setWifiEnabled(false);
+        final Snapshots refused = new Snapshots();
+        mScheduler.requestScan(mRadio, refused);
+        // Nothing scanned before, nothing to serve
+        assertEquals(1, refused.mCalls);
+        assertEquals(1, refused.mFailures);
+
+        mRadio.setWifiEnabled(true);
+        idleFor(1_000);
+        for (int i = 0; i < ScanScheduler.MAX_SCANS_PER_WINDOW; i++) {
+            final Snapshots scan = new Snapshots();
+            mScheduler.requestScan(mRadio, scan);
+            idleFor(1_500);
+            scan.assertDelivered(2);
+        }
+        assertEquals(ScanScheduler.MAX_SCANS_PER_WINDOW + 1, mRadio.getCallCount("startScan"));
+    }
+
+    @Test
+    public void deliversOnceToEveryCallerOfAScan() {
+        final Snapshots first = new Snapshots();
+        final Snapshots second = new Snapshots();
+        final Snapshots third = new Snapshots();
+        mScheduler.requestScan(mRadio, first);
+        mScheduler.requestScan(mRadio, second);
+        idleFor(500);
+        mScheduler.requestScan(mRadio, third);
+        idleFor(5_000);
+
+        assertEquals(1, mRadio.getCallCount("startScan"));
+        first.assertDelivered(2);
+        second.assertDelivered(2);
+        third.assertDelivered(2);
+        assertNotNull(mScheduler.getCachedSnapshot(10_000));
+    }
+
+    @Test
+    public void fallsBackToHeldResultsWhenTheBroadcastIsLost() {
+        mScheduler.requestScan(mRadio, new Snapshots());
+        idleFor(1_500);
+        mRadio.removeAccessPoint("02:00:00:00:00:02")
+                .setLatency(SimulatedRadio.Step.SCAN, 60_000);
+        mRadio.resetCallCounts();
+
+        final Snapshots lost = new Snapshots();
+        mScheduler.requestScan(mRadio, lost);
+        idleFor(29_000);
+        assertEquals(0, lost.mCalls);
+
+        idleFor(1_000);
+        // Still the results of the first scan
+        lost.assertDelivered(2);
+        assertEquals(1, mRadio.getCallCount("getScanResults"));
+
+        // Results showing up late go nowhere
+        idleFor(60_000);
+        assertEquals(1, lost.mCalls);
+    }
+
+    private static final class Snapshots implements ScanSnapshotCallback {
+        int mCalls;
+        int mFailures;
+        @Nullable
+        ScanSnapshot mSnapshot;
+
+        @Override
+        public void onScanSnapshot(@NonNull ScanSnapshot snapshot) {
+            mCalls++;
+            mSnapshot = snapshot;
+        }
+
+        @Override
+        public void onScanFailed() {
+            mCalls++;
+            mFailures++;
+        }
+
+        void assertDelivered(int accessPoints) {
+            assertEquals("callbacks", 1, mCalls);
+            assertNotNull("failed", mSnapshot);
+            assertEquals(accessPoints, mSnapshot.getResults().size());
+        }
+    }
+}